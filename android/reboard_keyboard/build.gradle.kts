@@ -55,6 +55,11 @@ fun getApiKey(envName: String): String {
     return ""
 }
 
+// Neural glide typing runs its encoder on ONNX Runtime, whose native libraries
+// add several MB per ABI. Only built in with -PneuralGlide=true; otherwise the
+// NEURAL engine falls back to the statistical classifier.
+val neuralGlide = (findProperty("neuralGlide") as String?)?.toBoolean() ?: false
+
 val projectMinSdk: String by project
 val projectTargetSdk: String by project
 val projectCompileSdk: String by project
@@ -138,6 +143,8 @@ android {
         buildConfigField("boolean", "ENABLE_VELOCITY_AWARE_GESTURE", "true")
         buildConfigField("boolean", "ENABLE_PARTIAL_GESTURE_PREDICTIONS", "true")
         buildConfigField("boolean", "ENABLE_BEAM_SEARCH_GESTURES", "false")
+        // Compares short candidates on fewer resampled points; see SAMPLING_TIERS.
+        // Off until the 32/64/120 tiers are checked against the fixed 120-point path.
         buildConfigField("boolean", "ENABLE_ADAPTIVE_RESAMPLE", "false")
         // Gesture polish cycle (cycle 3) — fix "hello → hell" and long-word matching
         buildConfigField("boolean", "ENABLE_GESTURE_ENDPOINT_TOLERANCE", "true")
@@ -145,6 +152,9 @@ android {
         // length-match bonus (LENGTH_MATCH_MAX_BONUS) is the principled replacement.
         buildConfigField("boolean", "ENABLE_GESTURE_PREFIX_BIAS", "false")
         buildConfigField("boolean", "ENABLE_GESTURE_LENGTH_ASYMMETRY", "true")
+        // Mid-stroke previews pick their candidates from IncrementalGlideDecoder,
+        // which only aligns newly added points, instead of re-pruning the whole path.
+        buildConfigField("boolean", "ENABLE_INCREMENTAL_GLIDE_PREVIEW", "true")
         // Native-engine rollout (Phase 8).
         //
         // ENABLE_NATIVE_SUGGESTER = true → tap-input suggestions go through
@@ -163,7 +173,7 @@ android {
         //   wiring a real gesture suggest policy (substantial undertaking).
         buildConfigField("boolean", "ENABLE_NATIVE_SUGGESTER", "true")
         buildConfigField("boolean", "ENABLE_NATIVE_GLIDE", "false")
-        buildConfigField("boolean", "ENABLE_NEURAL_GLIDE", "true")
+        buildConfigField("boolean", "ENABLE_NEURAL_GLIDE", "$neuralGlide")
         // Phase 7: when true, MediaInputLayout uses the androidx.emoji2
         // emojipicker-based NativeEmojiPanel instead of the legacy hand-
         // rolled EmojiPaletteView.
@@ -192,6 +202,8 @@ android {
                 }
                 java {
                     srcDirs("src/main/kotlin")
+                    // SwipeEncoder: the ONNX Runtime one, or a stub that is never available.
+                    srcDirs(if (neuralGlide) "src/neural/kotlin" else "src/noneural/kotlin")
                 }
             }
         }
@@ -302,6 +314,12 @@ dependencies {
     implementation(project(":reboard_lib:native"))
     implementation(project(":reboard_lib:snygg"))
 
+    // CPU inference for the neural glide encoder (ml_swipe/export.py writes the
+    // int8 model to assets/ime/glide/). Only the CPU execution provider is used.
+    if (neuralGlide) {
+        implementation("com.microsoft.onnxruntime:onnxruntime-android:1.19.2")
+    }
+
     // Network dependencies for AI features
     implementation("com.squareup.okhttp3:okhttp:4.11.0")
     implementation("com.google.code.gson:gson:2.10.1")
@@ -23,6 +23,7 @@ import android.view.textservice.TextInfo
 import com.noxquill.rewordium.keyboard.app.FlorisPreferenceStore
 import com.noxquill.rewordium.keyboard.ime.core.Subtype
 import com.noxquill.rewordium.keyboard.ime.dictionary.DictionaryManager
+import com.noxquill.rewordium.keyboard.ime.nlp.BreakIteratorGroup
 import com.noxquill.rewordium.keyboard.ime.nlp.SpellingLanguageMode
 import com.noxquill.rewordium.keyboard.ime.nlp.SpellingResult
 import com.noxquill.rewordium.keyboard.lib.FlorisLocale
@@ -59,6 +60,7 @@ class FlorisSpellCheckerService : SpellCheckerService() {
 
     private inner class FlorisSpellCheckerSession : Session() {
         private var cachedSpellingSubtype: Subtype? = null
+        private val breakIterators = BreakIteratorGroup()
 
         override fun onCreate() {
             flogInfo(LogTopic.SPELL_EVENTS) { "Session requested locale: $locale" }
@@ -138,8 +140,27 @@ class FlorisSpellCheckerService : SpellCheckerService() {
         ): Array<SentenceSuggestionsInfo> {
             flogInfo(LogTopic.SPELL_EVENTS)
 
-            // TODO: implement custom solution here instead of calling the default implementation
-            return super.onGetSentenceSuggestionsMultiple(textInfos, suggestionsLimit)
+            textInfos ?: return emptyArray()
+            setupSpellingIfNecessary()
+            val spellingSubtype = cachedSpellingSubtype ?: return emptyArray()
+
+            // Each text is tokenized and spell checked as one batch instead of
+            // one provider call per word.
+            return runBlocking {
+                Array(textInfos.size) { n ->
+                    val textInfo = textInfos[n]
+                    val text = textInfo.text ?: ""
+                    val results = nlpManager.spellAll(spellingSubtype, text, breakIterators, suggestionsLimit)
+                    val infos = Array(results.size) { i ->
+                        results[i].second.suggestionsInfo.apply {
+                            setCookieAndSequence(textInfo.cookie, textInfo.sequence)
+                        }
+                    }
+                    val offsets = IntArray(results.size) { i -> results[i].first.start }
+                    val lengths = IntArray(results.size) { i -> results[i].first.length }
+                    SentenceSuggestionsInfo(infos, offsets, lengths)
+                }
+            }
         }
 
         override fun onCancel() {
@@ -386,6 +386,11 @@ abstract class FlorisPreferenceModel : PreferenceModel() {
             key = "glide__immediate_backspace_deletes_word",
             default = true,
         )
+        // Worker threads for glide candidate scoring; 0 = one per fast core (max 4).
+        val scoringThreads = int(
+            key = "glide__scoring_threads",
+            default = 0,
+        )
     }
 
     val inputFeedback = InputFeedback()
@@ -16,12 +16,15 @@
 
 package com.noxquill.rewordium.keyboard.app.devtools
 
+import androidx.activity.compose.rememberLauncherForActivityResult
+import androidx.activity.result.contract.ActivityResultContracts
 import androidx.compose.runtime.Composable
 import androidx.compose.runtime.getValue
 import androidx.compose.runtime.mutableStateOf
 import androidx.compose.runtime.remember
 import androidx.compose.runtime.rememberCoroutineScope
 import androidx.compose.ui.platform.LocalContext
+import com.noxquill.rewordium.keyboard.BuildConfig
 import com.noxquill.rewordium.keyboard.R
 import com.noxquill.rewordium.keyboard.app.LocalNavController
 import com.noxquill.rewordium.keyboard.app.Routes
@@ -29,8 +32,10 @@ import com.noxquill.rewordium.keyboard.extensionManager
 import com.noxquill.rewordium.keyboard.ime.dictionary.DictionaryManager
 import com.noxquill.rewordium.keyboard.ime.dictionary.FlorisUserDictionaryDatabase
 import com.noxquill.rewordium.keyboard.ime.smartbar.quickaction.QuickActionArrangement
+import com.noxquill.rewordium.keyboard.ime.text.gestures.GlideScoringPool
 import com.noxquill.rewordium.keyboard.lib.compose.FlorisConfirmDeleteDialog
 import com.noxquill.rewordium.keyboard.lib.compose.FlorisScreen
+import com.noxquill.rewordium.keyboard.nlpManager
 import dev.patrickgold.jetpref.datastore.model.*
 import dev.patrickgold.jetpref.datastore.ui.Preference
 import dev.patrickgold.jetpref.datastore.ui.PreferenceGroup
@@ -55,8 +60,25 @@ fun DevtoolsScreen() = FlorisScreen {
     val context = LocalContext.current
     val navController = LocalNavController.current
     val extensionManager by context.extensionManager()
+    val nlpManager by context.nlpManager()
     val scope = rememberCoroutineScope()
 
+    val exportSuggestionTimings = rememberLauncherForActivityResult(
+        contract = ActivityResultContracts.CreateDocument("text/csv"),
+        onResult = { uri ->
+            if (uri == null) return@rememberLauncherForActivityResult
+            runCatching {
+                context.contentResolver.openOutputStream(uri)!!.bufferedWriter().use {
+                    nlpManager.suggestionTimings.writeCsv(it)
+                }
+            }.onSuccess {
+                context.showLongToastSync("Suggestion timings exported")
+            }.onFailure { error ->
+                context.showLongToastSync("Failed to export suggestion timings: ${error.message}")
+            }
+        },
+    )
+
     val (showDialog, setShowDialog) = remember { mutableStateOf(false) }
 
     content {
@@ -133,6 +155,33 @@ fun DevtoolsScreen() = FlorisScreen {
                 onClick = { throw DebugOnPurposeCrashException() },
                 enabledIf = { prefs.devtools.enabled isEqualTo true },
             )
+            DialogSliderPreference(
+                prefs.glide.scoringThreads,
+                title = "Glide scoring threads",
+                valueLabel = { if (it == 0) "Auto" else it.toString() },
+                min = 0,
+                max = Runtime.getRuntime().availableProcessors(),
+                stepIncrement = 1,
+                enabledIf = { prefs.devtools.enabled isEqualTo true },
+            )
+            Preference(
+                title = "Glide scoring passes",
+                summary = GlideScoringPool.describe(),
+                enabledIf = { prefs.devtools.enabled isEqualTo true },
+            )
+            Preference(
+                title = "Suggestion timings",
+                summary = nlpManager.suggestionTimings.describe(),
+                enabledIf = { prefs.devtools.enabled isEqualTo true },
+            )
+            Preference(
+                title = "Export suggestion timings",
+                summary = "Save the latest requests' timings as CSV, to compare builds",
+                onClick = {
+                    exportSuggestionTimings.launch("suggestion-timings-${BuildConfig.BUILD_COMMIT_HASH}.csv")
+                },
+                enabledIf = { prefs.devtools.enabled isEqualTo true },
+            )
             Preference(
                 title = "Debug log",
                 summary = "View and export the debug log",
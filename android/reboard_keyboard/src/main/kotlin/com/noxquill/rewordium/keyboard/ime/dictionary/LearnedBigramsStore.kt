@@ -20,25 +20,16 @@ import android.content.Context
 import android.content.SharedPreferences
 import com.noxquill.rewordium.keyboard.lib.FlorisLocale
 import com.noxquill.rewordium.keyboard.lib.devtools.flogError
-import kotlinx.coroutines.CoroutineScope
-import kotlinx.coroutines.Dispatchers
-import kotlinx.coroutines.SupervisorJob
-import kotlinx.coroutines.channels.Channel
-import kotlinx.coroutines.delay
-import kotlinx.coroutines.launch
-import kotlinx.coroutines.sync.Mutex
-import kotlinx.coroutines.sync.withLock
 import kotlinx.serialization.builtins.MapSerializer
 import kotlinx.serialization.builtins.serializer
-import kotlinx.serialization.json.Json
-import java.io.File
 import java.util.concurrent.ConcurrentHashMap
 
 /**
  * Per-locale persistent store for user-learned bigrams (previous-word →
- * next-word frequency). Sister of [LearnedWordsStore]; same write pattern
- * (CONFLATED dirty channel + 2s debounce + atomic temp+rename) so a kill-9
- * during a write can never corrupt the on-disk file.
+ * next-word frequency). Persisted by [LearnedNgramStore] with the same write
+ * pattern as [LearnedWordsStore] (CONFLATED dirty channel + 2s debounce +
+ * atomic temp+rename) so a kill-9 during a write can never corrupt the
+ * on-disk file.
  *
  * Replaces the previous SharedPreferences-backed bigram store
  * (`reboard_learned_bigrams` prefs file) which had three issues:
@@ -60,70 +51,30 @@ import java.util.concurrent.ConcurrentHashMap
  * [ensureLoaded] and folds those entries into the JSON store before clearing
  * the prefs — so users upgrading don't lose their existing bigram history.
  */
-class LearnedBigramsStore(private val context: Context) {
-
-    private val scope = CoroutineScope(Dispatchers.IO + SupervisorJob())
-    // perLocale[localeTag][prevWord][nextWord] = score (0..MAX_SCORE)
-    private val perLocale = ConcurrentHashMap<String, ConcurrentHashMap<String, ConcurrentHashMap<String, Int>>>()
-    private val dirtyChannel = Channel<Unit>(Channel.CONFLATED)
-    private val loadMutex = Mutex()
-    @Volatile private var loaded = false
-
-    private val storeFile: File by lazy { File(context.filesDir, FILE_NAME) }
-
-    private val json = Json {
-        ignoreUnknownKeys = true
-        encodeDefaults = true
-    }
-    private val mapSerializer = MapSerializer(
-        String.serializer(),
-        MapSerializer(
-            String.serializer(),
-            MapSerializer(String.serializer(), Int.serializer()),
-        ),
-    )
-
-    init {
-        scope.launch {
-            for (@Suppress("UNUSED_VARIABLE") signal in dirtyChannel) {
-                delay(WRITE_DEBOUNCE_MS)
-                while (dirtyChannel.tryReceive().isSuccess) { /* coalesce */ }
-                writeToDisk()
-            }
-        }
-    }
+class LearnedBigramsStore(context: Context) :
+    LearnedNgramStore<ConcurrentHashMap<String, Int>, Map<String, Int>>(
+        context,
+        FILE_NAME,
+        MapSerializer(String.serializer(), Int.serializer()),
+    ) {
 
     /** Idempotent. Loads JSON from disk and migrates legacy SharedPreferences. */
     suspend fun ensureLoaded(legacyPrefs: SharedPreferences? = null) {
-        if (loaded) return
-        loadMutex.withLock {
-            if (loaded) return
-            try {
-                if (storeFile.exists()) {
-                    val text = storeFile.readText(Charsets.UTF_8)
-                    if (text.isNotBlank()) {
-                        val parsed = json.decodeFromString(mapSerializer, text)
-                        for ((locale, prevMap) in parsed) {
-                            val sub = ConcurrentHashMap<String, ConcurrentHashMap<String, Int>>()
-                            for ((prev, nextMap) in prevMap) {
-                                sub[prev] = ConcurrentHashMap(nextMap)
-                            }
-                            perLocale[locale] = sub
-                        }
-                    }
-                }
-            } catch (e: Exception) {
-                flogError { "LearnedBigramsStore: failed to load ($e), starting empty" }
-            }
-            if (legacyPrefs != null && !storeFile.exists()) {
+        loadOnce {
+            if (legacyPrefs != null && !storeExists) {
                 // Only migrate when the new file doesn't exist yet — once we
                 // have a JSON file we treat it as authoritative.
                 migrateFromPreferences(legacyPrefs)
             }
-            loaded = true
         }
     }
 
+    override fun decodeBucket(serialized: Map<String, Int>) = ConcurrentHashMap(serialized)
+
+    override fun encodeBucket(bucket: ConcurrentHashMap<String, Int>): Map<String, Int> = HashMap(bucket)
+
+    override fun weightOf(bucket: ConcurrentHashMap<String, Int>): Int = bucket.values.sum()
+
     /**
      * Read every key/value from the legacy `reboard_learned_bigrams`
      * SharedPreferences file (format: key=prevWord, value="next1:s1,next2:s2,…"),
@@ -141,10 +92,9 @@ class LearnedBigramsStore(private val context: Context) {
         try {
             val all = prefs.all
             if (all.isEmpty()) return
-            val sub = perLocale.getOrPut(LEGACY_LOCALE_TAG) { ConcurrentHashMap() }
             for ((prevWord, value) in all) {
                 if (value !is String || value.isBlank()) continue
-                val inner = sub.getOrPut(prevWord) { ConcurrentHashMap() }
+                val inner = bucketFor(LEGACY_LOCALE_TAG, prevWord) { ConcurrentHashMap() }
                 for (entry in value.split(",")) {
                     val parts = entry.split(":")
                     if (parts.size != 2) continue
@@ -153,7 +103,7 @@ class LearnedBigramsStore(private val context: Context) {
                 }
             }
             prefs.edit().clear().apply()
-            dirtyChannel.trySend(Unit)
+            markDirty(LEGACY_LOCALE_TAG)
         } catch (e: Exception) {
             flogError { "LearnedBigramsStore: legacy migration failed ($e)" }
         }
@@ -168,60 +118,28 @@ class LearnedBigramsStore(private val context: Context) {
         return sub.mapValues { (_, inner) -> HashMap(inner) }
     }
 
+    /**
+     * Live `nextWord → score` transitions from [prevWord] for [locale],
+     * without copying. Read-only view; may change while being iterated.
+     */
+    fun transitionsFrom(locale: FlorisLocale, prevWord: String): Map<String, Int> {
+        return perLocale[locale.languageTag()]?.get(prevWord) ?: emptyMap()
+    }
+
     /**
      * Bump the `prevWord → nextWord` transition score for [locale]. Hot path
      * — non-suspending, non-blocking. Score saturates at [MAX_SCORE].
      */
     fun bump(locale: FlorisLocale, prevWord: String, nextWord: String, delta: Int = 5) {
         val tag = locale.languageTag()
-        val sub = perLocale.getOrPut(tag) { ConcurrentHashMap() }
-        val inner = sub.getOrPut(prevWord) { ConcurrentHashMap() }
+        val inner = bucketFor(tag, prevWord) { ConcurrentHashMap() }
         val current = inner[nextWord] ?: 0
         inner[nextWord] = (current + delta).coerceIn(0, MAX_SCORE)
-        if (sub.size > LOCALE_PREV_CAP) {
-            evictLocale(sub)
-        }
-        dirtyChannel.trySend(Unit)
-    }
-
-    /**
-     * Drop the lowest-scoring previous-word buckets when [sub] outgrows
-     * [LOCALE_PREV_CAP]. Ranking key = sum of the bucket's transition scores
-     * — buckets that have never been reinforced go first.
-     */
-    private fun evictLocale(sub: ConcurrentHashMap<String, ConcurrentHashMap<String, Int>>) {
-        val ranked = sub.entries
-            .map { e -> e.key to e.value.values.sum() }
-            .sortedBy { it.second }
-        val toDrop = (LOCALE_PREV_CAP * EVICT_FRACTION).toInt().coerceAtLeast(1)
-        for (i in 0 until minOf(toDrop, ranked.size)) {
-            sub.remove(ranked[i].first)
-        }
-    }
-
-    private fun writeToDisk() {
-        try {
-            val snapshot: Map<String, Map<String, Map<String, Int>>> =
-                perLocale.mapValues { (_, prevMap) ->
-                    prevMap.mapValues { (_, inner) -> HashMap(inner) }
-                }
-            val tmp = File(storeFile.parentFile, "$FILE_NAME.tmp")
-            tmp.writeText(json.encodeToString(mapSerializer, snapshot), Charsets.UTF_8)
-            if (!tmp.renameTo(storeFile)) {
-                storeFile.writeText(tmp.readText(Charsets.UTF_8), Charsets.UTF_8)
-                tmp.delete()
-            }
-        } catch (e: Exception) {
-            flogError { "LearnedBigramsStore: write failed ($e)" }
-        }
+        markDirty(tag)
     }
 
     private companion object {
         const val FILE_NAME = "learned_bigrams.json"
-        const val WRITE_DEBOUNCE_MS = 2000L
-        const val MAX_SCORE = 200
-        const val LOCALE_PREV_CAP = 5000
-        const val EVICT_FRACTION = 0.10
         const val LEGACY_LOCALE_TAG = "en-US"
     }
 }
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.dictionary
+
+import android.content.Context
+import com.noxquill.rewordium.keyboard.lib.devtools.flogError
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.serialization.KSerializer
+import kotlinx.serialization.builtins.MapSerializer
+import kotlinx.serialization.builtins.serializer
+import kotlinx.serialization.json.Json
+import java.io.File
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Shared persistence of the learned n-gram stores ([LearnedBigramsStore],
+ * [LearnedTrigramsStore]): per-locale maps from the first context word to a
+ * bucket [B] of transitions, loaded once from `context.filesDir/[fileName]`
+ * and written back with a CONFLATED dirty channel + 2s debounce + atomic
+ * temp+rename, so a kill-9 during a write can never corrupt the file.
+ *
+ * Subclasses define the bucket shape: how it's (de)serialized as [S] and how
+ * much it weighs when a locale outgrows [LOCALE_FIRST_WORD_CAP] and its
+ * lightest buckets are evicted. They call [markDirty] after every change.
+ */
+abstract class LearnedNgramStore<B : Any, S>(
+    private val context: Context,
+    private val fileName: String,
+    bucketSerializer: KSerializer<S>,
+) {
+    companion object {
+        /** Scores saturate here. */
+        const val MAX_SCORE = 200
+
+        private const val WRITE_DEBOUNCE_MS = 2000L
+        private const val LOCALE_FIRST_WORD_CAP = 5000
+        private const val EVICT_FRACTION = 0.10
+    }
+
+    private val scope = CoroutineScope(Dispatchers.IO + SupervisorJob())
+    // perLocale[localeTag][firstWord] = bucket
+    protected val perLocale = ConcurrentHashMap<String, ConcurrentHashMap<String, B>>()
+    private val dirtyChannel = Channel<Unit>(Channel.CONFLATED)
+    private val loadMutex = Mutex()
+    @Volatile private var loaded = false
+    // Incremented on every in-memory change so readers can cache what they
+    // derive from the store and know when it went stale.
+    private val _generation = AtomicInteger(0)
+    val generation: Int
+        get() = _generation.get()
+
+    private val storeFile: File by lazy { File(context.filesDir, fileName) }
+
+    private val json = Json {
+        ignoreUnknownKeys = true
+        encodeDefaults = true
+    }
+    private val mapSerializer = MapSerializer(
+        String.serializer(),
+        MapSerializer(String.serializer(), bucketSerializer),
+    )
+
+    init {
+        scope.launch {
+            for (@Suppress("UNUSED_VARIABLE") signal in dirtyChannel) {
+                delay(WRITE_DEBOUNCE_MS)
+                while (dirtyChannel.tryReceive().isSuccess) { /* coalesce */ }
+                writeToDisk()
+            }
+        }
+    }
+
+    protected abstract fun decodeBucket(serialized: S): B
+
+    protected abstract fun encodeBucket(bucket: B): S
+
+    /** Eviction weight of [bucket], e.g. the sum of its scores; the lightest go first. */
+    protected abstract fun weightOf(bucket: B): Int
+
+    /**
+     * Idempotent. Loads JSON from disk, then runs [afterLoad] under the load
+     * lock, e.g. to migrate legacy data when [storeExists] is false.
+     */
+    protected suspend fun loadOnce(afterLoad: () -> Unit) {
+        if (loaded) return
+        loadMutex.withLock {
+            if (loaded) return
+            try {
+                if (storeFile.exists()) {
+                    val text = storeFile.readText(Charsets.UTF_8)
+                    if (text.isNotBlank()) {
+                        val parsed = json.decodeFromString(mapSerializer, text)
+                        for ((locale, firstMap) in parsed) {
+                            val sub = ConcurrentHashMap<String, B>()
+                            for ((firstWord, bucket) in firstMap) {
+                                sub[firstWord] = decodeBucket(bucket)
+                            }
+                            perLocale[locale] = sub
+                        }
+                    }
+                }
+            } catch (e: Exception) {
+                flogError { "LearnedNgramStore($fileName): failed to load ($e), starting empty" }
+            }
+            afterLoad()
+            loaded = true
+            _generation.incrementAndGet()
+        }
+    }
+
+    protected val storeExists: Boolean
+        get() = storeFile.exists()
+
+    /** Bucket of [firstWord] in [localeTag], created if missing. */
+    protected fun bucketFor(localeTag: String, firstWord: String, create: () -> B): B {
+        return perLocale.getOrPut(localeTag) { ConcurrentHashMap() }.getOrPut(firstWord, create)
+    }
+
+    /**
+     * Called after every change to [localeTag]: evicts its lightest buckets once
+     * it outgrows [LOCALE_FIRST_WORD_CAP], bumps [generation] and schedules a write.
+     */
+    protected fun markDirty(localeTag: String) {
+        val sub = perLocale[localeTag]
+        if (sub != null && sub.size > LOCALE_FIRST_WORD_CAP) {
+            evictLocale(sub)
+        }
+        _generation.incrementAndGet()
+        dirtyChannel.trySend(Unit)
+    }
+
+    /**
+     * Drop the lowest-weight first-word buckets when [sub] outgrows
+     * [LOCALE_FIRST_WORD_CAP] — buckets that have never been reinforced go first.
+     */
+    private fun evictLocale(sub: ConcurrentHashMap<String, B>) {
+        val ranked = sub.entries
+            .map { e -> e.key to weightOf(e.value) }
+            .sortedBy { it.second }
+        val toDrop = (LOCALE_FIRST_WORD_CAP * EVICT_FRACTION).toInt().coerceAtLeast(1)
+        for (i in 0 until minOf(toDrop, ranked.size)) {
+            sub.remove(ranked[i].first)
+        }
+    }
+
+    private fun writeToDisk() {
+        try {
+            val snapshot: Map<String, Map<String, S>> =
+                perLocale.mapValues { (_, firstMap) ->
+                    firstMap.mapValues { (_, bucket) -> encodeBucket(bucket) }
+                }
+            val tmp = File(storeFile.parentFile, "$fileName.tmp")
+            tmp.writeText(json.encodeToString(mapSerializer, snapshot), Charsets.UTF_8)
+            if (!tmp.renameTo(storeFile)) {
+                storeFile.writeText(tmp.readText(Charsets.UTF_8), Charsets.UTF_8)
+                tmp.delete()
+            }
+        } catch (e: Exception) {
+            flogError { "LearnedNgramStore($fileName): write failed ($e)" }
+        }
+    }
+}
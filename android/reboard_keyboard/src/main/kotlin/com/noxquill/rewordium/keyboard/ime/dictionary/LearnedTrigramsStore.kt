@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.dictionary
+
+import android.content.Context
+import com.noxquill.rewordium.keyboard.lib.FlorisLocale
+import kotlinx.serialization.builtins.MapSerializer
+import kotlinx.serialization.builtins.serializer
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Per-locale persistent store for user-learned trigrams (two previous words →
+ * next-word frequency). Sister of [LearnedBigramsStore], persisted the same
+ * way by [LearnedNgramStore].
+ *
+ * Contexts are nested per word rather than keyed by a joined string so that
+ * [transitionsFrom] is two map lookups without building a key.
+ *
+ * File layout in `context.filesDir/learned_trigrams.json`:
+ * ```json
+ * {
+ *   "en-US": {
+ *     "see": { "you": { "tomorrow": 10, "soon": 5 } }
+ *   }
+ * }
+ * ```
+ */
+class LearnedTrigramsStore(context: Context) :
+    LearnedNgramStore<ConcurrentHashMap<String, ConcurrentHashMap<String, Int>>, Map<String, Map<String, Int>>>(
+        context,
+        FILE_NAME,
+        MapSerializer(String.serializer(), MapSerializer(String.serializer(), Int.serializer())),
+    ) {
+
+    /** Idempotent. Loads JSON from disk. */
+    suspend fun ensureLoaded() {
+        loadOnce {}
+    }
+
+    override fun decodeBucket(serialized: Map<String, Map<String, Int>>) =
+        ConcurrentHashMap(serialized.mapValues { (_, nextMap) -> ConcurrentHashMap(nextMap) })
+
+    override fun encodeBucket(bucket: ConcurrentHashMap<String, ConcurrentHashMap<String, Int>>): Map<String, Map<String, Int>> =
+        bucket.mapValues { (_, inner) -> HashMap(inner) }
+
+    override fun weightOf(bucket: ConcurrentHashMap<String, ConcurrentHashMap<String, Int>>): Int =
+        bucket.values.sumOf { it.values.sum() }
+
+    /**
+     * Live `nextWord → score` transitions after ([w1], [w2]) for [locale],
+     * without copying. Read-only view; may change while being iterated.
+     */
+    fun transitionsFrom(locale: FlorisLocale, w1: String, w2: String): Map<String, Int> {
+        return perLocale[locale.languageTag()]?.get(w1)?.get(w2) ?: emptyMap()
+    }
+
+    /**
+     * Bump the `w1 w2 → nextWord` transition score for [locale]. Hot path —
+     * non-suspending, non-blocking. Score saturates at [MAX_SCORE].
+     */
+    fun bump(locale: FlorisLocale, w1: String, w2: String, nextWord: String, delta: Int = 5) {
+        val tag = locale.languageTag()
+        val inner = bucketFor(tag, w1) { ConcurrentHashMap() }.getOrPut(w2) { ConcurrentHashMap() }
+        val current = inner[nextWord] ?: 0
+        inner[nextWord] = (current + delta).coerceIn(0, MAX_SCORE)
+        markDirty(tag)
+    }
+
+    private companion object {
+        const val FILE_NAME = "learned_trigrams.json"
+    }
+}
@@ -154,6 +154,7 @@ abstract class AbstractEditorInstance(context: Context) {
     }
 
     protected fun handleMassSelectionUpdate(newSelection: EditorRange, composing: EditorRange) {
+        nlpManager.invalidateSuggestionSession()
         activeCursorCapsMode = InputAttributes.CapsMode.NONE
         activeContent = EditorContent.selectionOnly(newSelection)
         if (composing.isValid) {
@@ -166,6 +167,7 @@ abstract class AbstractEditorInstance(context: Context) {
         val ic = currentInputConnection()
         val editorInfo = activeInfo
         if (ic == null || newSelection.isNotValid || editorInfo.isRawInputEditor) {
+            nlpManager.invalidateSuggestionSession()
             activeCursorCapsMode = InputAttributes.CapsMode.NONE
             activeContent = EditorContent.Unspecified
             keyboardManager.reevaluateInputShiftState()
@@ -186,6 +188,10 @@ abstract class AbstractEditorInstance(context: Context) {
             return
         }
 
+        // Not a result of our own edits: the cursor jumped or the app changed
+        // the text, so any per-word suggestion state is stale.
+        nlpManager.invalidateSuggestionSession()
+
         // Get Text
         val textBeforeSelection =
             if (newSelection.start > 0) ic.getTextBeforeCursor(NumCharsBeforeCursor, 0) ?: "" else ""
@@ -219,6 +225,7 @@ abstract class AbstractEditorInstance(context: Context) {
     }
 
     protected open fun reset() {
+        nlpManager.invalidateSuggestionSession()
         activeInfo = FlorisEditorInfo.Unspecified
         activeCursorCapsMode = InputAttributes.CapsMode.NONE
         activeContent = EditorContent.Unspecified
@@ -18,7 +18,6 @@ package com.noxquill.rewordium.keyboard.ime.media.emoji
 
 import kotlinx.coroutines.Dispatchers
 import kotlinx.coroutines.withContext
-import java.util.stream.Collectors
 import android.content.Context
 import com.noxquill.rewordium.keyboard.app.FlorisPreferenceStore
 import com.noxquill.rewordium.keyboard.ime.core.Subtype
@@ -27,6 +26,7 @@ import com.noxquill.rewordium.keyboard.ime.editor.EditorContent
 import com.noxquill.rewordium.keyboard.ime.nlp.EmojiSuggestionCandidate
 import com.noxquill.rewordium.keyboard.ime.nlp.SuggestionCandidate
 import com.noxquill.rewordium.keyboard.ime.nlp.SuggestionProvider
+import com.noxquill.rewordium.keyboard.ime.nlp.TopKSelector
 import com.noxquill.rewordium.keyboard.lib.FlorisLocale
 import io.github.reactivecircus.cache4k.Cache
 
@@ -55,6 +55,9 @@ class EmojiSuggestionProvider(private val context: Context) : SuggestionProvider
      */
     private val learnedAssociations = LearnedEmojiAssociationsStore(context)
 
+    // Reused per thread so ranking allocates nothing after warm-up.
+    private val topK = ThreadLocal.withInitial { TopKSelector<Emoji>() }
+
     /**
      * Last previous word seen on the most recent [suggest] call. We need
      * this on [notifySuggestionAccepted] (which only receives the candidate,
@@ -180,48 +183,50 @@ class EmojiSuggestionProvider(private val context: Context) : SuggestionProvider
         // word, even if the user backspaces a character, we do NOT flush —
         // they're still working on the same word and the previously-shown
         // emoji shouldn't be banned mid-edit.
-        // Snapshot the suppression list once per call so the hot stream below
+        // Snapshot the suppression list once per call so the hot loop below
         // doesn't synchronize for every emoji. Includes both the anti-spam
         // recent-commit window and the implicit-reject session set.
         val suppressed = synchronized(recentlyCommitted) { recentlyCommitted.toSet() } +
             synchronized(sessionRejected) { sessionRejected.toSet() }
         val locale = subtype.primaryLocale
         val candidates = withContext(Dispatchers.Default) {
-            emojis.parallelStream()
+            // Bounded top-K selection instead of sorting every match: the
+            // strip only ever shows a couple of emojis.
+            val selector = topK.get()!!
+            selector.reset(effectiveMax)
+            for (emoji in emojis) {
                 // Drop emojis the user just committed (matches Gboard's
                 // anti-spam behavior — no 😂😂😂 stream).
-                .filter { it.value !in suppressed }
-                .map { emoji ->
-                    val base = scoreFor(emoji, q)
-                    // Context boost: if the user has historically picked
-                    // this emoji after the current previousWord, nudge the
-                    // confidence up. Saturated learned score (100) buys a
-                    // +0.10 boost — enough to flip a tier-3 (0.80) keyword
-                    // match into the same band as a tier-2 (0.88) prefix
-                    // match, but never enough to surface a 0.0 stranger.
-                    val boost = if (base > 0.0 && previousWord.isNotBlank()) {
-                        val learned = learnedAssociations.scoreFor(locale, previousWord, emoji.value)
-                        if (learned > 0) (learned / 100.0) * LEARNED_ASSOC_BOOST else 0.0
-                    } else 0.0
-                    emoji to (base + boost).coerceAtMost(1.0)
-                }
+                if (emoji.value in suppressed) continue
+                val base = scoreFor(emoji, q)
+                // Context boost: if the user has historically picked
+                // this emoji after the current previousWord, nudge the
+                // confidence up. Saturated learned score (100) buys a
+                // +0.10 boost — enough to flip a tier-3 (0.80) keyword
+                // match into the same band as a tier-2 (0.88) prefix
+                // match, but never enough to surface a 0.0 stranger.
+                val boost = if (base > 0.0 && previousWord.isNotBlank()) {
+                    val learned = learnedAssociations.scoreFor(locale, previousWord, emoji.value)
+                    if (learned > 0) (learned / 100.0) * LEARNED_ASSOC_BOOST else 0.0
+                } else 0.0
+                val score = (base + boost).coerceAtMost(1.0)
                 // High-confidence filter: anything below MIN_CONFIDENCE is
                 // considered a weak guess and gets dropped. Gboard is quiet
                 // by default; this is what enforces that.
-                .filter { (_, s) -> s >= MIN_CONFIDENCE }
-                .sorted { (_, a), (_, b) -> b.compareTo(a) }
-                // Hard-cap to the lesser of the caller's max and our
-                // absolute ceiling. Emojis share the suggestion strip
-                // with text candidates; we never crowd words out.
-                .limit(effectiveMax.toLong())
-                .map { (emoji, _) ->
-                    EmojiSuggestionCandidate(
-                        emoji = emoji,
-                        showName = showName,
-                        sourceProvider = this@EmojiSuggestionProvider,
-                    )
-                }
-                .collect(Collectors.toList())
+                if (score < MIN_CONFIDENCE) continue
+                selector.offer(emoji, score)
+            }
+            // Hard-capped (via the selector's K) to the lesser of the
+            // caller's max and our absolute ceiling. Emojis share the
+            // suggestion strip with text candidates; we never crowd words out.
+            selector.sort()
+            List<SuggestionCandidate>(selector.size) { n ->
+                EmojiSuggestionCandidate(
+                    emoji = selector.itemAt(n),
+                    showName = showName,
+                    sourceProvider = this@EmojiSuggestionProvider,
+                )
+            }
         }
         // Session dedup: if the query and resulting emojis are identical
         // to the last call, return the cached list without visual churn.
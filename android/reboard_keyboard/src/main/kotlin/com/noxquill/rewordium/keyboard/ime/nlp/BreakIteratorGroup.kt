@@ -17,6 +17,7 @@
 package com.noxquill.rewordium.keyboard.ime.nlp
 
 import android.icu.text.BreakIterator
+import com.noxquill.rewordium.keyboard.ime.editor.EditorRange
 import com.noxquill.rewordium.keyboard.lib.FlorisLocale
 import io.github.reactivecircus.cache4k.Cache
 import org.florisboard.lib.kotlin.GuardedByLock
@@ -119,4 +120,29 @@ open class BreakIteratorGroup {
             end - (if (start == BreakIterator.DONE) 0 else start)
         }.coerceIn(0, text.length)
     }
+
+    /**
+     * Returns the ranges of all letter, kana and ideographic words in [text]
+     * (no numbers, whitespace or punctuation), in text order. Tokenizes in one
+     * pass with a single lock acquisition.
+     */
+    suspend fun wordRanges(
+        text: CharSequence,
+        locale: FlorisLocale = FlorisLocale.default(),
+    ): List<EditorRange> {
+        return word(locale) {
+            it.setText(text.toString())
+            val ranges = mutableListOf<EditorRange>()
+            var start = it.first()
+            var end = it.next()
+            while (end != BreakIterator.DONE) {
+                if (it.ruleStatus >= BreakIterator.WORD_LETTER) {
+                    ranges.add(EditorRange(start, end))
+                }
+                start = end
+                end = it.next()
+            }
+            ranges
+        }
+    }
 }
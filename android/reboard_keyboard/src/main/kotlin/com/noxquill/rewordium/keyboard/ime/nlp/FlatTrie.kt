@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp
+
+/**
+ * Word trie in a handful of primitive arrays, LOUDS style: nodes are numbered
+ * in breadth-first order, so the children of a node are the contiguous range
+ * [firstChild] until [childrenEnd], sorted by [label]. No per-node objects or
+ * maps, and walking the children of a node is a plain index loop.
+ *
+ * Besides its own frequency, every node keeps the highest frequency of any word
+ * below it ([maxFrequency]), an upper bound decoders use to prune prefixes that
+ * can't lead to a frequent word. Frequencies can be changed in place with
+ * [setFrequency]; the shape is fixed once built.
+ */
+class FlatTrie private constructor(
+    private val labels: CharArray,
+    private val parents: IntArray,
+    private val firstChildren: IntArray,
+    private val frequencies: FloatArray,
+    private val maxFrequencies: FloatArray,
+) {
+    companion object {
+        const val ROOT = 0
+
+        /** Frequency of nodes that don't end a word. */
+        private const val NO_WORD = -1f
+
+        /** Builds the trie of the words of [frequencies], with their frequencies. */
+        fun build(frequencies: Map<String, Double>): FlatTrie {
+            val words = frequencies.keys.filter { it.isNotEmpty() }.toTypedArray()
+            words.sort()
+            return build(words) { frequencies.getValue(words[it]).toFloat() }
+        }
+
+        /**
+         * Builds the trie of the words of [vocabulary] that aren't masked, with their
+         * frequencies. Base words are already sorted; only the learned ones are sorted
+         * and merged in.
+         */
+        fun build(vocabulary: Vocabulary): FlatTrie {
+            val added = (vocabulary.baseSize until vocabulary.size)
+                .filter { vocabulary.isWord(it) && vocabulary.wordAt(it).isNotEmpty() }
+                .sortedBy { vocabulary.wordAt(it) }
+            val base = vocabulary.base
+            val ids = IntArray(vocabulary.size)
+            var count = 0
+            var a = 0
+            for (id in 0 until vocabulary.baseSize) {
+                if (!vocabulary.isWord(id) || base!!.lengthOf(id) == 0) continue
+                while (a < added.size && base.compareWord(id, vocabulary.wordAt(added[a])) > 0) {
+                    ids[count++] = added[a++]
+                }
+                ids[count++] = id
+            }
+            while (a < added.size) ids[count++] = added[a++]
+            val words = Array(count) { vocabulary.wordAt(ids[it]) }
+            return build(words) { vocabulary.frequencyOf(ids[it]) }
+        }
+
+        /** Builds the trie of [words], which must be sorted and distinct. */
+        private inline fun build(words: Array<String>, frequencyOf: (index: Int) -> Float): FlatTrie {
+            val builder = Builder(words.size * 2 + 1)
+            builder.add('\u0000', -1, 0, words.size, 0)
+            // Node n's words are words[rangeFrom[n] until rangeTo[n]], all sharing its
+            // depth-long prefix; in sorted order the word equal to the prefix comes
+            // first and the rest are grouped by their next letter.
+            var node = 0
+            while (node < builder.size) {
+                val to = builder.rangeTo[node]
+                val depth = builder.depths[node]
+                var w = builder.rangeFrom[node]
+                builder.firstChildren[node] = builder.size
+                if (w < to && words[w].length == depth) {
+                    builder.frequencies[node] = frequencyOf(w)
+                    w++
+                }
+                while (w < to) {
+                    val label = words[w][depth]
+                    val start = w
+                    while (w < to && words[w][depth] == label) w++
+                    builder.add(label, node, start, w, depth + 1)
+                }
+                node++
+            }
+            return builder.finish()
+        }
+    }
+
+    /** Number of nodes, including the root. */
+    val size: Int
+        get() = labels.size
+
+    fun label(node: Int): Char = labels[node]
+
+    fun firstChild(node: Int): Int = firstChildren[node]
+
+    fun childrenEnd(node: Int): Int = firstChildren[node + 1]
+
+    fun isWord(node: Int): Boolean = frequencies[node] != NO_WORD
+
+    /** Frequency of the word ending at [node], or 0 if none does. */
+    fun frequency(node: Int): Float = frequencies[node].coerceAtLeast(0f)
+
+    /** Upper bound on the frequency of any word at or below [node]. */
+    fun maxFrequency(node: Int): Float = maxFrequencies[node]
+
+    /** The child of [node] labelled [char], or -1. */
+    fun child(node: Int, char: Char): Int {
+        var lo = firstChildren[node]
+        var hi = firstChildren[node + 1] - 1
+        while (lo <= hi) {
+            val mid = (lo + hi) ushr 1
+            val label = labels[mid]
+            when {
+                label < char -> lo = mid + 1
+                label > char -> hi = mid - 1
+                else -> return mid
+            }
+        }
+        return -1
+    }
+
+    /** The node [word] ends at, or -1 if [word] isn't a prefix of any word. */
+    fun find(word: String): Int {
+        var node = ROOT
+        for (char in word) {
+            node = child(node, char)
+            if (node < 0) return -1
+        }
+        return node
+    }
+
+    /** The prefix spelled by the path from the root to [node]. */
+    fun prefixAt(node: Int): String {
+        val chars = StringBuilder()
+        var n = node
+        while (n != ROOT) {
+            chars.append(labels[n])
+            n = parents[n]
+        }
+        return chars.reverse().toString()
+    }
+
+    /**
+     * Changes the frequency of [word] in place. [maxFrequency] of its prefixes
+     * only ever grows, so it stays an upper bound if the word is demoted.
+     * Returns false if [word] isn't in the trie.
+     */
+    fun setFrequency(word: String, frequency: Float): Boolean {
+        val node = find(word)
+        if (node < 0 || !isWord(node)) return false
+        frequencies[node] = frequency
+        var n = node
+        while (n >= 0 && maxFrequencies[n] < frequency) {
+            maxFrequencies[n] = frequency
+            n = parents[n]
+        }
+        return true
+    }
+
+    private class Builder(capacity: Int) {
+        var size = 0
+        var labels = CharArray(capacity)
+        var parents = IntArray(capacity)
+        var firstChildren = IntArray(capacity)
+        var frequencies = FloatArray(capacity)
+        var rangeFrom = IntArray(capacity)
+        var rangeTo = IntArray(capacity)
+        var depths = IntArray(capacity)
+
+        fun add(label: Char, parent: Int, from: Int, to: Int, depth: Int) {
+            if (size == labels.size) {
+                val capacity = size * 2
+                labels = labels.copyOf(capacity)
+                parents = parents.copyOf(capacity)
+                firstChildren = firstChildren.copyOf(capacity)
+                frequencies = frequencies.copyOf(capacity)
+                rangeFrom = rangeFrom.copyOf(capacity)
+                rangeTo = rangeTo.copyOf(capacity)
+                depths = depths.copyOf(capacity)
+            }
+            labels[size] = label
+            parents[size] = parent
+            frequencies[size] = NO_WORD
+            rangeFrom[size] = from
+            rangeTo[size] = to
+            depths[size] = depth
+            size++
+        }
+
+        fun finish(): FlatTrie {
+            val firstChildren = firstChildren.copyOf(size + 1)
+            firstChildren[size] = size
+            val frequencies = frequencies.copyOf(size)
+            // Children have higher numbers than their parent, so one backwards pass
+            // sees every child's maximum before its parent's.
+            val maxFrequencies = FloatArray(size)
+            for (node in size - 1 downTo 0) {
+                var max = frequencies[node].coerceAtLeast(0f)
+                for (child in firstChildren[node] until firstChildren[node + 1]) {
+                    if (maxFrequencies[child] > max) max = maxFrequencies[child]
+                }
+                maxFrequencies[node] = max
+            }
+            return FlatTrie(labels.copyOf(size), parents.copyOf(size), firstChildren, frequencies, maxFrequencies)
+        }
+    }
+}
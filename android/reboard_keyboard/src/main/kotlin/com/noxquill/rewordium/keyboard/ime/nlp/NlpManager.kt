@@ -28,38 +28,51 @@ import com.noxquill.rewordium.keyboard.ime.clipboard.provider.ItemType
 import com.noxquill.rewordium.keyboard.ime.core.Subtype
 import com.noxquill.rewordium.keyboard.ime.editor.EditorContent
 import com.noxquill.rewordium.keyboard.ime.editor.EditorRange
+import com.noxquill.rewordium.keyboard.ime.keyboard.KeyData
 import com.noxquill.rewordium.keyboard.ime.media.emoji.EmojiSuggestionProvider
+import com.noxquill.rewordium.keyboard.ime.text.keyboard.TextKey
+import com.noxquill.rewordium.keyboard.ime.nlp.engine.KeyboardLayoutDescriptor
 import com.noxquill.rewordium.keyboard.ime.nlp.han.HanShapeBasedLanguageProvider
+import com.noxquill.rewordium.keyboard.ime.nlp.latin.KeyProximity
 import com.noxquill.rewordium.keyboard.ime.nlp.latin.LatinLanguageProvider
 import com.noxquill.rewordium.keyboard.keyboardManager
 import com.noxquill.rewordium.keyboard.lib.util.NetworkUtils
 import com.noxquill.rewordium.keyboard.subtypeManager
+import kotlinx.coroutines.CompletableDeferred
 import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Deferred
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
 import kotlinx.coroutines.SupervisorJob
 import kotlinx.coroutines.delay
-import kotlinx.coroutines.flow.MutableSharedFlow
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.SharedFlow
-import kotlinx.coroutines.flow.asSharedFlow
 import kotlinx.coroutines.flow.asStateFlow
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.runBlocking
 import kotlinx.coroutines.sync.Mutex
 import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withTimeoutOrNull
 import kotlinx.coroutines.Job
 import org.florisboard.lib.kotlin.collectLatestIn
-import org.florisboard.lib.kotlin.guardedByLock
 import java.util.Locale
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicInteger
-import kotlin.properties.Delegates
+import java.util.concurrent.atomic.AtomicLong
 
 private const val BLANK_STR_PATTERN = "^\\s*$"
 private const val MAX_CURATED_CANDIDATES = 8
 private const val MAX_CURATED_TEXT_CANDIDATES = 6
 private const val MAX_CURATED_EMOJI_CANDIDATES = 2
 
+/**
+ * How long, from the start of a suggestion request, the smartbar waits for each
+ * provider before publishing without it. A provider that misses its deadline is
+ * merged in a second pass once it finishes.
+ */
+private const val EMOJI_SUGGESTION_DEADLINE_MS = 40L
+private const val WORD_SUGGESTION_DEADLINE_MS = 120L
+
 class NlpManager(context: Context) {
     private val blankStrRegex = Regex(BLANK_STR_PATTERN)
 
@@ -70,21 +83,21 @@ class NlpManager(context: Context) {
     private val subtypeManager by context.subtypeManager()
 
     private val scope = CoroutineScope(Dispatchers.Default + SupervisorJob())
+    @Volatile
+    private var keyboardLayoutSignature = 0
     private val clipboardSuggestionProvider = ClipboardSuggestionProvider(context)
     private val emojiSuggestionProvider = EmojiSuggestionProvider(context)
-    private val providers = guardedByLock {
-        mapOf(
-            LatinLanguageProvider.ProviderId to ProviderInstanceWrapper(LatinLanguageProvider(context)),
-            HanShapeBasedLanguageProvider.ProviderId to ProviderInstanceWrapper(HanShapeBasedLanguageProvider(context)),
-        )
-    }
-    // lock unnecessary because values constant
-    private val providersForceSuggestionOn = mutableMapOf<String, Boolean>()
+    private val providers = ProviderRegistry(context)
+    // Serializes provider creation and preloading across subtype switches.
+    private val preloadGuard = Mutex()
 
+    // Request sequence number and curated candidates of the last published suggestions.
+    // Written together with the smartbar assembly, under the guard, see publishSuggestions.
     private val internalSuggestionsGuard = Mutex()
-    private var internalSuggestions by Delegates.observable(SystemClock.uptimeMillis() to listOf<SuggestionCandidate>()) { _, _, _ ->
-        scope.launch { assembleCandidates() }
-    }
+    private var internalSuggestions = 0L to listOf<SuggestionCandidate>()
+    // Numbers suggestion requests in the order they're made. Unlike their start
+    // times, two requests in the same millisecond still compare in order.
+    private val suggestionRequestSequence = AtomicLong(0)
 
     private val _activeCandidatesFlow = MutableStateFlow(listOf<SuggestionCandidate>())
     val activeCandidatesFlow = _activeCandidatesFlow.asStateFlow()
@@ -101,6 +114,14 @@ class NlpManager(context: Context) {
     // Holds the last suggestion coroutine job so we can cancel it if a newer request arrives,
     // implementing "latest-wins" cancellation and avoiding wasted CPU on superseded requests.
     private var suggestJob: Job? = null
+    private val suggestionScheduler = SuggestionScheduler()
+
+    /** The debounce chosen for the latest [suggest] request, see [SuggestionScheduler]. */
+    val lastSuggestionSchedule: SuggestionScheduler.Decision?
+        get() = suggestionScheduler.lastDecision
+
+    /** Timing spans of the latest [suggest] requests, shown and exported by the devtools. */
+    val suggestionTimings = SuggestionTimings()
 
     init {
         clipboardManager.primaryClipFlow.collectLatestIn(scope) {
@@ -129,14 +150,12 @@ class NlpManager(context: Context) {
             ?.get(subtype.punctuationRule) ?: PunctuationRule.Fallback
     }
 
-    private suspend fun getSpellingProvider(subtype: Subtype): SpellingProvider {
-        return providers.withLock { it[subtype.nlpProviders.spelling] }?.provider as? SpellingProvider
-            ?: FallbackNlpProvider
+    private fun getSpellingProvider(subtype: Subtype): SpellingProvider {
+        return providers[subtype.nlpProviders.spelling] as? SpellingProvider ?: FallbackNlpProvider
     }
 
-    private suspend fun getSuggestionProvider(subtype: Subtype): SuggestionProvider {
-        return providers.withLock { it[subtype.nlpProviders.suggestion] }?.provider as? SuggestionProvider
-            ?: FallbackNlpProvider
+    private fun getSuggestionProvider(subtype: Subtype): SuggestionProvider {
+        return providers[subtype.nlpProviders.suggestion] as? SuggestionProvider ?: FallbackNlpProvider
     }
 
     /**
@@ -168,6 +187,51 @@ class NlpManager(context: Context) {
         }
     }
 
+    /**
+     * Drops the active suggestion provider's incremental per-word state.
+     * Called by the editor instance on cursor jumps and editor switches,
+     * where the next composing word has nothing to do with the last one.
+     * No-op for providers without such state. Runs synchronously, so it
+     * can't land after the next keystroke's suggest request.
+     */
+    fun invalidateSuggestionSession() {
+        val provider = getSuggestionProvider(subtypeManager.activeSubtype)
+        if (provider is LatinLanguageProvider) {
+            provider.invalidateSuggestionSession()
+        }
+    }
+
+    /**
+     * Derives key adjacency from the active character layout and hands it to
+     * the Latin provider, which uses it to weigh corrections. Cheap to call
+     * on every layout pass: identical layouts are detected by key codes and
+     * centers and skipped.
+     */
+    fun setKeyboardLayout(keys: List<TextKey>) {
+        if (keys.isEmpty()) return
+        var signature = keys.size
+        for (key in keys) {
+            signature = 31 * signature + ((key.data as? KeyData)?.code ?: 0)
+            signature = 31 * signature + key.visibleBounds.center.hashCode()
+        }
+        if (signature == keyboardLayoutSignature) return
+        keyboardLayoutSignature = signature
+        scope.launch {
+            val maxRight = keys.maxOf { it.visibleBounds.right }
+            val maxBottom = keys.maxOf { it.visibleBounds.bottom }
+            val descriptor = KeyboardLayoutDescriptor.fromTextKeys(
+                allKeys = keys,
+                keyboardWidth = maxRight.toInt(),
+                keyboardHeight = maxBottom.toInt(),
+            )
+            val proximity = descriptor?.let { KeyProximity.fromLayout(it) } ?: KeyProximity.Uniform
+            val provider = getSuggestionProvider(subtypeManager.activeSubtype)
+            if (provider is LatinLanguageProvider) {
+                provider.setKeyProximity(proximity)
+            }
+        }
+    }
+
     /**
      * Forwards a panel-driven emoji pick to the emoji suggestion provider so
      * it can persist a `(previousWord → emoji)` association. Smartbar accepts
@@ -225,22 +289,20 @@ class NlpManager(context: Context) {
 
     /**
      * Forwards [LatinLanguageProvider.wordDataDirtyFlow] up to the IME so
-     * the glide-typing manager can rebuild its classifier index when enough
-     * personal words have been learned to warrant it.
-     *
-     * Resolved lazily on first access, and cached — the Latin provider is a
-     * singleton in the providers map, so we can capture its flow once and
-     * avoid the runBlocking dance on every getter access. Non-Latin layouts
-     * just see no dirty signals, which is correct (glide adaptation today
-     * only applies to Latin-script subtypes).
+     * the glide-typing manager can rebuild its classifier index when the
+     * word data changed too much to be patched word by word. Non-Latin
+     * layouts just see no dirty signals, which is correct (glide adaptation
+     * today only applies to Latin-script subtypes).
      */
-    val wordDataDirtyFlow: SharedFlow<Subtype> by lazy {
-        val latin = runBlocking {
-            providers.withLock { it[LatinLanguageProvider.ProviderId] }?.provider
-        } as? LatinLanguageProvider
-        latin?.wordDataDirtyFlow
-            ?: MutableSharedFlow<Subtype>(replay = 0).asSharedFlow()
-    }
+    val wordDataDirtyFlow: SharedFlow<Subtype>
+        get() = providers.latin.wordDataDirtyFlow
+
+    /**
+     * Forwards [LatinLanguageProvider.wordDataChangeFlow], the per-word
+     * counterpart of [wordDataDirtyFlow] that glide typing applies in place.
+     */
+    val wordDataChangeFlow: SharedFlow<WordDataChange>
+        get() = providers.latin.wordDataChangeFlow
 
     /**
      * Current AOSP native dictionary handle from [LatinLanguageProvider], or
@@ -249,22 +311,18 @@ class NlpManager(context: Context) {
      *
      * Used by [NativeGlideTypingClassifier] to drive AOSP's gesture-aware
      * Suggest pipeline from the same trie that powers text suggestions.
-     * Cheap to call — no locks held across the read; the underlying value
-     * is a single volatile Long on the provider side.
+     * Never blocks: the registry is immutable and the underlying value is a
+     * single volatile Long on the provider side.
      */
-    val nativeDictHandle: Long get() {
-        val latin = runBlocking {
-            providers.withLock { it[LatinLanguageProvider.ProviderId] }?.provider
-        } as? LatinLanguageProvider
-        return latin?.nativeDictionary?.handle ?: 0L
-    }
+    val nativeDictHandle: Long
+        get() = providers.latin.nativeDictionary.handle
 
     fun preload(subtype: Subtype) {
         scope.launch {
             emojiSuggestionProvider.preload(subtype)
-            providers.withLock { providers ->
+            preloadGuard.withLock {
                 subtype.nlpProviders.forEach { _, providerId ->
-                    providers[providerId]?.let { provider ->
+                    providers.wrapperOf(providerId)?.let { provider ->
                         provider.createIfNecessary()
                         provider.preload(subtype)
                     }
@@ -291,6 +349,25 @@ class NlpManager(context: Context) {
         )
     }
 
+    /**
+     * Spell checks all words of [text] in one batch, see [SpellingProvider.spellAll].
+     */
+    suspend fun spellAll(
+        subtype: Subtype,
+        text: CharSequence,
+        breakIterators: BreakIteratorGroup,
+        maxSuggestionCount: Int,
+    ): List<Pair<EditorRange, SpellingResult>> {
+        return getSpellingProvider(subtype).spellAll(
+            subtype = subtype,
+            text = text,
+            breakIterators = breakIterators,
+            maxSuggestionCount = maxSuggestionCount,
+            allowPossiblyOffensive = !prefs.suggestion.blockPossiblyOffensive.get(),
+            isPrivateSession = keyboardManager.activeState.isIncognitoMode,
+        )
+    }
+
     suspend fun determineLocalComposing(
         textBeforeSelection: CharSequence,
         breakIterators: BreakIteratorGroup,
@@ -302,11 +379,7 @@ class NlpManager(context: Context) {
     }
 
     fun providerForcesSuggestionOn(subtype: Subtype): Boolean {
-        return providersForceSuggestionOn.getOrPut(subtype.nlpProviders.suggestion) {
-            runBlocking {
-                getSuggestionProvider(subtype).forcesSuggestionOn
-            }
-        }
+        return getSuggestionProvider(subtype).forcesSuggestionOn
     }
 
     fun isSuggestionOn(): Boolean =
@@ -316,61 +389,136 @@ class NlpManager(context: Context) {
 
     fun suggest(subtype: Subtype, content: EditorContent) {
         val reqTime = SystemClock.uptimeMillis()
+        val reqSeq = suggestionRequestSequence.incrementAndGet()
+        val span = SuggestionTimings.Span()
+        val schedule = suggestionScheduler.schedule(reqTime, content)
         // Cancel any in-flight suggestion request — latest keystroke wins.
         suggestJob?.cancel()
         suggestJob = scope.launch {
-            // 50 ms debounce: if a newer suggest() call arrives and cancels this job before the
-            // delay elapses, no NLP work is done — eliminating redundant dictionary lookups
-            // during rapid typing bursts.
-            delay(50)
-            val emojiSuggestions = when {
-                prefs.emoji.suggestionEnabled.get() -> {
-                    emojiSuggestionProvider.suggest(
-                        subtype = subtype,
-                        content = content,
-                        maxCandidateCount = prefs.emoji.suggestionCandidateMaxCount.get(),
-                        allowPossiblyOffensive = !prefs.suggestion.blockPossiblyOffensive.get(),
-                        isPrivateSession = keyboardManager.activeState.isIncognitoMode,
-                    )
+            span.set(SuggestionTimings.Phase.QUEUE, System.nanoTime() - span.startNanos)
+            // Adaptive debounce: if a newer suggest() call arrives and cancels this job before the
+            // delay elapses, no NLP work is done. None on slow typing or at a word boundary.
+            if (schedule.delayMs > 0) {
+                span.measure(SuggestionTimings.Phase.DEBOUNCE) { delay(schedule.delayMs) }
+            }
+            val start = SystemClock.uptimeMillis()
+            val allowPossiblyOffensive = !prefs.suggestion.blockPossiblyOffensive.get()
+            val isPrivateSession = keyboardManager.activeState.isIncognitoMode
+            // With an emoji prefix (e.g. ":"), emoji matches replace the text predictions.
+            val emojiPrefixMode = prefs.emoji.suggestionType.get().prefix.isNotEmpty()
+
+            // Both providers run concurrently, so the first pass waits for the slower
+            // of them only up to its deadline instead of for their sum.
+            val emojiJob = when {
+                prefs.emoji.suggestionEnabled.get() -> async {
+                    span.measure(SuggestionTimings.Phase.EMOJI) {
+                        emojiSuggestionProvider.suggest(
+                            subtype = subtype,
+                            content = content,
+                            maxCandidateCount = prefs.emoji.suggestionCandidateMaxCount.get(),
+                            allowPossiblyOffensive = allowPossiblyOffensive,
+                            isPrivateSession = isPrivateSession,
+                        )
+                    }
                 }
-                else -> emptyList()
+                else -> CompletableDeferred(emptyList<SuggestionCandidate>())
             }
-            val suggestions = when {
-                emojiSuggestions.isNotEmpty() && prefs.emoji.suggestionType.get().prefix.isNotEmpty() -> emptyList()
-                else -> {
+            val wordJob = async {
+                span.measure(SuggestionTimings.Phase.WORDS) {
                     getSuggestionProvider(subtype).suggest(
                         subtype = subtype,
                         content = content,
                         maxCandidateCount = MAX_CURATED_CANDIDATES,
-                        allowPossiblyOffensive = !prefs.suggestion.blockPossiblyOffensive.get(),
-                        isPrivateSession = keyboardManager.activeState.isIncognitoMode,
+                        allowPossiblyOffensive = allowPossiblyOffensive,
+                        isPrivateSession = isPrivateSession,
                     )
+                }.also { suggestionScheduler.recordLatency(SystemClock.uptimeMillis() - start) }
+            }
+            var emojiSuggestions = emojiJob.awaitUntil(start + EMOJI_SUGGESTION_DEADLINE_MS)
+            if (emojiPrefixMode && !emojiSuggestions.isNullOrEmpty()) {
+                wordJob.cancel()
+            }
+            var suggestions = when {
+                wordJob.isCancelled -> emptyList()
+                else -> wordJob.awaitUntil(start + WORD_SUGGESTION_DEADLINE_MS)
+            }
+            var published: List<SuggestionCandidate>? = null
+            if (emojiSuggestions != null || suggestions != null) {
+                published = span.measure(SuggestionTimings.Phase.ASSEMBLY) {
+                    publishSuggestions(reqSeq, mergeSuggestions(suggestions, emojiSuggestions, emojiPrefixMode))
                 }
             }
-            internalSuggestionsGuard.withLock {
-                if (internalSuggestions.first < reqTime) {
-                    internalSuggestions = reqTime to curateCandidates(buildList {
-                        addAll(suggestions)        // text predictions first (Gboard behavior)
-                        addAll(emojiSuggestions)    // emojis at end of strip
-                    })
+            if (emojiSuggestions == null || suggestions == null) {
+                // Second pass: merge what missed its deadline once it's there. Still
+                // cancelled along with this job by a newer request.
+                emojiSuggestions = emojiSuggestions ?: emojiJob.await()
+                suggestions = suggestions ?: if (wordJob.isCancelled) emptyList() else wordJob.await()
+                published = span.measure(SuggestionTimings.Phase.ASSEMBLY) {
+                    publishSuggestions(reqSeq, mergeSuggestions(suggestions, emojiSuggestions, emojiPrefixMode))
                 }
             }
+            if (published != null) {
+                suggestionTimings.record(span, published)
+            }
+        }
+    }
+
+    /**
+     * Awaits this result until the uptime [deadline], without cancelling it when
+     * the deadline passes. Returns null if it isn't there in time.
+     */
+    private suspend fun <T> Deferred<T>.awaitUntil(deadline: Long): T? {
+        if (isCompleted) return await()
+        val remaining = deadline - SystemClock.uptimeMillis()
+        if (remaining <= 0) return null
+        return withTimeoutOrNull(remaining) { await() }
+    }
+
+    /**
+     * The single merge of one request's provider results: text predictions first
+     * (Gboard behavior), emojis at the end of the strip, then curated once. A
+     * provider result that isn't there yet counts as empty.
+     */
+    private fun mergeSuggestions(
+        suggestions: List<SuggestionCandidate>?,
+        emojiSuggestions: List<SuggestionCandidate>?,
+        emojiPrefixMode: Boolean,
+    ): List<SuggestionCandidate> {
+        val emoji = emojiSuggestions.orEmpty()
+        val text = if (emojiPrefixMode && emoji.isNotEmpty()) emptyList() else suggestions.orEmpty()
+        return curateCandidates(text + emoji)
+    }
+
+    /**
+     * Publishes [candidates] as the suggestions of request number [reqSeq]
+     * unless a newer request already published, and assembles the smartbar in
+     * the same critical section, so publications can't be assembled out of order.
+     * Returns the assembled smartbar candidates, or null if the request was stale.
+     */
+    private suspend fun publishSuggestions(
+        reqSeq: Long,
+        candidates: List<SuggestionCandidate>,
+    ): List<SuggestionCandidate>? {
+        internalSuggestionsGuard.withLock {
+            if (internalSuggestions.first > reqSeq) return null
+            internalSuggestions = reqSeq to candidates
+            return assembleCandidatesLocked()
         }
     }
 
     fun suggestDirectly(suggestions: List<SuggestionCandidate>) {
-        val reqTime = SystemClock.uptimeMillis()
+        val reqSeq = suggestionRequestSequence.incrementAndGet()
         scope.launch {
             // Glide typing already returns candidates in confidence order. Curate
             // without re-sorting so its best result remains the first result.
-            internalSuggestions = reqTime to curateCandidates(suggestions, sortByConfidence = false)
+            publishSuggestions(reqSeq, curateCandidates(suggestions, sortByConfidence = false))
         }
     }
 
     fun clearSuggestions() {
-        val reqTime = SystemClock.uptimeMillis()
+        val reqSeq = suggestionRequestSequence.incrementAndGet()
         scope.launch {
-            internalSuggestions = reqTime to emptyList()
+            publishSuggestions(reqSeq, emptyList())
         }
     }
 
@@ -392,44 +540,59 @@ class NlpManager(context: Context) {
         }
     }
 
-    fun getListOfWords(subtype: Subtype): List<String> {
-        return runBlocking { getSuggestionProvider(subtype).getListOfWords(subtype) }
-    }
-
     fun getFrequencyForWord(subtype: Subtype, word: String): Double {
         return runBlocking { getSuggestionProvider(subtype).getFrequencyForWord(subtype, word) }
     }
 
     /**
-     * Returns a snapshot of all word frequencies as a single map. Prefer this over repeated
-     * [getFrequencyForWord] calls when many words need scoring (e.g. glide typing classifier).
+     * Returns the interned word list of [subtype]'s provider, shared by reference. Prefer this
+     * over repeated [getFrequencyForWord] calls when many words need scoring (e.g. glide typing
+     * classifier); it's kept up to date as words are learned, see [wordDataChangeFlow].
      */
-    fun getFrequencyMap(subtype: Subtype): Map<String, Double> {
-        return runBlocking { getSuggestionProvider(subtype).getFrequencyMap(subtype) }
+    fun getVocabulary(subtype: Subtype): Vocabulary {
+        return runBlocking { getSuggestionProvider(subtype).getVocabulary(subtype) }
+    }
+
+    fun getWordListDelta(subtype: Subtype): WordListDelta? {
+        return runBlocking { getSuggestionProvider(subtype).getWordListDelta(subtype) }
+    }
+
+    fun getWordTrie(subtype: Subtype): FlatTrie {
+        return runBlocking { getSuggestionProvider(subtype).getWordTrie(subtype) }
     }
 
     private suspend fun assembleCandidates() {
-        val rawCandidates = when {
+        internalSuggestionsGuard.withLock {
+            assembleCandidatesLocked()
+        }
+    }
+
+    /**
+     * Picks the smartbar candidates: clipboard suggestions if there are any, else the
+     * last published suggestions, which are already curated. Called with
+     * [internalSuggestionsGuard] held. Returns the list the smartbar now holds.
+     */
+    private suspend fun assembleCandidatesLocked(): List<SuggestionCandidate> {
+        val candidates = when {
             isSuggestionOn() -> {
-                clipboardSuggestionProvider.suggest(
+                val clipboardCandidates = clipboardSuggestionProvider.suggest(
                     subtype = Subtype.DEFAULT,
                     content = editorInstance.activeContent,
                     maxCandidateCount = MAX_CURATED_CANDIDATES,
                     allowPossiblyOffensive = !prefs.suggestion.blockPossiblyOffensive.get(),
                     isPrivateSession = keyboardManager.activeState.isIncognitoMode,
-                ).ifEmpty {
-                    buildList {
-                        internalSuggestionsGuard.withLock {
-                            addAll(internalSuggestions.second)
-                        }
-                    }
+                )
+                when {
+                    clipboardCandidates.isNotEmpty() -> curateCandidates(clipboardCandidates)
+                    else -> internalSuggestions.second
                 }
             }
             else -> emptyList()
         }
-        val candidates = curateCandidates(rawCandidates)
         activeCandidates = candidates
         autoExpandCollapseSmartbarActions(candidates, NlpInlineAutofill.suggestions.value)
+        // The flow keeps its previous list if the new one is equal; that's the one shown.
+        return activeCandidates
     }
 
     /**
@@ -501,6 +664,24 @@ class NlpManager(context: Context) {
         debugOverlayVersion.postValue(version)
     }
 
+    /**
+     * The language providers, created once with the manager and never changed
+     * afterwards. Immutable, so resolving a provider takes no lock and is safe
+     * from any thread, including the UI thread.
+     */
+    private class ProviderRegistry(context: Context) {
+        val latin = LatinLanguageProvider(context)
+        val han = HanShapeBasedLanguageProvider(context)
+        private val wrappers = mapOf(
+            LatinLanguageProvider.ProviderId to ProviderInstanceWrapper(latin),
+            HanShapeBasedLanguageProvider.ProviderId to ProviderInstanceWrapper(han),
+        )
+
+        operator fun get(providerId: String): NlpProvider? = wrappers[providerId]?.provider
+
+        fun wrapperOf(providerId: String): ProviderInstanceWrapper? = wrappers[providerId]
+    }
+
     private class ProviderInstanceWrapper(val provider: NlpProvider) {
         private var isInstanceAlive = AtomicBoolean(false)
 
@@ -105,6 +105,51 @@ interface SpellingProvider : NlpProvider {
         allowPossiblyOffensive: Boolean,
         isPrivateSession: Boolean,
     ): SpellingResult
+
+    /**
+     * Spell check every word of [text] in one call, e.g. for proofreading pasted text or a long message. The text is
+     * tokenized once with [breakIterators] and each distinct token is only checked once.
+     *
+     * The default implementation calls [spell] per distinct token; providers with an index should override it to
+     * resolve the whole batch in one pass.
+     *
+     * @param subtype Information about the current subtype, primarily used for getting the primary and secondary
+     *  language for correct dictionary selection.
+     * @param text The text to spell check.
+     * @param breakIterators The break iterator group used to split [text] into words.
+     * @param maxSuggestionCount The maximum number of suggestions per misspelled word.
+     * @param allowPossiblyOffensive See [spell].
+     * @param isPrivateSession See [spell].
+     *
+     * @return One entry per word token in text order: the token's range in [text] and its spelling result. Equal
+     *  tokens share the same result object.
+     */
+    suspend fun spellAll(
+        subtype: Subtype,
+        text: CharSequence,
+        breakIterators: BreakIteratorGroup,
+        maxSuggestionCount: Int,
+        allowPossiblyOffensive: Boolean,
+        isPrivateSession: Boolean,
+    ): List<Pair<EditorRange, SpellingResult>> {
+        val ranges = breakIterators.wordRanges(text, subtype.primaryLocale)
+        val results = HashMap<String, SpellingResult>()
+        return ranges.map { range ->
+            val token = text.substring(range.start, range.end)
+            val result = results.getOrPut(token) {
+                spell(
+                    subtype = subtype,
+                    word = token,
+                    precedingWords = emptyList(),
+                    followingWords = emptyList(),
+                    maxSuggestionCount = maxSuggestionCount,
+                    allowPossiblyOffensive = allowPossiblyOffensive,
+                    isPrivateSession = isPrivateSession,
+                )
+            }
+            range to result
+        }
+    }
 }
 
 /**
@@ -207,6 +252,42 @@ interface SuggestionProvider : NlpProvider {
         return getListOfWords(subtype).associateWith { getFrequencyForWord(subtype, it) }
     }
 
+    /**
+     * Interop method letting glide typing persist indexes built over the word list. Describes
+     * [getListOfWords] as a versioned base list plus the words added to and removed from it
+     * since (e.g. learned or forgotten words), so an index of the base list can be reused
+     * across processes and only the delta applied in memory.
+     *
+     * @return The delta, or null if the provider has no stable base list (the default), in
+     *  which case callers must index [getListOfWords] in full.
+     */
+    suspend fun getWordListDelta(subtype: Subtype): WordListDelta? {
+        return null
+    }
+
+    /**
+     * Interop method returning [getFrequencyMap] as an interned [Vocabulary], which glide typing
+     * and other consumers share by reference instead of copying the word list. Providers should
+     * return the same instance for as long as the word list allows, and apply every
+     * [WordDataChange] they emit to it before emitting.
+     *
+     * The default implementation interns [getFrequencyMap] on every call.
+     */
+    suspend fun getVocabulary(subtype: Subtype): Vocabulary {
+        return Vocabulary.of(getFrequencyMap(subtype))
+    }
+
+    /**
+     * Interop method returning [getVocabulary] as a [FlatTrie], for decoders that walk the
+     * vocabulary letter by letter (e.g. the neural glide classifier). Providers may cache it;
+     * callers must not change frequencies other than to values this provider reported.
+     *
+     * The default implementation builds a new trie from [getVocabulary] on every call.
+     */
+    suspend fun getWordTrie(subtype: Subtype): FlatTrie {
+        return FlatTrie.build(getVocabulary(subtype))
+    }
+
     /**
      * When initializing composing text given a new context, the suggestion engine determines the composing range.
      * The default behavior gets the last word according to the current subtype's primaryLocale.
@@ -245,6 +326,20 @@ interface SuggestionProvider : NlpProvider {
         get() = false
 }
 
+/**
+ * The word list of a [SuggestionProvider] as a base list identified by [baseVersion] plus a small
+ * delta, see [SuggestionProvider.getWordListDelta].
+ *
+ * @property baseVersion Changes whenever the contents of the base list do.
+ * @property added Words in the current list but not in the base list.
+ * @property removed Words of the base list no longer in the current list.
+ */
+class WordListDelta(
+    val baseVersion: Long,
+    val added: List<String>,
+    val removed: Set<String>,
+)
+
 /**
  * Fallback NLP provider which implements all provider variants. Is used in case no other providers can be found.
  */
@@ -305,3 +400,18 @@ object FallbackNlpProvider : SpellingProvider, SuggestionProvider {
         // Do nothing
     }
 }
+
+/**
+ * Words of a provider's word list whose glide frequency (as returned by
+ * [SuggestionProvider.getFrequencyMap]) changed in place, e.g. after learning or
+ * forgetting a word. Lets glide typing patch its word index instead of
+ * re-reading the whole list.
+ *
+ * @property added Words that were not in the list before, with their frequency.
+ * @property updated Words already in the list, with their new frequency.
+ */
+class WordDataChange(
+    val subtype: Subtype,
+    val added: Map<String, Double>,
+    val updated: Map<String, Double>,
+)
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp
+
+import com.noxquill.rewordium.keyboard.ime.editor.EditorContent
+
+/**
+ * Picks the debounce of each suggestion request from the typing rhythm and
+ * the recent cost of computing suggestions.
+ *
+ * Debouncing only pays off when the next keystroke is likely to arrive before
+ * the delay runs out and the skipped computation is worth the wait. So there
+ * is none after a word boundary, when the user paused, or when the provider
+ * has been answering quickly. During a burst the delay follows the smoothed
+ * keystroke interval, long enough for the next key to cancel the request,
+ * capped at [MAX_DEBOUNCE_MS].
+ */
+class SuggestionScheduler {
+    companion object {
+        /** Longest debounce; slower typing gets none, since the next key comes too late to cancel. */
+        const val MAX_DEBOUNCE_MS = 150L
+
+        /** A keystroke this long after the previous one is a pause, not a burst. */
+        private const val SLOW_TYPING_INTERVAL_MS = 200L
+
+        /** Provider latency below which computing every keystroke is cheaper than waiting. */
+        private const val CHEAP_LATENCY_MS = 8f
+
+        /** Debounce as a multiple of the smoothed keystroke interval. */
+        private const val BURST_FACTOR = 1.25f
+
+        /** Weight of the newest sample in the exponential moving averages. */
+        private const val SMOOTHING = 0.3f
+    }
+
+    enum class Reason {
+        WORD_BOUNDARY,
+        SLOW_TYPING,
+        CHEAP_PROVIDER,
+        BURST,
+    }
+
+    /** The debounce chosen for one request, why, and the keystroke interval it was based on. */
+    class Decision(val delayMs: Long, val reason: Reason, val intervalMs: Long) {
+        override fun toString(): String = "${delayMs}ms ($reason, interval=${intervalMs}ms)"
+    }
+
+    private var lastRequestTime = Long.MIN_VALUE
+    private var smoothedIntervalMs = -1f
+
+    @Volatile
+    private var smoothedLatencyMs = -1f
+
+    /** The decision of the latest request. */
+    @Volatile
+    var lastDecision: Decision? = null
+        private set
+
+    /**
+     * Decides the debounce of the request for [content] made at uptime [time].
+     * Every request must go through here, it is what measures the typing rhythm.
+     */
+    fun schedule(time: Long, content: EditorContent): Decision {
+        val decision = synchronized(this) {
+            val intervalMs = if (lastRequestTime == Long.MIN_VALUE) Long.MAX_VALUE else time - lastRequestTime
+            lastRequestTime = time
+            if (intervalMs < SLOW_TYPING_INTERVAL_MS) {
+                // Pauses don't count towards the rhythm; they'd stretch the next burst's delay.
+                smoothedIntervalMs = if (smoothedIntervalMs < 0f) {
+                    intervalMs.toFloat()
+                } else {
+                    smoothedIntervalMs + SMOOTHING * (intervalMs - smoothedIntervalMs)
+                }
+            }
+            val latencyMs = smoothedLatencyMs
+            when {
+                isAtWordBoundary(content) -> Decision(0L, Reason.WORD_BOUNDARY, intervalMs)
+                intervalMs >= SLOW_TYPING_INTERVAL_MS -> Decision(0L, Reason.SLOW_TYPING, intervalMs)
+                latencyMs in 0f..CHEAP_LATENCY_MS -> Decision(0L, Reason.CHEAP_PROVIDER, intervalMs)
+                else -> {
+                    val delayMs = (smoothedIntervalMs * BURST_FACTOR).toLong()
+                    if (delayMs > MAX_DEBOUNCE_MS) {
+                        Decision(0L, Reason.SLOW_TYPING, intervalMs)
+                    } else {
+                        Decision(delayMs, Reason.BURST, intervalMs)
+                    }
+                }
+            }
+        }
+        lastDecision = decision
+        return decision
+    }
+
+    /** Reports how long a provider took to compute the suggestions of one request. */
+    fun recordLatency(latencyMs: Long) {
+        val previous = smoothedLatencyMs
+        smoothedLatencyMs = if (previous < 0f) latencyMs.toFloat() else previous + SMOOTHING * (latencyMs - previous)
+    }
+
+    /**
+     * True when nothing is being typed at the cursor: after whitespace or
+     * punctuation, or at the start of the text. The next keystroke starts a new
+     * word, so the suggestions for the current context are wanted right away.
+     */
+    private fun isAtWordBoundary(content: EditorContent): Boolean {
+        if (content.selection.isSelectionMode) return false
+        val before = content.textBeforeSelection
+        if (before.isEmpty()) return true
+        val last = before.last()
+        return !last.isLetterOrDigit() && last != '\''
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp
+
+import java.util.Locale
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.AtomicReference
+import kotlin.math.ceil
+
+/**
+ * Per-request timing spans of the suggestion pipeline, kept in a lock-free ring
+ * of the last [DEFAULT_CAPACITY] requests and summarized as p50/p95/p99 per
+ * phase, so suggestion latency can be compared between builds on real devices.
+ *
+ * A request fills in a [Span] as it runs and hands it to [record] once its
+ * candidates are published. The smartbar reports when it shows them with
+ * [markDisplayed], which fills in [Phase.PUBLISH] of that request afterwards.
+ *
+ * Writers claim a slot with a counter and guard it with a sequence word: it
+ * reads [WRITING] while the fields are written and the request's sequence
+ * number once they're complete. Readers copy a slot and keep it only if the
+ * sequence word didn't change meanwhile, so they never block the writers.
+ */
+class SuggestionTimings(capacity: Int = DEFAULT_CAPACITY) {
+    companion object {
+        /** Requests kept; a few minutes of typing. */
+        const val DEFAULT_CAPACITY = 512
+
+        /** Value of a phase that didn't run, e.g. no debounce or a cancelled provider. */
+        private const val NOT_RUN = -1L
+
+        private const val EMPTY = 0L
+        private const val WRITING = -1L
+
+        private val PHASES = Phase.entries
+        private val STRIDE = 1 + PHASES.size
+
+        private val PERCENTILES = doubleArrayOf(0.50, 0.95, 0.99)
+    }
+
+    enum class Phase(val label: String) {
+        /** From the keystroke to the request's coroutine starting. */
+        QUEUE("queue"),
+        /** The adaptive debounce, see [SuggestionScheduler]. */
+        DEBOUNCE("debounce"),
+        /** Emoji provider compute. */
+        EMOJI("emoji"),
+        /** Word provider compute. */
+        WORDS("words"),
+        /** Merging, curation and smartbar assembly, including waits for the publish lock. */
+        ASSEMBLY("assembly"),
+        /** From publishing the candidates to the smartbar composing them. */
+        PUBLISH("publish"),
+        /** From the keystroke to publishing the candidates; [PUBLISH] comes on top. */
+        TOTAL("total"),
+    }
+
+    /** Durations of one request, in µs. Each phase is written by one coroutine at a time. */
+    class Span(val startNanos: Long = System.nanoTime()) {
+        internal val micros = LongArray(PHASES.size) { NOT_RUN }
+
+        fun set(phase: Phase, nanos: Long) {
+            micros[phase.ordinal] = nanos / 1000
+        }
+
+        /** Adds to [phase], for phases that run once per publishing pass. */
+        fun add(phase: Phase, nanos: Long) {
+            val current = micros[phase.ordinal]
+            micros[phase.ordinal] = current.coerceAtLeast(0) + nanos / 1000
+        }
+
+        inline fun <T> measure(phase: Phase, block: () -> T): T {
+            val start = System.nanoTime()
+            try {
+                return block()
+            } finally {
+                add(phase, System.nanoTime() - start)
+            }
+        }
+    }
+
+    /** The published request waiting for the smartbar to show [candidates]. */
+    private class PendingDisplay(val seq: Long, val publishedNanos: Long, val candidates: List<*>)
+
+    /** p50/p95/p99 of one phase over [count] requests, in µs. */
+    class Summary(val phase: Phase, val count: Int, val p50: Long, val p95: Long, val p99: Long) {
+        override fun toString(): String {
+            return "${phase.label}: p50 ${ms(p50)} · p95 ${ms(p95)} · p99 ${ms(p99)} ms (n=$count)"
+        }
+
+        private fun ms(micros: Long) = String.format(Locale.ROOT, "%.1f", micros / 1000.0)
+    }
+
+    private val capacity = Integer.highestOneBit((capacity - 1).coerceAtLeast(1)) shl 1
+    private val mask = this.capacity - 1L
+    private val slots = AtomicLongArray(this.capacity * STRIDE)
+    private val nextSeq = AtomicLong(1)
+    private val pendingDisplay = AtomicReference<PendingDisplay?>(null)
+
+    /**
+     * Records [span] of a request that just published, stamping its [Phase.TOTAL].
+     * [displayed] is the candidate list it published, matched by identity in
+     * [markDisplayed]; null if there's nothing to wait for.
+     */
+    fun record(span: Span, displayed: List<*>?) {
+        val now = System.nanoTime()
+        span.set(Phase.TOTAL, now - span.startNanos)
+        val seq = nextSeq.getAndIncrement()
+        val base = slotBase(seq)
+        slots.set(base, WRITING)
+        for (p in PHASES.indices) {
+            slots.lazySet(base + 1 + p, span.micros[p])
+        }
+        slots.set(base, seq)
+        pendingDisplay.set(displayed?.let { PendingDisplay(seq, now, it) })
+    }
+
+    /**
+     * Called by the smartbar whenever it composes [candidates]. Completes the
+     * [Phase.PUBLISH] of the request that published that very list.
+     */
+    fun markDisplayed(candidates: List<*>) {
+        val pending = pendingDisplay.get() ?: return
+        if (pending.candidates !== candidates || !pendingDisplay.compareAndSet(pending, null)) return
+        val base = slotBase(pending.seq)
+        if (slots.get(base) != pending.seq) return
+        slots.compareAndSet(base + 1 + Phase.PUBLISH.ordinal, NOT_RUN, (System.nanoTime() - pending.publishedNanos) / 1000)
+    }
+
+    /** Consistent copies of the recorded requests, oldest first, as (seq, phases in µs...). */
+    fun snapshot(): List<LongArray> {
+        val rows = ArrayList<LongArray>(capacity)
+        for (slot in 0 until capacity) {
+            val base = slot * STRIDE
+            val seq = slots.get(base)
+            if (seq == EMPTY || seq == WRITING) continue
+            val row = LongArray(STRIDE)
+            row[0] = seq
+            for (p in PHASES.indices) {
+                row[1 + p] = slots.get(base + 1 + p)
+            }
+            if (slots.get(base) == seq) rows.add(row)
+        }
+        rows.sortBy { it[0] }
+        return rows
+    }
+
+    /** Percentiles of every phase that ran at least once. */
+    fun summarize(): List<Summary> {
+        val rows = snapshot()
+        return PHASES.mapNotNull { phase ->
+            val values = rows.map { it[1 + phase.ordinal] }.filter { it >= 0 }.toLongArray()
+            if (values.isEmpty()) return@mapNotNull null
+            values.sort()
+            val (p50, p95, p99) = PERCENTILES.map { values[nearestRank(it, values.size)] }
+            Summary(phase, values.size, p50, p95, p99)
+        }
+    }
+
+    /** One line per phase, for the devtools. */
+    fun describe(): String {
+        val summaries = summarize()
+        if (summaries.isEmpty()) return "No suggestion requests recorded yet"
+        return summaries.joinToString("\n")
+    }
+
+    /** Writes the recorded requests as CSV, one row per request, µs, empty if a phase didn't run. */
+    fun writeCsv(out: Appendable) {
+        out.append("seq")
+        for (phase in PHASES) out.append(',').append(phase.label).append("_us")
+        out.append('\n')
+        for (row in snapshot()) {
+            out.append(row[0].toString())
+            for (p in PHASES.indices) {
+                out.append(',')
+                if (row[1 + p] >= 0) out.append(row[1 + p].toString())
+            }
+            out.append('\n')
+        }
+    }
+
+    private fun slotBase(seq: Long): Int = (seq and mask).toInt() * STRIDE
+
+    private fun nearestRank(percentile: Double, size: Int): Int {
+        return (ceil(percentile * size).toInt() - 1).coerceIn(0, size - 1)
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp
+
+/**
+ * Bounded top-K selector: keeps the [k][reset] highest-scoring items offered
+ * to it in a min-heap over parallel primitive arrays, so selecting the best K
+ * of N candidates costs O(N log K) instead of sorting all N.
+ *
+ * Ties are broken by offer order (earlier wins), so the result matches a
+ * stable `sortedByDescending { score }.take(k)`.
+ *
+ * Meant to be reused: the arrays only grow, so after warm-up a
+ * [reset] / [offer] / [sort] cycle allocates nothing. Not thread-safe; keep
+ * one instance per thread (e.g. in a [ThreadLocal]) or per owner lock.
+ */
+class TopKSelector<T : Any> {
+    private var items = arrayOfNulls<Any>(16)
+    private var scores = DoubleArray(16)
+    private var order = IntArray(16)
+    private var k = 0
+    private var offered = 0
+
+    /** Number of items currently kept, at most k. */
+    var size = 0
+        private set
+
+    /** Drops all kept items and sets the capacity for the next round to [k]. */
+    fun reset(k: Int) {
+        items.fill(null, 0, size)
+        this.k = k.coerceAtLeast(0)
+        size = 0
+        offered = 0
+        if (this.k > items.size) {
+            items = arrayOfNulls(this.k)
+            scores = DoubleArray(this.k)
+            order = IntArray(this.k)
+        }
+    }
+
+    /**
+     * The lowest score kept so far once k items are held, else negative
+     * infinity. Offers at or below it (with a later offer order) are rejected,
+     * so callers can use it to skip expensive scoring.
+     */
+    val threshold: Double
+        get() = if (size < k || k == 0) Double.NEGATIVE_INFINITY else scores[0]
+
+    /** Offers [item] with [score]; returns true if it is kept (for now). */
+    fun offer(item: T, score: Double): Boolean {
+        val seq = offered++
+        if (k == 0) return false
+        if (size < k) {
+            items[size] = item
+            scores[size] = score
+            order[size] = seq
+            siftUp(size)
+            size++
+            return true
+        }
+        // Root is the worst kept entry; an equal score loses to it since it
+        // was offered earlier.
+        if (score <= scores[0]) return false
+        items[0] = item
+        scores[0] = score
+        order[0] = seq
+        siftDown(0, size)
+        return true
+    }
+
+    /**
+     * Sorts the kept items by descending score in place. Afterwards [itemAt]
+     * and [scoreAt] index them best first; further [offer]s need a [reset].
+     */
+    fun sort() {
+        // Heap sort on the min-heap: moving the current worst to the end each
+        // round leaves the array ordered best first.
+        var end = size
+        while (end > 1) {
+            end--
+            swap(0, end)
+            siftDown(0, end)
+        }
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    fun itemAt(index: Int): T = items[index] as T
+
+    fun scoreAt(index: Int): Double = scores[index]
+
+    /** [sort]s and appends the kept items best first to [out]. */
+    fun sortInto(out: MutableCollection<in T>) {
+        sort()
+        for (i in 0 until size) out.add(itemAt(i))
+    }
+
+    // True if entry a ranks below entry b.
+    private fun worse(a: Int, b: Int): Boolean {
+        return scores[a] < scores[b] || (scores[a] == scores[b] && order[a] > order[b])
+    }
+
+    private fun siftUp(index: Int) {
+        var child = index
+        while (child > 0) {
+            val parent = (child - 1) ushr 1
+            if (!worse(child, parent)) break
+            swap(child, parent)
+            child = parent
+        }
+    }
+
+    private fun siftDown(index: Int, limit: Int) {
+        var parent = index
+        while (true) {
+            val left = 2 * parent + 1
+            if (left >= limit) break
+            val right = left + 1
+            val child = if (right < limit && worse(right, left)) right else left
+            if (!worse(child, parent)) break
+            swap(child, parent)
+            parent = child
+        }
+    }
+
+    private fun swap(a: Int, b: Int) {
+        val item = items[a]; items[a] = items[b]; items[b] = item
+        val score = scores[a]; scores[a] = scores[b]; scores[b] = score
+        val seq = order[a]; order[a] = order[b]; order[b] = seq
+    }
+}
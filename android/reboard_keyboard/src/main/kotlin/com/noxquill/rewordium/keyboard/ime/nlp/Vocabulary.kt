@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp
+
+import com.noxquill.rewordium.keyboard.ime.nlp.latin.SortedVocabulary
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * A provider's word list, interned once and shared by reference with every
+ * consumer (glide classifiers, the native dictionary) instead of each keeping
+ * its own copy of the words and their frequencies.
+ *
+ * Words are addressed by id. Ids 0 until [baseSize] are the words of [base],
+ * read straight from its string pool and frequency array (memory-mapped for
+ * the Latin provider). Words learned on top are interned with the next free
+ * id and keep it for the lifetime of the vocabulary. The learned overlay
+ * holds every frequency that differs from the base one; 0 masks a word.
+ *
+ * Frequencies are glide frequencies, as in [SuggestionProvider.getFrequencyMap]:
+ * base frequencies are scaled from 0..255 to 0..1, overrides are taken as is.
+ * Only the owning provider writes, through [setFrequency]; reads never lock.
+ *
+ * [withRecency] gives a view of the same words with a [RecencyBoost] on top,
+ * so a provider can boost different words per locale without rewriting the
+ * shared frequencies under readers' feet.
+ */
+class Vocabulary private constructor(
+    private val store: Store,
+    /** Boost applied on top of the stored frequencies, null for the plain vocabulary. */
+    val recency: RecencyBoost?,
+) {
+    constructor(base: SortedVocabulary? = null) : this(Store(base), null)
+
+    companion object {
+        /** Interns [frequencies] on top of an empty base, for providers without a word pool. */
+        fun of(frequencies: Map<String, Double>): Vocabulary {
+            val vocabulary = Vocabulary()
+            for ((word, frequency) in frequencies) {
+                if (word.isNotEmpty()) vocabulary.setFrequency(word, frequency.toFloat())
+            }
+            return vocabulary
+        }
+    }
+
+    /**
+     * Ids whose frequency is multiplied by [factor], e.g. the words typed most
+     * recently. Adds and removes are atomic per id, so readers see every id
+     * either boosted or not, never a half-applied frequency.
+     */
+    class RecencyBoost(val factor: Float) {
+        private val ids: MutableSet<Int> = ConcurrentHashMap.newKeySet()
+
+        operator fun contains(id: Int): Boolean = id in ids
+
+        fun add(id: Int) {
+            if (id >= 0) ids.add(id)
+        }
+
+        /** Makes [boosted] the boosted ids, touching only those that change. */
+        fun retainOnly(boosted: Set<Int>) {
+            ids.retainAll(boosted)
+            for (id in boosted) add(id)
+        }
+    }
+
+    // The words and frequencies shared by a vocabulary and its views.
+    private class Store(val base: SortedVocabulary?) {
+        val baseSize: Int = base?.size ?: 0
+        val overrides = ConcurrentHashMap<Int, Float>()
+        val addedIds = ConcurrentHashMap<String, Int>()
+
+        // Words interned on top of the base, by id - baseSize. Replaced when full;
+        // [addedCount] is published after the word is stored.
+        @Volatile
+        var addedWords = arrayOfNulls<String>(16)
+
+        @Volatile
+        var addedCount = 0
+    }
+
+    val base: SortedVocabulary?
+        get() = store.base
+
+    /** Number of base words; their ids are 0 until [baseSize]. */
+    val baseSize: Int
+        get() = store.baseSize
+
+    /** A view of the same words, with [boost] applied to their frequencies. */
+    fun withRecency(boost: RecencyBoost): Vocabulary = Vocabulary(store, boost)
+
+    /** Whether this and [other] are views of the same words. */
+    fun sharesWordsWith(other: Vocabulary): Boolean = store === other.store
+
+    /** Number of ids handed out, including masked words. */
+    val size: Int
+        get() = store.baseSize + store.addedCount
+
+    /** Id of [word], or -1 if it was never part of this vocabulary. */
+    fun idOf(word: CharSequence): Int {
+        val id = store.base?.indexOf(word) ?: -1
+        if (id >= 0) return id
+        return store.addedIds[word.toString()] ?: -1
+    }
+
+    /** The word with [id]. Base words are materialized from the pool on every call. */
+    fun wordAt(id: Int): String {
+        val baseSize = store.baseSize
+        return if (id < baseSize) store.base!!.wordAt(id) else store.addedWords[id - baseSize]!!
+    }
+
+    fun frequencyOf(id: Int): Float {
+        val frequency = storedFrequencyOf(id)
+        val boost = recency ?: return frequency
+        return if (frequency > 0f && id in boost) frequency * boost.factor else frequency
+    }
+
+    private fun storedFrequencyOf(id: Int): Float {
+        store.overrides[id]?.let { return it }
+        return if (id < store.baseSize) store.base!!.frequencyOf(id) / 255f else 0f
+    }
+
+    /** Frequency of [word], 0 if it's unknown or masked. */
+    fun frequencyOf(word: CharSequence): Float {
+        val id = idOf(word)
+        return if (id >= 0) frequencyOf(id) else 0f
+    }
+
+    /** Whether [id] is currently a word, i.e. isn't masked. */
+    fun isWord(id: Int): Boolean = storedFrequencyOf(id) > 0f
+
+    /**
+     * Sets the stored frequency of [word], interning it if it's new. 0 masks
+     * it. Every view sees the change, each with its own boost on top.
+     * Returns its id.
+     */
+    fun setFrequency(word: String, frequency: Float): Int {
+        val store = store
+        val id = idOf(word).takeIf { it >= 0 } ?: synchronized(store) {
+            store.addedIds[word] ?: intern(word)
+        }
+        if (id < store.baseSize && frequency == store.base!!.frequencyOf(id) / 255f) {
+            store.overrides.remove(id)
+        } else {
+            store.overrides[id] = frequency
+        }
+        return id
+    }
+
+    private fun intern(word: String): Int {
+        val store = store
+        val index = store.addedCount
+        var words = store.addedWords
+        if (index == words.size) {
+            words = words.copyOf(index * 2)
+            store.addedWords = words
+        }
+        words[index] = word
+        store.addedIds[word] = store.baseSize + index
+        store.addedCount = index + 1
+        return store.baseSize + index
+    }
+
+    /** Visits the id and frequency of every word that isn't masked. */
+    inline fun forEachWord(action: (id: Int, frequency: Float) -> Unit) {
+        for (id in 0 until size) {
+            val frequency = frequencyOf(id)
+            if (frequency > 0f) action(id, frequency)
+        }
+    }
+
+    /** The words that aren't masked, materialized one at a time while iterating. */
+    fun words(): Iterable<String> = Iterable {
+        iterator {
+            forEachWord { id, _ -> yield(wordAt(id)) }
+        }
+    }
+
+    /** The base words, masked ones included, materialized one at a time while iterating. */
+    fun baseWords(): Iterable<String> = Iterable {
+        iterator {
+            for (id in 0 until baseSize) yield(store.base!!.wordAt(id))
+        }
+    }
+
+    /** Words interned on top of the base that aren't masked. */
+    fun addedWords(): List<String> {
+        val words = ArrayList<String>()
+        for (id in baseSize until size) {
+            if (isWord(id)) words.add(wordAt(id))
+        }
+        return words
+    }
+
+    /** Base words the overlay masks. */
+    fun maskedBaseWords(): Set<String> {
+        val words = HashSet<String>()
+        for ((id, frequency) in store.overrides) {
+            if (id < baseSize && frequency <= 0f) words.add(store.base!!.wordAt(id))
+        }
+        return words
+    }
+}
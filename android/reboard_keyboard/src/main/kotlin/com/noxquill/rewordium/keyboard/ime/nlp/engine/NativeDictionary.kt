@@ -17,6 +17,7 @@
 package com.noxquill.rewordium.keyboard.ime.nlp.engine
 
 import android.content.Context
+import com.noxquill.rewordium.keyboard.ime.nlp.latin.SortedVocabulary
 import com.noxquill.rewordium.keyboard.lib.devtools.flogDebug
 import com.noxquill.rewordium.keyboard.lib.devtools.flogError
 import kotlinx.coroutines.sync.Mutex
@@ -32,7 +33,8 @@ import java.util.concurrent.atomic.AtomicLong
 /**
  * High-level Kotlin owner for an in-memory AOSP v4 dictionary. Wraps a single
  * native handle returned by [LatinImeNative.nativeOpenInMemoryDict] and feeds
- * it from our shipped JSON wordlist + bigram assets.
+ * it from the base vocabulary the Kotlin path already holds (falling back to
+ * the shipped JSON wordlist) + the bigram asset.
  *
  * Single-instance-per-locale. Thread-safety:
  *   * [loadFromAssets] is suspending and guarded by [loadMutex] so concurrent
@@ -42,10 +44,10 @@ import java.util.concurrent.atomic.AtomicLong
  *   * [close] is safe to call exactly once at IME destroy.
  *
  * The native handle stays alive for the IME process lifetime. We do NOT
- * persist the dict to disk — it rebuilds fresh from JSON on each process
- * start. That keeps the dict in lockstep with what ships in assets and
- * sidesteps cache-invalidation entirely; the cost is ~100-300ms of startup
- * work, deferred off the main thread by the caller.
+ * persist the dict to disk — it rebuilds fresh from the base vocabulary on
+ * each process start. That keeps the dict in lockstep with what ships in
+ * assets and sidesteps cache-invalidation entirely; the cost is ~100-300ms
+ * of startup work, deferred off the main thread by the caller.
  */
 class NativeDictionary {
 
@@ -64,15 +66,18 @@ class NativeDictionary {
     val handle: Long get() = if (loaded) handleRef else LatinImeNative.INVALID_HANDLE
 
     /**
-     * Open the native dict and populate it from `ime/dict/data.json` +
-     * `ime/dict/bigrams.json`. Idempotent — subsequent calls return
+     * Open the native dict and populate it from [vocabulary] +
+     * `ime/dict/bigrams.json`. The unigrams are read id by id from the
+     * vocabulary's string pool, so the word list isn't parsed into a second
+     * heap copy; only if [vocabulary] is null are they parsed from
+     * `ime/dict/data.json`. Idempotent — subsequent calls return
      * immediately if a previous call already finished. On any failure (JSON
      * parse, native rejection, library not loaded) the dictionary is left
      * unloaded and the next caller will retry.
      *
      * @return true if the dict ended up populated; false otherwise.
      */
-    suspend fun loadFromAssets(context: Context): Boolean = loadMutex.withLock {
+    suspend fun loadFromAssets(context: Context, vocabulary: SortedVocabulary? = null): Boolean = loadMutex.withLock {
         if (loaded) return@withLock true
         if (!LatinImeNative.ensureLoaded()) {
             flogError { "NativeDictionary: rewordium_latinime not loaded — skipping native dict" }
@@ -84,7 +89,7 @@ class NativeDictionary {
             return@withLock false
         }
         val ok = try {
-            populateFromAssets(context, h)
+            populateFromAssets(context, h, vocabulary)
         } catch (t: Throwable) {
             flogError { "NativeDictionary: populateFromAssets failed: $t" }
             false
@@ -193,20 +198,29 @@ class NativeDictionary {
         return LatinImeNative.nativeRemoveUnigram(handleRef, word)
     }
 
-    private fun populateFromAssets(context: Context, h: Long): Boolean {
+    private fun populateFromAssets(context: Context, h: Long, vocabulary: SortedVocabulary?): Boolean {
         val json = Json { ignoreUnknownKeys = true }
-        // Unigrams: { "word": 0..255, ... }
-        val wordlistText = context.assets.readText(WORDLIST_ASSET_PATH)
-        val wordlistObj = json.parseToJsonElement(wordlistText).jsonObject
         var unigrams = 0L
-        for ((word, freqEl) in wordlistObj) {
-            if (word.isEmpty()) continue
-            val freq = freqEl.jsonPrimitive.intOrNull?.coerceIn(0, 255) ?: continue
-            // We intentionally swallow individual add failures — at scale a
-            // handful of words can fail validation (e.g. AOSP rejects empty
-            // code-point arrays) and the rest of the dict should still come up.
-            if (LatinImeNative.nativeAddUnigram(h, word, freq)) {
-                unigrams++
+        // We intentionally swallow individual add failures — at scale a
+        // handful of words can fail validation (e.g. AOSP rejects empty
+        // code-point arrays) and the rest of the dict should still come up.
+        if (vocabulary != null) {
+            for (id in 0 until vocabulary.size) {
+                if (vocabulary.lengthOf(id) == 0) continue
+                if (LatinImeNative.nativeAddUnigram(h, vocabulary.wordAt(id), vocabulary.frequencyOf(id))) {
+                    unigrams++
+                }
+            }
+        } else {
+            // Unigrams: { "word": 0..255, ... }
+            val wordlistText = context.assets.readText(WORDLIST_ASSET_PATH)
+            val wordlistObj = json.parseToJsonElement(wordlistText).jsonObject
+            for ((word, freqEl) in wordlistObj) {
+                if (word.isEmpty()) continue
+                val freq = freqEl.jsonPrimitive.intOrNull?.coerceIn(0, 255) ?: continue
+                if (LatinImeNative.nativeAddUnigram(h, word, freq)) {
+                    unigrams++
+                }
             }
         }
         unigramCount.set(unigrams)
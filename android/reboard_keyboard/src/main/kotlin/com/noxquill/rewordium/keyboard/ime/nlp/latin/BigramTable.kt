@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp.latin
+
+import java.io.DataInputStream
+
+/**
+ * Interned, primitive-array bigram table shared by the static asset bigrams
+ * and the user-learned ones.
+ *
+ * Every word appearing in a bigram gets a dense int id. Each previous word
+ * maps to a [Row] of `next` ids with parallel `scores`, sorted by descending
+ * score, so next-word prediction is a slice of the first N entries.
+ *
+ * Static rows come from the asset (plus contact-name pairs). Learned
+ * transitions live in a per-locale store and change at runtime, so merged
+ * rows are built lazily per previous word and cached until the learned
+ * store's generation or the locale changes.
+ *
+ * Not thread-safe; the owner guards all access with one lock. [Row] instances
+ * are immutable and may be read after the lock is released, but resolve ids
+ * through [wordOf] under the lock.
+ */
+class BigramTable {
+    /** Transitions from one previous word, sorted by descending score. */
+    class Row internal constructor(
+        val next: IntArray,
+        val scores: ShortArray,
+    ) {
+        val size: Int
+            get() = next.size
+    }
+
+    private val wordIds = HashMap<String, Int>()
+    private val words = ArrayList<String>()
+    private var staticRows = arrayOfNulls<Row>(64)
+
+    private var mergedRows = arrayOfNulls<Row>(64)
+    private var mergedLocaleTag: String? = null
+    private var mergedGeneration = -1
+
+    val isEmpty: Boolean
+        get() = words.isEmpty()
+
+    /** Dense id of [word], assigning a new one if needed. */
+    fun intern(word: String): Int {
+        return wordIds.getOrPut(word) {
+            words.add(word)
+            words.size - 1
+        }
+    }
+
+    fun wordOf(id: Int): String = words[id]
+
+    /**
+     * Replaces the static row of [prevWord] with `next[0, size)` / `scores[0, size)`.
+     * The arrays are copied and sorted; callers may reuse them.
+     */
+    fun setStaticRow(prevWord: String, next: IntArray, scores: IntArray, size: Int) {
+        val prev = intern(prevWord)
+        ensureCapacity(prev)
+        staticRows[prev] = sortedRow(next, scores, size)
+        invalidateMerged()
+    }
+
+    /** Raises the static score of `prevWord → nextWord` to at least [score]. */
+    fun raiseStatic(prevWord: String, nextWord: String, score: Int) {
+        val prev = intern(prevWord)
+        val next = intern(nextWord)
+        ensureCapacity(prev)
+        val row = staticRows[prev]
+        val size = row?.size ?: 0
+        val ids = IntArray(size + 1)
+        val values = IntArray(size + 1)
+        var count = 0
+        var found = false
+        for (i in 0 until size) {
+            ids[count] = row!!.next[i]
+            values[count] = row.scores[i].toInt()
+            if (ids[count] == next) {
+                values[count] = maxOf(values[count], score)
+                found = true
+            }
+            count++
+        }
+        if (!found) {
+            ids[count] = next
+            values[count] = score
+            count++
+        }
+        staticRows[prev] = sortedRow(ids, values, count)
+        invalidateMerged()
+    }
+
+    /**
+     * Merged row for [prevWord]: static scores plus [learned] transitions
+     * weighted by [learnedWeight], saturating at [MAX_SCORE]. [learned] is only
+     * read when the row isn't cached for ([localeTag], [generation]) yet.
+     */
+    fun row(
+        prevWord: String,
+        localeTag: String,
+        generation: Int,
+        learnedWeight: Double,
+        learned: (prevWord: String) -> Map<String, Int>,
+    ): Row? {
+        if (localeTag != mergedLocaleTag || generation != mergedGeneration) {
+            invalidateMerged()
+            mergedLocaleTag = localeTag
+            mergedGeneration = generation
+        }
+        val knownPrev = wordIds[prevWord]
+        if (knownPrev != null && knownPrev < mergedRows.size) {
+            mergedRows[knownPrev]?.let { return it.takeIf { row -> row.size > 0 } }
+        }
+        val transitions = learned(prevWord)
+        if (knownPrev == null && transitions.isEmpty()) return null
+        val prev = knownPrev ?: intern(prevWord)
+        ensureCapacity(prev)
+        val base = staticRows[prev]
+        val baseSize = base?.size ?: 0
+        val ids = IntArray(baseSize + transitions.size)
+        val values = IntArray(baseSize + transitions.size)
+        var count = 0
+        for (i in 0 until baseSize) {
+            ids[count] = base!!.next[i]
+            values[count] = base.scores[i].toInt()
+            count++
+        }
+        for ((word, score) in transitions) {
+            val boost = (score * learnedWeight).toInt()
+            val id = intern(word)
+            var index = -1
+            for (i in 0 until baseSize) {
+                if (ids[i] == id) { index = i; break }
+            }
+            if (index >= 0) {
+                values[index] = (values[index] + boost).coerceAtMost(MAX_SCORE)
+            } else {
+                ids[count] = id
+                values[count] = boost.coerceAtMost(MAX_SCORE)
+                count++
+            }
+        }
+        val merged = sortedRow(ids, values, count)
+        mergedRows[prev] = merged
+        return merged.takeIf { it.size > 0 }
+    }
+
+    /**
+     * Reads static rows in the `dict_bigrams.bin` body layout (after the
+     * header): `outerCount(Int) + [prevWord(UTF) + innerCount(Int) +
+     * [nextWord(UTF) + score(Int)]*]*`, interning words directly instead of
+     * building nested maps.
+     */
+    fun readStatic(dis: DataInputStream) {
+        val outerCount = dis.readInt()
+        var ids = IntArray(16)
+        var values = IntArray(16)
+        repeat(outerCount) {
+            val prev = dis.readUTF()
+            val innerCount = dis.readInt()
+            if (innerCount > ids.size) {
+                ids = IntArray(innerCount)
+                values = IntArray(innerCount)
+            }
+            for (i in 0 until innerCount) {
+                ids[i] = intern(dis.readUTF())
+                values[i] = dis.readInt()
+            }
+            setStaticRow(prev, ids, values, innerCount)
+        }
+    }
+
+    /** Replaces all static rows with [data] (previous word → next word → score). */
+    fun putAllStatic(data: Map<String, Map<String, Int>>) {
+        for ((prev, inner) in data) {
+            val ids = IntArray(inner.size)
+            val values = IntArray(inner.size)
+            var i = 0
+            for ((next, score) in inner) {
+                ids[i] = intern(next)
+                values[i] = score
+                i++
+            }
+            setStaticRow(prev, ids, values, i)
+        }
+    }
+
+    private fun sortedRow(ids: IntArray, values: IntArray, size: Int): Row {
+        // Rows are short (tens of entries); insertion sort on a packed key
+        // keeps this allocation-light and stable.
+        val keys = LongArray(size) { (values[it].coerceIn(0, MAX_SCORE).toLong() shl 32) or ids[it].toLong() }
+        for (i in 1 until size) {
+            val key = keys[i]
+            var j = i - 1
+            while (j >= 0 && keys[j] < key) {
+                keys[j + 1] = keys[j]
+                j--
+            }
+            keys[j + 1] = key
+        }
+        return Row(
+            next = IntArray(size) { keys[it].toInt() },
+            scores = ShortArray(size) { (keys[it] shr 32).toInt().toShort() },
+        )
+    }
+
+    private fun ensureCapacity(id: Int) {
+        if (id >= staticRows.size) staticRows = staticRows.copyOf(maxOf(id + 1, staticRows.size * 2))
+        if (id >= mergedRows.size) mergedRows = mergedRows.copyOf(maxOf(id + 1, mergedRows.size * 2))
+    }
+
+    private fun invalidateMerged() {
+        mergedRows.fill(null)
+    }
+
+    companion object {
+        const val MAX_SCORE = 255
+    }
+}
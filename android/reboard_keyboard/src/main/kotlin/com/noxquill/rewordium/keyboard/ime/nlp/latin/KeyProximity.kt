@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp.latin
+
+import com.noxquill.rewordium.keyboard.ime.nlp.engine.KeyboardLayoutDescriptor
+
+/**
+ * Keyboard-aware edit costs for the Kotlin suggest/spell path.
+ *
+ * Substituting a character by one whose key is adjacent on the active layout
+ * (a fat-finger slip, e.g. "tge" → "the") costs [NEAR_COST]; every other edit
+ * costs [FULL_COST]. Adjacency is derived once per layout from the key
+ * centers of a [KeyboardLayoutDescriptor]: two keys are neighbours when their
+ * centers are at most [NEAR_RADIUS] key sizes apart.
+ *
+ * Immutable; build a new instance on layout change. [Uniform] (no layout
+ * known yet) makes [distance] a plain edit distance scaled by [FULL_COST].
+ */
+class KeyProximity private constructor(
+    // Key slot per char code below TABLE_SIZE, -1 if the char has no key.
+    private val slotOfChar: IntArray,
+    private val keyCount: Int,
+    // near[a * keyCount + b]: keys a and b are neighbours.
+    private val near: BooleanArray,
+) {
+    companion object {
+        const val FULL_COST = 10
+        const val NEAR_COST = 4
+
+        /** Max center distance of neighbouring keys, in most-common key sizes. */
+        private const val NEAR_RADIUS = 1.5f
+
+        // Covers Latin-1 and Latin Extended-A/B; other chars cost FULL_COST.
+        private const val TABLE_SIZE = 0x250
+
+        val Uniform = KeyProximity(IntArray(0), 0, BooleanArray(0))
+
+        fun fromLayout(descriptor: KeyboardLayoutDescriptor): KeyProximity {
+            val slotOfChar = IntArray(TABLE_SIZE) { -1 }
+            val codes = descriptor.keyCharCodes
+            val count = codes.size
+            for (k in 0 until count) {
+                val code = Character.toLowerCase(codes[k])
+                if (code in 0 until TABLE_SIZE && slotOfChar[code] < 0) slotOfChar[code] = k
+            }
+            val keyWidth = descriptor.mostCommonKeyWidth.coerceAtLeast(1).toFloat()
+            val keyHeight = descriptor.mostCommonKeyHeight.coerceAtLeast(1).toFloat()
+            val near = BooleanArray(count * count)
+            for (a in 0 until count) {
+                for (b in 0 until count) {
+                    if (a == b) continue
+                    val dx = (descriptor.keyXCoordinates[a] - descriptor.keyXCoordinates[b]) / keyWidth
+                    val dy = (descriptor.keyYCoordinates[a] - descriptor.keyYCoordinates[b]) / keyHeight
+                    near[a * count + b] = dx * dx + dy * dy <= NEAR_RADIUS * NEAR_RADIUS
+                }
+            }
+            return KeyProximity(slotOfChar, count, near)
+        }
+    }
+
+    fun substitutionCost(a: Char, b: Char): Int {
+        if (a == b) return 0
+        val codeA = a.code
+        val codeB = b.code
+        if (codeA >= slotOfChar.size || codeB >= slotOfChar.size) return FULL_COST
+        val slotA = slotOfChar[codeA]
+        val slotB = slotOfChar[codeB]
+        if (slotA < 0 || slotB < 0) return FULL_COST
+        return if (near[slotA * keyCount + slotB]) NEAR_COST else FULL_COST
+    }
+
+    /**
+     * Weighted optimal-string-alignment distance between [a] and [b], or
+     * `maxCost + 1` as soon as every alignment is known to exceed [maxCost].
+     * Insertions, deletions and transpositions cost [FULL_COST];
+     * substitutions cost [substitutionCost].
+     */
+    fun distance(a: CharSequence, b: CharSequence, maxCost: Int): Int {
+        val n = a.length
+        val m = b.length
+        if (kotlin.math.abs(n - m) * FULL_COST > maxCost) return maxCost + 1
+        var prevPrev = IntArray(m + 1)
+        var prev = IntArray(m + 1) { it * FULL_COST }
+        var curr = IntArray(m + 1)
+        for (i in 1..n) {
+            curr[0] = i * FULL_COST
+            var rowMin = curr[0]
+            for (j in 1..m) {
+                var d = minOf(
+                    prev[j] + FULL_COST,
+                    curr[j - 1] + FULL_COST,
+                    prev[j - 1] + substitutionCost(a[i - 1], b[j - 1]),
+                )
+                if (i > 1 && j > 1 && a[i - 1] == b[j - 2] && a[i - 2] == b[j - 1]) {
+                    d = minOf(d, prevPrev[j - 2] + FULL_COST)
+                }
+                curr[j] = d
+                if (d < rowMin) rowMin = d
+            }
+            if (rowMin > maxCost) return maxCost + 1
+            val recycled = prevPrev
+            prevPrev = prev
+            prev = curr
+            curr = recycled
+        }
+        return minOf(prev[m], maxCost + 1)
+    }
+}
@@ -25,16 +25,24 @@ import java.io.BufferedOutputStream
 import java.io.DataInputStream
 import java.io.DataOutputStream
 import java.io.File
-import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
 import com.noxquill.rewordium.keyboard.ime.core.Subtype
 import com.noxquill.rewordium.keyboard.ime.dictionary.DictionaryManager
 import com.noxquill.rewordium.keyboard.ime.dictionary.LearnedBigramsStore
+import com.noxquill.rewordium.keyboard.ime.dictionary.LearnedTrigramsStore
 import com.noxquill.rewordium.keyboard.ime.dictionary.LearnedWordsStore
 import com.noxquill.rewordium.keyboard.ime.editor.EditorContent
+import com.noxquill.rewordium.keyboard.ime.editor.EditorRange
+import com.noxquill.rewordium.keyboard.ime.nlp.BreakIteratorGroup
+import com.noxquill.rewordium.keyboard.ime.nlp.FlatTrie
 import com.noxquill.rewordium.keyboard.ime.nlp.SpellingProvider
 import com.noxquill.rewordium.keyboard.ime.nlp.SpellingResult
 import com.noxquill.rewordium.keyboard.ime.nlp.SuggestionCandidate
 import com.noxquill.rewordium.keyboard.ime.nlp.SuggestionProvider
+import com.noxquill.rewordium.keyboard.ime.nlp.TopKSelector
+import com.noxquill.rewordium.keyboard.ime.nlp.Vocabulary
+import com.noxquill.rewordium.keyboard.ime.nlp.WordDataChange
+import com.noxquill.rewordium.keyboard.ime.nlp.WordListDelta
 import com.noxquill.rewordium.keyboard.ime.nlp.WordSuggestionCandidate
 import com.noxquill.rewordium.keyboard.ime.nlp.engine.ContactsLoader
 import com.noxquill.rewordium.keyboard.ime.nlp.engine.NativeDictionary
@@ -57,6 +65,9 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
         const val ProviderId = "org.florisboard.nlp.providers.latin"
         private const val LEARNED_BIGRAMS_PREFS = "reboard_learned_bigrams"
         private const val BIGRAM_BOOST_FACTOR = 2.0
+        // Weight of user-learned transitions relative to static asset bigrams:
+        // the user's own typing history is a stronger signal than corpus counts.
+        private const val LEARNED_BIGRAM_WEIGHT = 1.2
         private const val RECENCY_BOOST = 30
         private const val MAX_RECENCY_WORDS = 20
         // Multiplicative boost applied to recently-learned words in the
@@ -66,17 +77,26 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
         // a much higher-freq one, but large enough to consistently win
         // against equally-frequent stale candidates.
         private const val GLIDE_RECENCY_BOOST = 1.15
+        // Fuzzy suggestion score factor lost per [KeyProximity] cost unit.
+        private const val FUZZY_PENALTY_PER_COST = 0.02
+        // Hard cap on the time one suggest() or spell() call spends scoring
+        // correction candidates; whatever is left after it is skipped.
+        private const val CORRECTION_BUDGET_NANOS = 3_000_000L
+        // Spell candidates rank by cost first; frequencies stay below this.
+        private const val SPELL_COST_WEIGHT = 1024.0
 
         // Binary cache magic header — bump when format changes.
         private const val CACHE_MAGIC = 0x52420002.toInt() // 'RB' + version 2
         private const val WORD_CACHE_NAME = "dict_words.bin"
         private const val BIGRAM_CACHE_NAME = "dict_bigrams.bin"
+        private const val PREFIX_INDEX_CACHE_NAME = "dict_prefix.bin"
+        private const val SPELL_INDEX_CACHE_NAME = "dict_spell.bin"
+        private const val TRIGRAM_CACHE_NAME = "dict_trigrams.bin"
+        // Optional asset, same shape as bigrams.json with "w1 w2" keys. Not
+        // shipped yet; without it only learned trigrams feed the model.
+        private const val TRIGRAM_ASSET_PATH = "ime/dict/trigrams.json"
 
         // Adaptive learned swipe typing thresholds.
-        // Gboard-balanced cadence: rebuild the glide-classifier Pruner after
-        // every 3 newly learned words so a freshly-typed name surfaces in
-        // glide candidates within seconds rather than after dozens of commits.
-        private const val LEARNED_REFRESH_THRESHOLD = 3
         // First-time-seen personal words bootstrap to MAX frequency so they
         // can decisively win shape-based glide ranking against any dict word.
         //
@@ -102,11 +122,48 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
     override val providerId = ProviderId
 
     private val appContext by context.appContext()
-    private val wordData = guardedByLock { mutableMapOf<String, Int>() }
+    // Word frequencies. The published generation holds the base dictionary
+    // (the asset word list as a memory-mapped [MappedVocabulary], see
+    // [openBaseVocabulary]) and the indexes over it: a prefix trie for
+    // suggest() and deletion + phonetic tables for spell(). The overlay holds
+    // learned, contact and user-dictionary words plus every frequency change
+    // to a base word; 0 masks a base word (removed suggestion). Reads are
+    // lock-free, see [LatinWordData].
+    private val wordData = LatinWordData()
     private val wordDataSerializer = MapSerializer(String.serializer(), Int.serializer())
 
-    // Bigram data: previousWord -> (nextWord -> score)
-    private val bigramData = guardedByLock { mutableMapOf<String, Map<String, Int>>() }
+    // Trie cursor + overlay matches per prefix of the word being typed, so
+    // each keystroke only does the delta. Invalidated on every [wordData]
+    // write and on cursor jumps.
+    private val suggestionSession = LatinSuggestionSession()
+
+    // Edit costs from the active keyboard layout, see [setKeyProximity].
+    @Volatile
+    private var keyProximity = KeyProximity.Uniform
+
+    // The word data interned for glide typing and the other consumers, see
+    // getVocabulary(): the base vocabulary by reference plus the overlay at glide
+    // frequencies. Patched with every WordDataChange, reseeded when the base
+    // vocabulary changes or after bulk merges. Guarded by [sharedVocabularyLock].
+    @Volatile
+    private var sharedVocabulary: Vocabulary? = null
+    // Views of [sharedVocabulary] boosting each locale's recent words, by
+    // language tag. Guarded by [sharedVocabularyLock].
+    private val recencyViews = HashMap<String, Vocabulary>()
+    private val sharedVocabularyLock = Any()
+
+    // Trie of the shared vocabulary, built once per subtype and vocabulary for
+    // getWordTrie(). Per-word changes are patched in; added words drop it.
+    @Volatile
+    private var wordTrie: Triple<Subtype, Vocabulary, FlatTrie>? = null
+
+    // Reused candidate selector per thread: suggest() and spell() may run
+    // concurrently now that word data reads are lock-free.
+    private val topK = ThreadLocal.withInitial { TopKSelector<String>() }
+
+    // Bigram data: interned previousWord -> (nextWord ids, scores) rows, with
+    // learned transitions merged in lazily per row (see [BigramTable]).
+    private val bigramData = guardedByLock { BigramTable() }
     private val bigramDataSerializer = MapSerializer(
         String.serializer(),
         MapSerializer(String.serializer(), Int.serializer())
@@ -119,18 +176,29 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
     private val learnedBigramsStore = LearnedBigramsStore(context)
     private var legacyLearnedBigramsPrefs: SharedPreferences? = null
 
-    // Track the last committed word for bigram learning
+    // Trigram model (ENABLE_TRIGRAM_MODEL): memory-mapped static trigrams
+    // compiled from [TRIGRAM_ASSET_PATH] (published with the [wordData]
+    // generation) plus per-locale learned trigrams. Combined with bigrams by
+    // stupid backoff, see [getContextSuggestions].
+    private val learnedTrigramsStore = LearnedTrigramsStore(context)
+    // Set once compiling the static model failed, e.g. because the asset isn't
+    // shipped, so later preloads in this process don't read and parse again.
+    @Volatile
+    private var trigramModelUnavailable = false
+
+    // Track the last two committed words for bigram / trigram learning
     private var lastCommittedWord: String? = null
+    private var secondLastCommittedWord: String? = null
 
-    // Recently typed words for recency boost (LRU-style)
-    private val recentWords = ArrayDeque<String>(MAX_RECENCY_WORDS + 5)
+    // Recently typed words for recency boost (LRU-style), most recent first.
+    // Replaced, never mutated, on accept so suggest() reads it without a lock.
+    private val recentWords = AtomicReference<List<String>>(emptyList())
 
     // ── Adaptive learned swipe typing (Section B of the plan) ────────────────
     // Per-user vocabulary persisted across IME process restarts. Loaded on
     // preload() and merged into wordData so glide ranking automatically
     // boosts personal words. Bumped on every word commit via learnWord().
     private val learnedStore = LearnedWordsStore(context)
-    private val learnedSinceLastRefresh = AtomicInteger(0)
 
     // Phase 4: native AOSP-backed dictionary. Loaded asynchronously during
     // preload() when ENABLE_NATIVE_SUGGESTER is on. While [nativeDictionary
@@ -142,8 +210,17 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
         replay = 0,
         extraBufferCapacity = 1,
     )
-    /** Emitted when learned-word additions warrant a glide-classifier rebuild. */
+    /** Emitted when the word data changed too much to patch, warranting a glide-classifier rebuild. */
     val wordDataDirtyFlow: SharedFlow<Subtype> = _wordDataDirtyFlow.asSharedFlow()
+    private val _wordDataChangeFlow = MutableSharedFlow<WordDataChange>(
+        replay = 0,
+        extraBufferCapacity = 64,
+    )
+    /** Emitted per learned, forgotten or imported word so glide typing can patch its index in place. */
+    val wordDataChangeFlow: SharedFlow<WordDataChange> = _wordDataChangeFlow.asSharedFlow()
+    /** Writes to the word data that had to wait for another writer; readers never wait. */
+    val wordDataContendedWrites: Long
+        get() = wordData.contendedWrites
     private val prefs by FlorisPreferenceStore
 
     override suspend fun create() {
@@ -151,29 +228,38 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
     }
 
     override suspend fun preload(subtype: Subtype) = withContext(Dispatchers.IO) {
-        wordData.withLock { data ->
-            if (data.isEmpty()) {
-                val loaded = loadWordCache(appContext) ?: run {
-                    // Cache miss: parse JSON and write cache for next time.
-                    val rawData = appContext.assets.readText("ime/dict/data.json")
-                    val parsed = Json.decodeFromString(wordDataSerializer, rawData)
-                    saveWordCache(appContext, parsed)
-                    parsed
-                }
-                data.putAll(loaded)
+        wordData.withLock {
+            if (wordData.generation.vocabulary == null) {
+                val opened = openBaseVocabulary(appContext)
+                wordData.publish { it.copy(vocabulary = opened) }
             }
         }
+        // Prefix + spell indexes: loaded from the cache dir when they match
+        // this app version and vocabulary, otherwise rebuilt and persisted
+        // for the next process start. Built outside any lock and published as
+        // a new generation; readers keep using the previous one meanwhile.
+        val vocabulary = wordData.generation.vocabulary
+        if (vocabulary != null && wordData.generation.prefixIndex == null) {
+            val index = loadPrefixIndex(appContext, vocabulary)
+                ?: LatinPrefixIndex.build(vocabulary).also { savePrefixIndex(appContext, it) }
+            wordData.publish { it.copy(prefixIndex = index) }
+            flogDebug { "LatinLanguageProvider: prefix index has ${index.nodeCount} nodes" }
+        }
+        if (vocabulary != null && wordData.generation.spellIndex == null) {
+            val index = loadSpellIndex(appContext, vocabulary)
+                ?: LatinSpellIndex.build(vocabulary).also { saveSpellIndex(appContext, it) }
+            wordData.publish { it.copy(spellIndex = index) }
+        }
         // Load bigram dictionary
-        bigramData.withLock { data ->
-            if (data.isEmpty()) {
+        bigramData.withLock { table ->
+            if (table.isEmpty) {
                 try {
-                    val loaded = loadBigramCache(appContext) ?: run {
+                    if (!loadBigramCache(appContext, table)) {
                         val rawBigrams = appContext.assets.readText("ime/dict/bigrams.json")
                         val parsed = Json.decodeFromString(bigramDataSerializer, rawBigrams)
                         saveBigramCache(appContext, parsed)
-                        parsed
+                        table.putAllStatic(parsed)
                     }
-                    data.putAll(loaded)
                 } catch (e: Exception) {
                     flogDebug { "Failed to load bigrams: ${e.message}" }
                 }
@@ -191,6 +277,18 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
         }
         learnedBigramsStore.ensureLoaded(legacyLearnedBigramsPrefs)
 
+        if (BuildConfig.ENABLE_TRIGRAM_MODEL) {
+            learnedTrigramsStore.ensureLoaded()
+            if (vocabulary != null && wordData.generation.trigramModel == null && !trigramModelUnavailable) {
+                val model = openTrigramModel(appContext, vocabulary)
+                if (model != null) {
+                    wordData.publish { it.copy(trigramModel = model) }
+                } else {
+                    trigramModelUnavailable = true
+                }
+            }
+        }
+
         // Merge persisted personal vocabulary into wordData so the glide
         // decoder sees user-learned words on the very first suggestion call
         // after process restart (the snapshot taken by setWordData reflects
@@ -200,7 +298,7 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
         if (learned.isNotEmpty()) {
             wordData.withLock { data ->
                 for ((word, entry) in learned) {
-                    val current = data[word] ?: 0
+                    val current = wordData.frequencyOf(word) ?: 0
                     // maxOf so we don't clobber high-frequency dictionary
                     // entries with low-freq learned counterparts.
                     data[word] = maxOf(current, entry.f.coerceIn(0, 255))
@@ -221,7 +319,7 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
                 for (entry in entries) {
                     val word = entry.word.trim().lowercase()
                     if (!LEARN_WORD_PATTERN.matches(word)) continue
-                    val current = data[word] ?: 0
+                    val current = wordData.frequencyOf(word) ?: 0
                     // 64 floor mirrors Gboard's bias toward user-added entries:
                     // they should outrank random low-freq dictionary noise but
                     // can still be overridden by truly common dictionary words.
@@ -243,19 +341,16 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
             if (contactTokens.isNotEmpty()) {
                 wordData.withLock { data ->
                     for (token in contactTokens) {
-                        val current = data[token] ?: 0
+                        val current = wordData.frequencyOf(token) ?: 0
                         data[token] = maxOf(current, CONTACT_NAME_PROBABILITY)
                     }
                 }
             }
             contactBigrams = ContactsLoader.loadNameBigrams(appContext)
             if (contactBigrams.isNotEmpty()) {
-                bigramData.withLock { data ->
+                bigramData.withLock { table ->
                     for ((prev, next) in contactBigrams) {
-                        val inner = (data[prev] as? MutableMap<String, Int>) ?: data[prev]?.toMutableMap() ?: mutableMapOf()
-                        val current = inner[next] ?: 0
-                        inner[next] = maxOf(current, CONTACT_NAME_PROBABILITY)
-                        data[prev] = inner
+                        table.raiseStatic(prev, next, CONTACT_NAME_PROBABILITY)
                     }
                 }
             }
@@ -277,13 +372,15 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
         // mutable, so we just push entries into it.
         if (BuildConfig.ENABLE_NATIVE_SUGGESTER) {
             runCatching {
-                val ok = nativeDictionary.loadFromAssets(appContext)
+                // Fed from the mapped base vocabulary rather than a second parse of the asset.
+                val ok = nativeDictionary.loadFromAssets(appContext, wordData.generation.vocabulary)
                 flogDebug { "LatinLanguageProvider: native dict load = $ok" }
                 if (ok && nativeDictionary.isLoaded) {
                     var merged = 0
-                    wordData.withLock { data ->
+                    // Only the overlay: the native dict already holds the base words.
+                    wordData.read { data ->
                         for ((word, freq) in data) {
-                            if (nativeDictionary.addLearnedWord(word, freq)) merged++
+                            if (freq > 0 && nativeDictionary.addLearnedWord(word, freq)) merged++
                         }
                     }
                     flogDebug { "LatinLanguageProvider: merged $merged personal/contact words into native dict" }
@@ -298,7 +395,10 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
                 flogDebug { "LatinLanguageProvider: native dict load threw: $e" }
             }
         }
+        wordTrie = null
+        synchronized(sharedVocabularyLock) { sharedVocabulary = null }
         _wordDataDirtyFlow.tryEmit(subtype)
+        flogDebug { "LatinLanguageProvider: $wordDataContendedWrites contended word data writes so far" }
         Unit
     }
 
@@ -318,10 +418,14 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
         if (tokens.isEmpty()) return@withContext
 
         // Push into the Kotlin word-frequency table (Kotlin suggestion path).
+        val addedTokens = HashMap<String, Double>()
+        val updatedTokens = HashMap<String, Double>()
         wordData.withLock { data ->
             for (token in tokens) {
-                val current = data[token] ?: 0
-                data[token] = maxOf(current, CONTACT_NAME_PROBABILITY)
+                val current = wordData.frequencyOf(token) ?: 0
+                if (current >= CONTACT_NAME_PROBABILITY) continue
+                data[token] = CONTACT_NAME_PROBABILITY
+                (if (current == 0) addedTokens else updatedTokens)[token] = glideFrequency(CONTACT_NAME_PROBABILITY)
             }
         }
 
@@ -339,8 +443,8 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
             flogDebug { "LatinLanguageProvider: reloadContacts added $added tokens, ${bigrams.size} bigram pairs" }
         }
 
-        // Rebuild glide classifier so swipe picks up the new vocab.
-        _wordDataDirtyFlow.tryEmit(subtype)
+        // Patch the glide classifier so swipe picks up the new vocab.
+        emitWordDataChange(WordDataChange(subtype, addedTokens, updatedTokens))
     }
 
     /**
@@ -355,8 +459,9 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
         if (!LEARN_WORD_PATTERN.matches(word)) return
         
         val clampedFreq = freq.coerceIn(64, 255)
+        val current: Int
         wordData.withLock { data ->
-            val current = data[word] ?: 0
+            current = wordData.frequencyOf(word) ?: 0
             data[word] = maxOf(current, clampedFreq)
         }
         
@@ -364,9 +469,7 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
             nativeDictionary.addLearnedWord(word, clampedFreq)
         }
 
-        // Rebuild glide Pruner immediately — unlike learnWord(), there's no
-        // need to debounce a single explicit user-add action.
-        _wordDataDirtyFlow.tryEmit(subtype)
+        emitWordDataChange(subtype, word, current, maxOf(current, clampedFreq))
     }
 
     /**
@@ -375,12 +478,11 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
      * commit) via NlpManager.learnWord facade.
      *
      * Validates the word, bumps frequency in [wordData], persists via
-     * [learnedStore], and emits a dirty signal when enough new words have
-     * accumulated to warrant a glide-classifier rebuild.
+     * [learnedStore], and emits a [WordDataChange] so the glide classifier
+     * patches the word into its Pruner and frequency table.
      *
      * Hot path — runs once per word commit. All work is microseconds: one
-     * regex check, one map mutation, one channel offer. Pruner rebuild
-     * (the expensive part) is debounced via [LEARNED_REFRESH_THRESHOLD].
+     * regex check, one map mutation, one channel offer.
      */
     suspend fun learnWord(subtype: Subtype, rawWord: String) {
         if (!prefs.dictionary.learnPersonalWords.get()) return
@@ -394,11 +496,13 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
         // docstring for the rationale on tying with max frequency.
         val isFirstTime: Boolean
         val isGraduating: Boolean
+        val current: Int
+        val next: Int
         wordData.withLock { data ->
-            val current = data[word] ?: 0
+            current = wordData.frequencyOf(word) ?: 0
             isFirstTime = current == 0
             isGraduating = current == 1
-            val next = if (current == 0) {
+            next = if (current == 0) {
                 1
             } else if (current == 1) {
                 NEW_WORD_BOOTSTRAP_FREQ
@@ -414,10 +518,8 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
             word,
             freqDelta = if (isGraduating) NEW_WORD_BOOTSTRAP_FREQ else 1,
         )
-        if (learnedSinceLastRefresh.incrementAndGet() >= LEARNED_REFRESH_THRESHOLD) {
-            learnedSinceLastRefresh.set(0)
-            _wordDataDirtyFlow.tryEmit(subtype)
-        }
+        // The word is now the most recent one, so it gets the recency boost.
+        emitWordDataChange(subtype, word, current, next, recent = true)
 
         // Phase 6 incremental update: push the same word into the native
         // dict so the AOSP-backed suggest (Phase 4) + glide (Phase 5) paths
@@ -429,15 +531,6 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
                 nativeDictionary.addLearnedWord(word, 255)
             }
         }
-
-        // Graduating personal words (typed 2 times) deserve an immediate Pruner rebuild
-        // so the user sees the effect on their next swipe. For repeat reinforcement, still
-        // debounce via the threshold to avoid rebuilding for every keystroke.
-        // We DO NOT rebuild on `isFirstTime` because that triggers for every normal dictionary word typed!
-        if (isGraduating) {
-            learnedSinceLastRefresh.set(0)
-            _wordDataDirtyFlow.tryEmit(subtype)
-        }
     }
 
     suspend fun unlearnWord(subtype: Subtype, rawWord: String) {
@@ -453,7 +546,11 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
         // word stops surfacing IMMEDIATELY (Kotlin suggest path, native
         // suggest path, and glide classifier) — not just after the next
         // IME process restart.
-        wordData.withLock { data -> data[word] = 1 }
+        val current: Int
+        wordData.withLock { data ->
+            current = wordData.frequencyOf(word) ?: 0
+            data[word] = 1
+        }
 
         if (BuildConfig.ENABLE_NATIVE_SUGGESTER && nativeDictionary.isLoaded) {
             // Use addLearnedWord with freq 1 to OVERRIDE the system dictionary's frequency!
@@ -466,8 +563,56 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
         // It will be reloaded into wordData and pushed to the NativeDictionary with freq 1 on boot.
         learnedStore.set(subtype.primaryLocale, word, 1)
 
-        // Force a glide-classifier rebuild so swipe input drops the word too.
-        _wordDataDirtyFlow.tryEmit(subtype)
+        // Demote the word in the glide classifier too so swipe input drops it.
+        emitWordDataChange(subtype, word, current, 1)
+    }
+
+    private fun glideFrequency(freq: Int, recent: Boolean = false): Double {
+        val base = freq / 255.0
+        return if (recent) base * GLIDE_RECENCY_BOOST else base
+    }
+
+    private fun emitWordDataChange(subtype: Subtype, word: String, previous: Int, freq: Int, recent: Boolean = false) {
+        val change = mapOf(word to glideFrequency(freq, recent))
+        emitWordDataChange(
+            if (previous == 0) WordDataChange(subtype, change, emptyMap()) else WordDataChange(subtype, emptyMap(), change),
+            stored = mapOf(word to glideFrequency(freq)),
+            recent = recent,
+        )
+    }
+
+    /**
+     * Publishes [change] to glide typing. If the collector fell behind and the
+     * change can't be buffered, asks for a full rebuild instead so it isn't lost.
+     *
+     * The shared vocabulary gets the unboosted [stored] frequencies; if [recent],
+     * the words are boosted in the view of the change's locale only.
+     */
+    private fun emitWordDataChange(
+        change: WordDataChange,
+        stored: Map<String, Double> = change.added + change.updated,
+        recent: Boolean = false,
+    ) {
+        if (change.added.isEmpty() && change.updated.isEmpty()) return
+        synchronized(sharedVocabularyLock) {
+            sharedVocabulary?.let { vocabulary ->
+                val view = recencyViews[change.subtype.primaryLocale.languageTag()]
+                for ((word, frequency) in stored) {
+                    val id = vocabulary.setFrequency(word, frequency.toFloat())
+                    if (recent) view?.recency?.add(id)
+                }
+            }
+        }
+        wordTrie?.let { (_, _, trie) ->
+            if (change.added.isNotEmpty()) {
+                wordTrie = null
+            } else {
+                for ((word, frequency) in change.updated) trie.setFrequency(word, frequency.toFloat())
+            }
+        }
+        if (!_wordDataChangeFlow.tryEmit(change)) {
+            _wordDataDirtyFlow.tryEmit(change.subtype)
+        }
     }
 
     // ── Binary dictionary cache helpers ─────────────────────────────────────
@@ -485,77 +630,72 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
     } catch (_: Exception) { 0L }
 
     /**
-     * Try loading word frequencies from the binary cache.
-     * Returns null on cache miss, version mismatch, corrupt data, or I/O failure.
-     * Format: magic(Int) + appVersionCode(Long) + count(Int) + [word(UTF) + score(Int)]*
+     * Map the base dictionary from the binary cache, converting the JSON
+     * asset on a cache miss, version mismatch or corrupt file. Returns null
+     * only if the asset itself can't be read.
      */
-    private fun loadWordCache(ctx: Context): Map<String, Int>? {
+    private fun openBaseVocabulary(ctx: Context): SortedVocabulary? {
         val file = File(cacheDir(ctx), WORD_CACHE_NAME)
+        val versionCode = appVersionCode(ctx)
+        if (file.exists()) {
+            try {
+                MappedVocabulary.open(file, versionCode)?.let { return it }
+            } catch (_: Exception) {
+                file.delete() // corrupt cache — recreate below
+            }
+        }
+        return try {
+            val rawData = ctx.assets.readText("ime/dict/data.json")
+            val parsed = Json.decodeFromString(wordDataSerializer, rawData)
+            try {
+                MappedVocabulary.write(file, versionCode, parsed)
+                MappedVocabulary.open(file, versionCode)
+            } catch (_: Exception) {
+                null
+            } ?: ArrayVocabulary.fromMap(parsed) // cache dir unusable — keep it on the heap
+        } catch (e: Exception) {
+            flogDebug { "Failed to load word list: ${e.message}" }
+            null
+        }
+    }
+
+    private fun loadPrefixIndex(ctx: Context, vocabulary: SortedVocabulary): LatinPrefixIndex? {
+        val file = File(cacheDir(ctx), PREFIX_INDEX_CACHE_NAME)
         if (!file.exists()) return null
         return try {
-            DataInputStream(BufferedInputStream(file.inputStream(), 65_536)).use { dis ->
-                if (dis.readInt() != CACHE_MAGIC) return null
-                if (dis.readLong() != appVersionCode(ctx)) return null // stale — will rebuild
-                val count = dis.readInt()
-                val map = HashMap<String, Int>(count * 2)
-                repeat(count) {
-                    val word = dis.readUTF()
-                    val score = dis.readInt()
-                    map[word] = score
-                }
-                map
-            }
+            LatinPrefixIndex.load(file, appVersionCode(ctx), vocabulary)
         } catch (_: Exception) {
-            file.delete() // corrupt cache — recreate next time
+            file.delete()
             null
         }
     }
 
-    private fun saveWordCache(ctx: Context, data: Map<String, Int>) {
+    private fun savePrefixIndex(ctx: Context, index: LatinPrefixIndex) {
         try {
-            val file = File(cacheDir(ctx), WORD_CACHE_NAME)
-            DataOutputStream(BufferedOutputStream(file.outputStream(), 65_536)).use { dos ->
-                dos.writeInt(CACHE_MAGIC)
-                dos.writeLong(appVersionCode(ctx))
-                dos.writeInt(data.size)
-                for ((word, score) in data) {
-                    dos.writeUTF(word)
-                    dos.writeInt(score)
-                }
-            }
-        } catch (_: Exception) { /* non-fatal — next start will retry */ }
+            index.save(File(cacheDir(ctx), PREFIX_INDEX_CACHE_NAME), appVersionCode(ctx))
+        } catch (_: Exception) { /* non-fatal */ }
     }
 
     /**
-     * Try loading bigram frequencies from the binary cache.
+     * Try loading bigram frequencies from the binary cache straight into
+     * [table]. Returns false on cache miss, version mismatch, corrupt data,
+     * or I/O failure.
      * Format: magic(Int) + appVersionCode(Long) + outerCount(Int) +
      *         [prevWord(UTF) + innerCount(Int) + [nextWord(UTF) + score(Int)]*]*
      */
-    private fun loadBigramCache(ctx: Context): Map<String, Map<String, Int>>? {
+    private fun loadBigramCache(ctx: Context, table: BigramTable): Boolean {
         val file = File(cacheDir(ctx), BIGRAM_CACHE_NAME)
-        if (!file.exists()) return null
+        if (!file.exists()) return false
         return try {
             DataInputStream(BufferedInputStream(file.inputStream(), 65_536)).use { dis ->
-                if (dis.readInt() != CACHE_MAGIC) return null
-                if (dis.readLong() != appVersionCode(ctx)) return null
-                val outerCount = dis.readInt()
-                val map = HashMap<String, Map<String, Int>>(outerCount * 2)
-                repeat(outerCount) {
-                    val prev = dis.readUTF()
-                    val innerCount = dis.readInt()
-                    val inner = HashMap<String, Int>(innerCount * 2)
-                    repeat(innerCount) {
-                        val next = dis.readUTF()
-                        val score = dis.readInt()
-                        inner[next] = score
-                    }
-                    map[prev] = inner
-                }
-                map
+                if (dis.readInt() != CACHE_MAGIC) return false
+                if (dis.readLong() != appVersionCode(ctx)) return false
+                table.readStatic(dis)
+                true
             }
         } catch (_: Exception) {
             file.delete()
-            null
+            false
         }
     }
 
@@ -578,6 +718,53 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
         } catch (_: Exception) { /* non-fatal */ }
     }
 
+    /**
+     * Map the static trigram model from the cache dir, compiling it from
+     * [TRIGRAM_ASSET_PATH] on a cache miss. Returns null if neither exists;
+     * the caller then stops trying for the rest of the process.
+     */
+    private fun openTrigramModel(ctx: Context, vocabulary: SortedVocabulary): TrigramModel? {
+        val file = File(cacheDir(ctx), TRIGRAM_CACHE_NAME)
+        val versionCode = appVersionCode(ctx)
+        if (file.exists()) {
+            try {
+                TrigramModel.open(file, versionCode, vocabulary)?.let { return it }
+            } catch (_: Exception) {
+                file.delete()
+            }
+        }
+        return try {
+            val rawTrigrams = ctx.assets.readText(TRIGRAM_ASSET_PATH)
+            val parsed = Json.decodeFromString(bigramDataSerializer, rawTrigrams)
+            TrigramModel.write(file, versionCode, vocabulary, parsed)
+            TrigramModel.open(file, versionCode, vocabulary)
+        } catch (e: Exception) {
+            flogDebug { "No static trigram model: ${e.message}" }
+            null
+        }
+    }
+
+    /**
+     * Try mapping the spell index from the cache dir. Returns null on cache
+     * miss, version or vocabulary mismatch, or I/O failure.
+     */
+    private fun loadSpellIndex(ctx: Context, vocabulary: SortedVocabulary): LatinSpellIndex? {
+        val file = File(cacheDir(ctx), SPELL_INDEX_CACHE_NAME)
+        if (!file.exists()) return null
+        return try {
+            LatinSpellIndex.load(file, appVersionCode(ctx), vocabulary)
+        } catch (_: Exception) {
+            file.delete()
+            null
+        }
+    }
+
+    private fun saveSpellIndex(ctx: Context, index: LatinSpellIndex) {
+        try {
+            index.save(File(cacheDir(ctx), SPELL_INDEX_CACHE_NAME), appVersionCode(ctx))
+        } catch (_: Exception) { /* non-fatal */ }
+    }
+
     /**
      * Persist a `prevWord → nextWord` transition for [locale]. Delegates to
      * [LearnedBigramsStore.bump]; that path is non-blocking and debounces
@@ -587,14 +774,37 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
         learnedBigramsStore.bump(locale, prevWord, nextWord)
     }
 
+    /**
+     * Merged static + learned row for [previousWord]. Cached in the table
+     * until [learnedBigramsStore] changes. Call with the [bigramData] lock held.
+     */
+    private fun bigramRow(table: BigramTable, locale: FlorisLocale, previousWord: String): BigramTable.Row? {
+        return table.row(
+            prevWord = previousWord.lowercase(),
+            localeTag = locale.languageTag(),
+            generation = learnedBigramsStore.generation,
+            learnedWeight = LEARNED_BIGRAM_WEIGHT,
+        ) { prev -> learnedBigramsStore.transitionsFrom(locale, prev) }
+    }
+
+    /**
+     * [textBeforeCursor] with its last word (and trailing whitespace) cut off,
+     * so [extractPreviousWord] on the result yields the word before that.
+     * Words are separated by any whitespace, including line breaks.
+     */
+    private fun textBeforePreviousWord(textBeforeCursor: CharSequence): String {
+        val text = textBeforeCursor.toString().trimEnd()
+        return text.substring(0, text.indexOfLast { it.isWhitespace() } + 1)
+    }
+
     /**
      * Extract the previous word from text before the cursor.
-     * Handles edge cases like multiple spaces, punctuation, etc.
+     * Handles edge cases like multiple spaces, line breaks, punctuation, etc.
      */
     private fun extractPreviousWord(textBeforeCursor: CharSequence): String? {
         val text = textBeforeCursor.toString().trimEnd()
         if (text.isBlank()) return null
-        val lastSpace = text.lastIndexOf(' ')
+        val lastSpace = text.indexOfLast { it.isWhitespace() }
         val word = if (lastSpace >= 0) text.substring(lastSpace + 1) else text
         val cleaned = word.lowercase().trim { !it.isLetter() && it != '\'' }
         return cleaned.takeIf { it.length >= 1 }
@@ -611,21 +821,84 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
     ): SpellingResult {
         val query = word.trim().lowercase()
         if (query.isBlank()) return SpellingResult.unspecified()
+        val generation = wordData.generation
+        return wordData.read { overlay -> spellQuery(query, generation, overlay, maxSuggestionCount) }
+    }
 
-        val isKnown = wordData.withLock { it.containsKey(query) }
-        if (isKnown) return SpellingResult.validWord()
+    override suspend fun spellAll(
+        subtype: Subtype,
+        text: CharSequence,
+        breakIterators: BreakIteratorGroup,
+        maxSuggestionCount: Int,
+        allowPossiblyOffensive: Boolean,
+        isPrivateSession: Boolean,
+    ): List<Pair<EditorRange, SpellingResult>> {
+        val ranges = breakIterators.wordRanges(text, subtype.primaryLocale)
+        // One generation and overlay for the whole batch; each distinct
+        // (case-folded) token is resolved once.
+        val generation = wordData.generation
+        return wordData.read { overlay ->
+            val results = HashMap<String, SpellingResult>()
+            ranges.map { range ->
+                val query = text.substring(range.start, range.end).trim().lowercase()
+                val result = results.getOrPut(query) {
+                    if (query.isBlank()) {
+                        SpellingResult.unspecified()
+                    } else {
+                        spellQuery(query, generation, overlay, maxSuggestionCount)
+                    }
+                }
+                range to result
+            }
+        }
+    }
 
-        // Phase 1: fast prefix + edit-distance 1 candidates.
-        val editCandidates = wordData.withLock { data ->
-            data.asSequence()
-                .filter { (candidate, _) ->
-                    candidate != query &&
-                    (candidate.startsWith(query.take(2)) || isEditDistance1(query, candidate))
+    /**
+     * Spell checks the trimmed, lowercase [query] against [generation] and
+     * the [overlay] without any locking.
+     */
+    private fun spellQuery(
+        query: String,
+        generation: LatinWordData.Generation,
+        overlay: Map<String, Int>,
+        maxSuggestionCount: Int,
+    ): SpellingResult {
+        if (wordData.frequencyOf(query, generation) != null) return SpellingResult.validWord()
+
+        // Phase 1: candidates within 2 edits (Damerau-Levenshtein), ranked by
+        // keyboard-weighted distance (adjacent-key substitutions are cheap,
+        // see [KeyProximity]), then by frequency. Base words come from the
+        // deletion index; the comparatively few overlay words are checked
+        // directly. Candidates still left when the correction budget runs
+        // out are skipped.
+        val index = generation.spellIndex
+        val proximity = keyProximity
+        val maxCost = LatinSpellIndex.MAX_DISTANCE * KeyProximity.FULL_COST
+        val deadline = System.nanoTime() + CORRECTION_BUDGET_NANOS
+        val editCandidates = run {
+            // Lowest cost first, then highest frequency (< SPELL_COST_WEIGHT).
+            val selector = topK.get()!!
+            selector.reset(maxSuggestionCount)
+            val seen = HashSet<String>()
+            fun consider(candidate: String) {
+                if (candidate == query || !seen.add(candidate)) return
+                if (System.nanoTime() > deadline) return
+                val cost = proximity.distance(query, candidate, maxCost)
+                if (cost > maxCost) return
+                val score = wordData.frequencyOf(candidate, generation) ?: return
+                selector.offer(candidate, -cost * SPELL_COST_WEIGHT + score)
+            }
+            fun considerIfClose(candidate: String) {
+                val distance = LatinSpellIndex.editDistance(query, candidate, LatinSpellIndex.MAX_DISTANCE)
+                if (distance in 1..LatinSpellIndex.MAX_DISTANCE) consider(candidate)
+            }
+            if (index != null) {
+                index.forEachCandidate(query, LatinSpellIndex.MAX_DISTANCE) { id, _ ->
+                    consider(index.vocabulary.wordAt(id))
                 }
-                .sortedByDescending { (_, score) -> score }
-                .map { it.key }
-                .take(maxSuggestionCount)
-                .toList()
+            }
+            overlay.keys.forEach(::considerIfClose)
+            ArrayList<String>(selector.size).also { selector.sortInto(it) }
         }
 
         if (editCandidates.isNotEmpty()) {
@@ -633,17 +906,26 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
         }
 
         // Phase 2: phonetic (Soundex) fallback — catches phonetically plausible misspellings
-        // that differ by more than 1 edit (e.g. "freind" → "friend", "nite" → "night").
-        val querySoundex = soundex(query)
-        val phoneticCandidates = wordData.withLock { data ->
-            data.asSequence()
-                .filter { (candidate, _) ->
-                    candidate != query && soundex(candidate) == querySoundex
-                }
-                .sortedByDescending { (_, score) -> score }
-                .map { it.key }
-                .take(maxSuggestionCount)
-                .toList()
+        // that differ by more than 2 edits. Base words come from the precomputed
+        // code → words multimap.
+        val querySoundex = LatinSpellIndex.soundexCode(query)
+        val phoneticCandidates = run {
+            val selector = topK.get()!!
+            selector.reset(maxSuggestionCount)
+            val seen = HashSet<String>()
+            fun consider(candidate: String) {
+                if (candidate == query || !seen.add(candidate)) return
+                val score = wordData.frequencyOf(candidate, generation) ?: return
+                selector.offer(candidate, score.toDouble())
+            }
+            fun considerIfSameCode(candidate: String) {
+                if (LatinSpellIndex.soundexCode(candidate) == querySoundex) consider(candidate)
+            }
+            if (index != null) {
+                index.forEachPhoneticMatch(query) { id -> consider(index.vocabulary.wordAt(id)) }
+            }
+            overlay.keys.forEach(::considerIfSameCode)
+            ArrayList<String>(selector.size).also { selector.sortInto(it) }
         }
 
         return if (phoneticCandidates.isNotEmpty()) {
@@ -653,38 +935,6 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
         }
     }
 
-    /**
-     * Soundex phonetic encoding. Returns a 4-character code (letter + 3 digits) that groups
-     * words with similar consonant patterns, enabling phonetic spell correction.
-     * Example: "color" and "colour" both encode to "C460".
-     */
-    private fun soundex(word: String): String {
-        if (word.isEmpty()) return "0000"
-        val table = mapOf(
-            'b' to '1', 'f' to '1', 'p' to '1', 'v' to '1',
-            'c' to '2', 'g' to '2', 'j' to '2', 'k' to '2',
-            'q' to '2', 's' to '2', 'x' to '2', 'z' to '2',
-            'd' to '3', 't' to '3',
-            'l' to '4',
-            'm' to '5', 'n' to '5',
-            'r' to '6',
-        )
-        val upper = word.lowercase()
-        val code = StringBuilder()
-        code.append(upper[0].uppercaseChar())
-        var prev = table[upper[0]] ?: '0'
-        for (i in 1 until upper.length) {
-            val curr = table[upper[i]] ?: '0'
-            if (curr != '0' && curr != prev) {
-                code.append(curr)
-                if (code.length == 4) break
-            }
-            prev = curr
-        }
-        while (code.length < 4) code.append('0')
-        return code.toString()
-    }
-
     override suspend fun suggest(
         subtype: Subtype,
         content: EditorContent,
@@ -696,13 +946,18 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
 
         // Extract previous word for bigram context
         val textBeforeCursor = content.textBeforeSelection
-        val previousWord = extractPreviousWord(
-            if (composingWord.isNotBlank() && textBeforeCursor.endsWith(composingWord, ignoreCase = true)) {
-                textBeforeCursor.substring(0, (textBeforeCursor.length - composingWord.length).coerceAtLeast(0))
-            } else {
-                textBeforeCursor
-            }
-        )
+        val contextText = if (composingWord.isNotBlank() && textBeforeCursor.endsWith(composingWord, ignoreCase = true)) {
+            textBeforeCursor.substring(0, (textBeforeCursor.length - composingWord.length).coerceAtLeast(0))
+        } else {
+            textBeforeCursor
+        }
+        val previousWord = extractPreviousWord(contextText)
+        // One more word of context for the trigram model ("see you |" → "see").
+        val secondPreviousWord = if (BuildConfig.ENABLE_TRIGRAM_MODEL && previousWord != null) {
+            extractPreviousWord(textBeforePreviousWord(contextText))
+        } else {
+            null
+        }
 
         // Phase 4d: native suggest path. Active only when the feature flag
         // is on AND the dict actually loaded AND the user has typed
@@ -736,144 +991,222 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
             // else fall through to Kotlin path
         }
 
-        // Get bigram suggestions for the previous word
-        val bigramSuggestions = if (previousWord != null) {
-            getBigramSuggestions(subtype.primaryLocale, previousWord, composingWord)
-        } else {
-            emptyMap()
-        }
-
-        // If composing word is blank, return pure next-word predictions
+        // If composing word is blank, return pure next-word predictions: the
+        // head of the merged bigram row, which is already sorted by score.
+        // With a known trigram context, trigram continuations are blended in
+        // and the bigram row backs off.
         if (composingWord.isBlank()) {
-            if (previousWord == null || bigramSuggestions.isEmpty()) return emptyList()
-            return bigramSuggestions.entries
-                .sortedByDescending { it.value }
-                .take(maxCandidateCount)
-                .map { (word, score) ->
+            if (previousWord == null) return emptyList()
+            if (secondPreviousWord != null) {
+                getContextSuggestions(subtype.primaryLocale, secondPreviousWord, previousWord, "", maxCandidateCount)?.let { scores ->
+                    return selectTop(scores.entries.map { it.toPair() }, maxCandidateCount)
+                        .map { (word, score) ->
+                            WordSuggestionCandidate(
+                                text = word,
+                                confidence = (score / 255.0).coerceIn(0.0, 1.0),
+                                isEligibleForAutoCommit = false,
+                                sourceProvider = this,
+                            )
+                        }
+                }
+            }
+            return bigramData.withLock { table ->
+                val row = bigramRow(table, subtype.primaryLocale, previousWord)
+                    ?: return@withLock emptyList()
+                List(minOf(row.size, maxCandidateCount)) { i ->
                     WordSuggestionCandidate(
-                        text = word,
-                        confidence = (score / 255.0).coerceIn(0.0, 1.0),
+                        text = table.wordOf(row.next[i]),
+                        confidence = (row.scores[i] / 255.0).coerceIn(0.0, 1.0),
                         isEligibleForAutoCommit = false,
                         sourceProvider = this,
                     )
                 }
+            }
         }
 
-        // Composing word is non-blank: blend prefix matches with bigram + recency boosts
-        return wordData.withLock { data ->
+        // Get bigram suggestions for the previous word (trigram-backed off
+        // context scores when the two-word context is known)
+        val bigramSuggestions = when {
+            previousWord == null -> emptyMap()
+            secondPreviousWord != null -> {
+                getContextSuggestions(subtype.primaryLocale, secondPreviousWord, previousWord, composingWord)
+                    ?: getBigramSuggestions(subtype.primaryLocale, previousWord, composingWord)
+            }
+            else -> getBigramSuggestions(subtype.primaryLocale, previousWord, composingWord)
+        }
+
+        // Composing word is non-blank: blend prefix matches with bigram + recency boosts.
+        // Prefix candidates are the index's top-K completions by base
+        // frequency plus the few words that can outrank them: overlay words
+        // (learned / re-weighted since the index was built), bigram
+        // continuations and recent words. Everything else under the prefix
+        // scores its unchanged base frequency, so it can't beat the top-K.
+        val contextKey = "$secondPreviousWord $previousWord $maxCandidateCount " +
+            "${learnedBigramsStore.generation} ${learnedTrigramsStore.generation}"
+        val dataVersion = wordData.version
+        val generation = wordData.generation
+        val ranked = wordData.read { data ->
+            suggestionSession.cachedResult(composingWord, contextKey, dataVersion)?.let { return@read it }
+            val index = generation.prefixIndex
             val results = mutableListOf<Pair<String, Int>>()
+            val seen = HashSet<String>()
 
             // 1. Exact match always first (auto-complete the current word)
-            val exactScore = data[composingWord]
+            seen.add(composingWord)
+            val exactScore = wordData.frequencyOf(composingWord, generation)
             if (exactScore != null) {
                 val bigramScore = bigramSuggestions[composingWord] ?: 0
                 results.add(composingWord to (exactScore + bigramScore + 100).coerceAtMost(600))
             }
 
             // 2. Prefix matches
-            data.asSequence()
-                .filter { (candidate, _) -> candidate.startsWith(composingWord) && candidate != composingWord }
-                .forEach { (candidate, score) ->
-                    val bigramScore = bigramSuggestions[candidate] ?: 0
-                    val recencyBoost = if (candidate in recentWords) RECENCY_BOOST else 0
-                    val boostedScore = if (bigramScore > 0) {
-                        (score + (bigramScore * BIGRAM_BOOST_FACTOR).toInt() + recencyBoost).coerceAtMost(600)
-                    } else {
-                        (score + recencyBoost).coerceAtMost(600)
-                    }
-                    results.add(candidate to boostedScore)
+            val recent = recentWords.get()
+            fun addPrefixMatch(candidate: String) {
+                if (!seen.add(candidate)) return
+                val score = wordData.frequencyOf(candidate, generation) ?: return
+                val bigramScore = bigramSuggestions[candidate] ?: 0
+                val recencyBoost = if (candidate in recent) RECENCY_BOOST else 0
+                val boostedScore = if (bigramScore > 0) {
+                    (score + (bigramScore * BIGRAM_BOOST_FACTOR).toInt() + recencyBoost).coerceAtMost(600)
+                } else {
+                    (score + recencyBoost).coerceAtMost(600)
                 }
+                results.add(candidate to boostedScore)
+            }
+            val frame = suggestionSession.frameFor(composingWord, index, dataVersion, data.keys)
+            if (index != null && frame.node != LatinPrefixIndex.NO_NODE) {
+                val ids = IntArray(LatinPrefixIndex.TOP_K)
+                val count = index.collectTopCompletions(frame.node, ids)
+                for (i in 0 until count) addPrefixMatch(index.vocabulary.wordAt(ids[i]))
+            }
+            frame.overlayMatches.forEach(::addPrefixMatch)
+            // Already filtered to the composing prefix by getBigramSuggestions().
+            for (candidate in bigramSuggestions.keys) addPrefixMatch(candidate)
+            for (candidate in recent) {
+                if (candidate.startsWith(composingWord)) addPrefixMatch(candidate)
+            }
 
             // 3. Fuzzy matches (edit distance 1) if we have fewer than maxCandidateCount
             if (results.size < maxCandidateCount && composingWord.length >= 3) {
-                val existingWords = results.map { it.first }.toSet()
-                data.asSequence()
-                    .filter { (candidate, _) ->
-                        candidate !in existingWords &&
-                        candidate.length in (composingWord.length - 1)..(composingWord.length + 1) &&
-                        isEditDistance1(composingWord, candidate)
-                    }
-                    .take(maxCandidateCount - results.size)
-                    .forEach { (candidate, score) ->
-                        val bigramScore = bigramSuggestions[candidate] ?: 0
-                        // Fuzzy matches get a slight penalty
-                        val penalizedScore = ((score * 0.8).toInt() + (bigramScore * BIGRAM_BOOST_FACTOR * 0.5).toInt()).coerceAtMost(400)
-                        results.add(candidate to penalizedScore)
+                val fuzzy = mutableListOf<Pair<String, Int>>()
+                val proximity = keyProximity
+                val deadline = System.nanoTime() + CORRECTION_BUDGET_NANOS
+                fun addFuzzyMatch(candidate: String) {
+                    if (!seen.add(candidate)) return
+                    if (System.nanoTime() > deadline) return
+                    val score = wordData.frequencyOf(candidate, generation) ?: return
+                    val bigramScore = bigramSuggestions[candidate] ?: 0
+                    // Fuzzy matches get a penalty that depends on the edit:
+                    // an adjacent-key slip (x0.92) is far likelier than any
+                    // other single edit (x0.8).
+                    val cost = proximity.distance(composingWord, candidate, KeyProximity.FULL_COST)
+                    val factor = 1.0 - FUZZY_PENALTY_PER_COST * cost
+                    val penalizedScore = ((score * factor).toInt() + (bigramScore * BIGRAM_BOOST_FACTOR * 0.5).toInt()).coerceAtMost(400)
+                    fuzzy.add(candidate to penalizedScore)
+                }
+                if (index != null) {
+                    // Trie walk with a single edit budget instead of testing every word.
+                    index.forEachWithinEditDistance1(composingWord) { id ->
+                        addFuzzyMatch(index.vocabulary.wordAt(id))
                     }
+                }
+                for (candidate in data.keys) {
+                    if (LatinPrefixIndex.isEditDistance1(composingWord, candidate)) addFuzzyMatch(candidate)
+                }
+                results.addAll(selectTop(fuzzy, maxCandidateCount - results.size))
             }
 
-            results
-                .sortedByDescending { (_, score) -> score }
-                .take(maxCandidateCount)
-                .map { (candidate, score) ->
-                    WordSuggestionCandidate(
-                        text = candidate,
-                        confidence = (score / 600.0).coerceIn(0.0, 1.0),
-                        isEligibleForAutoCommit = false,
-                        sourceProvider = this,
-                    )
-                }
+            selectTop(results, maxCandidateCount)
+                .also { suggestionSession.cacheResult(composingWord, contextKey, dataVersion, it) }
+        }
+        return ranked.map { (candidate, score) ->
+            WordSuggestionCandidate(
+                text = candidate,
+                confidence = (score / 600.0).coerceIn(0.0, 1.0),
+                isEligibleForAutoCommit = false,
+                sourceProvider = this,
+            )
         }
     }
 
     /**
-     * Check if two words have edit distance of exactly 1
-     * (one substitution, insertion, or deletion apart).
-     * Optimized: avoids full DP matrix, bails early.
+     * The [k] highest-scoring [candidates], best first; ties keep their
+     * order. Uses this thread's [TopKSelector] instead of sorting everything.
      */
-    private fun isEditDistance1(a: String, b: String): Boolean {
-        val lenDiff = a.length - b.length
-        if (lenDiff < -1 || lenDiff > 1) return false
-        if (a.length == b.length) {
-            // Substitution: exactly one char differs
-            var diffs = 0
-            for (i in a.indices) {
-                if (a[i] != b[i]) { diffs++; if (diffs > 1) return false }
-            }
-            return diffs == 1
-        }
-        // Insertion or deletion
-        val longer = if (a.length > b.length) a else b
-        val shorter = if (a.length > b.length) b else a
-        var i = 0; var j = 0; var diffs = 0
-        while (i < longer.length && j < shorter.length) {
-            if (longer[i] != shorter[j]) { diffs++; if (diffs > 1) return false; i++ }
-            else { i++; j++ }
-        }
-        return true
+    private fun selectTop(candidates: List<Pair<String, Int>>, k: Int): List<Pair<String, Int>> {
+        val selector = topK.get()!!
+        selector.reset(k)
+        for ((candidate, score) in candidates) selector.offer(candidate, score.toDouble())
+        selector.sort()
+        return List(selector.size) { selector.itemAt(it) to selector.scoreAt(it).toInt() }
+    }
+
+    /**
+     * Sets the key adjacency used to weigh corrections in [suggest] and
+     * [spell]. Called via
+     * [com.noxquill.rewordium.keyboard.ime.nlp.NlpManager.setKeyboardLayout]
+     * whenever the character layout changes.
+     */
+    fun setKeyProximity(proximity: KeyProximity) {
+        keyProximity = proximity
+        suggestionSession.invalidate()
     }
 
     /**
-     * Get combined bigram suggestions from both static and learned bigrams.
-     * If composingWord is non-blank, only returns bigrams that start with it.
+     * Drops the incremental suggestion state. Called via
+     * [com.noxquill.rewordium.keyboard.ime.nlp.NlpManager.invalidateSuggestionSession]
+     * when the cursor jumps or the editor changes, since the next composing
+     * word is then unrelated to the previous one.
+     */
+    fun invalidateSuggestionSession() {
+        suggestionSession.invalidate()
+    }
+
+    /**
+     * Bigram continuations of [previousWord] that start with [composingWord],
+     * at most [limit] of them, best first since rows are sorted by score.
      */
     private suspend fun getBigramSuggestions(
         locale: FlorisLocale,
         previousWord: String,
         composingWord: String,
-    ): Map<String, Int> {
-        val prev = previousWord.lowercase()
-        val result = mutableMapOf<String, Int>()
-
-        // Static bigrams
-        bigramData.withLock { data ->
-            data[prev]?.forEach { (word, score) ->
-                if (composingWord.isBlank() || word.startsWith(composingWord)) {
-                    result[word] = (result.getOrDefault(word, 0) + score).coerceAtMost(255)
-                }
-            }
-        }
-
-        // Learned bigrams from the persistent JSON store. Higher weight than
-        // static bigrams because the user's own typing history is a stronger
-        // signal than corpus frequencies.
-        learnedBigramsStore.snapshot(locale)[prev]?.forEach { (word, score) ->
-            if (composingWord.isBlank() || word.startsWith(composingWord)) {
-                val learnedBoost = (score * 1.2).toInt()
-                result[word] = (result.getOrDefault(word, 0) + learnedBoost).coerceAtMost(255)
+        limit: Int = Int.MAX_VALUE,
+    ): HashMap<String, Int> {
+        return bigramData.withLock { table ->
+            val result = HashMap<String, Int>()
+            val row = bigramRow(table, locale, previousWord) ?: return@withLock result
+            for (i in 0 until row.size) {
+                if (result.size == limit) break
+                val word = table.wordOf(row.next[i])
+                if (word.startsWith(composingWord)) result[word] = row.scores[i].toInt()
             }
+            result
         }
+    }
 
+    /**
+     * Stupid-backoff context scores for continuations of ([w1], [w2]) that
+     * start with [composingWord]: the trigram score where one exists (static
+     * plus weighted learned), otherwise the bigram score of ([w2], word)
+     * scaled by [TrigramModel.BACKOFF]. Returns null when the trigram context
+     * is unknown, in which case callers use plain bigram scores. Scoring is
+     * [TrigramModel.backoffScores]; the scores land in the bigram map, so a
+     * call costs one map like the plain bigram path.
+     */
+    private suspend fun getContextSuggestions(
+        locale: FlorisLocale,
+        w1: String,
+        w2: String,
+        composingWord: String,
+        limit: Int = Int.MAX_VALUE,
+    ): Map<String, Int>? {
+        val learned = learnedTrigramsStore.transitionsFrom(locale, w1, w2)
+        val model = wordData.generation.trigramModel
+        val range = model?.rangeOf(w1, w2) ?: TrigramModel.NO_RANGE
+        if (learned.isEmpty() && range == TrigramModel.NO_RANGE) return null
+
+        val result = getBigramSuggestions(locale, w2, composingWord, limit)
+        TrigramModel.backoffScores(model, range, learned, LEARNED_BIGRAM_WEIGHT, composingWord, limit, result)
         return result
     }
 
@@ -883,8 +1216,9 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
         if (accepted.isBlank()) return
 
         // Boost the accepted word's frequency
+        val current: Int
         wordData.withLock { data ->
-            val current = data.getOrDefault(accepted, 0)
+            current = wordData.frequencyOf(accepted) ?: 0
             data[accepted] = (current + 2).coerceAtMost(255)
         }
 
@@ -897,16 +1231,19 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
             LEARN_WORD_PATTERN.matches(accepted)
         ) {
             learnedStore.bump(subtype.primaryLocale, accepted, freqDelta = 2)
-            if (learnedSinceLastRefresh.incrementAndGet() >= LEARNED_REFRESH_THRESHOLD) {
-                learnedSinceLastRefresh.set(0)
-                _wordDataDirtyFlow.tryEmit(subtype)
-            }
+            emitWordDataChange(subtype, accepted, current, (current + 2).coerceAtMost(255), recent = true)
         }
 
         // Track recency
-        recentWords.remove(accepted)
-        recentWords.addFirst(accepted)
-        if (recentWords.size > MAX_RECENCY_WORDS) recentWords.removeLast()
+        recentWords.updateAndGet { recent ->
+            val updated = ArrayList<String>(MAX_RECENCY_WORDS)
+            updated.add(accepted)
+            for (word in recent) {
+                if (updated.size == MAX_RECENCY_WORDS) break
+                if (word != accepted) updated.add(word)
+            }
+            updated
+        }
 
         // Learn bigram: if we have a previous word, save the pair
         lastCommittedWord?.let { prev ->
@@ -915,7 +1252,17 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
             }
         }
 
-        // Update last committed word
+        // Learn trigram from the two words before this one
+        if (BuildConfig.ENABLE_TRIGRAM_MODEL) {
+            val first = secondLastCommittedWord
+            val second = lastCommittedWord
+            if (!first.isNullOrBlank() && !second.isNullOrBlank() && second != accepted) {
+                learnedTrigramsStore.bump(subtype.primaryLocale, first, second, accepted)
+            }
+        }
+
+        // Update last committed words
+        secondLastCommittedWord = lastCommittedWord
         lastCommittedWord = accepted
     }
 
@@ -932,12 +1279,12 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
         if (!LEARN_WORD_PATTERN.matches(reverted)) return
 
         wordData.withLock { data ->
-            val current = data[reverted] ?: return@withLock
+            val current = wordData.frequencyOf(reverted) ?: return@withLock
             // Drop by 3 — strong enough that two reverts in a row will pull
             // the word out of the top suggestions, but not enough to nuke
             // a high-frequency dict word from a single accident.
             val next = (current - 3).coerceAtLeast(0)
-            if (next == 0) data.remove(reverted) else data[reverted] = next
+            data[reverted] = next
         }
         // Also reflect the demotion in the persisted learned store so it
         // survives IME restart.
@@ -949,41 +1296,88 @@ class LatinLanguageProvider(context: Context) : SpellingProvider, SuggestionProv
     override suspend fun removeSuggestion(subtype: Subtype, candidate: SuggestionCandidate): Boolean {
         flogDebug { candidate.toString() }
         val key = candidate.text.toString().trim().lowercase()
-        return wordData.withLock { data -> data.remove(key) != null }
+        return wordData.withLock { data ->
+            val known = wordData.frequencyOf(key) != null
+            // Mask rather than remove so a base-dictionary word stays hidden.
+            if (known) data[key] = 0
+            known
+        }
     }
 
     override suspend fun getListOfWords(subtype: Subtype): List<String> {
-        return wordData.withLock { it.keys.toList() }
+        return getVocabulary(subtype).words().toList()
     }
 
     override suspend fun getFrequencyForWord(subtype: Subtype, word: String): Double {
-        return wordData.withLock { it.getOrDefault(word.lowercase(), 0) / 255.0 }
+        return (wordData.frequencyOf(word.lowercase()) ?: 0) / 255.0
     }
 
     override suspend fun getFrequencyMap(subtype: Subtype): Map<String, Double> {
-        // Recency boost: words the user has typed most recently get a small
-        // multiplier so they reliably outrank shape-similar dict words at
-        // the same nominal frequency. Without this, after a context reset
-        // (Send / clear), a graduated personal word at freq=255 ties with
-        // top-tier dict entries also at freq=255 — shape decides — and the
-        // user's word often loses by a hair. With the boost, "okays" stays
-        // ahead of "okra" / "okay" / "owners" until the user actually starts
-        // typing other words.
-        //
-        // Recency lives in [learnedStore], so this boost is persistent
-        // across IME process restarts — not just within a session.
-        //
-        // This map is consumed exclusively by the glide classifier
-        // ([StatisticalGlideTypingClassifier.setWordData]); returning values
-        // marginally above 1.0 is intentional and fits the classifier's
-        // multiplicative scoring at line 384.
+        val vocabulary = getVocabulary(subtype)
+        val frequencies = HashMap<String, Double>(vocabulary.size)
+        vocabulary.forEachWord { id, frequency -> frequencies[vocabulary.wordAt(id)] = frequency.toDouble() }
+        return frequencies
+    }
+
+    /**
+     * The base vocabulary by reference, with the overlay (learned, contact and
+     * user-dictionary words, masked base words) at glide frequencies on top.
+     * One instance holds the words of every Latin subtype until the base
+     * vocabulary changes; each locale gets its own view of it, with the
+     * recency boost below, so switching subtypes rewrites no frequency a
+     * glide classifier of another locale may be reading.
+     *
+     * Recency boost: words the user has typed most recently get a small
+     * multiplier so they reliably outrank shape-similar dict words at
+     * the same nominal frequency. Without this, after a context reset
+     * (Send / clear), a graduated personal word at freq=255 ties with
+     * top-tier dict entries also at freq=255 — shape decides — and the
+     * user's word often loses by a hair. With the boost, "okays" stays
+     * ahead of "okra" / "okay" / "owners" until the user actually starts
+     * typing other words.
+     *
+     * Recency lives in [learnedStore], so this boost is persistent
+     * across IME process restarts — not just within a session. Frequencies
+     * marginally above 1.0 are intentional and fit the glide classifier's
+     * multiplicative scoring.
+     */
+    override suspend fun getVocabulary(subtype: Subtype): Vocabulary {
+        val base = wordData.generation.vocabulary
+        val locale = subtype.primaryLocale.languageTag()
         val recent = learnedStore.mostRecent(subtype.primaryLocale, MAX_RECENCY_WORDS)
-        return wordData.withLock { data ->
-            data.mapValues { (word, freq) ->
-                val base = freq / 255.0
-                if (word in recent) base * GLIDE_RECENCY_BOOST else base
+        return synchronized(sharedVocabularyLock) {
+            val vocabulary = sharedVocabulary?.takeIf { it.base === base } ?: Vocabulary(base).also { vocabulary ->
+                wordData.read { data ->
+                    for ((word, freq) in data) vocabulary.setFrequency(word, glideFrequency(freq).toFloat())
+                }
+                sharedVocabulary = vocabulary
             }
+            val view = recencyViews[locale]?.takeIf { it.sharesWordsWith(vocabulary) }
+                ?: vocabulary.withRecency(Vocabulary.RecencyBoost(GLIDE_RECENCY_BOOST.toFloat()))
+                    .also { recencyViews[locale] = it }
+            view.recency!!.retainOnly(recent.mapTo(HashSet()) { vocabulary.idOf(it) })
+            view
+        }
+    }
+
+    /**
+     * The base vocabulary is the stable list; learned, contact and
+     * user-dictionary words are added on top and masked base words removed,
+     * as interned in the shared vocabulary.
+     */
+    override suspend fun getWordListDelta(subtype: Subtype): WordListDelta? {
+        val vocabulary = getVocabulary(subtype)
+        val base = vocabulary.base ?: return null
+        val version = base.size.toLong() shl 32 or (base.checksum.toLong() and 0xFFFFFFFFL)
+        return WordListDelta(version, vocabulary.addedWords(), vocabulary.maskedBaseWords())
+    }
+
+    override suspend fun getWordTrie(subtype: Subtype): FlatTrie {
+        val vocabulary = getVocabulary(subtype)
+        wordTrie?.let { (trieSubtype, trieVocabulary, trie) ->
+            if (trieSubtype == subtype && trieVocabulary === vocabulary) return trie
         }
+        return FlatTrie.build(vocabulary).also { wordTrie = Triple(subtype, vocabulary, it) }
     }
 
     override suspend fun destroy() {
@@ -0,0 +1,378 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp.latin
+
+import java.io.BufferedOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+
+/**
+ * Compact, frequency-ordered prefix trie over a [SortedVocabulary], built once
+ * per dictionary load so that prefix completion costs O(prefix length + K)
+ * instead of a scan over the whole vocabulary.
+ *
+ * Layout: nodes live in flat parallel arrays and are allocated breadth-first,
+ * so the children of a node are always contiguous. Since the vocabulary is
+ * sorted, the subtree of every node is also a contiguous id range
+ * `[rangeStart, rangeEnd)`. Nodes whose subtree holds more than [TOP_K] words
+ * additionally store their [TOP_K] most frequent word ids (descending); smaller
+ * subtrees are ranked on the fly, which touches at most [TOP_K] words anyway.
+ *
+ * Only ~1.6k of the ~115k nodes of the shipped English dictionary exceed
+ * [TOP_K], so the precomputed top lists add well under 200 KB.
+ *
+ * The arrays can be persisted with [save] and bulk-loaded with [load], which
+ * skips the build on every process start after the first.
+ *
+ * Immutable after [build]; safe to query from any thread.
+ */
+class LatinPrefixIndex private constructor(
+    val vocabulary: SortedVocabulary,
+    private val nodeChar: CharArray,
+    private val nodeDepth: ShortArray,
+    private val nodeRangeStart: IntArray,
+    private val nodeRangeEnd: IntArray,
+    private val nodeChildStart: IntArray,
+    private val nodeChildCount: IntArray,
+    private val nodeTopOffset: IntArray,
+    private val topIds: IntArray,
+) {
+    companion object {
+        /** Number of completions precomputed per large node. */
+        const val TOP_K = 16
+
+        const val ROOT = 0
+        const val NO_NODE = -1
+        const val NO_WORD = -1
+
+        private const val FILE_MAGIC = 0x52425031 // 'RBP1'
+        private const val HEADER_BYTES = 24
+
+        fun build(vocabulary: SortedVocabulary): LatinPrefixIndex {
+            val chars = CharArrayBuilder()
+            val depths = IntArrayBuilder()
+            val rangeStarts = IntArrayBuilder()
+            val rangeEnds = IntArrayBuilder()
+            val childStarts = IntArrayBuilder()
+            val childCounts = IntArrayBuilder()
+
+            // Root covers the whole vocabulary.
+            chars.add('\u0000')
+            depths.add(0)
+            rangeStarts.add(0)
+            rangeEnds.add(vocabulary.size)
+            childStarts.add(0)
+            childCounts.add(0)
+
+            // Breadth-first expansion: processing nodes in allocation order
+            // guarantees that each node's children are appended contiguously.
+            var node = 0
+            while (node < rangeStarts.size) {
+                val depth = depths[node]
+                var lo = rangeStarts[node]
+                val hi = rangeEnds[node]
+                // Shorter words sort first, so a word ending at this depth is
+                // always the first id of the range.
+                if (lo < hi && vocabulary.lengthOf(lo) == depth) lo++
+                childStarts[node] = rangeStarts.size
+                var count = 0
+                var i = lo
+                while (i < hi) {
+                    val c = vocabulary.charAt(i, depth)
+                    var j = i + 1
+                    while (j < hi && vocabulary.charAt(j, depth) == c) j++
+                    chars.add(c)
+                    depths.add(depth + 1)
+                    rangeStarts.add(i)
+                    rangeEnds.add(j)
+                    childStarts.add(0)
+                    childCounts.add(0)
+                    count++
+                    i = j
+                }
+                childCounts[node] = count
+                node++
+            }
+
+            val nodeCount = rangeStarts.size
+            val topOffsets = IntArray(nodeCount) { -1 }
+            val tops = IntArrayBuilder()
+            val scratch = IntArray(TOP_K)
+            for (n in 0 until nodeCount) {
+                val start = rangeStarts[n]
+                val end = rangeEnds[n]
+                if (end - start <= TOP_K) continue
+                val found = selectTop(vocabulary, start, end, scratch)
+                topOffsets[n] = tops.size
+                for (k in 0 until found) tops.add(scratch[k])
+            }
+
+            return LatinPrefixIndex(
+                vocabulary = vocabulary,
+                nodeChar = chars.toArray(),
+                nodeDepth = ShortArray(nodeCount) { depths[it].toShort() },
+                nodeRangeStart = rangeStarts.toArray(),
+                nodeRangeEnd = rangeEnds.toArray(),
+                nodeChildStart = childStarts.toArray(),
+                nodeChildCount = childCounts.toArray(),
+                nodeTopOffset = topOffsets,
+                topIds = tops.toArray(),
+            )
+        }
+
+        /**
+         * Bulk-loads a file previously written by [save]. Returns null if the
+         * file was written by another app version or for another vocabulary.
+         */
+        fun load(file: File, appVersionCode: Long, vocabulary: SortedVocabulary): LatinPrefixIndex? {
+            RandomAccessFile(file, "r").use { raf ->
+                val buffer = raf.channel.map(FileChannel.MapMode.READ_ONLY, 0, raf.length())
+                buffer.order(ByteOrder.BIG_ENDIAN)
+                if (buffer.getInt(0) != FILE_MAGIC) return null
+                if (buffer.getLong(4) != appVersionCode) return null
+                if (buffer.getInt(12) != vocabulary.checksum) return null
+                val nodeCount = buffer.getInt(16)
+                val topCount = buffer.getInt(20)
+                // chars + depths are 2 bytes each; 5 per-node int arrays, then the top ids.
+                val expected = HEADER_BYTES.toLong() + nodeCount * (2L + 2L + 5 * 4L) + 4L * topCount
+                if (raf.length() != expected) return null
+                buffer.position(HEADER_BYTES)
+                val chars = CharArray(nodeCount).also { buffer.asCharBuffer().get(it) }
+                buffer.position(buffer.position() + 2 * nodeCount)
+                val depths = ShortArray(nodeCount).also { buffer.asShortBuffer().get(it) }
+                buffer.position(buffer.position() + 2 * nodeCount)
+                val ints = buffer.asIntBuffer()
+                fun next(length: Int) = IntArray(length).also { ints.get(it) }
+                return LatinPrefixIndex(
+                    vocabulary = vocabulary,
+                    nodeChar = chars,
+                    nodeDepth = depths,
+                    nodeRangeStart = next(nodeCount),
+                    nodeRangeEnd = next(nodeCount),
+                    nodeChildStart = next(nodeCount),
+                    nodeChildCount = next(nodeCount),
+                    nodeTopOffset = next(nodeCount),
+                    topIds = next(topCount),
+                )
+            }
+        }
+
+        /**
+         * Check if two words have edit distance of exactly 1
+         * (one substitution, insertion, or deletion apart).
+         * Optimized: avoids full DP matrix, bails early. The full-scan
+         * counterpart of [forEachWithinEditDistance1], for words not in the trie.
+         */
+        fun isEditDistance1(a: String, b: String): Boolean {
+            val lenDiff = a.length - b.length
+            if (lenDiff < -1 || lenDiff > 1) return false
+            if (a.length == b.length) {
+                // Substitution: exactly one char differs
+                var diffs = 0
+                for (i in a.indices) {
+                    if (a[i] != b[i]) { diffs++; if (diffs > 1) return false }
+                }
+                return diffs == 1
+            }
+            // Insertion or deletion
+            val longer = if (a.length > b.length) a else b
+            val shorter = if (a.length > b.length) b else a
+            var i = 0; var j = 0; var diffs = 0
+            while (i < longer.length && j < shorter.length) {
+                if (longer[i] != shorter[j]) { diffs++; if (diffs > 1) return false; i++ }
+                else { i++; j++ }
+            }
+            return true
+        }
+
+        /**
+         * Writes the ids in `[start, end)` with the highest frequency into
+         * [out] (descending, ties broken by id) and returns how many were
+         * written. Insertion into a K-sized sorted window; no allocation.
+         */
+        private fun selectTop(vocabulary: SortedVocabulary, start: Int, end: Int, out: IntArray): Int {
+            var count = 0
+            for (id in start until end) {
+                val freq = vocabulary.frequencyOf(id)
+                if (count == out.size && freq <= vocabulary.frequencyOf(out[count - 1])) continue
+                var pos = if (count < out.size) count++ else count - 1
+                while (pos > 0 && vocabulary.frequencyOf(out[pos - 1]) < freq) {
+                    out[pos] = out[pos - 1]
+                    pos--
+                }
+                out[pos] = id
+            }
+            return count
+        }
+    }
+
+    val nodeCount: Int
+        get() = nodeChar.size
+
+    /** Writes this index to [file] in the format read back by [load]. */
+    fun save(file: File, appVersionCode: Long) {
+        DataOutputStream(BufferedOutputStream(file.outputStream(), 65_536)).use { dos ->
+            dos.writeInt(FILE_MAGIC)
+            dos.writeLong(appVersionCode)
+            dos.writeInt(vocabulary.checksum)
+            dos.writeInt(nodeCount)
+            dos.writeInt(topIds.size)
+            for (c in nodeChar) dos.writeChar(c.code)
+            for (d in nodeDepth) dos.writeShort(d.toInt())
+            for (array in arrayOf(nodeRangeStart, nodeRangeEnd, nodeChildStart, nodeChildCount, nodeTopOffset, topIds)) {
+                for (value in array) dos.writeInt(value)
+            }
+        }
+    }
+
+    /** Node reached by walking [prefix] from the root, or [NO_NODE]. */
+    fun findNode(prefix: CharSequence): Int {
+        var node = ROOT
+        for (c in prefix) {
+            node = child(node, c)
+            if (node == NO_NODE) return NO_NODE
+        }
+        return node
+    }
+
+    /** Child of [node] labelled [c], or [NO_NODE]. */
+    fun child(node: Int, c: Char): Int {
+        val start = nodeChildStart[node]
+        val end = start + nodeChildCount[node]
+        for (n in start until end) {
+            if (nodeChar[n] == c) return n
+        }
+        return NO_NODE
+    }
+
+    /** Id of the word spelled exactly by the path to [node], or [NO_WORD]. */
+    fun terminalOf(node: Int): Int {
+        val first = nodeRangeStart[node]
+        if (first >= nodeRangeEnd[node]) return NO_WORD
+        return if (vocabulary.lengthOf(first) == nodeDepth[node].toInt()) first else NO_WORD
+    }
+
+    /** Highest base frequency of any word below [node]; useful for beam pruning. */
+    fun maxFrequency(node: Int): Int {
+        val offset = nodeTopOffset[node]
+        if (offset >= 0) return vocabulary.frequencyOf(topIds[offset])
+        var best = 0
+        for (id in nodeRangeStart[node] until nodeRangeEnd[node]) {
+            best = maxOf(best, vocabulary.frequencyOf(id))
+        }
+        return best
+    }
+
+    /**
+     * Fills [out] with up to `out.size` (at most [TOP_K]) ids of the most
+     * frequent words below [node], descending by base frequency, and returns
+     * the number written. Allocation-free; callers keep a reusable buffer.
+     */
+    fun collectTopCompletions(node: Int, out: IntArray): Int {
+        val limit = minOf(out.size, TOP_K)
+        val offset = nodeTopOffset[node]
+        if (offset >= 0) {
+            System.arraycopy(topIds, offset, out, 0, limit)
+            return limit
+        }
+        val start = nodeRangeStart[node]
+        val end = nodeRangeEnd[node]
+        var count = 0
+        for (id in start until end) {
+            val freq = vocabulary.frequencyOf(id)
+            if (count == limit && freq <= vocabulary.frequencyOf(out[count - 1])) continue
+            var pos = if (count < limit) count++ else count - 1
+            while (pos > 0 && vocabulary.frequencyOf(out[pos - 1]) < freq) {
+                out[pos] = out[pos - 1]
+                pos--
+            }
+            out[pos] = id
+        }
+        return count
+    }
+
+    /**
+     * Visits every word within Levenshtein distance 1 of [query] (one
+     * substitution, insertion or deletion; the exact word is reported too) by
+     * walking the trie with a single edit budget. Cost is bounded by
+     * O(query length² × alphabet) instead of the vocabulary size. A word may
+     * be reported more than once when several edit paths reach it.
+     */
+    fun forEachWithinEditDistance1(query: CharSequence, action: (wordId: Int) -> Unit) {
+        visitEdit1(ROOT, query, 0, 0, action)
+    }
+
+    private fun visitEdit1(node: Int, query: CharSequence, pos: Int, edits: Int, action: (Int) -> Unit) {
+        if (pos == query.length) {
+            val terminal = terminalOf(node)
+            if (terminal != NO_WORD) action(terminal)
+        }
+        val childStart = nodeChildStart[node]
+        val childEnd = childStart + nodeChildCount[node]
+        if (edits == 0) {
+            // Insertion: the word carries one extra character here.
+            for (n in childStart until childEnd) visitEdit1(n, query, pos, 1, action)
+        }
+        if (pos < query.length) {
+            val c = query[pos]
+            val match = child(node, c)
+            if (match != NO_NODE) visitEdit1(match, query, pos + 1, edits, action)
+            if (edits == 0) {
+                // Deletion: the query carries one extra character here.
+                visitEdit1(node, query, pos + 1, 1, action)
+                // Substitution.
+                for (n in childStart until childEnd) {
+                    if (nodeChar[n] != c) visitEdit1(n, query, pos + 1, 1, action)
+                }
+            }
+        }
+    }
+
+    private class IntArrayBuilder {
+        private var data = IntArray(1024)
+        var size = 0
+            private set
+
+        fun add(value: Int) {
+            if (size == data.size) data = data.copyOf(size * 2)
+            data[size++] = value
+        }
+
+        operator fun get(index: Int): Int = data[index]
+
+        operator fun set(index: Int, value: Int) {
+            data[index] = value
+        }
+
+        fun toArray(): IntArray = data.copyOf(size)
+    }
+
+    private class CharArrayBuilder {
+        private var data = CharArray(1024)
+        private var size = 0
+
+        fun add(value: Char) {
+            if (size == data.size) data = data.copyOf(size * 2)
+            data[size++] = value
+        }
+
+        fun toArray(): CharArray = data.copyOf(size)
+    }
+}
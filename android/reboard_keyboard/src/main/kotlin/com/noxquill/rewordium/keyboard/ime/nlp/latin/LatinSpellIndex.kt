@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp.latin
+
+import java.io.BufferedOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.ByteOrder
+import java.nio.IntBuffer
+import java.nio.channels.FileChannel
+
+/**
+ * Precomputed spell-correction lookups over a [SortedVocabulary]:
+ *
+ *  - A SymSpell-style deletion index. For every word, all strings obtained by
+ *    deleting up to [MAX_DISTANCE] characters from its first [PREFIX_LENGTH]
+ *    characters are hashed and stored as sorted `(hash, wordId)` pairs. A
+ *    query generates the same deletions of itself and binary-searches each
+ *    hash, so a lookup costs ~30 searches instead of a scan over every word.
+ *    Hash collisions only add candidates; [forEachCandidate] verifies each one
+ *    with a bounded Damerau-Levenshtein distance.
+ *  - A phonetic multimap from packed Soundex code to word ids, used as the
+ *    fallback for misspellings more than [MAX_DISTANCE] edits away.
+ *
+ * Both tables are flat int arrays so they can be persisted next to the word
+ * cache and mapped back in with [FileChannel.map] without deserializing.
+ * Immutable; safe to query from any thread.
+ */
+class LatinSpellIndex private constructor(
+    val vocabulary: SortedVocabulary,
+    private val deleteHashes: IntBuffer,
+    private val deleteIds: IntBuffer,
+    private val phoneticCodes: IntBuffer,
+    private val phoneticIds: IntBuffer,
+) {
+    companion object {
+        const val MAX_DISTANCE = 2
+        const val PREFIX_LENGTH = 7
+
+        private const val FILE_MAGIC = 0x52425331 // 'RBS1'
+        private const val HEADER_BYTES = 24
+
+        // Soundex digit per lowercase ASCII letter; '0' means "not coded".
+        private val SOUNDEX_TABLE = "01230120022455012623010202".toCharArray()
+
+        fun build(vocabulary: SortedVocabulary): LatinSpellIndex {
+            // Pack (hash, id) into one long so a single primitive sort orders
+            // the pairs by hash, then id.
+            var pairs = LongArray(vocabulary.size * 16)
+            var pairCount = 0
+            val scratch = IntArray(1 + PREFIX_LENGTH + PREFIX_LENGTH * (PREFIX_LENGTH - 1) / 2)
+            val word = CharArray(PREFIX_LENGTH)
+            for (id in 0 until vocabulary.size) {
+                val len = minOf(vocabulary.lengthOf(id), PREFIX_LENGTH)
+                for (i in 0 until len) word[i] = vocabulary.charAt(id, i)
+                val count = deletionHashes(word, len, scratch)
+                if (pairCount + count > pairs.size) pairs = pairs.copyOf(pairs.size * 2)
+                for (k in 0 until count) {
+                    pairs[pairCount++] = (scratch[k].toLong() shl 32) or id.toLong()
+                }
+            }
+            pairs.sort(0, pairCount)
+            val hashes = IntArray(pairCount) { (pairs[it] shr 32).toInt() }
+            val ids = IntArray(pairCount) { pairs[it].toInt() }
+
+            val phonetic = LongArray(vocabulary.size) { id ->
+                (soundexCode(vocabulary, id).toLong() shl 32) or id.toLong()
+            }
+            phonetic.sort()
+            val codes = IntArray(phonetic.size) { (phonetic[it] shr 32).toInt() }
+            val phoneticIds = IntArray(phonetic.size) { phonetic[it].toInt() }
+
+            return LatinSpellIndex(
+                vocabulary = vocabulary,
+                deleteHashes = IntBuffer.wrap(hashes),
+                deleteIds = IntBuffer.wrap(ids),
+                phoneticCodes = IntBuffer.wrap(codes),
+                phoneticIds = IntBuffer.wrap(phoneticIds),
+            )
+        }
+
+        /**
+         * Maps a file previously written by [save]. Returns null if the file
+         * was written by another app version or for another vocabulary; the
+         * caller is expected to rebuild and overwrite it in that case.
+         */
+        fun load(file: File, appVersionCode: Long, vocabulary: SortedVocabulary): LatinSpellIndex? {
+            RandomAccessFile(file, "r").use { raf ->
+                val buffer = raf.channel.map(FileChannel.MapMode.READ_ONLY, 0, raf.length())
+                buffer.order(ByteOrder.BIG_ENDIAN)
+                if (buffer.getInt(0) != FILE_MAGIC) return null
+                if (buffer.getLong(4) != appVersionCode) return null
+                if (buffer.getInt(12) != vocabulary.checksum) return null
+                val deleteCount = buffer.getInt(16)
+                val phoneticCount = buffer.getInt(20)
+                val expected = HEADER_BYTES.toLong() + 8L * deleteCount + 8L * phoneticCount
+                if (raf.length() != expected) return null
+                buffer.position(HEADER_BYTES)
+                val ints = buffer.slice().order(ByteOrder.BIG_ENDIAN).asIntBuffer()
+                return LatinSpellIndex(
+                    vocabulary = vocabulary,
+                    deleteHashes = ints.sliceRange(0, deleteCount),
+                    deleteIds = ints.sliceRange(deleteCount, deleteCount),
+                    phoneticCodes = ints.sliceRange(2 * deleteCount, phoneticCount),
+                    phoneticIds = ints.sliceRange(2 * deleteCount + phoneticCount, phoneticCount),
+                )
+            }
+        }
+
+        private fun IntBuffer.sliceRange(offset: Int, length: Int): IntBuffer {
+            val dup = duplicate()
+            dup.position(offset)
+            dup.limit(offset + length)
+            return dup.slice()
+        }
+
+        /**
+         * Writes the hashes of all distinct strings obtained by deleting up to
+         * [MAX_DISTANCE] chars from `word[0, len)` into [out] and returns their
+         * count. Hashes are computed without materializing the strings.
+         */
+        private fun deletionHashes(word: CharArray, len: Int, out: IntArray): Int {
+            var count = 0
+            out[count++] = hashSkipping(word, len, -1, -1)
+            for (i in 0 until len) {
+                out[count++] = hashSkipping(word, len, i, -1)
+                for (j in i + 1 until len) {
+                    out[count++] = hashSkipping(word, len, i, j)
+                }
+            }
+            // Repeated letters yield identical deletions; keep each hash once.
+            out.sort(0, count)
+            var unique = 0
+            for (k in 0 until count) {
+                if (k == 0 || out[k] != out[k - 1]) out[unique++] = out[k]
+            }
+            return unique
+        }
+
+        private fun hashSkipping(word: CharArray, len: Int, skipA: Int, skipB: Int): Int {
+            var h = 1
+            for (i in 0 until len) {
+                if (i == skipA || i == skipB) continue
+                h = 31 * h + word[i].code
+            }
+            return h
+        }
+
+        private fun soundexDigit(c: Char): Int {
+            val lower = c.lowercaseChar()
+            return if (lower in 'a'..'z') SOUNDEX_TABLE[lower - 'a'] - '0' else 0
+        }
+
+        private inline fun soundexCode(length: Int, charAt: (Int) -> Char): Int {
+            if (length == 0) return 0
+            val first = charAt(0)
+            var code = first.uppercaseChar().code shl 12
+            var digits = 0
+            var prev = soundexDigit(first)
+            for (i in 1 until length) {
+                val curr = soundexDigit(charAt(i))
+                if (curr != 0 && curr != prev) {
+                    code = code or (curr shl (8 - 4 * digits))
+                    if (++digits == 3) break
+                }
+                prev = curr
+            }
+            return code
+        }
+
+        private fun soundexCode(vocabulary: SortedVocabulary, id: Int): Int {
+            return soundexCode(vocabulary.lengthOf(id)) { vocabulary.charAt(id, it) }
+        }
+
+        /**
+         * Soundex code of [word] packed into an Int (first letter in the high
+         * bits, then three 4-bit digits), e.g. "color" and "colour" share one
+         * code. Matches the classic 4-character encoding one to one.
+         */
+        fun soundexCode(word: CharSequence): Int = soundexCode(word.length) { word[it] }
+
+        /**
+         * Optimal-string-alignment (restricted Damerau-Levenshtein) distance
+         * between [a] and [b], or `max + 1` as soon as it's known to exceed
+         * [max].
+         */
+        fun editDistance(a: CharSequence, b: CharSequence, max: Int): Int {
+            val n = a.length
+            val m = b.length
+            if (kotlin.math.abs(n - m) > max) return max + 1
+            var prevPrev = IntArray(m + 1)
+            var prev = IntArray(m + 1) { it }
+            var curr = IntArray(m + 1)
+            for (i in 1..n) {
+                curr[0] = i
+                var rowMin = i
+                for (j in 1..m) {
+                    val cost = if (a[i - 1] == b[j - 1]) 0 else 1
+                    var d = minOf(prev[j] + 1, curr[j - 1] + 1, prev[j - 1] + cost)
+                    if (i > 1 && j > 1 && a[i - 1] == b[j - 2] && a[i - 2] == b[j - 1]) {
+                        d = minOf(d, prevPrev[j - 2] + 1)
+                    }
+                    curr[j] = d
+                    if (d < rowMin) rowMin = d
+                }
+                if (rowMin > max) return max + 1
+                val recycled = prevPrev
+                prevPrev = prev
+                prev = curr
+                curr = recycled
+            }
+            return minOf(prev[m], max + 1)
+        }
+    }
+
+    /**
+     * Visits every vocabulary word within [maxDistance] (at most
+     * [MAX_DISTANCE]) edits of [query], excluding [query] itself, together
+     * with its distance. Each word is reported once.
+     */
+    fun forEachCandidate(query: String, maxDistance: Int, action: (wordId: Int, distance: Int) -> Unit) {
+        val max = maxDistance.coerceAtMost(MAX_DISTANCE)
+        val len = minOf(query.length, PREFIX_LENGTH)
+        val prefix = CharArray(len) { query[it] }
+        val scratch = IntArray(1 + PREFIX_LENGTH + PREFIX_LENGTH * (PREFIX_LENGTH - 1) / 2)
+        val count = deletionHashes(prefix, len, scratch)
+        val seen = HashSet<Int>()
+        for (k in 0 until count) {
+            var pos = lowerBound(deleteHashes, scratch[k])
+            while (pos < deleteHashes.limit() && deleteHashes.get(pos) == scratch[k]) {
+                val id = deleteIds.get(pos++)
+                if (!seen.add(id)) continue
+                val distance = editDistance(query, WordView(vocabulary, id), max)
+                if (distance in 1..max) action(id, distance)
+            }
+        }
+    }
+
+    /** Visits every vocabulary word sharing the Soundex code of [query]. */
+    fun forEachPhoneticMatch(query: String, action: (wordId: Int) -> Unit) {
+        val code = soundexCode(query)
+        var pos = lowerBound(phoneticCodes, code)
+        while (pos < phoneticCodes.limit() && phoneticCodes.get(pos) == code) {
+            action(phoneticIds.get(pos++))
+        }
+    }
+
+    /** Writes this index to [file] in the format read back by [load]. */
+    fun save(file: File, appVersionCode: Long) {
+        DataOutputStream(BufferedOutputStream(file.outputStream(), 65_536)).use { dos ->
+            dos.writeInt(FILE_MAGIC)
+            dos.writeLong(appVersionCode)
+            dos.writeInt(vocabulary.checksum)
+            dos.writeInt(deleteHashes.limit())
+            dos.writeInt(phoneticCodes.limit())
+            for (buffer in arrayOf(deleteHashes, deleteIds, phoneticCodes, phoneticIds)) {
+                for (i in 0 until buffer.limit()) dos.writeInt(buffer.get(i))
+            }
+        }
+    }
+
+    private fun lowerBound(buffer: IntBuffer, key: Int): Int {
+        var lo = 0
+        var hi = buffer.limit()
+        while (lo < hi) {
+            val mid = (lo + hi) ushr 1
+            if (buffer.get(mid) < key) lo = mid + 1 else hi = mid
+        }
+        return lo
+    }
+
+    /** Exposes a vocabulary word as a [CharSequence] without copying it. */
+    private class WordView(private val vocabulary: SortedVocabulary, private val id: Int) : CharSequence {
+        override val length: Int
+            get() = vocabulary.lengthOf(id)
+
+        override fun get(index: Int): Char = vocabulary.charAt(id, index)
+
+        override fun subSequence(startIndex: Int, endIndex: Int): CharSequence =
+            vocabulary.wordAt(id).subSequence(startIndex, endIndex)
+
+        override fun toString(): String = vocabulary.wordAt(id)
+    }
+}
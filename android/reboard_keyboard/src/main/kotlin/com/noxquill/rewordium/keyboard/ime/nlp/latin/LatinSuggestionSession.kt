@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp.latin
+
+/**
+ * Per-input-session prefix state for [LatinLanguageProvider.suggest].
+ *
+ * While the user types a word, each keystroke either appends a character to
+ * the composing word or removes the last one. The session keeps one [Frame]
+ * per prefix length: the trie cursor for that prefix and the overlay words
+ * (learned, contacts, user dictionary) that still match it. Appending a
+ * character advances the cursor one edge and filters the previous frame's
+ * overlay matches; backspace pops frames. Per-keystroke cost is therefore
+ * proportional to the typed delta and the surviving candidates, not to the
+ * dictionary or the overlay.
+ *
+ * The last ranked result is cached too, so a repeated request for the same
+ * word and context (e.g. after a selection update that didn't change the
+ * text) is answered without any work.
+ *
+ * Cursor jumps and editor switches must call [invalidate]. Word data changes
+ * don't need to: suggest() reads the word data without a lock and passes the
+ * [LatinWordData.version] it took before reading, and all cached state is
+ * dropped when it differs from the one it was built for. A keystroke racing
+ * a writer may thus cache frames of the old data, but they are never reused.
+ * All methods are synchronized on the session. [Frame]s are immutable and can
+ * be used after the call returns.
+ */
+class LatinSuggestionSession {
+    class Frame(
+        val word: String,
+        val node: Int,
+        val overlayMatches: List<String>,
+    )
+
+    private val frames = ArrayList<Frame>()
+    private var index: LatinPrefixIndex? = null
+    private var dataVersion = -1L
+    private var contextKey: String? = null
+    private var cachedWord: String? = null
+    private var cachedResult: List<Pair<String, Int>>? = null
+
+    /** Drops all state; the next [frameFor] starts from the trie root. */
+    @Synchronized
+    fun invalidate() {
+        frames.clear()
+        contextKey = null
+        cachedWord = null
+        cachedResult = null
+    }
+
+    /**
+     * Returns the frame for [word], reusing the longest cached frame that is
+     * a prefix of it. [allOverlayWords] is only consulted when no frame can be
+     * reused. [version] is the word data version taken before the read.
+     */
+    @Synchronized
+    fun frameFor(
+        word: String,
+        prefixIndex: LatinPrefixIndex?,
+        version: Long,
+        allOverlayWords: Collection<String>,
+    ): Frame {
+        if (prefixIndex !== index || version != dataVersion) {
+            invalidate()
+            index = prefixIndex
+            dataVersion = version
+        }
+        // Backspace (or a retyped different char): pop frames that no
+        // longer prefix the word.
+        while (frames.isNotEmpty()) {
+            val top = frames.last()
+            if (word.startsWith(top.word)) break
+            frames.removeAt(frames.size - 1)
+        }
+        if (frames.isEmpty()) {
+            frames.add(Frame(
+                word = "",
+                node = LatinPrefixIndex.ROOT,
+                overlayMatches = ArrayList(allOverlayWords),
+            ))
+        }
+        // Append: advance one trie edge per new char and narrow the overlay.
+        var frame = frames.last()
+        while (frame.word.length < word.length) {
+            val prefix = word.substring(0, frame.word.length + 1)
+            val c = prefix.last()
+            val node = if (frame.node == LatinPrefixIndex.NO_NODE || prefixIndex == null) {
+                LatinPrefixIndex.NO_NODE
+            } else {
+                prefixIndex.child(frame.node, c)
+            }
+            frame = Frame(
+                word = prefix,
+                node = node,
+                overlayMatches = frame.overlayMatches.filter { it.startsWith(prefix) },
+            )
+            frames.add(frame)
+        }
+        return frame
+    }
+
+    /** Cached ranked result for [word] in [context], if nothing changed since. */
+    @Synchronized
+    fun cachedResult(word: String, context: String, version: Long): List<Pair<String, Int>>? {
+        if (version != dataVersion) return null
+        return cachedResult.takeIf { word == cachedWord && context == contextKey }
+    }
+
+    /** Caches [result], unless the word data changed since [frameFor] at [version]. */
+    @Synchronized
+    fun cacheResult(word: String, context: String, version: Long, result: List<Pair<String, Int>>) {
+        if (version != dataVersion) return
+        cachedWord = word
+        contextKey = context
+        cachedResult = result
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp.latin
+
+import kotlinx.coroutines.sync.Mutex
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * Word frequencies of [LatinLanguageProvider], split so that readers never
+ * wait:
+ *
+ * - An immutable [Generation] (base vocabulary and the indexes built over
+ *   it), published through an atomic reference. Readers take [generation]
+ *   once and use it for the whole call; preload publishes a new one via
+ *   [publish] when an index becomes available.
+ * - A small mutable overlay of learned, contact and user-dictionary words
+ *   and frequency changes to base words, in a [ConcurrentHashMap]. A value
+ *   of 0 masks a base word. Iteration is weakly consistent, which is fine for
+ *   ranking; callers needing a stable view copy it (it's small).
+ *
+ * [read] is lock-free. Writers go through [withLock], which only serializes
+ * writers among themselves so read-modify-write updates don't race. Every
+ * time a writer had to wait for another one, [contendedWrites] is bumped.
+ *
+ * [version] is bumped after every write, once the overlay is updated. State
+ * derived from a lock-free read is stamped with the version taken before the
+ * read and dropped when it no longer matches.
+ */
+class LatinWordData {
+    data class Generation(
+        val vocabulary: SortedVocabulary? = null,
+        val prefixIndex: LatinPrefixIndex? = null,
+        val spellIndex: LatinSpellIndex? = null,
+        val trigramModel: TrigramModel? = null,
+    )
+
+    private val current = AtomicReference(Generation())
+
+    @PublishedApi
+    internal val overlay = ConcurrentHashMap<String, Int>()
+
+    @PublishedApi
+    internal val writeMutex = Mutex()
+
+    @PublishedApi
+    internal val contention = AtomicLong(0)
+
+    @PublishedApi
+    internal val writes = AtomicLong(0)
+
+    /** The currently published generation. */
+    val generation: Generation
+        get() = current.get()
+
+    /** Number of completed writes; read it before reading the overlay. */
+    val version: Long
+        get() = writes.get()
+
+    /** Number of writes that had to wait for another writer. */
+    val contendedWrites: Long
+        get() = contention.get()
+
+    /** Atomically replaces the generation with `update(current)`. */
+    inline fun publish(update: (Generation) -> Generation): Generation {
+        while (true) {
+            val old = generation
+            val new = update(old)
+            if (compareAndSet(old, new)) return new
+        }
+    }
+
+    @PublishedApi
+    internal fun compareAndSet(old: Generation, new: Generation): Boolean {
+        return current.compareAndSet(old, new)
+    }
+
+    /** Runs [action] on the live overlay without locking. */
+    inline fun <R> read(action: (Map<String, Int>) -> R): R = action(overlay)
+
+    /** Runs [action] on the overlay, exclusive of other writers only. */
+    suspend inline fun <R> withLock(action: (MutableMap<String, Int>) -> R): R {
+        if (!writeMutex.tryLock()) {
+            contention.incrementAndGet()
+            writeMutex.lock()
+        }
+        try {
+            return action(overlay)
+        } finally {
+            writes.incrementAndGet()
+            writeMutex.unlock()
+        }
+    }
+
+    /**
+     * Current frequency of [word]: the overlay entry if there is one, else
+     * the base vocabulary's in [generation]. Null if the word is unknown or
+     * masked.
+     */
+    fun frequencyOf(word: String, generation: Generation = this.generation): Int? {
+        val overlayFrequency = overlay[word]
+        if (overlayFrequency != null) return overlayFrequency.takeIf { it > 0 }
+        val vocabulary = generation.vocabulary ?: return null
+        val id = vocabulary.indexOf(word)
+        return if (id >= 0) vocabulary.frequencyOf(id) else null
+    }
+}
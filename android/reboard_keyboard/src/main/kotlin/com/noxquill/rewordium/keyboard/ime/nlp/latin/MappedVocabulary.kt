@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp.latin
+
+import java.io.BufferedOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.CharBuffer
+import java.nio.IntBuffer
+import java.nio.channels.FileChannel
+
+/**
+ * Read-only, memory-mapped [SortedVocabulary]. The whole dictionary is one
+ * file mapped with [FileChannel.map] and queried in place, so opening it costs
+ * a header check instead of materializing ~50k boxed String/Integer pairs.
+ *
+ * File format (big endian):
+ * ```
+ * magic(Int) appVersionCode(Long) wordCount(Int) poolLength(Int) checksum(Int)
+ * offsets[wordCount + 1](Int)        // char offset of each word in the pool
+ * frequencies[wordCount](UByte)      // padded with zeros to a multiple of 4
+ * pool[poolLength](Char)             // UTF-16 code units, words in sorted order
+ * ```
+ */
+class MappedVocabulary private constructor(
+    private val offsets: IntBuffer,
+    private val frequencies: ByteBuffer,
+    private val pool: CharBuffer,
+    override val checksum: Int,
+) : SortedVocabulary {
+    override val size: Int = frequencies.limit()
+
+    override fun lengthOf(id: Int): Int = offsets.get(id + 1) - offsets.get(id)
+
+    override fun charAt(id: Int, index: Int): Char = pool.get(offsets.get(id) + index)
+
+    override fun frequencyOf(id: Int): Int = frequencies.get(id).toInt() and 0xFF
+
+    override fun wordAt(id: Int): String {
+        val start = offsets.get(id)
+        val chars = CharArray(offsets.get(id + 1) - start)
+        for (i in chars.indices) chars[i] = pool.get(start + i)
+        return String(chars)
+    }
+
+    companion object {
+        private const val FILE_MAGIC = 0x52424434 // 'RBD4'
+        private const val HEADER_BYTES = 24
+
+        /**
+         * Writes [data] (word → frequency 0..255) to [file] in the format
+         * read by [open]. Words are sorted so ids follow [SortedVocabulary]
+         * order. The checksum is computed here once and stored in the header.
+         */
+        fun write(file: File, appVersionCode: Long, data: Map<String, Int>) {
+            val vocabulary = ArrayVocabulary.fromMap(data.mapValues { it.value.coerceIn(0, 255) })
+            val words = Array(vocabulary.size) { vocabulary.wordAt(it) }
+            val poolLength = words.sumOf { it.length }
+            DataOutputStream(BufferedOutputStream(file.outputStream(), 65_536)).use { dos ->
+                dos.writeInt(FILE_MAGIC)
+                dos.writeLong(appVersionCode)
+                dos.writeInt(words.size)
+                dos.writeInt(poolLength)
+                dos.writeInt(vocabulary.checksum)
+                var offset = 0
+                dos.writeInt(offset)
+                for (word in words) {
+                    offset += word.length
+                    dos.writeInt(offset)
+                }
+                for (id in words.indices) dos.writeByte(vocabulary.frequencyOf(id))
+                repeat(padding(words.size)) { dos.writeByte(0) }
+                for (word in words) dos.writeChars(word)
+            }
+        }
+
+        /**
+         * Maps [file]. Returns null if it was written by another app version
+         * or another format revision; throws on I/O failure or truncation.
+         */
+        fun open(file: File, appVersionCode: Long): MappedVocabulary? {
+            RandomAccessFile(file, "r").use { raf ->
+                val buffer = raf.channel.map(FileChannel.MapMode.READ_ONLY, 0, raf.length())
+                buffer.order(ByteOrder.BIG_ENDIAN)
+                if (buffer.getInt(0) != FILE_MAGIC) return null
+                if (buffer.getLong(4) != appVersionCode) return null
+                val count = buffer.getInt(12)
+                val poolLength = buffer.getInt(16)
+                val checksum = buffer.getInt(20)
+                val offsetsStart = HEADER_BYTES
+                val frequenciesStart = offsetsStart + 4 * (count + 1)
+                val poolStart = frequenciesStart + count + padding(count)
+                check(raf.length() == poolStart + 2L * poolLength) { "Truncated vocabulary file" }
+                return MappedVocabulary(
+                    offsets = buffer.region(offsetsStart, 4 * (count + 1)).asIntBuffer(),
+                    frequencies = buffer.region(frequenciesStart, count),
+                    pool = buffer.region(poolStart, 2 * poolLength).asCharBuffer(),
+                    checksum = checksum,
+                )
+            }
+        }
+
+        private fun padding(count: Int): Int = (4 - count % 4) % 4
+
+        private fun ByteBuffer.region(offset: Int, length: Int): ByteBuffer {
+            val dup = duplicate()
+            dup.position(offset)
+            dup.limit(offset + length)
+            return dup.slice().order(ByteOrder.BIG_ENDIAN)
+        }
+    }
+}
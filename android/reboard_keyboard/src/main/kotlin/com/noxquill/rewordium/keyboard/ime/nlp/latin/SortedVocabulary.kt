@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp.latin
+
+/**
+ * Read-only word list addressed by dense integer ids `0 until size`, where ids
+ * follow the lexicographic (UTF-16 code unit) order of the words. Because the
+ * order is lexicographic, every prefix maps to one contiguous id range, which
+ * is what [LatinPrefixIndex] builds its trie on.
+ *
+ * Implementations must be immutable after construction so that indexes built
+ * on top of them can be shared between threads without locking.
+ */
+interface SortedVocabulary {
+    /** Number of words in this vocabulary. */
+    val size: Int
+
+    /**
+     * Order-sensitive hash over all words and frequencies, see [computeChecksum].
+     * Computed once, when the vocabulary is built or written, never per read.
+     * Indexes persisted next to a vocabulary store it so they're never paired
+     * with a different id space.
+     */
+    val checksum: Int
+
+    /** Length in UTF-16 code units of the word with [id]. */
+    fun lengthOf(id: Int): Int
+
+    /** Code unit at [index] of the word with [id]. */
+    fun charAt(id: Int, index: Int): Char
+
+    /** Base frequency (0..255) of the word with [id]. */
+    fun frequencyOf(id: Int): Int
+
+    /** The word with [id] as a [String]. May allocate. */
+    fun wordAt(id: Int): String
+
+    /** Id of [word], or -1 if it isn't part of this vocabulary. */
+    fun indexOf(word: CharSequence): Int {
+        var lo = 0
+        var hi = size - 1
+        while (lo <= hi) {
+            val mid = (lo + hi) ushr 1
+            val cmp = compareWord(mid, word)
+            when {
+                cmp < 0 -> lo = mid + 1
+                cmp > 0 -> hi = mid - 1
+                else -> return mid
+            }
+        }
+        return -1
+    }
+
+    /** Whether the word with [id] starts with [prefix], without materializing it. */
+    fun startsWith(id: Int, prefix: CharSequence): Boolean {
+        if (lengthOf(id) < prefix.length) return false
+        for (i in prefix.indices) {
+            if (charAt(id, i) != prefix[i]) return false
+        }
+        return true
+    }
+
+    /** Compares the word with [id] against [other] without materializing it. */
+    fun compareWord(id: Int, other: CharSequence): Int {
+        val len = lengthOf(id)
+        val n = minOf(len, other.length)
+        for (i in 0 until n) {
+            val a = charAt(id, i)
+            val b = other[i]
+            if (a != b) return a.compareTo(b)
+        }
+        return len - other.length
+    }
+}
+
+/**
+ * Computes [SortedVocabulary.checksum] by reading every word and frequency.
+ * Touches the whole vocabulary; only for building one.
+ */
+fun SortedVocabulary.computeChecksum(): Int {
+    var h = size
+    for (id in 0 until size) {
+        for (i in 0 until lengthOf(id)) h = 31 * h + charAt(id, i).code
+        h = 31 * h + frequencyOf(id)
+    }
+    return h
+}
+
+/**
+ * Heap-backed [SortedVocabulary]. Used when the dictionary was just parsed from
+ * the JSON asset and no compact on-disk representation exists yet.
+ */
+class ArrayVocabulary private constructor(
+    private val words: Array<String>,
+    private val frequencies: IntArray,
+) : SortedVocabulary {
+    override val size: Int
+        get() = words.size
+
+    override val checksum: Int = computeChecksum()
+
+    override fun lengthOf(id: Int): Int = words[id].length
+
+    override fun charAt(id: Int, index: Int): Char = words[id][index]
+
+    override fun frequencyOf(id: Int): Int = frequencies[id]
+
+    override fun wordAt(id: Int): String = words[id]
+
+    companion object {
+        fun fromMap(data: Map<String, Int>): ArrayVocabulary {
+            val words = data.keys.toTypedArray()
+            words.sort()
+            val frequencies = IntArray(words.size) { data[words[it]] ?: 0 }
+            return ArrayVocabulary(words, frequencies)
+        }
+    }
+}
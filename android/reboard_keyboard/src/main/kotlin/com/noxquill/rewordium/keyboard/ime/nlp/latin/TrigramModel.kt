@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp.latin
+
+import java.io.BufferedOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.IntBuffer
+import java.nio.LongBuffer
+import java.nio.channels.FileChannel
+
+/**
+ * Read-only, memory-mapped trigram table: `(w1, w2) → [(next, score)]`, with
+ * scores quantized to one byte and next words stored as [SortedVocabulary]
+ * ids. Scoring across orders (trigram → bigram → unigram) is stupid backoff,
+ * see [BACKOFF].
+ *
+ * Contexts are keyed by the two words' [SortedVocabulary] ids packed into a
+ * Long, so keys are exact and a lookup is two vocabulary searches plus one
+ * binary search over a mapped [LongBuffer], none of which allocate; callers
+ * iterate the returned range with [nextIdAt]/[scoreAt]. Contexts with a word
+ * outside the vocabulary can't be keyed and are dropped when writing.
+ *
+ * File format (big endian):
+ * ```
+ * magic(Int) appVersionCode(Long) vocabularyChecksum(Int) contextCount(Int) entryCount(Int)
+ * contextKeys[contextCount](Long)        // sorted ascending
+ * contextOffsets[contextCount + 1](Int)  // entry range of each context
+ * nextIds[entryCount](Int)               // per context sorted by descending score
+ * scores[entryCount](UByte)
+ * ```
+ */
+class TrigramModel private constructor(
+    val vocabulary: SortedVocabulary,
+    private val contextKeys: LongBuffer,
+    private val contextOffsets: IntBuffer,
+    private val nextIds: IntBuffer,
+    private val scores: ByteBuffer,
+) {
+    companion object {
+        /** Weight applied when backing off from a known trigram context to bigrams. */
+        const val BACKOFF = 0.4
+
+        /** [rangeOf] result when the context is unknown. */
+        const val NO_RANGE = -1L
+
+        private const val FILE_MAGIC = 0x52425432 // 'RBT2'
+        private const val HEADER_BYTES = 24
+
+        private fun contextKey(id1: Int, id2: Int): Long {
+            return (id1.toLong() shl 32) or id2.toLong()
+        }
+
+        /**
+         * Writes [data] (`"w1 w2"` → next word → score 0..255) to [file].
+         * Contexts and next words with words missing from [vocabulary] are dropped.
+         */
+        fun write(file: File, appVersionCode: Long, vocabulary: SortedVocabulary, data: Map<String, Map<String, Int>>) {
+            class Context(val key: Long, val ids: IntArray, val scores: IntArray)
+            val contexts = ArrayList<Context>(data.size)
+            for ((context, inner) in data) {
+                val words = context.trim().split(' ')
+                if (words.size != 2) continue
+                val id1 = vocabulary.indexOf(words[0])
+                val id2 = vocabulary.indexOf(words[1])
+                if (id1 < 0 || id2 < 0) continue
+                val entries = inner.entries
+                    .mapNotNull { (word, score) ->
+                        val id = vocabulary.indexOf(word)
+                        if (id >= 0) id to score.coerceIn(0, 255) else null
+                    }
+                    .sortedByDescending { it.second }
+                if (entries.isEmpty()) continue
+                contexts.add(Context(
+                    key = contextKey(id1, id2),
+                    ids = IntArray(entries.size) { entries[it].first },
+                    scores = IntArray(entries.size) { entries[it].second },
+                ))
+            }
+            contexts.sortBy { it.key }
+            val entryCount = contexts.sumOf { it.ids.size }
+            DataOutputStream(BufferedOutputStream(file.outputStream(), 65_536)).use { dos ->
+                dos.writeInt(FILE_MAGIC)
+                dos.writeLong(appVersionCode)
+                dos.writeInt(vocabulary.checksum)
+                dos.writeInt(contexts.size)
+                dos.writeInt(entryCount)
+                for (context in contexts) dos.writeLong(context.key)
+                var offset = 0
+                dos.writeInt(offset)
+                for (context in contexts) {
+                    offset += context.ids.size
+                    dos.writeInt(offset)
+                }
+                for (context in contexts) context.ids.forEach { dos.writeInt(it) }
+                for (context in contexts) context.scores.forEach { dos.writeByte(it) }
+            }
+        }
+
+        /**
+         * Maps [file]. Returns null if it was written by another app version,
+         * format revision or for another vocabulary.
+         */
+        fun open(file: File, appVersionCode: Long, vocabulary: SortedVocabulary): TrigramModel? {
+            RandomAccessFile(file, "r").use { raf ->
+                val buffer = raf.channel.map(FileChannel.MapMode.READ_ONLY, 0, raf.length())
+                buffer.order(ByteOrder.BIG_ENDIAN)
+                if (buffer.getInt(0) != FILE_MAGIC) return null
+                if (buffer.getLong(4) != appVersionCode) return null
+                if (buffer.getInt(12) != vocabulary.checksum) return null
+                val contextCount = buffer.getInt(16)
+                val entryCount = buffer.getInt(20)
+                val offsetsStart = HEADER_BYTES + 8 * contextCount
+                val idsStart = offsetsStart + 4 * (contextCount + 1)
+                val scoresStart = idsStart + 4 * entryCount
+                check(raf.length() == scoresStart.toLong() + entryCount) { "Truncated trigram file" }
+                return TrigramModel(
+                    vocabulary = vocabulary,
+                    contextKeys = buffer.region(HEADER_BYTES, 8 * contextCount).asLongBuffer(),
+                    contextOffsets = buffer.region(offsetsStart, 4 * (contextCount + 1)).asIntBuffer(),
+                    nextIds = buffer.region(idsStart, 4 * entryCount).asIntBuffer(),
+                    scores = buffer.region(scoresStart, entryCount),
+                )
+            }
+        }
+
+        /**
+         * Turns [scores], the bigram scores of the continuations of w2 that
+         * start with [composingWord], into stupid-backoff scores for context
+         * (w1, w2): each is scaled by [BACKOFF], then replaced by the trigram
+         * score where one exists. Trigram scores are the static one from
+         * [model] in [range] (see [rangeOf]) plus the [learned] one times
+         * [learnedWeight], capped at 255.
+         *
+         * The model is read without allocating, and words are materialized
+         * only for matching continuations: at most [limit] static ones (the
+         * best, since ranges are sorted by score), plus the learned ones.
+         */
+        fun backoffScores(
+            model: TrigramModel?,
+            range: Long,
+            learned: Map<String, Int>,
+            learnedWeight: Double,
+            composingWord: String,
+            limit: Int,
+            scores: MutableMap<String, Int>,
+        ) {
+            // Backoff scores first; trigram scores below replace them.
+            for (entry in scores.entries) entry.setValue((entry.value * BACKOFF).toInt())
+            if (model != null && range != NO_RANGE) {
+                var taken = 0
+                for (i in (range ushr 32).toInt() until range.toInt()) {
+                    if (taken == limit) break
+                    val id = model.nextIdAt(i)
+                    if (model.vocabulary.startsWith(id, composingWord)) {
+                        scores[model.vocabulary.wordAt(id)] = model.scoreAt(i)
+                        taken++
+                    }
+                }
+            }
+            for ((word, score) in learned) {
+                if (word.startsWith(composingWord)) {
+                    val staticScore = model?.scoreOf(range, model.vocabulary.indexOf(word)) ?: 0
+                    val learnedBoost = (score * learnedWeight).toInt()
+                    scores[word] = (staticScore + learnedBoost).coerceAtMost(255)
+                }
+            }
+        }
+
+        private fun ByteBuffer.region(offset: Int, length: Int): ByteBuffer {
+            val dup = duplicate()
+            dup.position(offset)
+            dup.limit(offset + length)
+            return dup.slice().order(ByteOrder.BIG_ENDIAN)
+        }
+    }
+
+    /**
+     * Entry range of context ([w1], [w2]) packed as `start shl 32 or end`, or
+     * [NO_RANGE]. Allocation-free.
+     */
+    fun rangeOf(w1: CharSequence, w2: CharSequence): Long {
+        val id1 = vocabulary.indexOf(w1)
+        if (id1 < 0) return NO_RANGE
+        val id2 = vocabulary.indexOf(w2)
+        if (id2 < 0) return NO_RANGE
+        val key = contextKey(id1, id2)
+        var lo = 0
+        var hi = contextKeys.limit() - 1
+        while (lo <= hi) {
+            val mid = (lo + hi) ushr 1
+            val value = contextKeys.get(mid)
+            when {
+                value < key -> lo = mid + 1
+                value > key -> hi = mid - 1
+                else -> {
+                    return (contextOffsets.get(mid).toLong() shl 32) or contextOffsets.get(mid + 1).toLong()
+                }
+            }
+        }
+        return NO_RANGE
+    }
+
+    fun nextIdAt(index: Int): Int = nextIds.get(index)
+
+    /** Score of [nextId] within [range] (from [rangeOf]), 0 if it isn't there. Allocation-free. */
+    fun scoreOf(range: Long, nextId: Int): Int {
+        if (range == NO_RANGE || nextId < 0) return 0
+        for (i in (range ushr 32).toInt() until range.toInt()) {
+            if (nextIds.get(i) == nextId) return scoreAt(i)
+        }
+        return 0
+    }
+
+    fun scoreAt(index: Int): Int = scores.get(index).toInt() and 0xFF
+}
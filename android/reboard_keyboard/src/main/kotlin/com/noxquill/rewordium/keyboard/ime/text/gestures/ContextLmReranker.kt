@@ -24,7 +24,11 @@ import kotlin.math.ln
  * rerank beam-search candidates by filtering out contextually-nonsensical words.
  */
 class ContextLmReranker(context: Context) {
-    
+    companion object {
+        /** Number of trailing context words the ranking depends on. */
+        const val CONTEXT_WORDS = 3
+    }
+
     // In a real implementation, this wraps a TFLite model running a causal transformer
     // that takes a context window (e.g. last 3-5 words) and outputs the log-probability
     // for candidate words.
@@ -45,7 +49,7 @@ class ContextLmReranker(context: Context) {
         }
 
         // We only care about the last 2-3 words for immediate grammatical context
-        val recentContext = contextWords.takeLast(3).joinToString(" ").lowercase()
+        val recentContext = contextWords.takeLast(CONTEXT_WORDS).joinToString(" ").lowercase()
 
         return candidates.map { (word, spatialProb) ->
             val lmLogProb = runCausalLm(recentContext, word.lowercase())
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.text.gestures
+
+import kotlin.math.floor
+
+/**
+ * Quantized form of a glide gesture, used as the suggestion cache key: the
+ * path resampled to [POINTS] points spaced evenly along it, each snapped to a
+ * grid of `cellSize` squares, plus the path length in cells and a caller
+ * supplied salt for everything else the result depends on.
+ *
+ * Two swipes of the same word that stay in the same cells share a
+ * fingerprint, so repeated swipes hit the cache, and building or comparing
+ * one never touches more than a few ints instead of the raw point buffers.
+ */
+class GestureFingerprint private constructor(private val cells: IntArray) {
+    private val hash = cells.contentHashCode()
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other !is GestureFingerprint) return false
+        return hash == other.hash && cells.contentEquals(other.cells)
+    }
+
+    override fun hashCode(): Int = hash
+
+    companion object {
+        /** Resampled points per fingerprint. */
+        const val POINTS = 16
+
+        /**
+         * Fingerprints [gesture] on a grid of [cellSize] pixels. [salt] is stored
+         * as is, so callers fold in anything else that changes the suggestions.
+         */
+        fun of(gesture: StatisticalGlideTypingClassifier.Gesture, cellSize: Float, salt: Int): GestureFingerprint {
+            val cells = IntArray(POINTS + 2)
+            val pointCount = gesture.pointCount
+            val length = gesture.getLength()
+            val step = length / (POINTS - 1)
+            // Walk the path once, emitting a point every [step] of arc length.
+            var segment = 1
+            var walked = 0f
+            var segmentLength = if (pointCount > 1) segmentLength(gesture, 1) else 0f
+            for (i in 0 until POINTS) {
+                val target = step * i
+                while (segment < pointCount - 1 && walked + segmentLength < target) {
+                    walked += segmentLength
+                    segment++
+                    segmentLength = segmentLength(gesture, segment)
+                }
+                val x: Float
+                val y: Float
+                if (pointCount < 2 || segmentLength == 0f) {
+                    x = gesture.getX(minOf(segment, pointCount - 1).coerceAtLeast(0))
+                    y = gesture.getY(minOf(segment, pointCount - 1).coerceAtLeast(0))
+                } else {
+                    val t = ((target - walked) / segmentLength).coerceIn(0f, 1f)
+                    x = gesture.getX(segment - 1) + t * (gesture.getX(segment) - gesture.getX(segment - 1))
+                    y = gesture.getY(segment - 1) + t * (gesture.getY(segment) - gesture.getY(segment - 1))
+                }
+                cells[i] = (quantize(x, cellSize) shl 16) or (quantize(y, cellSize) and 0xFFFF)
+            }
+            cells[POINTS] = quantize(length, cellSize)
+            cells[POINTS + 1] = salt
+            return GestureFingerprint(cells)
+        }
+
+        private fun segmentLength(gesture: StatisticalGlideTypingClassifier.Gesture, i: Int): Float {
+            return StatisticalGlideTypingClassifier.Gesture.distance(
+                gesture.getX(i - 1), gesture.getY(i - 1), gesture.getX(i), gesture.getY(i),
+            )
+        }
+
+        private fun quantize(value: Float, cellSize: Float): Int = floor(value / cellSize).toInt()
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.text.gestures
+
+/**
+ * Ring buffer of gesture samples (x, y, event time) in primitive arrays, so
+ * recording a swipe allocates nothing per point. Allocated once and reused
+ * across gestures via [reset].
+ *
+ * Samples are addressed by their absolute index since the last [reset]: the
+ * buffer holds indices [firstIndex] until [count], and once more than
+ * `capacity` samples were added the oldest ones are overwritten. There is a
+ * single writer; [count] is published after the sample is written, so a
+ * reader on another thread that reads [count] first sees complete samples.
+ */
+class GestureSampleBuffer(capacity: Int = DEFAULT_CAPACITY) {
+    companion object {
+        /**
+         * Samples kept per gesture. A long swipe with batched history is a few
+         * hundred samples; this leaves headroom without growing.
+         */
+        const val DEFAULT_CAPACITY = 1024
+    }
+
+    private val capacity = Integer.highestOneBit((capacity - 1).coerceAtLeast(1)) shl 1
+    private val mask = this.capacity - 1
+    private val xs = FloatArray(this.capacity)
+    private val ys = FloatArray(this.capacity)
+    private val ts = LongArray(this.capacity)
+
+    /** Number of samples added since the last [reset]; the next sample's index. */
+    @Volatile
+    var count: Int = 0
+        private set
+
+    /** Index of the oldest sample still held. */
+    val firstIndex: Int
+        get() = (count - capacity).coerceAtLeast(0)
+
+    /** Number of samples held. */
+    val size: Int
+        get() = count.coerceAtMost(capacity)
+
+    val isEmpty: Boolean
+        get() = count == 0
+
+    fun x(index: Int): Float = xs[index and mask]
+
+    fun y(index: Int): Float = ys[index and mask]
+
+    fun t(index: Int): Long = ts[index and mask]
+
+    fun add(x: Float, y: Float, t: Long) {
+        val index = count
+        xs[index and mask] = x
+        ys[index and mask] = y
+        ts[index and mask] = t
+        count = index + 1
+    }
+
+    /** Appends sample [index] of [other]. */
+    fun add(other: GestureSampleBuffer, index: Int) {
+        add(other.x(index), other.y(index), other.t(index))
+    }
+
+    fun reset() {
+        count = 0
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.text.gestures
+
+import android.os.Process
+import java.io.File
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Future
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Small fixed worker pool for glide candidate scoring, shared by all
+ * classifiers of the process.
+ *
+ * Java can't pin threads to cores, so "big cores only" is approximated by
+ * sizing the pool to the number of fast cores (those whose max frequency is
+ * above the slowest cluster's) and running the workers at foreground
+ * priority, which the scheduler places on the big cluster. The size can be
+ * overridden with [setParallelism] (wired to the glide scoring threads
+ * preference); every pass is timed so the effect of a setting is visible in
+ * devtools.
+ */
+object GlideScoringPool {
+    /** Upper bound for the automatic pool size. */
+    private const val MAX_AUTO_PARALLELISM = 4
+
+    /** Partitions smaller than this aren't worth a thread hop. */
+    private const val MIN_PARTITION_SIZE = 32
+
+    /** Number of cores in the fastest clusters, or all cores on homogeneous CPUs. */
+    val fastCoreCount: Int by lazy { detectFastCoreCount() }
+
+    private val threadIds = AtomicInteger(0)
+    private val executor = ThreadPoolExecutor(
+        1, 1, 30L, TimeUnit.SECONDS, LinkedBlockingQueue(),
+    ) { runnable ->
+        Thread({
+            Process.setThreadPriority(Process.THREAD_PRIORITY_FOREGROUND)
+            runnable.run()
+        }, "GlideScoring-${threadIds.incrementAndGet()}").apply { isDaemon = true }
+    }.apply { allowCoreThreadTimeOut(true) }
+
+    /** Number of partitions a scoring pass is split into at most. */
+    @Volatile
+    var parallelism: Int = 1
+        private set
+
+    private val passes = AtomicLong(0)
+    private val totalPassNanos = AtomicLong(0)
+    private val totalCandidates = AtomicLong(0)
+
+    @Volatile
+    var lastPassNanos: Long = 0
+        private set
+
+    init {
+        setParallelism(0)
+    }
+
+    /** Sets the pool size; 0 or less picks it from [fastCoreCount]. */
+    @Synchronized
+    fun setParallelism(requested: Int) {
+        val size = if (requested > 0) {
+            requested.coerceAtMost(Runtime.getRuntime().availableProcessors())
+        } else {
+            fastCoreCount.coerceIn(1, MAX_AUTO_PARALLELISM)
+        }
+        // The caller scores one partition itself, so the pool needs one thread less.
+        val threads = (size - 1).coerceAtLeast(1)
+        if (threads > executor.maximumPoolSize) {
+            executor.maximumPoolSize = threads
+            executor.corePoolSize = threads
+        } else {
+            executor.corePoolSize = threads
+            executor.maximumPoolSize = threads
+        }
+        parallelism = size
+    }
+
+    /**
+     * Splits `0 until size` into contiguous ranges and runs [action] for each,
+     * with the partition index, on the pool; partition 0 runs on the calling
+     * thread. Returns once all are done, with the number of partitions used.
+     * Partitions are ordered by range, so merging their results in partition
+     * order keeps the original candidate order for ties.
+     */
+    fun forEachPartition(size: Int, action: (partition: Int, from: Int, to: Int) -> Unit): Int {
+        val partitions = minOf(parallelism, (size + MIN_PARTITION_SIZE - 1) / MIN_PARTITION_SIZE).coerceAtLeast(1)
+        if (partitions == 1) {
+            action(0, 0, size)
+            return 1
+        }
+        val chunk = (size + partitions - 1) / partitions
+        val futures = arrayOfNulls<Future<*>>(partitions)
+        for (p in 1 until partitions) {
+            val from = p * chunk
+            val to = minOf(size, from + chunk)
+            futures[p] = executor.submit { action(p, from, to) }
+        }
+        try {
+            action(0, 0, minOf(size, chunk))
+        } finally {
+            for (p in 1 until partitions) {
+                try {
+                    futures[p]!!.get()
+                } catch (e: ExecutionException) {
+                    throw e.cause ?: e
+                }
+            }
+        }
+        return partitions
+    }
+
+    /** Records a scoring pass over [candidates] words that took [nanos]. */
+    fun recordPass(nanos: Long, candidates: Int) {
+        lastPassNanos = nanos
+        passes.incrementAndGet()
+        totalPassNanos.addAndGet(nanos)
+        totalCandidates.addAndGet(candidates.toLong())
+    }
+
+    /** One-line summary of the pool configuration and pass timings, for devtools. */
+    fun describe(): String {
+        val count = passes.get()
+        val average = if (count > 0) totalPassNanos.get() / count / 1000 else 0
+        val candidates = if (count > 0) totalCandidates.get() / count else 0
+        return "threads=$parallelism (fast cores: $fastCoreCount), passes=$count, " +
+            "avg=${average}µs for $candidates words, last=${lastPassNanos / 1000}µs"
+    }
+
+    private fun detectFastCoreCount(): Int {
+        val cores = Runtime.getRuntime().availableProcessors()
+        val maxFrequencies = (0 until cores).map { cpu ->
+            try {
+                File("/sys/devices/system/cpu/cpu$cpu/cpufreq/cpuinfo_max_freq").readText().trim().toLong()
+            } catch (e: Exception) {
+                -1L
+            }
+        }
+        if (maxFrequencies.any { it <= 0 }) return (cores / 2).coerceAtLeast(1)
+        val slowest = maxFrequencies.min()
+        val fast = maxFrequencies.count { it > slowest }
+        return if (fast > 0) fast else cores
+    }
+}
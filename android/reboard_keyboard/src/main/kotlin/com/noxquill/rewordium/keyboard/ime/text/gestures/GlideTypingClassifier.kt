@@ -35,9 +35,10 @@ interface GlideTypingClassifier {
     /**
      * Called to notify gesture classifier that it can add a new point to the gesture.
      *
-     * @param position The position to add
+     * @param samples The samples of the gesture, owned by the detector
+     * @param index The index of the sample to add; copy it, [samples] is reused
      */
-    fun addGesturePoint(position: GlideTypingGesture.Detector.Position)
+    fun addGesturePoint(samples: GestureSampleBuffer, index: Int)
 
     /**
      * Change the layout of the gesture classifier.
@@ -55,6 +56,25 @@ interface GlideTypingClassifier {
      */
     fun setWordData(subtype: Subtype, force: Boolean = false)
 
+    /**
+     * Adds words that weren't in the word data of [subtype] before, without
+     * re-reading the rest of it.
+     *
+     * @param frequencies the new words and their frequencies, as returned by
+     *              [com.noxquill.rewordium.keyboard.ime.nlp.SuggestionProvider.getFrequencyMap].
+     * @return false if the classifier can't patch its word data in place, in
+     *              which case the caller falls back to [setWordData] with force.
+     */
+    fun addWords(subtype: Subtype, frequencies: Map<String, Double>): Boolean = false
+
+    /**
+     * Changes the frequencies of words already in the word data of [subtype].
+     *
+     * @return false if the classifier can't patch its word data in place, in
+     *              which case the caller falls back to [setWordData] with force.
+     */
+    fun updateFrequencies(subtype: Subtype, frequencies: Map<String, Double>): Boolean = false
+
     /**
      * Process a completed gesture and find its location.
      */
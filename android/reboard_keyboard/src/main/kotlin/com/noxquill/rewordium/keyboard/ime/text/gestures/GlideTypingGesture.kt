@@ -35,10 +35,12 @@ class GlideTypingGesture {
      * and ignores additional pointers provided, if any.
      */
     class Detector(context: Context) {
-        private var pointerData: PointerData = PointerData(mutableListOf(), 0)
+        private val pointerData: PointerData = PointerData(GestureSampleBuffer(), 0)
         private val keySize = ViewUtils.px2dp(context.resources.getDimension(R.dimen.key_width))
         private val listeners: ArrayList<Listener> = arrayListOf()
         private var pointerId: Int = -1
+        private var downX: Float = 0f
+        private var downY: Float = 0f
 
         companion object {
             private const val MAX_DETECT_TIME = 700
@@ -70,8 +72,10 @@ class GlideTypingGesture {
                     }
                     val pointerIndex = event.actionIndex
                     pointerId = event.getPointerId(pointerIndex)
+                    downX = event.getX(pointerIndex)
+                    downY = event.getY(pointerIndex)
                     pointerData.apply {
-                        positions.add(Position(event.getX(pointerIndex), event.getY(pointerIndex), event.eventTime))
+                        samples.add(downX, downY, event.eventTime)
                         startTime = System.currentTimeMillis()
                     }
                     return false
@@ -83,19 +87,22 @@ class GlideTypingGesture {
                     }
 
                     val pointerIndex = event.findPointerIndex(pointerId)
+                    val samples = pointerData.samples
                     for (i in 0..event.historySize) {
-                        val pos = when (i) {
-                            event.historySize -> Position(event.getX(pointerIndex), event.getY(pointerIndex), event.eventTime)
-                            else -> Position(
-                                event.getHistoricalX(pointerIndex, i),
-                                event.getHistoricalY(pointerIndex, i),
-                                event.getHistoricalEventTime(i),
-                            )
+                        val x: Float
+                        val y: Float
+                        if (i == event.historySize) {
+                            x = event.getX(pointerIndex)
+                            y = event.getY(pointerIndex)
+                            samples.add(x, y, event.eventTime)
+                        } else {
+                            x = event.getHistoricalX(pointerIndex, i)
+                            y = event.getHistoricalY(pointerIndex, i)
+                            samples.add(x, y, event.getHistoricalEventTime(i))
                         }
-                        pointerData.positions.add(pos)
                         if (pointerData.isActuallyGesture == null) {
                             // evaluate whether is actually a gesture
-                            val dist = ViewUtils.px2dp(pointerData.positions[0].dist(pos))
+                            val dist = ViewUtils.px2dp(sqrt((x - downX).pow(2) + (y - downY).pow(2)))
                             val time = (System.currentTimeMillis() - pointerData.startTime) + 1
                             flogDebug { "Distance glided: $dist dp with velocity: ${dist / time} dp/ms" }
                             if (dist > (keySize * GLIDE_DIST_FACTOR) &&
@@ -108,10 +115,8 @@ class GlideTypingGesture {
                                     android.util.Log.d("GlideTyping", "Gesture confirmed after ${time}ms, dist=${dist}dp")
                                 }
                                 // Let listener know all those points need to be added.
-                                pointerData.positions.take(pointerData.positions.size - 1).forEach { point ->
-                                    listeners.forEach {
-                                        it.onGlideAddPoint(point)
-                                    }
+                                for (index in samples.firstIndex until samples.count - 1) {
+                                    listeners.forEach { it.onGlideAddPoint(samples, index) }
                                 }
                             } else if (time > MAX_DETECT_TIME) {
                                 pointerData.isActuallyGesture = false
@@ -120,8 +125,8 @@ class GlideTypingGesture {
                         }
 
                         if (pointerData.isActuallyGesture == true) {
-                            pointerData.positions.last()
-                                .let { point -> listeners.forEach { it.onGlideAddPoint(point) } }
+                            val index = samples.count - 1
+                            listeners.forEach { it.onGlideAddPoint(samples, index) }
                         }
                     }
                     return pointerData.isActuallyGesture ?: false
@@ -135,7 +140,7 @@ class GlideTypingGesture {
                     if (pointerData.isActuallyGesture == true) {
                         val totalTime = System.currentTimeMillis() - pointerData.startTime
                         if (android.util.Log.isLoggable("GlideTyping", android.util.Log.DEBUG)) {
-                            android.util.Log.d("GlideTyping", "Gesture complete: ${pointerData.positions.size} pts in ${totalTime}ms")
+                            android.util.Log.d("GlideTyping", "Gesture complete: ${pointerData.samples.count} pts in ${totalTime}ms")
                         }
                         listeners.forEach { listener -> listener.onGlideComplete(pointerData) }
                     }
@@ -163,24 +168,22 @@ class GlideTypingGesture {
 
         private fun resetState() {
             pointerData.apply {
-                positions.clear()
+                samples.reset()
                 startTime = 0
                 isActuallyGesture = null
             }
             pointerId = -1
         }
 
-        data class PointerData(
-            val positions: MutableList<Position>,
+        /**
+         * State of the tracked pointer. [samples] is reused across gestures and
+         * reset on the next touch-down, so listeners copy what they keep.
+         */
+        class PointerData(
+            val samples: GestureSampleBuffer,
             var startTime: Long,
             var isActuallyGesture: Boolean? = null,
         )
-
-        data class Position(val x: Float, val y: Float, val t: Long = 0L) {
-            fun dist(p2: Position): Float {
-                return sqrt((p2.x - x).pow(2) + (p2.y - y).pow(2))
-            }
-        }
     }
 
     interface Listener {
@@ -190,10 +193,11 @@ class GlideTypingGesture {
         fun onGlideComplete(data: Detector.PointerData) {}
 
         /**
-         * Called when a point is added to a gesture.
-         * Will not be called before a series of events is detected as a gesture.
+         * Called when a point is added to a gesture, the sample at [index] of
+         * [samples]. Will not be called before a series of events is detected as
+         * a gesture.
          */
-        fun onGlideAddPoint(point: Detector.Position) {}
+        fun onGlideAddPoint(samples: GestureSampleBuffer, index: Int) {}
 
         /**
          * Called to cancel a gesture.
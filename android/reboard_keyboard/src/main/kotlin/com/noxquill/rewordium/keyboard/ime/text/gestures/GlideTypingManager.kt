@@ -55,23 +55,41 @@ class GlideTypingManager(private val context: Context) : GlideTypingGesture.List
 
     private fun createClassifier(engine: GlideTypingEngine): GlideTypingClassifier {
         return when (engine) {
-            GlideTypingEngine.NEURAL -> NeuralGlideTypingClassifier(context)
+            // The encoder model is an optional asset; without it there's nothing to decode.
+            GlideTypingEngine.NEURAL -> if (BuildConfig.ENABLE_NEURAL_GLIDE && SwipeEncoder.isAvailable(context)) NeuralGlideTypingClassifier(context) else StatisticalGlideTypingClassifier(context)
             GlideTypingEngine.NATIVE -> if (LatinImeNative.ensureLoaded()) NativeGlideTypingClassifier(context) else StatisticalGlideTypingClassifier(context)
             GlideTypingEngine.STATISTICAL -> StatisticalGlideTypingClassifier(context)
         }
     }
 
     init {
-        // Adaptive learned swipe typing: listen for "vocabulary changed
-        // enough to warrant a rebuild" signals from the suggestion provider.
-        // The provider debounces these (~every 10 new learned words), so
-        // the expensive Pruner rebuild here amortizes well.
+        // Adaptive learned swipe typing: learned, forgotten and imported
+        // words are patched into the classifier one by one; only a change
+        // the classifier can't patch, or a "vocabulary changed wholesale"
+        // signal from the suggestion provider, costs a full rebuild.
         scope.launch {
             nlpManager.wordDataDirtyFlow.collect { subtype ->
                 glideTypingClassifier.setWordData(subtype, force = true)
             }
         }
+
+        scope.launch {
+            nlpManager.wordDataChangeFlow.collect { change ->
+                val classifier = glideTypingClassifier
+                val patched = (change.added.isEmpty() || classifier.addWords(change.subtype, change.added)) &&
+                    (change.updated.isEmpty() || classifier.updateFrequencies(change.subtype, change.updated))
+                if (!patched) {
+                    classifier.setWordData(change.subtype, force = true)
+                }
+            }
+        }
         
+        scope.launch {
+            prefs.glide.scoringThreads.asFlow().collect { threads ->
+                GlideScoringPool.setParallelism(threads)
+            }
+        }
+
         scope.launch {
             prefs.glide.engine.asFlow().collect { engine ->
                 val newClassifier = createClassifier(engine)
@@ -95,9 +113,9 @@ class GlideTypingManager(private val context: Context) : GlideTypingGesture.List
         glideTypingClassifier.clear()
     }
 
-    override fun onGlideAddPoint(point: GlideTypingGesture.Detector.Position) {
+    override fun onGlideAddPoint(samples: GestureSampleBuffer, index: Int) {
         // Forward the point along with its eventTime so the classifier can do velocity-aware scoring.
-        this.glideTypingClassifier.addGesturePoint(point)
+        this.glideTypingClassifier.addGesturePoint(samples, index)
 
         val time = System.currentTimeMillis()
         if (prefs.glide.showPreview.get() && time - lastTime > prefs.glide.previewRefreshDelay.get()) {
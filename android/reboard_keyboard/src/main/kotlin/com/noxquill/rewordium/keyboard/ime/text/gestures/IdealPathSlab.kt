@@ -0,0 +1,441 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.text.gestures
+
+import androidx.collection.SparseArrayCompat
+import com.noxquill.rewordium.keyboard.ime.text.keyboard.TextKey
+import com.noxquill.rewordium.keyboard.lib.devtools.flogDebug
+import java.io.File
+import java.nio.ByteBuffer
+import java.text.Normalizer
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentSkipListSet
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Resampled and normalized ideal paths of words on one keyboard layout, packed
+ * into a single [FloatArray] so the glide scoring loop reads contiguous floats
+ * instead of allocating [StatisticalGlideTypingClassifier.Gesture]s per word.
+ *
+ * Every ideal gesture of a word (a word with double letters has two) takes one
+ * slot of [stride] floats: the raw ideal path length, then the [sampleCount]
+ * resampled x and y coordinates, then the same points normalized by box side.
+ * Slots are filled lazily on first use. An [Entry] only holds slot offsets:
+ * readers take [data] after getting the entry, which is then guaranteed to
+ * hold its slots. Growing the slab copies it into a bigger array and drops
+ * the old one, so no entry keeps it alive.
+ *
+ * Pruning by length only needs each word's ideal path length, so [lengthOf]
+ * keeps those in a separate map computed straight from the key centers; only
+ * the words that survive pruning are resampled and packed.
+ *
+ * Once [MAX_SLOTS] are used, packing a word evicts the least recently scored
+ * words. Each scoring pass is bracketed by [beginPass] and [endPass]. Evicted
+ * slots are retired, not reused, until every pass that started before the
+ * eviction has ended, so a slot is never rewritten under a pass that may
+ * still read it, however many passes overlap. Words used by a running pass
+ * aren't evicted at all. If nothing can be freed the slab grows past the cap
+ * instead.
+ *
+ * The slab is persisted to [file], which callers name after [layoutHash], so
+ * it survives restarts and Pruner rebuilds for the same layout.
+ */
+class IdealPathSlab(
+    val sampleCount: Int,
+    val layoutHash: Int,
+    private val file: File?,
+) {
+    companion object {
+        private const val FORMAT_VERSION = 2
+        private const val MAGIC = 0x49505332 // "IPS2"
+
+        /**
+         * Slots kept before evicting, ≈ 7.5 MiB of floats at 120 samples. Holds two
+         * passes of the scoring cap even if every candidate has a double letter.
+         */
+        private const val MAX_SLOTS = 4096
+
+        /** Slots freed at once when the slab is full, so eviction doesn't run per word. */
+        private const val EVICTION_BATCH = MAX_SLOTS / 8
+
+        /** Filled slots since the last save before [saveIfDirty] writes again. */
+        private const val SAVE_THRESHOLD = 64
+
+        private const val INITIAL_SLOTS = 64
+
+        /** Ideal gestures of one word: the plain one and the one with loops on double letters. */
+        private const val MAX_VARIANTS = 2
+
+        /** Offset of the raw ideal path length within a slot. */
+        const val LENGTH = 0
+
+        /**
+         * Hash of everything an ideal path depends on: each key's code and visible
+         * bounds, plus the sample count and slab format.
+         */
+        fun layoutHash(keysByCharacter: SparseArrayCompat<TextKey>, sampleCount: Int): Int {
+            var hash = 31 * FORMAT_VERSION + sampleCount
+            for (i in 0 until keysByCharacter.size()) {
+                val bounds = keysByCharacter.valueAt(i).visibleBounds
+                hash = 31 * hash + keysByCharacter.keyAt(i)
+                hash = 31 * hash + bounds.left.toBits()
+                hash = 31 * hash + bounds.top.toBits()
+                hash = 31 * hash + bounds.right.toBits()
+                hash = 31 * hash + bounds.bottom.toBits()
+            }
+            return hash
+        }
+
+        /**
+         * Deletes the slab files in [dir] other than those of [keep], e.g. of layouts
+         * or sample counts no longer in use, which would otherwise pile up. Files
+         * modified since [before] (ms since the epoch) are kept too, since a slab
+         * created after [keep] was collected may be writing them.
+         */
+        fun deleteStale(dir: File, keep: Collection<IdealPathSlab>, before: Long) {
+            val kept = keep.mapNotNullTo(HashSet()) { it.file?.name }
+            val files = dir.listFiles() ?: return
+            for (file in files) {
+                if (file.name in kept || file.lastModified() >= before) continue
+                if (file.delete()) {
+                    flogDebug { "Deleted stale ideal path cache $file" }
+                }
+            }
+        }
+    }
+
+    /**
+     * The slots of one word: [count] slots of [stride] floats, the one of each
+     * variant starting at [offset] in [data].
+     */
+    class Entry(private val offsets: IntArray) {
+        val count: Int
+            get() = offsets.size
+
+        /** Pass that last used this word, see [beginPass]. */
+        @Volatile
+        internal var lastUsed = 0
+
+        fun offset(variant: Int): Int = offsets[variant]
+    }
+
+    /** Floats per slot, and the offsets of each coordinate run within a slot. */
+    val stride = 1 + 4 * sampleCount
+    val locationX = 1
+    val locationY = 1 + sampleCount
+    val shapeX = 1 + 2 * sampleCount
+    val shapeY = 1 + 3 * sampleCount
+
+    /**
+     * The packed slots. Replaced when the slab grows; read it after [entryFor],
+     * once per pass, since the previous array may not hold newer entries.
+     */
+    @Volatile
+    var data = FloatArray(INITIAL_SLOTS * stride)
+        private set
+    private var slotCount = 0
+    // Slots no pass can read any more, reused before growing.
+    private var freeSlots = IntArray(0)
+    private var freeCount = 0
+    // Evicted slots and the newest pass at their eviction, oldest first. Freed
+    // once every pass up to that one has ended.
+    private var retiredSlots = IntArray(0)
+    private var retiredPasses = IntArray(0)
+    private var retiredCount = 0
+    // Pass in which eviction found nothing to free; it isn't retried until the next one.
+    private var exhaustedPass = -1
+    // Read without locking by concurrent scoring workers; written under the slab lock.
+    private val entries = ConcurrentHashMap<String, Entry>()
+    private val lengths = ConcurrentHashMap<String, Float>()
+    private val passes = AtomicInteger(0)
+    // Passes between beginPass and endPass.
+    private val activePasses = ConcurrentSkipListSet<Int>()
+    @Volatile
+    private var loaded = file == null
+    private var packedSinceSave = 0
+
+    /**
+     * Starts a scoring pass. The slots of the entries it gets from [entryFor]
+     * keep their contents until it is passed to [endPass].
+     */
+    fun beginPass(): Int {
+        val pass = passes.incrementAndGet()
+        activePasses.add(pass)
+        return pass
+    }
+
+    /** Ends [pass]; slots retired while it ran may be reused once older passes end too. */
+    fun endPass(pass: Int) {
+        activePasses.remove(pass)
+    }
+
+    /**
+     * Returns the slots of [word], packing its ideal gestures on first use.
+     * Null if none of the word's letters has a key on the layout. Lock-free once
+     * the word is packed. Call between [beginPass] and [endPass].
+     */
+    fun entryFor(word: String, keysByCharacter: SparseArrayCompat<TextKey>): Entry? {
+        if (loaded) {
+            val entry = entries[word]
+            if (entry != null) {
+                // Even if it's evicted right after, its slots stay retired until this pass ends.
+                entry.lastUsed = passes.get()
+                return entry
+            }
+        }
+        return synchronized(this) { packEntry(word, keysByCharacter) }
+    }
+
+    /**
+     * Length of [word]'s plain (loop-free) ideal path, as stored at [LENGTH] of
+     * its first slot, without resampling or packing it. Negative if none of the
+     * word's letters has a key on the layout. Lock-free.
+     */
+    fun lengthOf(word: String, keysByCharacter: SparseArrayCompat<TextKey>): Float {
+        lengths[word]?.let { return it }
+        var length = 0f
+        var points = 0
+        var previousX = 0f
+        var previousY = 0f
+        for (c in word) {
+            val lc = Character.toLowerCase(c)
+            // Same base-character fallback as Gesture.generateIdealGestures.
+            val key = keysByCharacter[lc.code]
+                ?: keysByCharacter[Normalizer.normalize(lc.toString(), Normalizer.Form.NFD)[0].code]
+                ?: continue
+            val center = key.visibleBounds.center
+            if (points > 0) {
+                length += StatisticalGlideTypingClassifier.Gesture.distance(previousX, previousY, center.x, center.y)
+            }
+            previousX = center.x
+            previousY = center.y
+            points++
+        }
+        return (if (points > 0) length else -1f).also { lengths[word] = it }
+    }
+
+    private fun packEntry(word: String, keysByCharacter: SparseArrayCompat<TextKey>): Entry? {
+        if (!loaded) load()
+        entries[word]?.let {
+            it.lastUsed = passes.get()
+            return it
+        }
+        val idealGestures = StatisticalGlideTypingClassifier.Gesture.generateIdealGestures(word, keysByCharacter)
+        if (idealGestures.isEmpty() || idealGestures[0].isEmpty) return null
+        val offsets = IntArray(idealGestures.size)
+        for (variant in idealGestures.indices) {
+            val offset = allocateSlot() * stride
+            pack(idealGestures[variant], data, offset)
+            offsets[variant] = offset
+        }
+        packedSinceSave += offsets.size
+        val entry = Entry(offsets)
+        entry.lastUsed = passes.get()
+        entries[word] = entry
+        return entry
+    }
+
+    /** A free slot: a released one, a new one below the cap, or one freed by eviction. */
+    private fun allocateSlot(): Int {
+        if (freeCount == 0) reclaimRetiredSlots()
+        if (freeCount == 0 && slotCount >= MAX_SLOTS && exhaustedPass != passes.get()) {
+            evictLeastRecentlyUsed()
+            reclaimRetiredSlots()
+        }
+        if (freeCount > 0) return freeSlots[--freeCount]
+        ensureCapacity(slotCount + 1)
+        return slotCount++
+    }
+
+    /** Frees the retired slots that no running pass can still read. */
+    private fun reclaimRetiredSlots() {
+        if (retiredCount == 0) return
+        // A pass that begins later can't get an evicted entry any more.
+        val oldestActive = activePasses.firstOrNull() ?: Int.MAX_VALUE
+        var reclaimed = 0
+        while (reclaimed < retiredCount && retiredPasses[reclaimed] < oldestActive) {
+            releaseSlot(retiredSlots[reclaimed])
+            reclaimed++
+        }
+        if (reclaimed == 0) return
+        retiredSlots.copyInto(retiredSlots, 0, reclaimed, retiredCount)
+        retiredPasses.copyInto(retiredPasses, 0, reclaimed, retiredCount)
+        retiredCount -= reclaimed
+    }
+
+    private fun retireSlot(slot: Int, pass: Int) {
+        if (retiredCount == retiredSlots.size) {
+            val capacity = (retiredCount * 2).coerceAtLeast(16)
+            retiredSlots = retiredSlots.copyOf(capacity)
+            retiredPasses = retiredPasses.copyOf(capacity)
+        }
+        retiredSlots[retiredCount] = slot
+        retiredPasses[retiredCount] = pass
+        retiredCount++
+    }
+
+    /**
+     * Retires the slots of the least recently used words, up to [EVICTION_BATCH],
+     * skipping the words of running passes.
+     */
+    private fun evictLeastRecentlyUsed() {
+        val evictableBefore = (activePasses.firstOrNull() ?: passes.get() + 1) - 1
+        val candidates = ArrayList<Map.Entry<String, Entry>>()
+        for (candidate in entries.entries) {
+            if (candidate.value.lastUsed <= evictableBefore) candidates.add(candidate)
+        }
+        candidates.sortBy { it.value.lastUsed }
+        val evicted = ArrayList<Entry>()
+        var freed = 0
+        for ((word, entry) in candidates) {
+            if (freed >= EVICTION_BATCH) break
+            if (entry.lastUsed > evictableBefore || !entries.remove(word, entry)) continue
+            evicted.add(entry)
+            freed += entry.count
+        }
+        // Read after the removals: any pass that got one of these entries began by now.
+        val newestPass = passes.get()
+        for (entry in evicted) {
+            for (variant in 0 until entry.count) retireSlot(entry.offset(variant) / stride, newestPass)
+        }
+        if (freed == 0) exhaustedPass = newestPass
+        flogDebug { "Evicted ideal paths, $freed slots retired" }
+    }
+
+    private fun releaseSlot(slot: Int) {
+        if (freeCount == freeSlots.size) freeSlots = freeSlots.copyOf((freeCount * 2).coerceAtLeast(16))
+        freeSlots[freeCount++] = slot
+    }
+
+    /**
+     * Writes [source]'s length, resampled points and normalized points into the
+     * slot at [offset] of [out], with the same out-of-range semantics as
+     * [StatisticalGlideTypingClassifier.Gesture.getX] (missing samples are 0).
+     */
+    fun pack(source: StatisticalGlideTypingClassifier.Gesture, out: FloatArray, offset: Int) {
+        val resampled = source.resample(sampleCount)
+        val normalized = resampled.normalizeByBoxSide()
+        out[offset + LENGTH] = source.getLength()
+        for (i in 0 until sampleCount) {
+            out[offset + locationX + i] = resampled.getX(i)
+            out[offset + locationY + i] = resampled.getY(i)
+            out[offset + shapeX + i] = normalized.getX(i)
+            out[offset + shapeY + i] = normalized.getY(i)
+        }
+    }
+
+    /** Writes the slab to [file] if enough slots were added since the last save. */
+    fun saveIfDirty() {
+        val file = file ?: return
+        val snapshotData: FloatArray
+        val snapshotSlots: Int
+        val snapshotEntries: List<Pair<String, Entry>>
+        synchronized(this) {
+            if (packedSinceSave < SAVE_THRESHOLD) return
+            // Copied: evicted slots are rewritten in place once the lock is released.
+            snapshotData = data.copyOf(slotCount * stride)
+            snapshotSlots = slotCount
+            snapshotEntries = entries.map { it.key to it.value }
+            packedSinceSave = 0
+        }
+        try {
+            val words = snapshotEntries.map { it.first.toByteArray(Charsets.UTF_8) }
+            var size = 5 * Int.SIZE_BYTES + snapshotSlots * stride * Float.SIZE_BYTES
+            for (i in words.indices) size += words[i].size + (2 + snapshotEntries[i].second.count) * Int.SIZE_BYTES
+            val buffer = ByteBuffer.allocate(size)
+            buffer.putInt(MAGIC).putInt(layoutHash).putInt(sampleCount).putInt(snapshotSlots).putInt(words.size)
+            for (i in words.indices) {
+                val entry = snapshotEntries[i].second
+                buffer.putInt(words[i].size).put(words[i])
+                buffer.putInt(entry.count)
+                for (variant in 0 until entry.count) buffer.putInt(entry.offset(variant) / stride)
+            }
+            buffer.asFloatBuffer().put(snapshotData, 0, snapshotSlots * stride)
+            file.parentFile?.mkdirs()
+            val tmp = File(file.path + ".tmp")
+            tmp.writeBytes(buffer.array())
+            if (!tmp.renameTo(file)) tmp.delete()
+        } catch (e: Exception) {
+            flogDebug { "Failed to save ideal paths to $file: $e" }
+        }
+    }
+
+    private fun load() {
+        try {
+            readFile()
+        } finally {
+            loaded = true
+        }
+    }
+
+    private fun readFile() {
+        val file = file ?: return
+        if (!file.exists()) return
+        try {
+            val buffer = ByteBuffer.wrap(file.readBytes())
+            check(buffer.int == MAGIC && buffer.int == layoutHash && buffer.int == sampleCount) { "bad header" }
+            val slots = buffer.int
+            val wordCount = buffer.int
+            // Everything is checked before the slab is touched; a failed check
+            // throws and the file is discarded below.
+            val floatBytes = slots.toLong() * stride * Float.SIZE_BYTES
+            check(slots >= 0 && floatBytes <= buffer.remaining()) { "bad slot count $slots" }
+            check(wordCount in 0..slots) { "bad word count $wordCount" }
+            val loadedEntries = ArrayList<Pair<String, IntArray>>(wordCount)
+            val used = BooleanArray(slots)
+            repeat(wordCount) {
+                val byteCount = buffer.int
+                check(byteCount in 1..buffer.remaining()) { "bad word length $byteCount" }
+                val bytes = ByteArray(byteCount)
+                buffer.get(bytes)
+                val count = buffer.int
+                check(count in 1..MAX_VARIANTS) { "bad variant count $count" }
+                val offsets = IntArray(count)
+                for (variant in offsets.indices) {
+                    val slot = buffer.int
+                    check(slot in 0 until slots && !used[slot]) { "bad slot $slot" }
+                    used[slot] = true
+                    offsets[variant] = slot * stride
+                }
+                loadedEntries.add(String(bytes, Charsets.UTF_8) to offsets)
+            }
+            check(buffer.remaining().toLong() == floatBytes) { "bad file size ${file.length()}" }
+            ensureCapacity(slots)
+            buffer.asFloatBuffer().get(data, 0, slots * stride)
+            for ((word, offsets) in loadedEntries) {
+                entries[word] = Entry(offsets)
+            }
+            slotCount = slots
+            for (slot in 0 until slots) if (!used[slot]) releaseSlot(slot)
+            flogDebug { "Loaded $slots ideal path slots for ${entries.size} words from $file" }
+        } catch (e: Exception) {
+            entries.clear()
+            slotCount = 0
+            freeCount = 0
+            data = FloatArray(INITIAL_SLOTS * stride)
+            flogDebug { "Discarding unreadable ideal path cache $file: $e" }
+            file.delete()
+        }
+    }
+
+    private fun ensureCapacity(slots: Int) {
+        if (slots * stride <= data.size) return
+        var capacity = data.size / stride
+        while (capacity < slots) capacity *= 2
+        data = data.copyOf(capacity.coerceAtMost(maxOf(MAX_SLOTS, slots)) * stride)
+    }
+}
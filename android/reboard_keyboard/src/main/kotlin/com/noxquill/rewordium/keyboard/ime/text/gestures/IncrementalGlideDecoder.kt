@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.text.gestures
+
+import com.noxquill.rewordium.keyboard.ime.nlp.TopKSelector
+import kotlin.math.sqrt
+
+/**
+ * Mid-stroke candidate tracker for [StatisticalGlideTypingClassifier] previews.
+ *
+ * When a swipe starts, every word whose first key is near the touch-down point
+ * becomes a candidate with its ideal path (key centers, consecutive duplicates
+ * collapsed) flattened into shared arrays. Each candidate keeps a partial
+ * alignment between ticks: the ideal-path segment the finger is currently on
+ * and the accumulated distance of all points so far to the path. [update] only
+ * consumes the points added since the previous call, and candidates that
+ * drift too far from their path are dropped for the rest of the swipe, so the
+ * per-tick cost depends on the new path segment and the surviving candidates
+ * rather than on how long the swipe already is.
+ *
+ * [collectBest] ranks candidates by how well the path so far matches them
+ * *and* how little of their ideal path is left, i.e. words that would be
+ * complete if the finger lifted now. The classifier then runs its full shape
+ * and location scoring on just those.
+ *
+ * Not thread-safe; owned by the classifier and reset per gesture.
+ */
+class IncrementalGlideDecoder {
+    companion object {
+        /** Average distance to the ideal path, in key radii, above which a candidate is dropped. */
+        private const val MAX_AVERAGE_COST = 1.1f
+
+        /** Points a candidate survives regardless of cost, so the start key can settle. */
+        private const val GRACE_POINTS = 3
+    }
+
+    private var words = arrayOfNulls<String>(0)
+    private var pathStart = IntArray(0)
+    private var pathEnd = IntArray(0)
+    private var cursor = IntArray(0)
+    private var cost = FloatArray(0)
+    private var alive = BooleanArray(0)
+    private var pathXs = FloatArray(0)
+    private var pathYs = FloatArray(0)
+    private var candidateCount = 0
+    private var aliveCount = 0
+    private var processedPoints = 0
+    private var radius = 1f
+    private val selector = TopKSelector<String>()
+
+    /** True once [start] was called for the current gesture. */
+    val isStarted: Boolean
+        get() = processedPoints > 0 || candidateCount > 0
+
+    /** Candidates still tracked. */
+    val size: Int
+        get() = aliveCount
+
+    fun reset() {
+        words.fill(null, 0, candidateCount)
+        candidateCount = 0
+        aliveCount = 0
+        processedPoints = 0
+    }
+
+    /**
+     * Starts tracking [candidates]. [keyCenter] writes the key center of a
+     * character into the out array (x, y) and returns false if the layout has
+     * no key for it. [keyRadius] is the scale for all distances.
+     */
+    fun start(
+        candidates: List<String>,
+        keyRadius: Float,
+        keyCenter: (Char, FloatArray) -> Boolean,
+    ) {
+        reset()
+        radius = keyRadius.coerceAtLeast(1f)
+        ensureCandidateCapacity(candidates.size)
+        val center = FloatArray(2)
+        var pointCount = 0
+        for (word in candidates) {
+            val start = pointCount
+            var lastX = Float.NaN
+            var lastY = Float.NaN
+            for (c in word) {
+                if (!keyCenter(c, center)) continue
+                if (center[0] == lastX && center[1] == lastY) continue
+                ensurePathCapacity(pointCount + 1)
+                pathXs[pointCount] = center[0]
+                pathYs[pointCount] = center[1]
+                pointCount++
+                lastX = center[0]
+                lastY = center[1]
+            }
+            if (pointCount == start) continue
+            val i = candidateCount++
+            words[i] = word
+            pathStart[i] = start
+            pathEnd[i] = pointCount
+            cursor[i] = start
+            cost[i] = 0f
+            alive[i] = true
+        }
+        aliveCount = candidateCount
+    }
+
+    /** Aligns the points of [gesture] added since the last call. */
+    fun update(gesture: StatisticalGlideTypingClassifier.Gesture) {
+        val count = gesture.pointCount
+        for (p in processedPoints until count) {
+            step(gesture.getX(p), gesture.getY(p), p + 1)
+        }
+        processedPoints = count
+    }
+
+    /**
+     * Appends up to [n] of the best candidates to [out], best first. Lower
+     * score is better: average path distance plus the ideal path still left
+     * after the current alignment, both in key radii.
+     */
+    fun collectBest(n: Int, lastX: Float, lastY: Float, out: MutableCollection<String>) {
+        selector.reset(n)
+        for (i in 0 until candidateCount) {
+            if (!alive[i]) continue
+            val average = cost[i] / processedPoints.coerceAtLeast(1)
+            val remaining = remainingLength(i, lastX, lastY)
+            selector.offer(words[i]!!, (-(average + remaining) / radius).toDouble())
+        }
+        selector.sortInto(out)
+    }
+
+    private fun step(x: Float, y: Float, pointsSoFar: Int) {
+        val limit = MAX_AVERAGE_COST * radius
+        for (i in 0 until candidateCount) {
+            if (!alive[i]) continue
+            var k = cursor[i]
+            val last = pathEnd[i] - 1
+            var d = segmentDistance(k, last, x, y)
+            // Advance while the finger is closer to a later segment.
+            while (k + 1 < last) {
+                val next = segmentDistance(k + 1, last, x, y)
+                if (next > d) break
+                k++
+                d = next
+            }
+            cursor[i] = k
+            cost[i] += d
+            if (pointsSoFar > GRACE_POINTS && cost[i] / pointsSoFar > limit) {
+                alive[i] = false
+                aliveCount--
+            }
+        }
+    }
+
+    // Distance from (x, y) to the path segment starting at point k (a single
+    // point if k is the last one).
+    private fun segmentDistance(k: Int, last: Int, x: Float, y: Float): Float {
+        val ax = pathXs[k]
+        val ay = pathYs[k]
+        if (k >= last) return distance(ax, ay, x, y)
+        val bx = pathXs[k + 1]
+        val by = pathYs[k + 1]
+        val dx = bx - ax
+        val dy = by - ay
+        val lengthSquared = dx * dx + dy * dy
+        if (lengthSquared == 0f) return distance(ax, ay, x, y)
+        val t = (((x - ax) * dx + (y - ay) * dy) / lengthSquared).coerceIn(0f, 1f)
+        return distance(ax + t * dx, ay + t * dy, x, y)
+    }
+
+    private fun remainingLength(i: Int, x: Float, y: Float): Float {
+        val last = pathEnd[i] - 1
+        val k = cursor[i]
+        if (k >= last) return distance(pathXs[last], pathYs[last], x, y)
+        var remaining = distance(x, y, pathXs[k + 1], pathYs[k + 1])
+        for (j in k + 1 until last) {
+            remaining += distance(pathXs[j], pathYs[j], pathXs[j + 1], pathYs[j + 1])
+        }
+        return remaining
+    }
+
+    private fun distance(x1: Float, y1: Float, x2: Float, y2: Float): Float {
+        val dx = x1 - x2
+        val dy = y1 - y2
+        return sqrt(dx * dx + dy * dy)
+    }
+
+    private fun ensureCandidateCapacity(n: Int) {
+        if (n <= words.size) return
+        words = arrayOfNulls(n)
+        pathStart = IntArray(n)
+        pathEnd = IntArray(n)
+        cursor = IntArray(n)
+        cost = FloatArray(n)
+        alive = BooleanArray(n)
+    }
+
+    private fun ensurePathCapacity(n: Int) {
+        if (n <= pathXs.size) return
+        val capacity = maxOf(n, pathXs.size * 2, 1024)
+        pathXs = pathXs.copyOf(capacity)
+        pathYs = pathYs.copyOf(capacity)
+    }
+}
@@ -32,8 +32,8 @@ import com.noxquill.rewordium.keyboard.nlpManager
  *     extracts a [KeyboardLayoutDescriptor] from the live `TextKey` list and
  *     hands it to native via [LatinImeNative.nativeOpenProximityInfo].
  *     Previous handle (if any) is closed first.
- *   * [addGesturePoint] buffers raw (x, y, t) tuples into parallel int
- *     arrays for the duration of a stroke.
+ *   * [addGesturePoint] buffers raw (x, y, t) samples into a
+ *     [GestureSampleBuffer] for the duration of a stroke.
  *   * [getSuggestions] calls [LatinImeNative.nativeSuggestForGesture] with
  *     the dict handle (fetched from [NlpManager.nativeDictHandle]) and the
  *     buffered points; returns the ranked candidate list.
@@ -61,15 +61,10 @@ class NativeGlideTypingClassifier(context: Context) : GlideTypingClassifier {
         get() = LatinImeNative.ensureLoaded() &&
             proximityInfoHandle != LatinImeNative.INVALID_HANDLE
 
-    private val xs = ArrayList<Int>(MAX_POINTS_HINT)
-    private val ys = ArrayList<Int>(MAX_POINTS_HINT)
-    private val ts = ArrayList<Long>(MAX_POINTS_HINT)
+    private val samples = GestureSampleBuffer()
 
-    override fun addGesturePoint(position: GlideTypingGesture.Detector.Position) {
-        val t = if (position.t != 0L) position.t else System.currentTimeMillis()
-        xs.add(position.x.toInt())
-        ys.add(position.y.toInt())
-        ts.add(t)
+    override fun addGesturePoint(samples: GestureSampleBuffer, index: Int) {
+        this.samples.add(samples, index)
     }
 
     override fun setLayout(keyViews: List<TextKey>, subtype: Subtype) {
@@ -131,8 +126,9 @@ class NativeGlideTypingClassifier(context: Context) : GlideTypingClassifier {
 
     override fun initGestureFromPointerData(pointerData: GlideTypingGesture.Detector.PointerData) {
         clear()
-        for (position in pointerData.positions) {
-            addGesturePoint(position)
+        val samples = pointerData.samples
+        for (index in samples.firstIndex until samples.count) {
+            addGesturePoint(samples, index)
         }
     }
 
@@ -141,7 +137,7 @@ class NativeGlideTypingClassifier(context: Context) : GlideTypingClassifier {
         gestureCompleted: Boolean,
     ): List<CharSequence> {
         if (proximityInfoHandle == LatinImeNative.INVALID_HANDLE) return emptyList()
-        if (xs.isEmpty() || maxSuggestionCount <= 0) return emptyList()
+        if (samples.isEmpty || maxSuggestionCount <= 0) return emptyList()
 
         val dictHandle = nlpManager.nativeDictHandle
         if (dictHandle == LatinImeNative.INVALID_HANDLE) return emptyList()
@@ -149,11 +145,12 @@ class NativeGlideTypingClassifier(context: Context) : GlideTypingClassifier {
         // Normalize timestamps to first-sample-relative ms so they fit in Int
         // (AOSP uses int * for times; System.currentTimeMillis is Long and
         // long since exceeds Int.MAX as raw epoch ms — only deltas matter).
-        val n = xs.size
-        val xsArr = IntArray(n) { xs[it] }
-        val ysArr = IntArray(n) { ys[it] }
-        val t0 = ts[0]
-        val tsArr = IntArray(n) { (ts[it] - t0).toInt() }
+        val first = samples.firstIndex
+        val n = samples.count - first
+        val xsArr = IntArray(n) { samples.x(first + it).toInt() }
+        val ysArr = IntArray(n) { samples.y(first + it).toInt() }
+        val t0 = samples.t(first)
+        val tsArr = IntArray(n) { (samples.t(first + it) - t0).toInt() }
 
         val raw = LatinImeNative.nativeSuggestForGesture(
             dictHandle = dictHandle,
@@ -168,9 +165,7 @@ class NativeGlideTypingClassifier(context: Context) : GlideTypingClassifier {
     }
 
     override fun clear() {
-        xs.clear()
-        ys.clear()
-        ts.clear()
+        samples.reset()
     }
 
     /**
@@ -186,8 +181,4 @@ class NativeGlideTypingClassifier(context: Context) : GlideTypingClassifier {
             LatinImeNative.nativeCloseProximityInfo(h)
         }
     }
-
-    private companion object {
-        const val MAX_POINTS_HINT = 256
-    }
 }
@@ -17,69 +17,106 @@
 package com.noxquill.rewordium.keyboard.ime.text.gestures
 
 import android.content.Context
+import com.noxquill.rewordium.keyboard.editorInstance
 import com.noxquill.rewordium.keyboard.ime.core.Subtype
+import com.noxquill.rewordium.keyboard.ime.keyboard.KeyData
+import com.noxquill.rewordium.keyboard.ime.nlp.FlatTrie
 import com.noxquill.rewordium.keyboard.ime.nlp.latin.LatinLanguageProvider
 import com.noxquill.rewordium.keyboard.ime.text.keyboard.TextKey
+import com.noxquill.rewordium.keyboard.lib.devtools.flogDebug
 import com.noxquill.rewordium.keyboard.nlpManager
-import java.util.PriorityQueue
+import java.text.Normalizer
 import kotlin.math.ln
 
 /**
  * Neural layout-agnostic gesture classifier — implements [GlideTypingClassifier].
+ * Runs the [SwipeEncoder] on the completed gesture and decodes its per-frame key
+ * probabilities against the dictionary trie.
  */
 class NeuralGlideTypingClassifier(context: Context) : GlideTypingClassifier {
+    companion object {
+        /** Trie nodes kept per frame by the beam search. */
+        private const val BEAM_WIDTH = 64
 
-    private val nlpManager by context.nlpManager()
-    
-    // Internal Trie structure for dictionary-constrained beam search
-    class TrieNode {
-        val children = mutableMapOf<Char, TrieNode>()
-        var isWord: Boolean = false
-        var frequency: Float = 0f
+        /** Floor for frequencies before taking their log, so unseen words aren't -inf. */
+        private const val MIN_FREQUENCY = 0.0001f
     }
-    private var root = TrieNode()
+
+    private val nlpManager by context.nlpManager()
+    private val editorInstance by context.editorInstance()
+
+    // Vocabulary for the dictionary-constrained beam search, shared with the provider.
+    @Volatile
+    private var trie: FlatTrie? = null
+    private var wordDataSubtype: Subtype? = null
 
     override val ready: Boolean
-        get() = true
+        get() = trie != null
 
-    private val xs = ArrayList<Float>()
-    private val ys = ArrayList<Float>()
-    private val ts = ArrayList<Long>()
+    private val samples = GestureSampleBuffer()
     private var layoutKeys: List<TextKey> = emptyList()
+    private var keyXs = FloatArray(0)
+    private var keyYs = FloatArray(0)
+    private val keyIndexByChar = HashMap<Char, Int>()
+
+    // Key index of every trie node's letter for the current trie and layout, -1 if none.
+    private var nodeKeyIndex: IntArray? = null
 
-    override fun addGesturePoint(position: GlideTypingGesture.Detector.Position) {
-        val t = if (position.t != 0L) position.t else System.currentTimeMillis()
-        xs.add(position.x)
-        ys.add(position.y)
-        ts.add(t)
+    // Beam search scratch, reused across gestures: current and next beam as parallel
+    // arrays, and per-node slot of the next beam (valid where nodeStamp == stamp).
+    private var beamNodes = IntArray(BEAM_WIDTH)
+    private var beamKeys = IntArray(BEAM_WIDTH)
+    private var beamLogProbs = FloatArray(BEAM_WIDTH)
+    private var nextNodes = IntArray(BEAM_WIDTH * 8)
+    private var nextKeys = IntArray(BEAM_WIDTH * 8)
+    private var nextLogProbs = FloatArray(BEAM_WIDTH * 8)
+    private var nextBounds = FloatArray(BEAM_WIDTH * 8)
+    private var sortedBounds = FloatArray(BEAM_WIDTH * 8)
+    private var nodeSlot = IntArray(0)
+    private var nodeStamp = IntArray(0)
+    private var stamp = 0
+
+    // Null when the model asset isn't bundled; GlideTypingManager then picks the
+    // statistical classifier instead, see [SwipeEncoder.isAvailable].
+    private val encoder = SwipeEncoder.load(context)
+
+    override fun addGesturePoint(samples: GestureSampleBuffer, index: Int) {
+        this.samples.add(samples, index)
     }
 
     override fun setLayout(keyViews: List<TextKey>, subtype: Subtype) {
         this.layoutKeys = keyViews
+        keyXs = FloatArray(keyViews.size) { keyViews[it].visibleBounds.center.x }
+        keyYs = FloatArray(keyViews.size) { keyViews[it].visibleBounds.center.y }
+        keyIndexByChar.clear()
+        for ((i, key) in keyViews.withIndex()) {
+            val code = (key.data as? KeyData)?.code ?: continue
+            if (code > 0 && code <= Char.MAX_VALUE.code) keyIndexByChar[code.toChar()] = i
+        }
+        nodeKeyIndex = null
     }
 
     override fun setWordData(subtype: Subtype, force: Boolean) {
-        val frequencies = nlpManager.getFrequencyMap(subtype)
-        
-        // Build Trie
-        val newRoot = TrieNode()
-        for ((word, freq) in frequencies) {
-            var curr = newRoot
-            for (char in word) {
-                curr = curr.children.getOrPut(char) { TrieNode() }
-            }
-            curr.isWord = true
-            curr.frequency = freq.toFloat()
-        }
-        root = newRoot
+        if (!force && subtype == wordDataSubtype && trie != null) return
+        trie = nlpManager.getWordTrie(subtype)
+        nodeKeyIndex = null
+        wordDataSubtype = subtype
+    }
+
+    override fun updateFrequencies(subtype: Subtype, frequencies: Map<String, Double>): Boolean {
+        if (subtype != wordDataSubtype) return true
+        val trie = trie ?: return false
+        // The trie's shape is fixed: a word it doesn't have needs a rebuild.
+        return frequencies.all { (word, frequency) -> trie.setFrequency(word, frequency.toFloat()) }
     }
 
     private val reranker = ContextLmReranker(context)
 
     override fun initGestureFromPointerData(pointerData: GlideTypingGesture.Detector.PointerData) {
         clear()
-        for (position in pointerData.positions) {
-            addGesturePoint(position)
+        val samples = pointerData.samples
+        for (index in samples.firstIndex until samples.count) {
+            addGesturePoint(samples, index)
         }
     }
 
@@ -87,90 +124,97 @@ class NeuralGlideTypingClassifier(context: Context) : GlideTypingClassifier {
         maxSuggestionCount: Int,
         gestureCompleted: Boolean
     ): List<CharSequence> {
-        if (xs.isEmpty()) return emptyList()
+        if (samples.isEmpty || layoutKeys.isEmpty()) return emptyList()
+        val encoder = encoder ?: return emptyList()
 
-        val logits = runEncoderInference()
-        val beamCandidatesWithProbs = runBeamSearch(logits, maxSuggestionCount * 3) // Get more for reranking
-        
-        // Fetch context from the active editor via nlpManager/keyboardManager
-        // For demonstration, we assume we fetch the last 3 words.
-        val contextWords = emptyList<String>() // TODO: Fetch from EditorInstance
+        val startNanos = System.nanoTime()
+        val logProbs = encoder.encode(samples, keyXs, keyYs)
+        val trie = trie ?: return emptyList()
+        // The search scratch is shared, and preview passes can overlap.
+        val beamCandidatesWithProbs = synchronized(this) {
+            runBeamSearch(trie, logProbs, maxSuggestionCount * 3) // Get more for reranking
+        }
+        flogDebug { "Neural glide: ${logProbs.size} frames decoded in ${(System.nanoTime() - startNanos) / 1000}µs" }
 
-        // 3. Rerank the candidates using the tiny causal LM
+        val contextText = editorInstance.run { activeContent.getTextBeforeCursor(25) }
+        val contextWords = contextText.split("\\s+".toRegex()).filter { it.isNotBlank() }
+
+        // Rerank the candidates using the tiny causal LM
         val finalCandidates = reranker.rerank(beamCandidatesWithProbs, contextWords)
         
         return finalCandidates.take(maxSuggestionCount)
     }
 
     override fun clear() {
-        xs.clear()
-        ys.clear()
-        ts.clear()
+        samples.reset()
     }
 
-    private fun runEncoderInference(): Array<FloatArray> {
-        // Stub: In a real environment, this invokes the ONNX/TFLite model.
-        // Returns sequence of probabilities for each key.
-        val seqLen = xs.size
-        val numKeys = layoutKeys.size
-        // Fake probabilities
-        return Array(seqLen) { FloatArray(numKeys) { 1.0f / numKeys } }
+    private fun keyIndexOf(char: Char): Int {
+        return keyIndexByChar[char]
+            ?: keyIndexByChar[Normalizer.normalize(char.toString(), Normalizer.Form.NFD)[0]]
+            ?: -1
     }
 
-    private data class BeamState(
-        val prefix: String,
-        val node: TrieNode,
-        val logProb: Float
-    ) : Comparable<BeamState> {
-        override fun compareTo(other: BeamState): Int {
-            return other.logProb.compareTo(this.logProb) // Descending
-        }
+    private fun nodeKeyIndexFor(trie: FlatTrie): IntArray {
+        nodeKeyIndex?.takeIf { it.size == trie.size }?.let { return it }
+        val keyIndexByLabel = HashMap<Char, Int>()
+        return IntArray(trie.size) { node ->
+            if (node == FlatTrie.ROOT) -1 else keyIndexByLabel.getOrPut(trie.label(node)) { keyIndexOf(trie.label(node)) }
+        }.also { nodeKeyIndex = it }
     }
 
-    private fun runBeamSearch(logits: Array<FloatArray>, maxResults: Int): List<Pair<String, Float>> {
-        val beamWidth = 300
-        var beam = listOf(BeamState("", root, 0f))
-        
-        // Blank index logic: assume index 0 is blank (CTC-style).
-        // For simplicity, we just use the max logit as a fallback if no blank is explicit.
-        
-        for (t in logits.indices) {
-            val stepLogits = logits[t]
-            val nextBeam = PriorityQueue<BeamState>()
-            
-            for (state in beam) {
-                // 1. Blank transition (stay in same state)
-                // In CTC, there's a blank token. Without a real model, we simulate a small penalty.
-                val blankLogProb = -0.1f 
-                nextBeam.add(BeamState(state.prefix, state.node, state.logProb + blankLogProb))
-                
-                // 2. Character transition
-                for ((i, key) in layoutKeys.withIndex()) {
-                    val keyData = key.data as? com.noxquill.rewordium.keyboard.ime.keyboard.KeyData ?: continue
-                    val charStr = keyData.label
-                    if (charStr.isEmpty()) continue
-                    val char = charStr[0]
-                    
-                    val childNode = state.node.children[char]
-                    if (childNode != null) {
-                        val prob = stepLogits[i]
-                        val logProb = if (prob > 0) ln(prob) else -100f
-                        nextBeam.add(BeamState(state.prefix + char, childNode, state.logProb + logProb))
-                    }
+    /**
+     * Dictionary-constrained Viterbi beam search over the encoder's per-frame key
+     * log-probabilities. Every frame is aligned to exactly one letter, in order:
+     * a beam either stays on its letter's key or advances to a child letter, so
+     * a word is scored by its best monotonic alignment to the whole gesture and
+     * all words spend the same number of frames. Beams that reach the same trie
+     * node keep only the best one.
+     *
+     * Beams are pruned by their score plus the log of the highest word frequency
+     * below their node, the best final score they could still reach, so a prefix
+     * leading only to rare words gives way to one leading to a frequent word.
+     */
+    private fun runBeamSearch(trie: FlatTrie, logProbs: Array<FloatArray>, maxResults: Int): List<Pair<String, Float>> {
+        if (logProbs.isEmpty()) return emptyList()
+        val keyOfNode = nodeKeyIndexFor(trie)
+        if (nodeStamp.size < trie.size) {
+            nodeStamp = IntArray(trie.size)
+            nodeSlot = IntArray(trie.size)
+            stamp = 0
+        }
+        var size = 1
+        beamNodes[0] = FlatTrie.ROOT
+        beamKeys[0] = -1
+        beamLogProbs[0] = 0f
+
+        for (t in logProbs.indices) {
+            val frame = logProbs[t]
+            stamp++
+            var nextSize = 0
+            for (b in 0 until size) {
+                val node = beamNodes[b]
+                val key = beamKeys[b]
+                val logProb = beamLogProbs[b]
+                // 1. Stay on the current letter (not before the first one).
+                if (key >= 0) nextSize = offer(trie, node, key, logProb + frame[key], nextSize)
+                // 2. Advance to the next letter.
+                for (child in trie.firstChild(node) until trie.childrenEnd(node)) {
+                    val childKey = keyOfNode[child]
+                    if (childKey < 0) continue
+                    nextSize = offer(trie, child, childKey, logProb + frame[childKey], nextSize)
                 }
             }
-            
-            // Prune to beamWidth
-            val sortedNext = mutableListOf<BeamState>()
-            while (nextBeam.isNotEmpty() && sortedNext.size < beamWidth) {
-                sortedNext.add(nextBeam.poll()!!)
-            }
-            beam = sortedNext
+            size = prune(nextSize)
         }
         
         // Filter to valid words and apply unigram frequency score
-        val rawResults = beam.filter { it.node.isWord }
-            .map { it.prefix to (it.logProb + ln(it.node.frequency.coerceAtLeast(0.0001f))) }
+        val rawResults = ArrayList<Pair<String, Float>>(size)
+        for (b in 0 until size) {
+            val node = beamNodes[b]
+            if (!trie.isWord(node)) continue
+            rawResults.add(trie.prefixAt(node) to (beamLogProbs[b] + ln(trie.frequency(node).coerceAtLeast(MIN_FREQUENCY))))
+        }
             
         // Apostrophe penalty heuristic: if a word contains an apostrophe, penalize it slightly 
         // to prefer the non-apostrophe version (e.g. want over wasn't, hell over he'll) unless 
@@ -180,9 +224,55 @@ class NeuralGlideTypingClassifier(context: Context) : GlideTypingClassifier {
             word to (score + penalty)
         }
         .sortedByDescending { it.second }
-        .distinctBy { it.first }
         .take(maxResults)
             
         return results
     }
+
+    /** Adds or improves the next-frame beam of [node]; returns the new next-beam size. */
+    private fun offer(trie: FlatTrie, node: Int, key: Int, logProb: Float, nextSize: Int): Int {
+        if (nodeStamp[node] == stamp) {
+            val slot = nodeSlot[node]
+            if (logProb > nextLogProbs[slot]) {
+                nextLogProbs[slot] = logProb
+                nextBounds[slot] = logProb + ln(trie.maxFrequency(node).coerceAtLeast(MIN_FREQUENCY))
+            }
+            return nextSize
+        }
+        if (nextSize == nextNodes.size) {
+            val capacity = nextSize * 2
+            nextNodes = nextNodes.copyOf(capacity)
+            nextKeys = nextKeys.copyOf(capacity)
+            nextLogProbs = nextLogProbs.copyOf(capacity)
+            nextBounds = nextBounds.copyOf(capacity)
+            sortedBounds = FloatArray(capacity)
+        }
+        nodeStamp[node] = stamp
+        nodeSlot[node] = nextSize
+        nextNodes[nextSize] = node
+        nextKeys[nextSize] = key
+        nextLogProbs[nextSize] = logProb
+        nextBounds[nextSize] = logProb + ln(trie.maxFrequency(node).coerceAtLeast(MIN_FREQUENCY))
+        return nextSize + 1
+    }
+
+    /** Moves the [BEAM_WIDTH] next-frame beams with the highest bounds to the current beam. */
+    private fun prune(nextSize: Int): Int {
+        val threshold = if (nextSize > BEAM_WIDTH) {
+            nextBounds.copyInto(sortedBounds, 0, 0, nextSize)
+            sortedBounds.sort(0, nextSize)
+            sortedBounds[nextSize - BEAM_WIDTH]
+        } else {
+            Float.NEGATIVE_INFINITY
+        }
+        var size = 0
+        for (slot in 0 until nextSize) {
+            if (nextBounds[slot] < threshold || size == BEAM_WIDTH) continue
+            beamNodes[size] = nextNodes[slot]
+            beamKeys[size] = nextKeys[slot]
+            beamLogProbs[size] = nextLogProbs[slot]
+            size++
+        }
+        return size
+    }
 }
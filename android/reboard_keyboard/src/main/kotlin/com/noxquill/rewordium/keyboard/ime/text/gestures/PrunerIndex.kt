@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.text.gestures
+
+import java.io.BufferedOutputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.CharBuffer
+import java.nio.IntBuffer
+import java.nio.channels.FileChannel
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Read-only, memory-mapped form of the glide [StatisticalGlideTypingClassifier.Pruner]'s
+ * word tree: the base dictionary's words bucketed by the key codes of their
+ * first and last letter. Opening it is a header check, so a cold start no
+ * longer walks and normalizes every dictionary word.
+ *
+ * A file is only valid for one layout and one base word list, so it is keyed
+ * by both: the layout geometry hash and the provider's base word list
+ * version, both in the header and in the file name ([fileFor]). Buckets are
+ * decoded to strings on first use and kept.
+ *
+ * File format (big endian):
+ * ```
+ * magic(Int) layoutHash(Int) wordListVersion(Long) pairCount(Int) wordCount(Int) poolLength(Int)
+ * pairs[pairCount]: firstCode(Int) lastCode(Int) firstWord(Int)  // sorted by (firstCode, lastCode)
+ * offsets[wordCount + 1](Int)    // char offset of each word in the pool
+ * pool[poolLength](Char)         // UTF-16 code units, words grouped by pair
+ * ```
+ */
+class PrunerIndex private constructor(
+    private val pairs: IntBuffer,
+    private val pairCount: Int,
+    private val wordCount: Int,
+    private val offsets: IntBuffer,
+    private val pool: CharBuffer,
+) {
+    private val decodedBuckets = ConcurrentHashMap<Long, List<String>>()
+
+    /** Visits the (first, last) key code pair of every non-empty bucket. */
+    fun forEachPair(action: (firstCode: Int, lastCode: Int) -> Unit) {
+        for (p in 0 until pairCount) action(firstCodeAt(p), lastCodeAt(p))
+    }
+
+    private fun firstCodeAt(p: Int): Int = pairs.get(3 * p)
+
+    private fun lastCodeAt(p: Int): Int = pairs.get(3 * p + 1)
+
+    /** Words whose first and last letter are on [firstCode] and [lastCode]; empty if none. */
+    fun wordsFor(firstCode: Int, lastCode: Int): List<String> {
+        val key = pairKey(firstCode, lastCode)
+        decodedBuckets[key]?.let { return it }
+        val p = findPair(firstCode, lastCode)
+        if (p < 0) return emptyList()
+        val from = pairs.get(3 * p + 2)
+        val to = if (p + 1 < pairCount) pairs.get(3 * (p + 1) + 2) else wordCount
+        val words = ArrayList<String>(to - from)
+        for (id in from until to) {
+            val start = offsets.get(id)
+            val chars = CharArray(offsets.get(id + 1) - start)
+            for (i in chars.indices) chars[i] = pool.get(start + i)
+            words.add(String(chars))
+        }
+        return decodedBuckets.putIfAbsent(key, words) ?: words
+    }
+
+    private fun findPair(firstCode: Int, lastCode: Int): Int {
+        var lo = 0
+        var hi = pairCount - 1
+        while (lo <= hi) {
+            val mid = (lo + hi) ushr 1
+            val cmp = compareValues(firstCodeAt(mid), firstCode).takeIf { it != 0 }
+                ?: compareValues(lastCodeAt(mid), lastCode)
+            when {
+                cmp < 0 -> lo = mid + 1
+                cmp > 0 -> hi = mid - 1
+                else -> return mid
+            }
+        }
+        return -1
+    }
+
+    companion object {
+        private const val FILE_MAGIC = 0x52425049 // 'RBPI'
+        private const val HEADER_BYTES = 28
+
+        /** The file of [layoutHash]'s index for word list [wordListVersion] in [dir]. */
+        fun fileFor(dir: File, layoutHash: Int, wordListVersion: Long): File =
+            File(dir, "$layoutHash-${wordListVersion.toULong().toString(16)}.bin")
+
+        /**
+         * Deletes the indexes of [layoutHash] in [dir] other than [keep], left by older
+         * word list versions. Other layouts' indexes and files being written are kept.
+         */
+        fun deleteOtherVersions(dir: File, layoutHash: Int, keep: File) {
+            val files = dir.listFiles() ?: return
+            for (file in files) {
+                val name = file.name
+                if (!name.endsWith(".bin") || file == keep) continue
+                // "<hash>.bin" is the name used before versions were added.
+                if (name == "$layoutHash.bin" || name.startsWith("$layoutHash-")) file.delete()
+            }
+        }
+
+        fun pairKey(firstCode: Int, lastCode: Int): Long =
+            (firstCode.toLong() shl 32) or (lastCode.toLong() and 0xFFFFFFFFL)
+
+        /** Writes [buckets] to [file] in the format read by [open]. */
+        fun write(
+            file: File,
+            layoutHash: Int,
+            wordListVersion: Long,
+            buckets: Map<Pair<Int, Int>, List<String>>,
+        ) {
+            val sortedPairs = buckets.keys.sortedWith(compareBy({ it.first }, { it.second }))
+            val wordCount = sortedPairs.sumOf { buckets.getValue(it).size }
+            val poolLength = sortedPairs.sumOf { pair -> buckets.getValue(pair).sumOf { it.length } }
+            file.parentFile?.mkdirs()
+            val tmp = File(file.path + ".tmp")
+            DataOutputStream(BufferedOutputStream(tmp.outputStream(), 65_536)).use { dos ->
+                dos.writeInt(FILE_MAGIC)
+                dos.writeInt(layoutHash)
+                dos.writeLong(wordListVersion)
+                dos.writeInt(sortedPairs.size)
+                dos.writeInt(wordCount)
+                dos.writeInt(poolLength)
+                var firstWord = 0
+                for (pair in sortedPairs) {
+                    dos.writeInt(pair.first)
+                    dos.writeInt(pair.second)
+                    dos.writeInt(firstWord)
+                    firstWord += buckets.getValue(pair).size
+                }
+                var offset = 0
+                dos.writeInt(offset)
+                for (pair in sortedPairs) {
+                    for (word in buckets.getValue(pair)) {
+                        offset += word.length
+                        dos.writeInt(offset)
+                    }
+                }
+                for (pair in sortedPairs) {
+                    for (word in buckets.getValue(pair)) dos.writeChars(word)
+                }
+            }
+            if (!tmp.renameTo(file)) {
+                tmp.delete()
+            }
+        }
+
+        /**
+         * Maps [file]. Returns null if it is missing or was written for another
+         * layout, word list version or format; throws on I/O failure or truncation.
+         */
+        fun open(file: File, layoutHash: Int, wordListVersion: Long): PrunerIndex? {
+            if (!file.exists()) return null
+            RandomAccessFile(file, "r").use { raf ->
+                val buffer = raf.channel.map(FileChannel.MapMode.READ_ONLY, 0, raf.length())
+                buffer.order(ByteOrder.BIG_ENDIAN)
+                if (buffer.getInt(0) != FILE_MAGIC) return null
+                if (buffer.getInt(4) != layoutHash) return null
+                if (buffer.getLong(8) != wordListVersion) return null
+                val pairCount = buffer.getInt(16)
+                val wordCount = buffer.getInt(20)
+                val poolLength = buffer.getInt(24)
+                val pairsStart = HEADER_BYTES
+                val offsetsStart = pairsStart + 12 * pairCount
+                val poolStart = offsetsStart + 4 * (wordCount + 1)
+                check(raf.length() == poolStart + 2L * poolLength) { "Truncated pruner index" }
+                return PrunerIndex(
+                    pairs = buffer.region(pairsStart, 12 * pairCount).asIntBuffer(),
+                    pairCount = pairCount,
+                    wordCount = wordCount,
+                    offsets = buffer.region(offsetsStart, 4 * (wordCount + 1)).asIntBuffer(),
+                    pool = buffer.region(poolStart, 2 * poolLength).asCharBuffer(),
+                )
+            }
+        }
+
+        private fun ByteBuffer.region(offset: Int, length: Int): ByteBuffer {
+            val dup = duplicate()
+            dup.position(offset)
+            dup.limit(offset + length)
+            return dup.slice().order(ByteOrder.BIG_ENDIAN)
+        }
+    }
+}
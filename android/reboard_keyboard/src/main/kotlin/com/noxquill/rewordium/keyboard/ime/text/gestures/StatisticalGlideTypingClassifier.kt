@@ -23,13 +23,20 @@ import androidx.collection.set
 import com.noxquill.rewordium.keyboard.BuildConfig
 import com.noxquill.rewordium.keyboard.ime.core.Subtype
 import com.noxquill.rewordium.keyboard.ime.keyboard.KeyData
+import com.noxquill.rewordium.keyboard.ime.nlp.TopKSelector
+import com.noxquill.rewordium.keyboard.ime.nlp.Vocabulary
+import com.noxquill.rewordium.keyboard.ime.nlp.WordListDelta
 import com.noxquill.rewordium.keyboard.ime.text.key.KeyCode
 import com.noxquill.rewordium.keyboard.ime.text.keyboard.TextKey
+import com.noxquill.rewordium.keyboard.lib.devtools.flogDebug
 import com.noxquill.rewordium.keyboard.nlpManager
 import com.noxquill.rewordium.keyboard.editorInstance
+import java.io.File
 import java.text.Normalizer
 import java.util.*
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+import kotlin.concurrent.thread
 import kotlin.math.PI
 import kotlin.math.abs
 import kotlin.math.exp
@@ -50,15 +57,22 @@ private fun TextKey.baseCode(): Int {
  */
 class StatisticalGlideTypingClassifier(context: Context) : GlideTypingClassifier {
     private val nlpManager by context.nlpManager()
+    private val idealPathsDir = File(context.cacheDir, "glide_ideal_paths")
+    private val prunerIndexDir = File(context.cacheDir, "glide_pruner_index")
     private val editorInstance by context.editorInstance()
     private val reranker = ContextLmReranker(context)
 
     private val gesture = Gesture()
     private var keysByCharacter: SparseArrayCompat<TextKey> = SparseArrayCompat()
-    private var words: List<String> = emptyList()
-    // Snapshot of word frequencies loaded once per subtype change so the inner scoring loop
-    // can do O(1) map lookups instead of a runBlocking JNI call per candidate.
-    private var wordFrequencies: Map<String, Double> = emptyMap()
+    // The provider's interned word list, shared by reference rather than copied per subtype,
+    // so the inner scoring loop can look frequencies up locally instead of a runBlocking call
+    // per candidate. The provider patches it in place as words are learned.
+    private var vocabulary = Vocabulary()
+    // Words added by addWords since the last full load, re-applied to Pruners built later.
+    private val patchedWords = ArrayList<String>()
+    // Base list version + learned/forgotten words, if the provider supports it; lets the
+    // Pruner reuse a persisted index of the base list instead of re-bucketing every word.
+    private var wordListDelta: WordListDelta? = null
 
     /**
      * Per-gesture beam of best-seen-so-far candidates across mid-gesture preview calls.
@@ -71,6 +85,25 @@ class StatisticalGlideTypingClassifier(context: Context) : GlideTypingClassifier
      * default: beam-ranked top-1 must match current top-1 on >95% of a curated corpus.
      */
     private val beam = HashMap<String, Float>(16)
+
+    // Reused by the scoring candidate caps. Thread-local like the heaps below, since
+    // overlapping preview and final passes run on different threads.
+    private val scoringCandidateSelector = ThreadLocal.withInitial { TopKSelector<String>() }
+
+    // Per-partition and merge heaps of the parallel scoring pass. Thread-local to the
+    // calling thread, since overlapping preview passes run on different threads.
+    private val partitionSelectors = ThreadLocal.withInitial { ArrayList<TopKSelector<String>>() }
+    private val mergedSelector = ThreadLocal.withInitial { TopKSelector<String>() }
+
+    /**
+     * Partial alignments carried across mid-stroke previews when
+     * [BuildConfig.ENABLE_INCREMENTAL_GLIDE_PREVIEW] is on. Seeded on the first
+     * preview of a gesture, reset on [clear] and whenever the pruner changes.
+     * Guarded by its own monitor since previews run on a background dispatcher.
+     */
+    private val incrementalDecoder = IncrementalGlideDecoder()
+    private val previewScoringCandidates = ArrayList<String>(PREVIEW_SCORING_CANDIDATES)
+
     private var keys: ArrayList<TextKey> = arrayListOf()
     private lateinit var pruner: Pruner
     private var wordDataSubtype: Subtype? = null
@@ -80,6 +113,18 @@ class StatisticalGlideTypingClassifier(context: Context) : GlideTypingClassifier
         get() = currentSubtype == layoutSubtype && wordDataSubtype == layoutSubtype && wordDataSubtype != null
     private val prunerCache = LruCache<Subtype, Pruner>(PRUNER_CACHE_SIZE)
 
+    // Ideal paths of the current layout; kept across Pruner rebuilds while the layout
+    // hash stays the same.
+    private var idealPaths: IdealPathSlab? = null
+
+    // Ideal paths of the current layout at each of [SAMPLING_TIERS] for adaptive
+    // resampling, the last one being the Pruner's own slab. Empty while disabled.
+    @Volatile
+    private var tierPaths: Array<IdealPathSlab> = emptyArray()
+
+    // (layout hash, base word list version) → mapped Pruner index, reused across rebuilds.
+    private var prunerIndex: Triple<Int, Long, PrunerIndex>? = null
+
     /**
      * The minimum distance between points to be added to a gesture.
      */
@@ -92,6 +137,9 @@ class StatisticalGlideTypingClassifier(context: Context) : GlideTypingClassifier
          */
         private const val PRUNING_LENGTH_THRESHOLD = 8.42
 
+        // Stale ideal path files are swept once per process, see sweepStaleIdealPaths.
+        private val staleSlabSweepScheduled = AtomicBoolean(false)
+
         /**
          * Number of evenly-spaced points to resample a gesture into before comparison.
          * Reduced from 240 → 120 for a 2× speedup in inner-loop distance calculations
@@ -99,6 +147,22 @@ class StatisticalGlideTypingClassifier(context: Context) : GlideTypingClassifier
          */
         private const val SAMPLING_POINTS: Int = 120
 
+        /**
+         * Point counts a candidate may be compared on when [BuildConfig.ENABLE_ADAPTIVE_RESAMPLE]
+         * is on, the largest being [SAMPLING_POINTS]. A few fixed tiers rather than any count,
+         * so ideal paths are packed and persisted once per tier and the user path is
+         * resampled at most once per tier.
+         */
+        private val SAMPLING_TIERS = intArrayOf(32, 64, SAMPLING_POINTS)
+
+        /**
+         * Points wanted per letter of a candidate and per key width of gesture length when
+         * picking its tier. Letters are where the path turns; straight runs between keys
+         * need few points. "the" lands on 32 points, "tomorrow" on 120.
+         */
+        private const val POINTS_PER_LETTER = 6f
+        private const val POINTS_PER_KEY = 2f
+
         /**
          * Standard deviation of the distribution of distances between the shapes of two gestures
          * representing the same word. It's expressed for normalized gestures and is therefore
@@ -128,6 +192,12 @@ class StatisticalGlideTypingClassifier(context: Context) : GlideTypingClassifier
          */
         private const val VELOCITY_STD_GAIN = 0.5f
 
+        /**
+         * Steps the velocity factor is bucketed to in the cache key. Gestures in the same
+         * bucket widen LOCATION_STD by at most VELOCITY_STD_GAIN / 8 apart.
+         */
+        private const val VELOCITY_BUCKETS = 8
+
         /**
          * Fraction of the resampled gesture's length after which sample points are down-weighted
          * in shape/location distance. 0.88 = the last 12% of points are softened. Only applied
@@ -178,31 +248,39 @@ class StatisticalGlideTypingClassifier(context: Context) : GlideTypingClassifier
         private const val PRUNER_CACHE_SIZE = 8
 
         /**
-         * Size of the per-Pruner LRU cache holding `generateIdealGestures` results.
-         * 1024 entries handily covers a typing session's working vocabulary while
-         * keeping memory bounded (≈ word.length × few-hundred-bytes per entry).
+         * Number of words scored per [GlideScoringPool] partition after the extremities
+         * + length pruners have run, and the overall ceiling. See call-site for rationale.
          */
-        private const val IDEAL_GESTURES_CACHE_SIZE = 1024
+        private const val SCORING_CANDIDATES_PER_PARTITION = 256
+        private const val MAX_SCORING_CANDIDATES = 1024
 
         /**
-         * Maximum number of words scored per mid-stroke preview after the extremities
-         * + length pruners have run. See call-site for rationale.
+         * Number of keys around the touch-down point whose words seed the incremental
+         * decoder, and the most frequent of those words it tracks at most.
          */
-        private const val MAX_SCORING_CANDIDATES = 256
+        private const val INCREMENTAL_START_KEYS = 4
+        private const val INCREMENTAL_MAX_CANDIDATES = 4096
+
+        /**
+         * Number of incremental-decoder candidates a mid-stroke preview runs the full
+         * shape/location scoring on. Constant, so preview cost doesn't grow with the
+         * swipe.
+         */
+        private const val PREVIEW_SCORING_CANDIDATES = 48
     }
 
-    override fun addGesturePoint(position: GlideTypingGesture.Detector.Position) {
-        // Fall back to system clock when the position carries no event time (legacy callers).
-        val t = if (position.t != 0L) position.t else System.currentTimeMillis()
+    override fun addGesturePoint(samples: GestureSampleBuffer, index: Int) {
+        val x = samples.x(index)
+        val y = samples.y(index)
         if (!gesture.isEmpty) {
-            val dx = gesture.getLastX() - position.x
-            val dy = gesture.getLastY() - position.y
+            val dx = gesture.getLastX() - x
+            val dy = gesture.getLastY() - y
 
             if (dx * dx + dy * dy > distanceThresholdSquared) {
-                gesture.addPoint(position.x, position.y, t)
+                gesture.addPoint(x, y, samples.t(index))
             }
         } else {
-            gesture.addPoint(position.x, position.y, t)
+            gesture.addPoint(x, y, samples.t(index))
         }
     }
 
@@ -242,10 +320,9 @@ class StatisticalGlideTypingClassifier(context: Context) : GlideTypingClassifier
             return
         }
 
-        this.words = nlpManager.getListOfWords(subtype)
-        // Load all frequencies up-front so unCachedGetSuggestions can use a local map lookup
-        // instead of calling nlpManager.getFrequencyForWord() (a runBlocking call) per candidate.
-        this.wordFrequencies = nlpManager.getFrequencyMap(subtype)
+        this.vocabulary = nlpManager.getVocabulary(subtype)
+        this.wordListDelta = nlpManager.getWordListDelta(subtype)
+        synchronized(patchedWords) { patchedWords.clear() }
 
         this.wordDataSubtype = subtype
         if (force) {
@@ -259,6 +336,37 @@ class StatisticalGlideTypingClassifier(context: Context) : GlideTypingClassifier
         }
     }
 
+    override fun addWords(subtype: Subtype, frequencies: Map<String, Double>): Boolean {
+        return patchWordData(subtype, frequencies.keys)
+    }
+
+    override fun updateFrequencies(subtype: Subtype, frequencies: Map<String, Double>): Boolean {
+        return patchWordData(subtype, emptySet())
+    }
+
+    /**
+     * Adds [newWords] to the Pruner's buckets in place, instead of re-reading the word list
+     * and rebuilding the Pruner. Frequencies need no patching here: the provider already
+     * applied the change to the shared vocabulary.
+     */
+    private fun patchWordData(subtype: Subtype, newWords: Collection<String>): Boolean {
+        if (subtype != wordDataSubtype) {
+            // Re-read in full once the subtype is active again; just don't reuse its Pruner.
+            prunerCache.remove(subtype)
+            return true
+        }
+        if (newWords.isNotEmpty()) {
+            synchronized(patchedWords) { patchedWords.addAll(newWords) }
+            if (currentSubtype == subtype) {
+                pruner.addWords(newWords, keysByCharacter)
+            }
+        }
+        // Cheap: only holds the last few gestures, whose ranking may have changed.
+        lruSuggestionCache.evictAll()
+        flogDebug { "Patched glide words in place (${newWords.size} new)" }
+        return true
+    }
+
     /**
      * Exists because Pruner requires both word data and layout are initialized,
      * however we don't know what order they're initialized in.
@@ -270,26 +378,114 @@ class StatisticalGlideTypingClassifier(context: Context) : GlideTypingClassifier
             else -> prunerCache.get(currentSubtype)
         }
         if (cached == null) {
-            this.pruner = Pruner(PRUNING_LENGTH_THRESHOLD, this.words, keysByCharacter)
+            val idealPaths = idealPathsForLayout()
+            val delta = wordListDelta
+            val index = delta?.let { prunerIndexFor(idealPaths.layoutHash, it) }
+            this.pruner = Pruner(PRUNING_LENGTH_THRESHOLD, vocabulary.words(), keysByCharacter, idealPaths, index, delta)
             prunerCache.put(currentSubtype, this.pruner)
         } else {
             this.pruner = cached
         }
+        synchronized(patchedWords) {
+            if (patchedWords.isNotEmpty()) pruner.addWords(patchedWords, keysByCharacter)
+        }
+        if (BuildConfig.ENABLE_ADAPTIVE_RESAMPLE) {
+            val pruner = pruner
+            tierPaths = pruner.tierPaths.ifEmpty { tierPathsFor(pruner.idealPaths).also { pruner.tierPaths = it } }
+        }
+        if (staleSlabSweepScheduled.compareAndSet(false, true)) sweepStaleIdealPaths()
         this.currentSubtype = currentSubtype
+        synchronized(incrementalDecoder) { incrementalDecoder.reset() }
+    }
+
+    /**
+     * Deletes, once per process and off the calling thread, the slab files left by
+     * layouts and tiers this process hasn't used: those of every Pruner still in
+     * [prunerCache] are kept, as are files written since the sweep was scheduled.
+     */
+    private fun sweepStaleIdealPaths() {
+        val scheduledAt = System.currentTimeMillis()
+        thread(name = "GlideIdealPathSweep", isDaemon = true, priority = Thread.MIN_PRIORITY) {
+            val keep = ArrayList<IdealPathSlab>()
+            for (pruner in prunerCache.snapshot().values) {
+                keep.add(pruner.idealPaths)
+                keep.addAll(pruner.tierPaths)
+            }
+            idealPaths?.let { keep.add(it) }
+            keep.addAll(tierPaths)
+            IdealPathSlab.deleteStale(idealPathsDir, keep, scheduledAt)
+        }
+    }
+
+    private fun idealPathsForLayout(): IdealPathSlab {
+        val layoutHash = IdealPathSlab.layoutHash(keysByCharacter, SAMPLING_POINTS)
+        idealPaths?.let { if (it.layoutHash == layoutHash) return it }
+        return IdealPathSlab(SAMPLING_POINTS, layoutHash, File(idealPathsDir, "$layoutHash.bin"))
+            .also { idealPaths = it }
+    }
+
+    private fun tierPathsFor(fullPaths: IdealPathSlab): Array<IdealPathSlab> {
+        val current = tierPaths
+        return Array(SAMPLING_TIERS.size) { tier ->
+            val sampleCount = SAMPLING_TIERS[tier]
+            if (sampleCount == fullPaths.sampleCount) return@Array fullPaths
+            val layoutHash = IdealPathSlab.layoutHash(keysByCharacter, sampleCount)
+            current.getOrNull(tier)?.takeIf { it.layoutHash == layoutHash }
+                ?: IdealPathSlab(sampleCount, layoutHash, File(idealPathsDir, "$layoutHash.bin"))
+        }
+    }
+
+    /**
+     * Index into [SAMPLING_TIERS] of the fewest points that resolve a candidate of
+     * [letters] letters on a gesture [gestureKeys] key widths long.
+     */
+    private fun samplingTier(letters: Int, gestureKeys: Float): Int {
+        val wanted = POINTS_PER_LETTER * letters + POINTS_PER_KEY * gestureKeys
+        for (tier in 0 until SAMPLING_TIERS.size - 1) {
+            if (SAMPLING_TIERS[tier] >= wanted) return tier
+        }
+        return SAMPLING_TIERS.size - 1
+    }
+
+    private fun prunerIndexFor(layoutHash: Int, delta: WordListDelta): PrunerIndex? {
+        prunerIndex?.let { (hash, version, index) ->
+            if (hash == layoutHash && version == delta.baseVersion) return index
+        }
+        val file = PrunerIndex.fileFor(prunerIndexDir, layoutHash, delta.baseVersion)
+        val index = Pruner.openOrBuildIndex(file, layoutHash, delta, vocabulary.baseWords(), keysByCharacter) ?: return null
+        PrunerIndex.deleteOtherVersions(prunerIndexDir, layoutHash, file)
+        prunerIndex = Triple(layoutHash, delta.baseVersion, index)
+        return index
     }
 
     override fun initGestureFromPointerData(pointerData: GlideTypingGesture.Detector.PointerData) {
-        for (position in pointerData.positions) {
-            addGesturePoint(position)
+        val samples = pointerData.samples
+        for (index in samples.firstIndex until samples.count) {
+            addGesturePoint(samples, index)
         }
     }
 
-    private val lruSuggestionCache = LruCache<Pair<Gesture, Int>, List<String>>(SUGGESTION_CACHE_SIZE)
+    // Keyed by a quantized fingerprint of the gesture, so near-identical swipes share an entry.
+    private val lruSuggestionCache = LruCache<GestureFingerprint, List<String>>(SUGGESTION_CACHE_SIZE)
     override fun getSuggestions(maxSuggestionCount: Int, gestureCompleted: Boolean): List<String> {
-        return when (val cached = lruSuggestionCache.get(Pair(this.gesture, maxSuggestionCount))) {
+        if (!gestureCompleted && BuildConfig.ENABLE_INCREMENTAL_GLIDE_PREVIEW) {
+            // Not cached: previews almost never repeat a gesture, and the final call on the
+            // same points must get the full pruning, not a preview ranking.
+            val previewWords = incrementalPreviewCandidates()
+            if (previewWords != null) {
+                return unCachedGetSuggestions(maxSuggestionCount, previewWords)
+            }
+        }
+        val fingerprint = fingerprintGesture(maxSuggestionCount)
+        return when (val cached = fingerprint?.let { lruSuggestionCache.get(it) }) {
             null -> {
                 val suggestions = unCachedGetSuggestions(maxSuggestionCount)
-                lruSuggestionCache.put(Pair(this.gesture.clone(), maxSuggestionCount), suggestions)
+                if (fingerprint != null) lruSuggestionCache.put(fingerprint, suggestions)
+                if (gestureCompleted) {
+                    // Already off the main thread; persist newly packed ideal paths.
+                    pruner.idealPaths.saveIfDirty()
+                    for (paths in tierPaths) if (paths !== pruner.idealPaths) paths.saveIfDirty()
+                }
 
                 suggestions
             }
@@ -299,12 +495,91 @@ class StatisticalGlideTypingClassifier(context: Context) : GlideTypingClassifier
         }
     }
 
-    private fun unCachedGetSuggestions(maxSuggestionCount: Int): List<String> {
+    /**
+     * Cache key of the current gesture: its [GestureFingerprint] on a half-key grid, salted
+     * with everything besides the path that changes the result — the layout, the requested
+     * count, whether the tail is softened, the velocity bucket that widens LOCATION_STD and
+     * the context words the reranker looks at.
+     */
+    private fun fingerprintGesture(maxSuggestionCount: Int): GestureFingerprint? {
+        val key = keys.firstOrNull() ?: return null
+        val cellSize = min(key.visibleBounds.height, key.visibleBounds.width) / 2f
+        if (cellSize <= 0f) return null
+        val softenTail = BuildConfig.ENABLE_GESTURE_ENDPOINT_TOLERANCE &&
+            gesture.terminalVelocity() > V_FAST_FINISH_PX_PER_MS
+        val contextText = editorInstance.run { activeContent.getTextBeforeCursor(25) }
+        val recentContext = contextText.split("\\s+".toRegex()).filter { it.isNotBlank() }
+            .takeLast(ContextLmReranker.CONTEXT_WORDS).joinToString(" ").lowercase()
+        var salt = pruner.idealPaths.layoutHash
+        salt = 31 * salt + maxSuggestionCount
+        salt = 31 * salt + if (softenTail) 1 else 0
+        if (BuildConfig.ENABLE_VELOCITY_AWARE_GESTURE) {
+            salt = 31 * salt + (velocityFactor() * VELOCITY_BUCKETS).toInt()
+        }
+        salt = 31 * salt + recentContext.hashCode()
+        return GestureFingerprint.of(gesture, cellSize, salt)
+    }
+
+    /** The gesture's peak velocity normalised to [0,1] by [V_MAX_REFERENCE_PX_PER_MS]. */
+    private fun velocityFactor(): Float =
+        (gesture.peakVelocity() / V_MAX_REFERENCE_PX_PER_MS).coerceIn(0f, 1f)
+
+    /**
+     * Feeds the points added since the last preview to [incrementalDecoder], seeding it
+     * on the first preview of a gesture, and returns its best candidates for full
+     * scoring. Null if there is nothing to decode, so the caller falls back to the
+     * regular pruners.
+     */
+    private fun incrementalPreviewCandidates(): List<String>? {
+        val key = keys.firstOrNull() ?: return null
+        if (gesture.isEmpty || !::pruner.isInitialized) return null
+        val radius = min(key.visibleBounds.height, key.visibleBounds.width)
+        synchronized(incrementalDecoder) {
+            if (!incrementalDecoder.isStarted) {
+                val seeds = pruner.pruneByStart(gesture, keys, INCREMENTAL_START_KEYS)
+                val tracked = if (seeds.size <= INCREMENTAL_MAX_CANDIDATES) {
+                    seeds
+                } else {
+                    val selector = scoringCandidateSelector.get()
+                    selector.reset(INCREMENTAL_MAX_CANDIDATES)
+                    for (word in seeds) {
+                        selector.offer(word, vocabulary.frequencyOf(word).toDouble())
+                    }
+                    ArrayList<String>(INCREMENTAL_MAX_CANDIDATES).also { selector.sortInto(it) }
+                }
+                incrementalDecoder.start(tracked, radius) { c, out ->
+                    val lc = Character.toLowerCase(c)
+                    // Same base-character fallback as Gesture.generateIdealGestures.
+                    val charKey = keysByCharacter[lc.code]
+                        ?: keysByCharacter[Normalizer.normalize(lc.toString(), Normalizer.Form.NFD)[0].code]
+                    if (charKey == null) {
+                        false
+                    } else {
+                        val center = charKey.visibleBounds.center
+                        out[0] = center.x
+                        out[1] = center.y
+                        true
+                    }
+                }
+            }
+            incrementalDecoder.update(gesture)
+            previewScoringCandidates.clear()
+            incrementalDecoder.collectBest(
+                PREVIEW_SCORING_CANDIDATES, gesture.getLastX(), gesture.getLastY(), previewScoringCandidates
+            )
+            return if (previewScoringCandidates.isEmpty()) null else ArrayList(previewScoringCandidates)
+        }
+    }
+
+    /**
+     * Scores candidates against the current gesture. [previewWords], when given, are
+     * scored as-is instead of running the extremities and length pruners.
+     */
+    private fun unCachedGetSuggestions(maxSuggestionCount: Int, previewWords: List<String>? = null): List<String> {
         val candidates = arrayListOf<String>()
         val candidateWeights = arrayListOf<Float>()
         val key = keys.firstOrNull() ?: return listOf()
         val radius = min(key.visibleBounds.height, key.visibleBounds.width)
-        val extremityCandidates = pruner.pruneByExtremities(gesture, this.keys)
         // Optionally simplify the raw gesture with Douglas-Peucker before resampling.
         // Removes micro-jitter while preserving directional corners.
         val smoothedGesture = if (BuildConfig.ENABLE_PATH_SMOOTHER) {
@@ -312,41 +587,60 @@ class StatisticalGlideTypingClassifier(context: Context) : GlideTypingClassifier
         } else {
             gesture
         }
-        val userGesture = smoothedGesture.resample(SAMPLING_POINTS)
-        val normalizedUserGesture: Gesture = userGesture.normalizeByBoxSide()
-        val lengthCandidates = pruner.pruneByLength(gesture, extremityCandidates, keysByCharacter, keys)
-        val preCappedWords = if (lengthCandidates.isNotEmpty()) {
-            lengthCandidates
+        val idealPaths = pruner.idealPaths
+        val userPath = FloatArray(idealPaths.stride)
+        idealPaths.pack(smoothedGesture, userPath, 0)
+        // Adaptive resampling: each candidate is compared on the tier picked by
+        // samplingTier, so the user path is packed once per tier up front.
+        val tierPaths = if (BuildConfig.ENABLE_ADAPTIVE_RESAMPLE) tierPaths else emptyArray()
+        val tierUserPaths = Array(tierPaths.size) { tier ->
+            val paths = tierPaths[tier]
+            if (paths === idealPaths) userPath else FloatArray(paths.stride).also { paths.pack(smoothedGesture, it, 0) }
+        }
+        val preCappedWords = if (previewWords != null) {
+            previewWords
         } else {
-            extremityCandidates
+            val extremityCandidates = pruner.pruneByExtremities(gesture, this.keys)
+            val lengthCandidates = pruner.pruneByLength(gesture, extremityCandidates, keysByCharacter, keys)
+            if (lengthCandidates.isNotEmpty()) {
+                lengthCandidates
+            } else {
+                extremityCandidates
+            }
         }
         // Per-stroke ceiling on scored candidates. Mid-stroke previews need to finish in
         // well under the preview-refresh delay (150ms) or the keyboard feels laggy. On
         // ambiguous prefixes the extremities+length pruner can still return 500-1000
         // words; without a cap the inner scoring loop dominates the frame.
         //
-        // Keep the highest-frequency MAX_SCORING_CANDIDATES of them — high-freq words
+        // Keep the highest-frequency scoringCap of them — high-freq words
         // are the ones the user is overwhelmingly likely to actually be swiping, and
         // shape-match scoring decides among them. A long-tail rarity that happened to
         // pass both pruners but isn't in the user's top vocabulary is almost certainly
         // not what they meant.
-        val remainingWords = if (preCappedWords.size <= MAX_SCORING_CANDIDATES) {
+        //
+        // Selected with a reused bounded heap rather than sorting all of them. The
+        // ceiling scales with the scoring pool, since partitions are scored in parallel.
+        // The pool partitions read a list of this pass's own, so an overlapping pass
+        // can't change it under them.
+        val scoringCap = (SCORING_CANDIDATES_PER_PARTITION * GlideScoringPool.parallelism)
+            .coerceAtMost(MAX_SCORING_CANDIDATES)
+        val remainingWords = if (preCappedWords.size <= scoringCap) {
             preCappedWords
         } else {
-            preCappedWords
-                .asSequence()
-                .sortedByDescending { wordFrequencies.getOrDefault(it, 0.0) }
-                .take(MAX_SCORING_CANDIDATES)
-                .toCollection(ArrayList(MAX_SCORING_CANDIDATES))
+            val selector = scoringCandidateSelector.get()
+            selector.reset(scoringCap)
+            for (word in preCappedWords) {
+                selector.offer(word, vocabulary.frequencyOf(word).toDouble())
+            }
+            ArrayList<String>(scoringCap).also { selector.sortInto(it) }
         }
 
         // Velocity-aware LOCATION_STD: widen the location distribution for fast gestures
         // so that high-velocity swipes (lower positional certainty) score more leniently.
         // Computed from the raw gesture's 95th-percentile per-segment velocity.
         val effectiveLocationStd = if (BuildConfig.ENABLE_VELOCITY_AWARE_GESTURE) {
-            val v = gesture.peakVelocity()
-            val velocityFactor = (v / V_MAX_REFERENCE_PX_PER_MS).coerceIn(0f, 1f)
-            LOCATION_STD * (1f + velocityFactor * VELOCITY_STD_GAIN)
+            LOCATION_STD * (1f + velocityFactor() * VELOCITY_STD_GAIN)
         } else {
             LOCATION_STD
         }
@@ -359,59 +653,90 @@ class StatisticalGlideTypingClassifier(context: Context) : GlideTypingClassifier
             gesture.terminalVelocity() > V_FAST_FINISH_PX_PER_MS
 
         val userPathLength = gesture.getLength()
-
-        for (i in remainingWords.indices) {
-            val word = remainingWords[i]
-            // Shared cache with pruneByLength — same word, same layout, identical result.
-            val idealGestures = pruner.getIdealGestures(word, keysByCharacter)
-
-            for (idealGesture in idealGestures) {
-                val wordGesture = idealGesture.resample(SAMPLING_POINTS)
-                val normalizedGesture: Gesture = wordGesture.normalizeByBoxSide()
-                val shapeDistance = calcShapeDistance(normalizedGesture, normalizedUserGesture, softenTail)
-                val locationDistance = calcLocationDistance(wordGesture, userGesture, softenTail)
-                val shapeProbability = max(0.000001f, calcGaussianProbability(shapeDistance, 0.0f, SHAPE_STD))
-                val locationProbability = max(0.000001f, calcGaussianProbability(locationDistance, 0.0f, effectiveLocationStd * radius))
-                // Length-aware frequency: when candidates saturate the unigram cap (e.g., "hello"
-                // and "hell" are both very common), bias toward the longer one. The dictionary file
-                // tops out at byte-range 255, so common words tie on raw frequency — this gentle
-                // length factor breaks ties in favor of complete words over their short prefixes.
-                val rawFreq = 255f * wordFrequencies.getOrDefault(word, 0.0).toFloat()
-                val lengthBonus = if (word.length >= 5) 1f + ((word.length - 4).coerceAtMost(6)) * 0.10f else 1f
-                // Length-match bonus: reward candidates whose ideal path length matches the
-                // user's actual gesture length. Direct fix for "tomorrow → tomorrow's": the
-                // longer extension's ideal path is too long for the user's actual swipe.
-                val idealPathLength = idealGesture.getLength()
-                val lengthMismatchKeys = abs(idealPathLength - userPathLength) / radius
-                val lengthMatchBonus = 1f + (LENGTH_MATCH_MAX_BONUS - 1f) *
-                    exp(-lengthMismatchKeys / LENGTH_MATCH_FALLOFF_KEYS)
-                val frequency = max(1f, rawFreq * lengthBonus * lengthMatchBonus)
-                val confidence = 1.0f / (shapeProbability * locationProbability * frequency)
-
-                var candidateDistanceSortedIndex = 0
-                var duplicateIndex = Int.MAX_VALUE
-
-                while (candidateDistanceSortedIndex < candidateWeights.size
-                    && candidateWeights[candidateDistanceSortedIndex] <= confidence
-                ) {
-                    if (candidates[candidateDistanceSortedIndex].contentEquals(word)) duplicateIndex =
-                        candidateDistanceSortedIndex
-                    candidateDistanceSortedIndex++
-                }
-                if (candidateDistanceSortedIndex < maxSuggestionCount && candidateDistanceSortedIndex <= duplicateIndex) {
-                    if (duplicateIndex < Int.MAX_VALUE) {
-                        candidateWeights.removeAt(duplicateIndex)
-                        candidates.removeAt(duplicateIndex)
-                    }
-                    candidateWeights.add(candidateDistanceSortedIndex, confidence)
-                    candidates.add(candidateDistanceSortedIndex, word)
-                    if (candidateWeights.size > maxSuggestionCount) {
-                        candidateWeights.removeAt(maxSuggestionCount)
-                        candidates.removeAt(maxSuggestionCount)
+        val userPathKeys = userPathLength / radius
+
+        // Scored in contiguous partitions on GlideScoringPool, each keeping its own best
+        // maxSuggestionCount words (by lowest confidence, one entry per word) in a top-K
+        // heap. Merging the heaps in partition order keeps ties resolved by candidate
+        // order, exactly like a single sequential pass.
+        val startNanos = System.nanoTime()
+        val selectors = partitionSelectors.get()!!
+        while (selectors.size < GlideScoringPool.parallelism) selectors.add(TopKSelector())
+        // Slots the partitions read aren't reused until their pass ends.
+        val pass = idealPaths.beginPass()
+        val tierPasses = IntArray(tierPaths.size) { tier ->
+            val paths = tierPaths[tier]
+            if (paths === idealPaths) pass else paths.beginPass()
+        }
+        val partitions = try {
+            GlideScoringPool.forEachPartition(remainingWords.size) { partition, from, to ->
+                val selector = selectors[partition]
+                selector.reset(maxSuggestionCount)
+                for (i in from until to) {
+                    val word = remainingWords[i]
+                    val tier = if (tierPaths.isEmpty()) -1 else samplingTier(word.length, userPathKeys)
+                    val paths = if (tier < 0) idealPaths else tierPaths[tier]
+                    val user = if (tier < 0) userPath else tierUserPaths[tier]
+                    // Packed once per word and layout, only for words that survived pruning.
+                    val entry = paths.entryFor(word, keysByCharacter) ?: continue
+                    // Taken after the entry: an array read before it was packed may be too short.
+                    val slab = paths.data
+                    var bestConfidence = Float.MAX_VALUE
+
+                    for (variant in 0 until entry.count) {
+                        val slot = entry.offset(variant)
+                        val shapeDistance = calcShapeDistance(
+                            slab, slot + paths.shapeX, slot + paths.shapeY,
+                            user, paths.shapeX, paths.shapeY, paths.sampleCount, softenTail,
+                        )
+                        val locationDistance = calcLocationDistance(
+                            slab, slot + paths.locationX, slot + paths.locationY,
+                            user, paths.locationX, paths.locationY, paths.sampleCount, softenTail,
+                        )
+                        val shapeProbability = max(0.000001f, calcGaussianProbability(shapeDistance, 0.0f, SHAPE_STD))
+                        val locationProbability = max(0.000001f, calcGaussianProbability(locationDistance, 0.0f, effectiveLocationStd * radius))
+                        // Length-aware frequency: when candidates saturate the unigram cap (e.g., "hello"
+                        // and "hell" are both very common), bias toward the longer one. The dictionary file
+                        // tops out at byte-range 255, so common words tie on raw frequency — this gentle
+                        // length factor breaks ties in favor of complete words over their short prefixes.
+                        val rawFreq = 255f * vocabulary.frequencyOf(word)
+                        val lengthBonus = if (word.length >= 5) 1f + ((word.length - 4).coerceAtMost(6)) * 0.10f else 1f
+                        // Length-match bonus: reward candidates whose ideal path length matches the
+                        // user's actual gesture length. Direct fix for "tomorrow → tomorrow's": the
+                        // longer extension's ideal path is too long for the user's actual swipe.
+                        val idealPathLength = slab[slot + IdealPathSlab.LENGTH]
+                        val lengthMismatchKeys = abs(idealPathLength - userPathLength) / radius
+                        val lengthMatchBonus = 1f + (LENGTH_MATCH_MAX_BONUS - 1f) *
+                            exp(-lengthMismatchKeys / LENGTH_MATCH_FALLOFF_KEYS)
+                        val frequency = max(1f, rawFreq * lengthBonus * lengthMatchBonus)
+                        val confidence = 1.0f / (shapeProbability * locationProbability * frequency)
+                        if (confidence < bestConfidence) bestConfidence = confidence
                     }
+                    selector.offer(word, -bestConfidence.toDouble())
                 }
             }
+        } finally {
+            idealPaths.endPass(pass)
+            for (tier in tierPaths.indices) {
+                if (tierPaths[tier] !== idealPaths) tierPaths[tier].endPass(tierPasses[tier])
+            }
+        }
+        val merged = mergedSelector.get()!!
+        merged.reset(maxSuggestionCount)
+        for (p in 0 until partitions) {
+            val selector = selectors[p]
+            selector.sort()
+            for (k in 0 until selector.size) merged.offer(selector.itemAt(k), selector.scoreAt(k))
+        }
+        merged.sort()
+        for (k in 0 until merged.size) {
+            val word = merged.itemAt(k)
+            // Only a word listed twice in remainingWords can show up twice.
+            if (word in candidates) continue
+            candidates.add(word)
+            candidateWeights.add((-merged.scoreAt(k)).toFloat())
         }
+        GlideScoringPool.recordPass(System.nanoTime() - startNanos, remainingWords.size)
 
         if (BuildConfig.ENABLE_GESTURE_PREFIX_BIAS && candidates.size >= 2) {
             // Prefix-extension preference: when the #1 candidate is a strict prefix of another
@@ -515,25 +840,33 @@ class StatisticalGlideTypingClassifier(context: Context) : GlideTypingClassifier
     override fun clear() {
         gesture.clear()
         beam.clear()
+        synchronized(incrementalDecoder) { incrementalDecoder.reset() }
     }
 
-    private fun calcLocationDistance(gesture1: Gesture, gesture2: Gesture, softenTail: Boolean): Float {
+    /**
+     * Mean Manhattan distance between two paths of [sampleCount] points, given as the
+     * offsets of their x and y runs in [a] and [b].
+     */
+    private fun calcLocationDistance(
+        a: FloatArray, ax: Int, ay: Int,
+        b: FloatArray, bx: Int, by: Int,
+        sampleCount: Int,
+        softenTail: Boolean,
+    ): Float {
         if (!softenTail) {
             var totalDistance = 0.0f
-            for (i in 0 until SAMPLING_POINTS) {
-                val distance = abs(gesture1.getX(i) - gesture2.getX(i)) +
-                    abs(gesture1.getY(i) - gesture2.getY(i))
+            for (i in 0 until sampleCount) {
+                val distance = abs(a[ax + i] - b[bx + i]) + abs(a[ay + i] - b[by + i])
                 totalDistance += distance
             }
-            return totalDistance / SAMPLING_POINTS / 2
+            return totalDistance / sampleCount / 2
         }
         var weightedSum = 0.0f
         var weightTotal = 0.0f
-        val tailStart = (SAMPLING_POINTS * TAIL_FRACTION_START).toInt()
-        for (i in 0 until SAMPLING_POINTS) {
+        val tailStart = (sampleCount * TAIL_FRACTION_START).toInt()
+        for (i in 0 until sampleCount) {
             val w = if (i < tailStart) 1.0f else TAIL_WEIGHT
-            val distance = abs(gesture1.getX(i) - gesture2.getX(i)) +
-                abs(gesture1.getY(i) - gesture2.getY(i))
+            val distance = abs(a[ax + i] - b[bx + i]) + abs(a[ay + i] - b[by + i])
             weightedSum += distance * w
             weightTotal += w
         }
@@ -547,27 +880,34 @@ class StatisticalGlideTypingClassifier(context: Context) : GlideTypingClassifier
         return probability.toFloat()
     }
 
-    private fun calcShapeDistance(gesture1: Gesture, gesture2: Gesture, softenTail: Boolean): Float {
+    /**
+     * Summed Euclidean distance between two normalized paths of [sampleCount] points,
+     * given as the offsets of their x and y runs in [a] and [b]. Scaled to
+     * [SAMPLING_POINTS] points, so [SHAPE_STD] applies whatever the sample count.
+     */
+    private fun calcShapeDistance(
+        a: FloatArray, ax: Int, ay: Int,
+        b: FloatArray, bx: Int, by: Int,
+        sampleCount: Int,
+        softenTail: Boolean,
+    ): Float {
         if (!softenTail) {
             var totalDistance = 0.0f
-            for (i in 0 until SAMPLING_POINTS) {
-                totalDistance += Gesture.distance(
-                    gesture1.getX(i), gesture1.getY(i),
-                    gesture2.getX(i), gesture2.getY(i),
-                )
+            for (i in 0 until sampleCount) {
+                val dx = a[ax + i] - b[bx + i]
+                val dy = a[ay + i] - b[by + i]
+                totalDistance += sqrt(dx * dx + dy * dy)
             }
-            return totalDistance
+            return totalDistance * (SAMPLING_POINTS.toFloat() / sampleCount)
         }
         var weightedSum = 0.0f
         var weightTotal = 0.0f
-        val tailStart = (SAMPLING_POINTS * TAIL_FRACTION_START).toInt()
-        for (i in 0 until SAMPLING_POINTS) {
+        val tailStart = (sampleCount * TAIL_FRACTION_START).toInt()
+        for (i in 0 until sampleCount) {
             val w = if (i < tailStart) 1.0f else TAIL_WEIGHT
-            val d = Gesture.distance(
-                gesture1.getX(i), gesture1.getY(i),
-                gesture2.getX(i), gesture2.getY(i),
-            )
-            weightedSum += d * w
+            val dx = a[ax + i] - b[bx + i]
+            val dy = a[ay + i] - b[by + i]
+            weightedSum += sqrt(dx * dx + dy * dy) * w
             weightTotal += w
         }
         return weightedSum * (SAMPLING_POINTS / weightTotal)
@@ -579,30 +919,72 @@ class StatisticalGlideTypingClassifier(context: Context) : GlideTypingClassifier
          * be pruned.
          */
         private val lengthThreshold: Double,
-        words: List<String>,
+        words: Iterable<String>,
         keysByCharacter: SparseArrayCompat<TextKey>,
+        /** Packed ideal paths of this layout, shared by all Pruners built for it. */
+        val idealPaths: IdealPathSlab,
+        /**
+         * Persisted word tree of the base word list described by [delta]. When both are
+         * given, only the delta is indexed in memory; otherwise all of [words] are.
+         */
+        index: PrunerIndex? = null,
+        delta: WordListDelta? = null,
     ) {
 
-        /** A tree that provides fast access to words based on their first and last letter.  */
+        /**
+         * A tree that provides fast access to words based on their first and last letter. Holds
+         * all words, or only the words added on top of [index]. Buckets are replaced rather than
+         * mutated by [addWords], since callers iterate them without the lock.
+         */
         private val wordTree = Collections.synchronizedMap(HashMap<Pair<Int, Int>, ArrayList<String>>())
 
         /**
-         * Per-word LRU cache of [Gesture.generateIdealGestures] results. Without this the
-         * ideal-path walk runs twice per word per scoring pass — once in [pruneByLength]
-         * and again in the main scoring loop — and the cost compounds with every
-         * mid-stroke preview refresh. The cache is per-Pruner, which is per-Subtype, so
-         * layout switches naturally rebuild and don't see stale entries.
-         *
-         * 1024 entries comfortably covers a typing session's active vocabulary; older
-         * words drop out and are recomputed if the user circles back to them.
+         * [idealPaths] at each sampling tier for adaptive resampling, set when this
+         * Pruner is first used with it on, so switching back to a cached layout reuses them.
          */
-        private val idealGesturesCache = LruCache<String, List<Gesture>>(IDEAL_GESTURES_CACHE_SIZE)
+        @Volatile
+        var tierPaths: Array<IdealPathSlab> = emptyArray()
+
+        private val index: PrunerIndex? = index.takeIf { delta != null }
+        private val removedWords: Set<String> = if (this.index != null) delta!!.removed else emptySet()
+
+        // Index buckets with the delta applied, built on first use, keyed to the in-memory
+        // bucket they were merged with so a bucket replaced by addWords is merged again.
+        private val mergedBuckets = ConcurrentHashMap<Long, Pair<List<String>?, List<String>>>()
+
+        private fun wordsFor(firstCode: Int, lastCode: Int): List<String>? {
+            val added = synchronized(wordTree) { wordTree[Pair(firstCode, lastCode)] }
+            val index = index ?: return added
+            val base = index.wordsFor(firstCode, lastCode)
+            if (added == null && removedWords.isEmpty()) return base
+            val key = PrunerIndex.pairKey(firstCode, lastCode)
+            mergedBuckets[key]?.let { (source, merged) -> if (source === added) return merged }
+            val merged = base.filter { it !in removedWords } + added.orEmpty()
+            mergedBuckets[key] = added to merged
+            return merged
+        }
 
-        fun getIdealGestures(word: String, keysByCharacter: SparseArrayCompat<TextKey>): List<Gesture> {
-            idealGesturesCache.get(word)?.let { return it }
-            val computed = Gesture.generateIdealGestures(word, keysByCharacter)
-            idealGesturesCache.put(word, computed)
-            return computed
+        /**
+         * Adds [words] to their buckets in place, skipping words already in one. Used for
+         * learned words instead of rebuilding the whole tree.
+         */
+        fun addWords(words: Iterable<String>, keysByCharacter: SparseArrayCompat<TextKey>) {
+            for (word in words) {
+                val keyPair = getFirstKeyLastKey(word, keysByCharacter) ?: continue
+                val index = index
+                if (index != null && word !in removedWords && word in index.wordsFor(keyPair.first, keyPair.second)) {
+                    continue
+                }
+                synchronized(wordTree) {
+                    val bucket = wordTree[keyPair]
+                    if (bucket == null || word !in bucket) {
+                        wordTree[keyPair] = ArrayList<String>((bucket?.size ?: 0) + 1).apply {
+                            bucket?.let { addAll(it) }
+                            add(word)
+                        }
+                    }
+                }
+            }
         }
 
         /**
@@ -628,8 +1010,7 @@ class StatisticalGlideTypingClassifier(context: Context) : GlideTypingClassifier
             val endKeys = findNClosestKeys(endX, endY, 6, keys)
             for (startKey in startKeys) {
                 for (endKey in endKeys) {
-                    val keyPair = Pair(startKey, endKey)
-                    val wordsForKeys = synchronized(wordTree) { wordTree[keyPair] }
+                    val wordsForKeys = wordsFor(startKey, endKey)
                     if (wordsForKeys != null) {
                         remainingWords.addAll(wordsForKeys)
                     }
@@ -638,6 +1019,35 @@ class StatisticalGlideTypingClassifier(context: Context) : GlideTypingClassifier
             return remainingWords
         }
 
+        /**
+         * Finds the words whose first letter is on one of the [n] keys closest to the start
+         * point of the user gesture, regardless of their last letter. Used to seed the
+         * [IncrementalGlideDecoder] while the end point isn't known yet.
+         */
+        fun pruneByStart(
+            userGesture: Gesture,
+            keys: Iterable<TextKey>,
+            n: Int,
+        ): ArrayList<String> {
+            val remainingWords = ArrayList<String>()
+            val startKeys = findNClosestKeys(userGesture.getFirstX(), userGesture.getFirstY(), n, keys).toHashSet()
+            val index = index
+            index?.forEachPair { firstCode, lastCode ->
+                if (firstCode in startKeys) {
+                    wordsFor(firstCode, lastCode)?.let { remainingWords.addAll(it) }
+                }
+            }
+            synchronized(wordTree) {
+                for ((keyPair, wordsForKeys) in wordTree) {
+                    // Pairs the index also has were merged in above.
+                    if (keyPair.first in startKeys && (index == null || index.wordsFor(keyPair.first, keyPair.second).isEmpty())) {
+                        remainingWords.addAll(wordsForKeys)
+                    }
+                }
+            }
+            return remainingWords
+        }
+
         /**
          * Finds the words whose ideal gesture length is within a certain threshold of the user
          * gesture's length.
@@ -671,25 +1081,60 @@ class StatisticalGlideTypingClassifier(context: Context) : GlideTypingClassifier
                 if (BuildConfig.ENABLE_GESTURE_LENGTH_ASYMMETRY) lengthThreshold * 1.25 else lengthThreshold
             val shorterTolerance = lengthThreshold
             for (word in words) {
-                val idealGestures = getIdealGestures(word, keysByCharacter)
-                for (idealGesture in idealGestures) {
-                    val wordIdealLength = getCachedIdealLength(word, idealGesture)
-                    val diff = wordIdealLength - userLength
-                    val tolerance = if (diff >= 0) longerTolerance else shorterTolerance
-                    if (abs(diff) < tolerance * radius) {
-                        remainingWords.add(word)
-                    }
+                // Measured by the plain (loop-free) ideal path; the scoring loop
+                // still tries every variant of the word. Only the survivors get packed.
+                val wordIdealLength = idealPaths.lengthOf(word, keysByCharacter)
+                if (wordIdealLength < 0f) continue
+                val diff = wordIdealLength - userLength
+                val tolerance = if (diff >= 0) longerTolerance else shorterTolerance
+                if (abs(diff) < tolerance * radius) {
+                    remainingWords.add(word)
                 }
             }
             return remainingWords
         }
 
-        private val cachedIdealLength = ConcurrentHashMap<String, Float>()
-        private fun getCachedIdealLength(word: String, idealGesture: Gesture): Float {
-            return cachedIdealLength.getOrPut(word) { idealGesture.getLength() }
-        }
-
         companion object {
+            private fun buildWordTree(
+                words: Iterable<String>,
+                keysByCharacter: SparseArrayCompat<TextKey>,
+            ): HashMap<Pair<Int, Int>, ArrayList<String>> {
+                val tree = HashMap<Pair<Int, Int>, ArrayList<String>>()
+                for (word in words) {
+                    val keyPair = getFirstKeyLastKey(word, keysByCharacter)
+                    keyPair?.let {
+                        tree.getOrPut(keyPair) { arrayListOf() }.add(word)
+                    }
+                }
+                return tree
+            }
+
+            /**
+             * Maps the persisted word tree of [delta]'s base list from [file], or builds and
+             * writes it from [baseWords] if the file is missing or stale. Null if the index
+             * can't be written, in which case the Pruner indexes everything in memory.
+             */
+            fun openOrBuildIndex(
+                file: File,
+                layoutHash: Int,
+                delta: WordListDelta,
+                baseWords: Iterable<String>,
+                keysByCharacter: SparseArrayCompat<TextKey>,
+            ): PrunerIndex? {
+                try {
+                    PrunerIndex.open(file, layoutHash, delta.baseVersion)?.let { return it }
+                } catch (e: Exception) {
+                    file.delete() // corrupt — rebuild below
+                }
+                return try {
+                    PrunerIndex.write(file, layoutHash, delta.baseVersion, buildWordTree(baseWords, keysByCharacter))
+                    PrunerIndex.open(file, layoutHash, delta.baseVersion)
+                } catch (e: Exception) {
+                    flogDebug { "Failed to persist glide pruner index $file: $e" }
+                    null
+                }
+            }
+
             private fun getFirstKeyLastKey(
                 word: String,
                 keysByCharacter: SparseArrayCompat<TextKey>,
@@ -745,12 +1190,7 @@ class StatisticalGlideTypingClassifier(context: Context) : GlideTypingClassifier
 
         init {
             synchronized(wordTree) {
-                for (word in words) {
-                    val keyPair = getFirstKeyLastKey(word, keysByCharacter)
-                    keyPair?.let {
-                        wordTree.getOrPut(keyPair) { arrayListOf() }.add(word)
-                    }
-                }
+                wordTree.putAll(buildWordTree(if (this.index != null) delta!!.added else words, keysByCharacter))
             }
         }
     }
@@ -917,7 +1357,7 @@ class StatisticalGlideTypingClassifier(context: Context) : GlideTypingClassifier
 
             // otherwise nothing happens if size is only 1:
             if (this.size == 1) {
-                for (i in 0 until SAMPLING_POINTS) {
+                for (i in 0 until numPoints) {
                     resampledGesture.addPoint(xs[0], ys[0], ts[0])
                 }
             }
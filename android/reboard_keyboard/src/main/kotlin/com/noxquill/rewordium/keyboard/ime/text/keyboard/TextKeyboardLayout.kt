@@ -36,7 +36,7 @@ import androidx.compose.runtime.LaunchedEffect
 import androidx.compose.runtime.collectAsState
 import androidx.compose.runtime.getValue
 import androidx.compose.runtime.mutableFloatStateOf
-import androidx.compose.runtime.mutableStateListOf
+import androidx.compose.runtime.mutableIntStateOf
 import androidx.compose.runtime.mutableStateOf
 import androidx.compose.runtime.remember
 import androidx.compose.runtime.setValue
@@ -69,6 +69,7 @@ import com.noxquill.rewordium.keyboard.ime.input.InputShiftState
 import androidx.compose.material3.MaterialTheme
 import com.noxquill.rewordium.keyboard.editorInstance
 import com.noxquill.rewordium.keyboard.glideTypingManager
+import com.noxquill.rewordium.keyboard.nlpManager
 import com.noxquill.rewordium.keyboard.ime.editor.OperationScope
 import com.noxquill.rewordium.keyboard.ime.editor.OperationUnit
 import com.noxquill.rewordium.keyboard.ime.input.InputEventDispatcher
@@ -79,6 +80,7 @@ import com.noxquill.rewordium.keyboard.ime.keyboard.SpaceBarMode
 import com.noxquill.rewordium.keyboard.ime.popup.ExceptionsForKeyCodes
 import com.noxquill.rewordium.keyboard.ime.popup.PopupUiController
 import com.noxquill.rewordium.keyboard.ime.popup.rememberPopupUiController
+import com.noxquill.rewordium.keyboard.ime.text.gestures.GestureSampleBuffer
 import com.noxquill.rewordium.keyboard.ime.text.gestures.GlideTypingGesture
 import com.noxquill.rewordium.keyboard.ime.text.gestures.SwipeAction
 import com.noxquill.rewordium.keyboard.ime.text.gestures.SwipeGesture
@@ -121,6 +123,7 @@ fun TextKeyboardLayout(
     val context = LocalContext.current
     val configuration = LocalConfiguration.current
     val glideTypingManager by context.glideTypingManager()
+    val nlpManager by context.nlpManager()
     val keyboardManager by context.keyboardManager()
     // Observe emoji-search state. This drives two things:
     //  1. Recomposition on toggle (so the for-loop in the body picks up the
@@ -143,9 +146,12 @@ fun TextKeyboardLayout(
 
     val controller = remember { TextKeyboardLayoutController(context) }.also {
         it.keyboard = keyboard
-        if (glideEnabled && !isPreview && keyboard.mode == KeyboardMode.CHARACTERS) {
+        if (!isPreview && keyboard.mode == KeyboardMode.CHARACTERS) {
             val keys = keyboard.keys().asSequence().toList()
-            glideTypingManager.setLayout(keys)
+            nlpManager.setKeyboardLayout(keys)
+            if (glideEnabled) {
+                glideTypingManager.setLayout(keys)
+            }
         }
     }
     val touchEventChannel = remember { Channel<MotionEvent>(64) }
@@ -210,6 +216,8 @@ fun TextKeyboardLayout(
             .drawWithContent {
                 drawContent()
                 if (glideEnabled && glideShowTrail) {
+                    // The trail buffers aren't snapshot state; reading the version redraws on change.
+                    controller.glideTrailVersion
                     val targetDist = 3.0f
                     val radius = glideTrailWidth.dp.toPx()
 
@@ -224,7 +232,7 @@ fun TextKeyboardLayout(
                             glideTrailColor,
                         )
                     }
-                    if (controller.isGliding && controller.glideDataForDrawing.isNotEmpty()) {
+                    if (controller.isGliding && !controller.glideDataForDrawing.isEmpty) {
                         controller.drawGlideTrail(
                             this, controller.glideDataForDrawing, targetDist, radius,
                             radiusReductionFactor, glideTrailColor,
@@ -449,8 +457,13 @@ private class TextKeyboardLayoutController(
     private var glideFadeAnimator: ValueAnimator? = null
 
     val glideTypingDetector = GlideTypingGesture.Detector(context)
-    val glideDataForDrawing = mutableStateListOf<Pair<GlideTypingGesture.Detector.Position, Long>>()
-    val fadingGlide = mutableStateListOf<Pair<GlideTypingGesture.Detector.Position, Long>>()
+    // Trail of the current gesture and of the one fading out; swapped when a gesture ends.
+    var glideDataForDrawing = GestureSampleBuffer()
+        private set
+    var fadingGlide = GestureSampleBuffer()
+        private set
+    var glideTrailVersion by mutableIntStateOf(0)
+        private set
     var fadingGlideRadius by mutableFloatStateOf(0.0f)
     private val swipeGestureDetector = SwipeGesture.Detector(this)
 
@@ -460,8 +473,9 @@ private class TextKeyboardLayoutController(
     fun dispose() {
         glideFadeAnimator?.cancel()
         glideFadeAnimator = null
-        glideDataForDrawing.clear()
-        fadingGlide.clear()
+        glideDataForDrawing.reset()
+        fadingGlide.reset()
+        glideTrailVersion++
         fadingGlideRadius = 0.0f
         isGliding = false
     }
@@ -977,14 +991,15 @@ private class TextKeyboardLayoutController(
         }
     }
 
-    override fun onGlideAddPoint(point: GlideTypingGesture.Detector.Position) {
+    override fun onGlideAddPoint(samples: GestureSampleBuffer, index: Int) {
         if (isGlideEnabled) {
             glideFadeAnimator?.cancel()
             glideFadeAnimator = null
-            fadingGlide.clear()
+            fadingGlide.reset()
             fadingGlideRadius = 0.0f
             isGliding = true
-            glideDataForDrawing.add(point to System.currentTimeMillis())
+            glideDataForDrawing.add(samples, index)
+            glideTrailVersion++
         }
     }
 
@@ -996,17 +1011,19 @@ private class TextKeyboardLayoutController(
         glideFadeAnimator?.cancel()
         glideFadeAnimator = null
 
-        if (!prefs.glide.showTrail.get() || glideDataForDrawing.isEmpty()) {
-            glideDataForDrawing.clear()
-            fadingGlide.clear()
+        if (!prefs.glide.showTrail.get() || glideDataForDrawing.isEmpty) {
+            glideDataForDrawing.reset()
+            fadingGlide.reset()
+            glideTrailVersion++
             fadingGlideRadius = 0.0f
             isGliding = false
             return
         }
 
-        fadingGlide.clear()
-        fadingGlide.addAll(glideDataForDrawing)
-        glideDataForDrawing.clear()
+        val previousFadingGlide = fadingGlide
+        fadingGlide = glideDataForDrawing
+        glideDataForDrawing = previousFadingGlide.apply { reset() }
+        glideTrailVersion++
         isGliding = false
 
         val animator = ValueAnimator.ofFloat(20.0f, 0.0f)
@@ -1016,7 +1033,8 @@ private class TextKeyboardLayoutController(
             fadingGlideRadius = it.animatedValue as Float
         }
         animator.doOnEnd {
-            fadingGlide.clear()
+            fadingGlide.reset()
+            glideTrailVersion++
             fadingGlideRadius = 0.0f
             glideFadeAnimator = null
         }
@@ -1026,40 +1044,39 @@ private class TextKeyboardLayoutController(
 
     fun drawGlideTrail(
         drawScope: ContentDrawScope,
-        gestureData: MutableList<Pair<GlideTypingGesture.Detector.Position, Long>>,
+        gestureData: GestureSampleBuffer,
         targetDist: Float,
         initialRadius: Float,
         radiusReductionFactor: Float,
         color: Color,
     ) {
-        if (gestureData.size < 2) return
+        val last = gestureData.count - 1
+        val first = gestureData.firstIndex
+        if (last - first < 1) return
 
-        val now = gestureData.last().second
+        val now = gestureData.t(last)
         val maxAgeMs = prefs.glide.trailDuration.get().toLong()
 
-        // Collect points that are still within the trail-duration window, in chronological order.
-        val visible = ArrayList<GlideTypingGesture.Detector.Position>(gestureData.size)
-        for ((pos, t) in gestureData) {
-            if (now - t <= maxAgeMs) visible.add(pos)
-        }
-        if (visible.size < 2) return
+        // Points still within the trail-duration window are a suffix, samples are in time order.
+        var start = last
+        while (start > first && now - gestureData.t(start - 1) <= maxAgeMs) start--
+        if (last - start < 1) return
 
         // Build a smooth Path using Catmull-Rom → cubic Bezier conversion.
         // For each interior segment p_i → p_{i+1}, the Bezier control points are derived from
         // the surrounding tangents: c1 = p_i + (p_{i+1} - p_{i-1}) / 6, c2 = p_{i+1} - (p_{i+2} - p_i) / 6.
         // This produces a C1-continuous curve passing through every input point.
         val fullPath = Path().apply {
-            moveTo(visible[0].x, visible[0].y)
-            for (i in 0 until visible.size - 1) {
-                val p0 = if (i == 0) visible[i] else visible[i - 1]
-                val p1 = visible[i]
-                val p2 = visible[i + 1]
-                val p3 = if (i + 2 < visible.size) visible[i + 2] else visible[i + 1]
-                val c1x = p1.x + (p2.x - p0.x) / 6f
-                val c1y = p1.y + (p2.y - p0.y) / 6f
-                val c2x = p2.x - (p3.x - p1.x) / 6f
-                val c2y = p2.y - (p3.y - p1.y) / 6f
-                cubicTo(c1x, c1y, c2x, c2y, p2.x, p2.y)
+            moveTo(gestureData.x(start), gestureData.y(start))
+            for (p1 in start until last) {
+                val p0 = if (p1 == start) p1 else p1 - 1
+                val p2 = p1 + 1
+                val p3 = if (p1 + 2 <= last) p1 + 2 else p1 + 1
+                val c1x = gestureData.x(p1) + (gestureData.x(p2) - gestureData.x(p0)) / 6f
+                val c1y = gestureData.y(p1) + (gestureData.y(p2) - gestureData.y(p0)) / 6f
+                val c2x = gestureData.x(p2) - (gestureData.x(p3) - gestureData.x(p1)) / 6f
+                val c2y = gestureData.y(p2) - (gestureData.y(p3) - gestureData.y(p1)) / 6f
+                cubicTo(c1x, c1y, c2x, c2y, gestureData.x(p2), gestureData.y(p2))
             }
         }
 
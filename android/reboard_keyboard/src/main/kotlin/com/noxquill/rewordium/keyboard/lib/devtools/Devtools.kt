@@ -29,6 +29,7 @@ import com.noxquill.rewordium.keyboard.extensionManager
 import com.noxquill.rewordium.keyboard.lib.titlecase
 import com.noxquill.rewordium.keyboard.lib.util.TimeUtils
 import com.noxquill.rewordium.keyboard.lib.util.UnitUtils
+import com.noxquill.rewordium.keyboard.nlpManager
 import com.noxquill.rewordium.keyboard.subtypeManager
 import org.florisboard.lib.android.systemService
 import java.io.BufferedReader
@@ -60,6 +61,8 @@ object Devtools {
             append(generateExtensionConfigLog(context))
             appendLine()
             append(generateActiveSubtypeConfigLog(context))
+            appendLine()
+            append(generateSuggestionTimingsLog(context))
         }
     }
 
@@ -152,6 +155,13 @@ object Devtools {
         }
     }
 
+    fun generateSuggestionTimingsLog(context: Context, withTitle: Boolean = true): String {
+        return buildString {
+            if (withTitle) appendLine("======= SUGGESTION TIMINGS =======")
+            appendLine(context.nlpManager().value.suggestionTimings.describe())
+        }
+    }
+
     fun generateLogcatDump(withTitle: Boolean = true): String {
         return buildString {
             if (withTitle) appendLine("======= LOGCAT =======")
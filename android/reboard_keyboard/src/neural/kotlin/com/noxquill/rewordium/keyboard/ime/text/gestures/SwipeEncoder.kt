@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.text.gestures
+
+import ai.onnxruntime.OnnxTensor
+import ai.onnxruntime.OrtEnvironment
+import ai.onnxruntime.OrtSession
+import android.content.Context
+import com.noxquill.rewordium.keyboard.lib.devtools.flogDebug
+import java.nio.FloatBuffer
+import kotlin.math.exp
+import kotlin.math.ln
+
+/**
+ * The layout-agnostic swipe encoder trained in `ml_swipe/`, exported by
+ * `ml_swipe/export.py` as an int8-quantized ONNX model and run on ONNX
+ * Runtime's CPU backend with a single intra-op thread.
+ *
+ * Takes a gesture and the key centers of the current layout and returns, for
+ * each of at most [MAX_FRAMES] frames resampled evenly along the path, the
+ * log-probability of every key. The model isn't shipped with every build;
+ * [isAvailable] tells whether the asset exists, so callers can fall back to
+ * the statistical classifier.
+ */
+class SwipeEncoder private constructor(
+    private val env: OrtEnvironment,
+    private val session: OrtSession,
+) {
+    companion object {
+        const val MODEL_ASSET_PATH = "ime/glide/swipe_encoder.onnx"
+
+        /**
+         * Frames the gesture is resampled to at most. The bidirectional LSTM's
+         * cost is linear in frames; 48 keeps a completed gesture well under
+         * 30 ms on a mid-range core while still giving ~4 frames per letter
+         * for 12-letter words.
+         */
+        const val MAX_FRAMES = 48
+
+        @Volatile
+        private var instance: SwipeEncoder? = null
+
+        fun isAvailable(context: Context): Boolean {
+            return try {
+                context.assets.open(MODEL_ASSET_PATH).close()
+                true
+            } catch (e: Exception) {
+                false
+            }
+        }
+
+        /** Loads the model once per process; null if the asset is missing or can't be loaded. */
+        fun load(context: Context): SwipeEncoder? {
+            instance?.let { return it }
+            synchronized(this) {
+                instance?.let { return it }
+                return try {
+                    val bytes = context.assets.open(MODEL_ASSET_PATH).use { it.readBytes() }
+                    val env = OrtEnvironment.getEnvironment()
+                    val options = OrtSession.SessionOptions().apply {
+                        setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT)
+                        setIntraOpNumThreads(1)
+                    }
+                    SwipeEncoder(env, env.createSession(bytes, options)).also { instance = it }
+                } catch (e: Exception) {
+                    flogDebug { "Swipe encoder unavailable: $e" }
+                    null
+                }
+            }
+        }
+    }
+
+    /**
+     * Encodes the gesture in [samples] against the key centers [keyXs], [keyYs].
+     * Returns frames × keys log-probabilities.
+     */
+    fun encode(samples: GestureSampleBuffer, keyXs: FloatArray, keyYs: FloatArray): Array<FloatArray> {
+        val keyCount = keyXs.size
+        if (samples.isEmpty || keyCount == 0) return emptyArray()
+        // Normalize to the bounding box of the key centers, as in training.
+        val minX = keyXs.min()
+        val maxX = keyXs.max()
+        val minY = keyYs.min()
+        val maxY = keyYs.max()
+        val scaleX = (maxX - minX).takeIf { it > 0f } ?: 1f
+        val scaleY = (maxY - minY).takeIf { it > 0f } ?: 1f
+
+        val frames = resample(samples)
+        val frameCount = frames.size / 3
+        val trajectory = FloatBuffer.allocate(frames.size)
+        for (f in 0 until frameCount) {
+            trajectory.put((frames[3 * f] - minX) / scaleX)
+            trajectory.put((frames[3 * f + 1] - minY) / scaleY)
+            trajectory.put(frames[3 * f + 2])
+        }
+        trajectory.rewind()
+        val layout = FloatBuffer.allocate(2 * keyCount)
+        for (k in 0 until keyCount) {
+            layout.put((keyXs[k] - minX) / scaleX)
+            layout.put((keyYs[k] - minY) / scaleY)
+        }
+        layout.rewind()
+
+        OnnxTensor.createTensor(env, trajectory, longArrayOf(1, frameCount.toLong(), 3)).use { trajectoryTensor ->
+            OnnxTensor.createTensor(env, layout, longArrayOf(1, keyCount.toLong(), 2)).use { layoutTensor ->
+                session.run(mapOf("trajectory" to trajectoryTensor, "layout_coords" to layoutTensor)).use { result ->
+                    @Suppress("UNCHECKED_CAST")
+                    val logits = (result.get(0).value as Array<Array<FloatArray>>)[0]
+                    for (frame in logits) logSoftmax(frame)
+                    return logits
+                }
+            }
+        }
+    }
+
+    /**
+     * Resamples the path to at most [MAX_FRAMES] frames spaced evenly by arc
+     * length, as interleaved (x, y, seconds since touch-down) triples.
+     */
+    private fun resample(samples: GestureSampleBuffer): FloatArray {
+        // Snapshot the range once; sample i of the gesture is samples[first + i].
+        val first = samples.firstIndex
+        val pointCount = samples.count - first
+        val frameCount = pointCount.coerceAtMost(MAX_FRAMES)
+        val out = FloatArray(3 * frameCount)
+        val cumulative = FloatArray(pointCount)
+        for (i in 1 until pointCount) {
+            cumulative[i] = cumulative[i - 1] + StatisticalGlideTypingClassifier.Gesture.distance(
+                samples.x(first + i - 1), samples.y(first + i - 1), samples.x(first + i), samples.y(first + i),
+            )
+        }
+        val length = cumulative[pointCount - 1]
+        val t0 = samples.t(first)
+        var segment = 1
+        for (f in 0 until frameCount) {
+            val target = if (frameCount > 1) length * f / (frameCount - 1) else 0f
+            while (segment < pointCount - 1 && cumulative[segment] < target) segment++
+            if (pointCount < 2) {
+                out[3 * f] = samples.x(first)
+                out[3 * f + 1] = samples.y(first)
+                continue
+            }
+            val from = first + segment - 1
+            val to = first + segment
+            val span = cumulative[segment] - cumulative[segment - 1]
+            val a = if (span > 0f) ((target - cumulative[segment - 1]) / span).coerceIn(0f, 1f) else 1f
+            out[3 * f] = samples.x(from) + a * (samples.x(to) - samples.x(from))
+            out[3 * f + 1] = samples.y(from) + a * (samples.y(to) - samples.y(from))
+            // Relative to touch-down before going to float; epoch millis don't fit a float.
+            val t = (samples.t(from) - t0) + a * (samples.t(to) - samples.t(from))
+            out[3 * f + 2] = t / 1000f
+        }
+        return out
+    }
+
+    private fun logSoftmax(logits: FloatArray) {
+        var max = Float.NEGATIVE_INFINITY
+        for (v in logits) if (v > max) max = v
+        var sum = 0.0
+        for (v in logits) sum += exp((v - max).toDouble())
+        val logSum = max + ln(sum).toFloat()
+        for (i in logits.indices) logits[i] -= logSum
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.text.gestures
+
+import android.content.Context
+
+/**
+ * Stand-in for the ONNX Runtime swipe encoder in builds without neural glide
+ * typing (see `neuralGlide` in build.gradle.kts). Never available, so the
+ * NEURAL engine falls back to the statistical classifier and the runtime
+ * isn't packaged.
+ */
+class SwipeEncoder private constructor() {
+    companion object {
+        fun isAvailable(context: Context): Boolean = false
+
+        fun load(context: Context): SwipeEncoder? = null
+    }
+
+    fun encode(samples: GestureSampleBuffer, keyXs: FloatArray, keyYs: FloatArray): Array<FloatArray> = emptyArray()
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp
+
+import com.noxquill.rewordium.keyboard.ime.nlp.latin.ArrayVocabulary
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class FlatTrieTest {
+    private val frequencies = mapOf(
+        "a" to 0.2,
+        "an" to 0.5,
+        "and" to 0.9,
+        "ant" to 0.1,
+        "be" to 0.4,
+        "bee" to 0.3,
+        "zoo" to 0.05,
+    )
+
+    private fun FlatTrie.words(): Map<String, Float> {
+        val words = HashMap<String, Float>()
+        for (node in 0 until size) {
+            if (isWord(node)) words[prefixAt(node)] = frequency(node)
+        }
+        return words
+    }
+
+    @Test
+    fun `build and find`() {
+        val trie = FlatTrie.build(frequencies)
+        for ((word, frequency) in frequencies) {
+            val node = trie.find(word)
+            assertTrue(node >= 0, word)
+            assertTrue(trie.isWord(node), word)
+            assertEquals(frequency.toFloat(), trie.frequency(node), word)
+            assertEquals(word, trie.prefixAt(node))
+        }
+        assertEquals(frequencies.mapValues { it.value.toFloat() }, trie.words())
+        // "b" and "zo" are prefixes only; "bat" and "c" aren't in the trie at all.
+        assertFalse(trie.isWord(trie.find("b")))
+        assertEquals(0f, trie.frequency(trie.find("zo")))
+        assertEquals(-1, trie.find("bat"))
+        assertEquals(-1, trie.find("c"))
+        assertEquals(FlatTrie.ROOT, trie.find(""))
+    }
+
+    @Test
+    fun `children are contiguous and sorted by label`() {
+        val trie = FlatTrie.build(frequencies)
+        val rootLabels = (trie.firstChild(FlatTrie.ROOT) until trie.childrenEnd(FlatTrie.ROOT)).map { trie.label(it) }
+        assertEquals(listOf('a', 'b', 'z'), rootLabels)
+        val an = trie.find("an")
+        assertEquals(listOf('d', 't'), (trie.firstChild(an) until trie.childrenEnd(an)).map { trie.label(it) })
+        assertEquals(trie.find("and"), trie.child(an, 'd'))
+        assertEquals(-1, trie.child(an, 'e'))
+        val and = trie.find("and")
+        assertEquals(trie.firstChild(and), trie.childrenEnd(and))
+    }
+
+    @Test
+    fun `max frequency is the best word below each node`() {
+        val trie = FlatTrie.build(frequencies)
+        for (node in 0 until trie.size) {
+            val prefix = trie.prefixAt(node)
+            val best = frequencies.filterKeys { it.startsWith(prefix) }.values.max().toFloat()
+            assertEquals(best, trie.maxFrequency(node), "'$prefix'")
+        }
+    }
+
+    @Test
+    fun `set frequency keeps max frequency an upper bound`() {
+        val trie = FlatTrie.build(frequencies)
+        assertTrue(trie.setFrequency("ant", 0.95f))
+        assertEquals(0.95f, trie.frequency(trie.find("ant")))
+        for (prefix in listOf("", "a", "an", "ant")) {
+            assertEquals(0.95f, trie.maxFrequency(trie.find(prefix)), "'$prefix'")
+        }
+        // Demoting doesn't shrink the bound, but it must still cover every word below.
+        assertTrue(trie.setFrequency("ant", 0.01f))
+        for (node in 0 until trie.size) {
+            val prefix = trie.prefixAt(node)
+            val best = trie.words().filterKeys { it.startsWith(prefix) }.values.maxOrNull() ?: continue
+            assertTrue(trie.maxFrequency(node) >= best, "'$prefix'")
+        }
+        assertTrue(trie.setFrequency("an", 0.5f))
+        assertFalse(trie.setFrequency("b", 1f))
+        assertFalse(trie.setFrequency("cat", 1f))
+    }
+
+    @Test
+    fun `build from vocabulary merges learned words and skips masked ones`() {
+        val vocabulary = Vocabulary(ArrayVocabulary.fromMap(mapOf("and" to 255, "ant" to 51, "be" to 102)))
+        vocabulary.setFrequency("am", 0.6f)
+        vocabulary.setFrequency("zoo", 0.05f)
+        vocabulary.setFrequency("be", 0f)
+        val trie = FlatTrie.build(vocabulary)
+        assertEquals(mapOf("am" to 0.6f, "and" to 1f, "ant" to 0.2f, "zoo" to 0.05f), trie.words())
+        assertEquals(-1, trie.find("be"))
+    }
+}
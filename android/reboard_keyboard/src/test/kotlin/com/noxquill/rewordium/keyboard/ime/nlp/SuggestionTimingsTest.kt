@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp
+
+import com.noxquill.rewordium.keyboard.ime.nlp.SuggestionTimings.Phase
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
+class SuggestionTimingsTest {
+    private fun span(wordsMicros: Long) = SuggestionTimings.Span().apply {
+        set(Phase.QUEUE, 1_000)
+        set(Phase.WORDS, wordsMicros * 1000)
+    }
+
+    @Test
+    fun `ring keeps the newest requests oldest first`() {
+        val timings = SuggestionTimings(4)
+        for (i in 1..10) timings.record(span(i.toLong()), null)
+        val rows = timings.snapshot()
+        assertEquals(listOf(7L, 8L, 9L, 10L), rows.map { it[0] })
+        assertEquals(listOf(7L, 8L, 9L, 10L), rows.map { it[1 + Phase.WORDS.ordinal] })
+        assertEquals(List(4) { -1L }, rows.map { it[1 + Phase.EMOJI.ordinal] })
+    }
+
+    @Test
+    fun `capacity rounds up to a power of two`() {
+        val timings = SuggestionTimings(5)
+        for (i in 1..9) timings.record(span(i.toLong()), null)
+        assertEquals((2L..9L).toList(), timings.snapshot().map { it[0] })
+    }
+
+    @Test
+    fun `summary uses nearest-rank percentiles of phases that ran`() {
+        val timings = SuggestionTimings(128)
+        for (i in (1..100).shuffled()) timings.record(span(i.toLong()), null)
+        val summaries = timings.summarize().associateBy { it.phase }
+        val words = summaries.getValue(Phase.WORDS)
+        assertEquals(100, words.count)
+        assertEquals(50, words.p50)
+        assertEquals(95, words.p95)
+        assertEquals(99, words.p99)
+        assertTrue(Phase.QUEUE in summaries)
+        assertTrue(Phase.TOTAL in summaries)
+        assertTrue(Phase.EMOJI !in summaries)
+        assertTrue(Phase.PUBLISH !in summaries)
+    }
+
+    @Test
+    fun `display completes the publish phase of the matching request only`() {
+        val timings = SuggestionTimings(4)
+        val published = listOf("a", "b")
+        timings.record(span(1), published)
+        timings.markDisplayed(listOf("a", "b"))
+        assertEquals(-1L, timings.snapshot().single()[1 + Phase.PUBLISH.ordinal])
+        timings.markDisplayed(published)
+        assertTrue(timings.snapshot().single()[1 + Phase.PUBLISH.ordinal] >= 0)
+    }
+
+    @Test
+    fun `csv has one row per request with empty cells for phases that didn't run`() {
+        val timings = SuggestionTimings(4)
+        timings.record(span(3), null)
+        val lines = StringBuilder().also { timings.writeCsv(it) }.lines()
+        assertEquals("seq," + Phase.entries.joinToString(",") { "${it.label}_us" }, lines[0])
+        val cells = lines[1].split(',')
+        assertEquals("1", cells[0])
+        assertEquals("3", cells[1 + Phase.WORDS.ordinal])
+        assertEquals("", cells[1 + Phase.EMOJI.ordinal])
+        assertEquals("", lines[2])
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp
+
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class TopKSelectorTest {
+    private fun select(selector: TopKSelector<String>, k: Int, items: List<Pair<String, Double>>): List<String> {
+        selector.reset(k)
+        for ((item, score) in items) selector.offer(item, score)
+        return ArrayList<String>().also { selector.sortInto(it) }
+    }
+
+    @Test
+    fun `matches a stable sort including tie order`() {
+        val random = Random(42)
+        val selector = TopKSelector<String>()
+        for (round in 0 until 200) {
+            val n = random.nextInt(0, 60)
+            // Few distinct scores, so most items tie with others.
+            val items = List(n) { "w$it" to random.nextInt(0, 5).toDouble() }
+            val k = random.nextInt(0, 70)
+            val expected = items.sortedByDescending { it.second }.take(k).map { it.first }
+            assertEquals(expected, select(selector, k, items), "round $round, n=$n, k=$k")
+        }
+    }
+
+    @Test
+    fun `scores are sorted best first`() {
+        val selector = TopKSelector<String>()
+        select(selector, 3, listOf("a" to 1.0, "b" to 5.0, "c" to 3.0, "d" to 4.0, "e" to 2.0))
+        assertEquals(3, selector.size)
+        assertEquals(listOf(5.0, 4.0, 3.0), List(selector.size) { selector.scoreAt(it) })
+        assertEquals(listOf("b", "d", "c"), List(selector.size) { selector.itemAt(it) })
+    }
+
+    @Test
+    fun `threshold rejects offers that can't make it`() {
+        val selector = TopKSelector<String>()
+        selector.reset(2)
+        assertEquals(Double.NEGATIVE_INFINITY, selector.threshold)
+        assertTrue(selector.offer("a", 1.0))
+        assertTrue(selector.offer("b", 3.0))
+        assertEquals(1.0, selector.threshold)
+        // A tie loses to the earlier offer.
+        assertFalse(selector.offer("c", 1.0))
+        assertTrue(selector.offer("d", 2.0))
+        assertEquals(2.0, selector.threshold)
+    }
+
+    @Test
+    fun `k of zero keeps nothing`() {
+        val selector = TopKSelector<String>()
+        assertEquals(emptyList(), select(selector, 0, listOf("a" to 1.0)))
+        assertEquals(Double.NEGATIVE_INFINITY, selector.threshold)
+    }
+
+    @Test
+    fun `reset forgets the previous round`() {
+        val selector = TopKSelector<String>()
+        select(selector, 40, List(40) { "old$it" to 100.0 })
+        assertEquals(listOf("b", "a"), select(selector, 5, listOf("a" to 1.0, "b" to 2.0)))
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp.latin
+
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.EOFException
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+
+class BigramTableTest {
+    private val data = mapOf(
+        "good" to mapOf("morning" to 200, "night" to 120, "luck" to 180),
+        "thank" to mapOf("you" to 255),
+    )
+
+    // The dict_bigrams.bin body, as written by the provider after its header.
+    private fun body(data: Map<String, Map<String, Int>>): ByteArray {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).use { dos ->
+            dos.writeInt(data.size)
+            for ((prev, inner) in data) {
+                dos.writeUTF(prev)
+                dos.writeInt(inner.size)
+                for ((next, score) in inner) {
+                    dos.writeUTF(next)
+                    dos.writeInt(score)
+                }
+            }
+        }
+        return bytes.toByteArray()
+    }
+
+    private fun BigramTable.staticRow(prev: String): List<Pair<String, Int>>? {
+        val row = row(prev, "en", 0, 1.0) { emptyMap() } ?: return null
+        return List(row.size) { wordOf(row.next[it]) to row.scores[it].toInt() }
+    }
+
+    @Test
+    fun `read static rows round-trip sorted by score`() {
+        val table = BigramTable()
+        table.readStatic(DataInputStream(ByteArrayInputStream(body(data))))
+        assertEquals(listOf("morning" to 200, "luck" to 180, "night" to 120), table.staticRow("good"))
+        assertEquals(listOf("you" to 255), table.staticRow("thank"))
+        assertNull(table.staticRow("unknown"))
+
+        val fromMap = BigramTable().apply { putAllStatic(data) }
+        for (prev in data.keys) assertEquals(table.staticRow(prev), fromMap.staticRow(prev))
+    }
+
+    @Test
+    fun `truncated body fails to read`() {
+        val bytes = body(data)
+        for (length in listOf(0, 3, bytes.size / 2, bytes.size - 1)) {
+            assertFailsWith<EOFException>("length $length") {
+                BigramTable().readStatic(DataInputStream(ByteArrayInputStream(bytes.copyOf(length))))
+            }
+        }
+    }
+
+    @Test
+    fun `learned transitions merge weighted and saturate`() {
+        val table = BigramTable().apply { putAllStatic(data) }
+        val learned = mapOf("night" to 100, "day" to 20, "morning" to 200)
+        val row = table.row("good", "en", 1, 0.5) { learned }!!
+        val merged = List(row.size) { table.wordOf(row.next[it]) to row.scores[it].toInt() }
+        assertEquals(
+            listOf("morning" to 255, "luck" to 180, "night" to 170, "day" to 10),
+            merged,
+        )
+        // Cached until the generation or locale changes.
+        assertSame(row, table.row("good", "en", 1, 0.5) { error("cached row expected") })
+        val next = table.row("good", "en", 2, 0.5) { emptyMap() }!!
+        assertEquals(3, next.size)
+    }
+
+    @Test
+    fun `learned transitions alone make a row`() {
+        val table = BigramTable()
+        assertNull(table.row("see", "en", 0, 1.0) { emptyMap() })
+        val row = table.row("see", "en", 0, 1.0) { mapOf("you" to 40) }!!
+        assertEquals("you", table.wordOf(row.next[0]))
+        assertEquals(40, row.scores[0].toInt())
+    }
+
+    @Test
+    fun `raise static only ever raises`() {
+        val table = BigramTable().apply { putAllStatic(data) }
+        table.raiseStatic("good", "night", 190)
+        table.raiseStatic("good", "luck", 10)
+        table.raiseStatic("good", "bye", 50)
+        assertEquals(
+            listOf("morning" to 200, "night" to 190, "luck" to 180, "bye" to 50),
+            table.staticRow("good"),
+        )
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp.latin
+
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class LatinPrefixIndexTest {
+    @TempDir
+    lateinit var dir: File
+
+    // Small alphabet so that many prefixes hold more than TOP_K words, and few
+    // frequencies so that ties are common.
+    private val vocabulary: ArrayVocabulary = run {
+        val random = Random(42)
+        val data = HashMap<String, Int>()
+        while (data.size < 1500) {
+            val word = CharArray(random.nextInt(1, 7)) { "abcde"[random.nextInt(5)] }.concatToString()
+            data[word] = random.nextInt(8) * 32
+        }
+        ArrayVocabulary.fromMap(data)
+    }
+
+    private val index = LatinPrefixIndex.build(vocabulary)
+
+    private val prefixes: Set<String> = (0 until vocabulary.size).flatMapTo(HashSet()) { id ->
+        val word = vocabulary.wordAt(id)
+        (0..word.length).map { word.substring(0, it) }
+    }
+
+    // Most frequent first, ties by id, as a sort over every word with the prefix.
+    private fun bruteForceTop(prefix: String): List<Int> =
+        (0 until vocabulary.size)
+            .filter { vocabulary.startsWith(it, prefix) }
+            .sortedWith(compareByDescending<Int> { vocabulary.frequencyOf(it) }.thenBy { it })
+            .take(LatinPrefixIndex.TOP_K)
+
+    private fun LatinPrefixIndex.topCompletions(prefix: String): List<Int> {
+        val out = IntArray(LatinPrefixIndex.TOP_K)
+        val count = collectTopCompletions(findNode(prefix), out)
+        return out.take(count)
+    }
+
+    @Test
+    fun `top completions match a brute-force scan`() {
+        var precomputed = 0
+        for (prefix in prefixes) {
+            val node = index.findNode(prefix)
+            val expected = bruteForceTop(prefix)
+            assertEquals(expected, index.topCompletions(prefix), "'$prefix'")
+            assertEquals(vocabulary.frequencyOf(expected.first()), index.maxFrequency(node), "'$prefix'")
+            assertEquals(vocabulary.indexOf(prefix).takeIf { it >= 0 } ?: LatinPrefixIndex.NO_WORD, index.terminalOf(node))
+            if ((0 until vocabulary.size).count { vocabulary.startsWith(it, prefix) } > LatinPrefixIndex.TOP_K) precomputed++
+        }
+        // Both the precomputed and the on-the-fly rankings were exercised.
+        assertTrue(precomputed in 1 until prefixes.size)
+        assertEquals(LatinPrefixIndex.NO_NODE, index.findNode("abf"))
+    }
+
+    @Test
+    fun `shorter buffers get the best completions first`() {
+        for (prefix in listOf("", "a", "bc")) {
+            val out = IntArray(3)
+            val count = index.collectTopCompletions(index.findNode(prefix), out)
+            assertEquals(bruteForceTop(prefix).take(3), out.take(count), "'$prefix'")
+        }
+    }
+
+    @Test
+    fun `edit distance 1 walk matches the full scan`() {
+        val random = Random(7)
+        val queries = List(300) { CharArray(random.nextInt(0, 8)) { "abcdef"[random.nextInt(6)] }.concatToString() } +
+            listOf("abc", "e", "")
+        for (query in queries) {
+            val found = HashSet<Int>()
+            index.forEachWithinEditDistance1(query) { found.add(it) }
+            // The walk reports the exact word too; the scan only strict neighbours.
+            val expected = (0 until vocabulary.size).filterTo(HashSet()) {
+                LatinPrefixIndex.isEditDistance1(query, vocabulary.wordAt(it))
+            }
+            vocabulary.indexOf(query).takeIf { it >= 0 }?.let { expected.add(it) }
+            assertEquals(expected, found, "'$query'")
+        }
+    }
+
+    @Test
+    fun `save then load round-trips`() {
+        val file = File(dir, "prefix.bin")
+        index.save(file, 7L)
+        val loaded = assertNotNull(LatinPrefixIndex.load(file, 7L, vocabulary))
+        assertEquals(index.nodeCount, loaded.nodeCount)
+        for (prefix in prefixes) {
+            assertEquals(index.findNode(prefix), loaded.findNode(prefix), "'$prefix'")
+            assertEquals(index.topCompletions(prefix), loaded.topCompletions(prefix), "'$prefix'")
+        }
+    }
+
+    @Test
+    fun `other app version or vocabulary is rejected`() {
+        val file = File(dir, "prefix.bin")
+        index.save(file, 7L)
+        assertNull(LatinPrefixIndex.load(file, 8L, vocabulary))
+        val other = ArrayVocabulary.fromMap((0 until vocabulary.size).associate { vocabulary.wordAt(it) to 1 })
+        assertNull(LatinPrefixIndex.load(file, 7L, other))
+        // Corrupt the stored checksum, a big-endian Int at byte 12.
+        val bytes = file.readBytes()
+        bytes[12] = (bytes[12] + 1).toByte()
+        file.writeBytes(bytes)
+        assertNull(LatinPrefixIndex.load(file, 7L, vocabulary))
+    }
+
+    @Test
+    fun `truncated file is rejected`() {
+        val file = File(dir, "prefix.bin")
+        index.save(file, 7L)
+        val bytes = file.readBytes()
+        file.writeBytes(bytes.copyOf(bytes.size - 4))
+        assertNull(LatinPrefixIndex.load(file, 7L, vocabulary))
+    }
+}
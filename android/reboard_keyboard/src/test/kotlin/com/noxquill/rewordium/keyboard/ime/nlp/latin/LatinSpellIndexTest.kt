@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp.latin
+
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import kotlin.random.Random
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class LatinSpellIndexTest {
+    @TempDir
+    lateinit var dir: File
+
+    private val alphabet = "aeiorstnlc"
+
+    private fun Random.word(maxLength: Int) =
+        CharArray(nextInt(1, maxLength + 1)) { alphabet[nextInt(alphabet.length)] }.concatToString()
+
+    // Words up to 10 letters, so some only differ after the indexed prefix.
+    private val vocabulary: ArrayVocabulary = run {
+        val random = Random(42)
+        val data = HashMap<String, Int>()
+        while (data.size < 2000) data[random.word(10)] = random.nextInt(256)
+        for (word in listOf("color", "colour", "receive", "recieve", "necessary")) data[word] = 100
+        ArrayVocabulary.fromMap(data)
+    }
+
+    private val index = LatinSpellIndex.build(vocabulary)
+
+    private val queries: List<String> = run {
+        val random = Random(7)
+        val typos = (0 until 200).map {
+            // Up to two random edits of a vocabulary word, or a random string.
+            val chars = StringBuilder(vocabulary.wordAt(random.nextInt(vocabulary.size)))
+            repeat(random.nextInt(3)) {
+                val at = random.nextInt(chars.length + 1)
+                when (random.nextInt(4)) {
+                    0 -> chars.insert(at, alphabet[random.nextInt(alphabet.length)])
+                    1 -> if (at < chars.length) chars.deleteCharAt(at)
+                    2 -> if (at < chars.length) chars.setCharAt(at, alphabet[random.nextInt(alphabet.length)])
+                    else -> if (at + 1 < chars.length) {
+                        val c = chars[at]
+                        chars.setCharAt(at, chars[at + 1])
+                        chars.setCharAt(at + 1, c)
+                    }
+                }
+            }
+            chars.toString()
+        }
+        typos + List(50) { random.word(12) } + listOf("colr", "recieve", "necesary", "zzz")
+    }
+
+    // The scan the provider did over every word before the deletion index.
+    private fun fullScanCandidates(query: String, maxDistance: Int): Map<Int, Int> {
+        val found = HashMap<Int, Int>()
+        for (id in 0 until vocabulary.size) {
+            val distance = LatinSpellIndex.editDistance(query, vocabulary.wordAt(id), maxDistance)
+            if (distance in 1..maxDistance) found[id] = distance
+        }
+        return found
+    }
+
+    private fun fullScanPhonetic(query: String): Set<Int> {
+        val code = LatinSpellIndex.soundexCode(query)
+        return (0 until vocabulary.size).filterTo(HashSet()) { LatinSpellIndex.soundexCode(vocabulary.wordAt(it)) == code }
+    }
+
+    private fun LatinSpellIndex.candidates(query: String, maxDistance: Int): Map<Int, Int> {
+        val found = HashMap<Int, Int>()
+        forEachCandidate(query, maxDistance) { id, distance ->
+            assertNull(found.put(id, distance), "'${vocabulary.wordAt(id)}' reported twice")
+        }
+        return found
+    }
+
+    private fun LatinSpellIndex.phonetic(query: String): Set<Int> {
+        val found = HashSet<Int>()
+        forEachPhoneticMatch(query) { assertTrue(found.add(it)) }
+        return found
+    }
+
+    @Test
+    fun `deletion neighbours match the full scan`() {
+        var nonEmpty = 0
+        for (query in queries) {
+            for (maxDistance in 1..LatinSpellIndex.MAX_DISTANCE) {
+                val expected = fullScanCandidates(query, maxDistance)
+                assertEquals(expected, index.candidates(query, maxDistance), "'$query' within $maxDistance")
+                if (expected.isNotEmpty()) nonEmpty++
+            }
+        }
+        assertTrue(nonEmpty > queries.size / 2)
+        val colr = index.candidates("colr", 2).keys.map { vocabulary.wordAt(it) }
+        assertTrue("color" in colr && "colour" in colr)
+    }
+
+    @Test
+    fun `phonetic matches match the full scan`() {
+        for (query in queries) {
+            assertEquals(fullScanPhonetic(query), index.phonetic(query), "'$query'")
+        }
+        assertEquals(LatinSpellIndex.soundexCode("color"), LatinSpellIndex.soundexCode("colour"))
+        assertEquals(LatinSpellIndex.soundexCode("Robert"), LatinSpellIndex.soundexCode("Rupert"))
+    }
+
+    @Test
+    fun `edit distance counts a transposition as one edit`() {
+        assertEquals(1, LatinSpellIndex.editDistance("recieve", "receive", 2))
+        assertEquals(2, LatinSpellIndex.editDistance("necesary", "necessary!", 2))
+        assertEquals(3, LatinSpellIndex.editDistance("abc", "xyz", 2))
+        assertEquals(0, LatinSpellIndex.editDistance("same", "same", 2))
+    }
+
+    @Test
+    fun `save then load round-trips`() {
+        val file = File(dir, "spell.bin")
+        index.save(file, 7L)
+        val loaded = assertNotNull(LatinSpellIndex.load(file, 7L, vocabulary))
+        for (query in queries) {
+            assertEquals(index.candidates(query, 2), loaded.candidates(query, 2), "'$query'")
+            assertEquals(index.phonetic(query), loaded.phonetic(query), "'$query'")
+        }
+    }
+
+    @Test
+    fun `other app version, vocabulary or size is rejected`() {
+        val file = File(dir, "spell.bin")
+        index.save(file, 7L)
+        assertNull(LatinSpellIndex.load(file, 8L, vocabulary))
+        val other = ArrayVocabulary.fromMap((0 until vocabulary.size).associate { vocabulary.wordAt(it) to 1 })
+        assertNull(LatinSpellIndex.load(file, 7L, other))
+        val bytes = file.readBytes()
+        file.writeBytes(bytes.copyOf(bytes.size - 4))
+        assertNull(LatinSpellIndex.load(file, 7L, vocabulary))
+    }
+}
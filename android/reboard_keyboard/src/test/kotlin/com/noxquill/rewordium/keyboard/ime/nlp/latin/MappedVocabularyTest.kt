@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp.latin
+
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFails
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+
+class MappedVocabularyTest {
+    @TempDir
+    lateinit var dir: File
+
+    private val data = mapOf(
+        "zebra" to 12,
+        "apple" to 200,
+        "app" to 255,
+        "über" to 80,
+        "a" to 1,
+        "banana" to 300,
+        "cherry" to -4,
+    )
+
+    @Test
+    fun `write then open round-trips`() {
+        val file = File(dir, "dict.bin")
+        MappedVocabulary.write(file, 7L, data)
+        val mapped = assertNotNull(MappedVocabulary.open(file, 7L))
+        val expected = ArrayVocabulary.fromMap(data.mapValues { it.value.coerceIn(0, 255) })
+        assertEquals(expected.size, mapped.size)
+        for (id in 0 until expected.size) {
+            assertEquals(expected.wordAt(id), mapped.wordAt(id))
+            assertEquals(expected.lengthOf(id), mapped.lengthOf(id))
+            assertEquals(expected.frequencyOf(id), mapped.frequencyOf(id))
+            assertEquals(id, mapped.indexOf(expected.wordAt(id)))
+        }
+        assertEquals(-1, mapped.indexOf("apples"))
+        // Stored in the header, and equal to what reading every word gives.
+        assertEquals(expected.checksum, mapped.checksum)
+        assertEquals(mapped.computeChecksum(), mapped.checksum)
+    }
+
+    @Test
+    fun `empty vocabulary round-trips`() {
+        val file = File(dir, "empty.bin")
+        MappedVocabulary.write(file, 1L, emptyMap())
+        assertEquals(0, assertNotNull(MappedVocabulary.open(file, 1L)).size)
+    }
+
+    @Test
+    fun `other app version is rejected`() {
+        val file = File(dir, "dict.bin")
+        MappedVocabulary.write(file, 7L, data)
+        assertNull(MappedVocabulary.open(file, 8L))
+    }
+
+    @Test
+    fun `other format is rejected`() {
+        val file = File(dir, "dict.bin")
+        MappedVocabulary.write(file, 7L, data)
+        val bytes = file.readBytes()
+        bytes[0] = (bytes[0] + 1).toByte()
+        file.writeBytes(bytes)
+        assertNull(MappedVocabulary.open(file, 7L))
+    }
+
+    @Test
+    fun `truncated or padded files fail to open`() {
+        val file = File(dir, "dict.bin")
+        MappedVocabulary.write(file, 7L, data)
+        val bytes = file.readBytes()
+        for (length in listOf(0, 2, 16, bytes.size / 2, bytes.size - 1)) {
+            file.writeBytes(bytes.copyOf(length))
+            assertFails("length $length") { MappedVocabulary.open(file, 7L) }
+        }
+        file.writeBytes(bytes + byteArrayOf(0, 0))
+        assertFails { MappedVocabulary.open(file, 7L) }
+    }
+
+    @Test
+    fun `corrupt word count fails to open`() {
+        val file = File(dir, "dict.bin")
+        MappedVocabulary.write(file, 7L, data)
+        val bytes = file.readBytes()
+        // wordCount is the big-endian Int at byte 12.
+        bytes[12] = 0x7F
+        file.writeBytes(bytes)
+        assertFails { MappedVocabulary.open(file, 7L) }
+    }
+}
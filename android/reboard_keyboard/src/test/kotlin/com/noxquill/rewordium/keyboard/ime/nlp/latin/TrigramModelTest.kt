@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.nlp.latin
+
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFails
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+
+class TrigramModelTest {
+    @TempDir
+    lateinit var dir: File
+
+    private val vocabulary = ArrayVocabulary.fromMap(
+        listOf("see", "you", "soon", "later", "tomorrow", "thank", "so", "much").associateWith { 100 },
+    )
+
+    private val data = mapOf(
+        "see you" to mapOf("soon" to 120, "later" to 200, "tomorrow" to 300, "unknown" to 50),
+        "thank you" to mapOf("so" to 90, "much" to 40),
+        // Dropped: a context word or every next word is outside the vocabulary.
+        "see them" to mapOf("soon" to 10),
+        "thank so" to mapOf("unknown" to 10),
+        "malformed" to mapOf("soon" to 10),
+    )
+
+    private fun open(file: File = File(dir, "trigrams.bin")): TrigramModel {
+        TrigramModel.write(file, 7L, vocabulary, data)
+        return assertNotNull(TrigramModel.open(file, 7L, vocabulary))
+    }
+
+    private fun TrigramModel.row(w1: String, w2: String): List<Pair<String, Int>>? {
+        val range = rangeOf(w1, w2)
+        if (range == TrigramModel.NO_RANGE) return null
+        return ((range ushr 32).toInt() until range.toInt()).map { vocabulary.wordAt(nextIdAt(it)) to scoreAt(it) }
+    }
+
+    @Test
+    fun `write then open round-trips sorted by score`() {
+        val model = open()
+        assertEquals(listOf("tomorrow" to 255, "later" to 200, "soon" to 120), model.row("see", "you"))
+        assertEquals(listOf("so" to 90, "much" to 40), model.row("thank", "you"))
+        assertNull(model.row("see", "them"))
+        assertNull(model.row("thank", "so"))
+        assertNull(model.row("you", "see"))
+
+        val range = model.rangeOf("see", "you")
+        assertEquals(200, model.scoreOf(range, vocabulary.indexOf("later")))
+        assertEquals(0, model.scoreOf(range, vocabulary.indexOf("much")))
+        assertEquals(0, model.scoreOf(TrigramModel.NO_RANGE, vocabulary.indexOf("later")))
+    }
+
+    @Test
+    fun `other app version, vocabulary or format is rejected`() {
+        val file = File(dir, "trigrams.bin")
+        open(file)
+        assertNull(TrigramModel.open(file, 8L, vocabulary))
+        val other = ArrayVocabulary.fromMap(mapOf("see" to 1, "you" to 1))
+        assertNull(TrigramModel.open(file, 7L, other))
+        val bytes = file.readBytes()
+        bytes[0] = (bytes[0] + 1).toByte()
+        file.writeBytes(bytes)
+        assertNull(TrigramModel.open(file, 7L, vocabulary))
+    }
+
+    @Test
+    fun `truncated file fails to open`() {
+        val file = File(dir, "trigrams.bin")
+        open(file)
+        val bytes = file.readBytes()
+        for (length in listOf(0, 2, 20, bytes.size / 2, bytes.size - 1)) {
+            file.writeBytes(bytes.copyOf(length))
+            assertFails("length $length") { TrigramModel.open(file, 7L, vocabulary) }
+        }
+    }
+
+    @Test
+    fun `backoff scales bigrams and prefers trigrams`() {
+        val model = open()
+        val scores = hashMapOf("soon" to 100, "sorry" to 50)
+        TrigramModel.backoffScores(model, model.rangeOf("see", "you"), emptyMap(), 1.2, "so", Int.MAX_VALUE, scores)
+        // "soon" is a known trigram; "sorry" only backs off to its bigram.
+        assertEquals(mapOf("soon" to 120, "sorry" to 20), scores)
+    }
+
+    @Test
+    fun `learned trigrams add to the static score and saturate`() {
+        val model = open()
+        val range = model.rangeOf("see", "you")
+        val learned = mapOf("later" to 50, "tomorrow" to 10, "there" to 20)
+        val scores = HashMap<String, Int>()
+        TrigramModel.backoffScores(model, range, learned, 1.2, "", Int.MAX_VALUE, scores)
+        assertEquals(
+            mapOf("tomorrow" to 255, "later" to 255, "soon" to 120, "there" to 24),
+            scores,
+        )
+
+        // Without a model only the learned trigrams and bigrams count.
+        val withoutModel = hashMapOf("later" to 100)
+        TrigramModel.backoffScores(null, TrigramModel.NO_RANGE, mapOf("there" to 20), 1.2, "", 8, withoutModel)
+        assertEquals(mapOf("later" to 40, "there" to 24), withoutModel)
+    }
+
+    @Test
+    fun `static continuations stop at the limit, best first`() {
+        val model = open()
+        val scores = HashMap<String, Int>()
+        TrigramModel.backoffScores(model, model.rangeOf("see", "you"), emptyMap(), 1.2, "", 2, scores)
+        assertEquals(mapOf("tomorrow" to 255, "later" to 200), scores)
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.text.gestures
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class GestureSampleBufferTest {
+    private fun GestureSampleBuffer.addSample(i: Int) = add(i.toFloat(), -i.toFloat(), 1000L + i)
+
+    private fun GestureSampleBuffer.assertSample(i: Int) {
+        assertEquals(i.toFloat(), x(i), "x($i)")
+        assertEquals(-i.toFloat(), y(i), "y($i)")
+        assertEquals(1000L + i, t(i), "t($i)")
+    }
+
+    @Test
+    fun `holds samples by absolute index until full`() {
+        val buffer = GestureSampleBuffer(8)
+        assertTrue(buffer.isEmpty)
+        for (i in 0 until 8) buffer.addSample(i)
+        assertFalse(buffer.isEmpty)
+        assertEquals(8, buffer.count)
+        assertEquals(8, buffer.size)
+        assertEquals(0, buffer.firstIndex)
+        for (i in 0 until 8) buffer.assertSample(i)
+    }
+
+    @Test
+    fun `wraps around keeping the newest samples`() {
+        val buffer = GestureSampleBuffer(8)
+        for (i in 0 until 21) buffer.addSample(i)
+        assertEquals(21, buffer.count)
+        assertEquals(8, buffer.size)
+        assertEquals(13, buffer.firstIndex)
+        for (i in buffer.firstIndex until buffer.count) buffer.assertSample(i)
+    }
+
+    @Test
+    fun `capacity rounds up to a power of two`() {
+        val buffer = GestureSampleBuffer(5)
+        for (i in 0 until 8) buffer.addSample(i)
+        assertEquals(0, buffer.firstIndex)
+        buffer.addSample(8)
+        assertEquals(1, buffer.firstIndex)
+        assertEquals(8, buffer.size)
+        for (i in 1..8) buffer.assertSample(i)
+    }
+
+    @Test
+    fun `reset starts over at index zero`() {
+        val buffer = GestureSampleBuffer(4)
+        for (i in 0 until 10) buffer.addSample(i)
+        buffer.reset()
+        assertTrue(buffer.isEmpty)
+        assertEquals(0, buffer.size)
+        assertEquals(0, buffer.firstIndex)
+        buffer.addSample(0)
+        buffer.assertSample(0)
+    }
+
+    @Test
+    fun `copies samples from another buffer`() {
+        val source = GestureSampleBuffer(4)
+        for (i in 0 until 6) source.addSample(i)
+        val copy = GestureSampleBuffer(16)
+        for (i in source.firstIndex until source.count) copy.add(source, i)
+        assertEquals(4, copy.count)
+        assertEquals(source.x(5), copy.x(3))
+        assertEquals(source.t(2), copy.t(0))
+    }
+}
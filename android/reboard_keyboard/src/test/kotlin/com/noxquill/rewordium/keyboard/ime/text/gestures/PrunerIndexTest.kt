@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2025 The ReBoard Contributors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.noxquill.rewordium.keyboard.ime.text.gestures
+
+import org.junit.jupiter.api.io.TempDir
+import java.io.File
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFails
+import kotlin.test.assertFalse
+import kotlin.test.assertNotEquals
+import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class PrunerIndexTest {
+    @TempDir
+    lateinit var dir: File
+
+    private val buckets = mapOf(
+        ('t'.code to 'e'.code) to listOf("the", "take", "tree"),
+        ('a'.code to 'd'.code) to listOf("and", "added"),
+        ('h'.code to 'o'.code) to listOf("hello"),
+        ('u'.code to 'r'.code) to listOf("über"),
+    )
+
+    @Test
+    fun `write then open round-trips`() {
+        val file = PrunerIndex.fileFor(dir, 42, 7L)
+        PrunerIndex.write(file, 42, 7L, buckets)
+        val index = assertNotNull(PrunerIndex.open(file, 42, 7L))
+        val pairs = ArrayList<Pair<Int, Int>>()
+        index.forEachPair { first, last -> pairs.add(first to last) }
+        assertEquals(buckets.keys.sortedWith(compareBy({ it.first }, { it.second })), pairs)
+        for ((pair, words) in buckets) assertEquals(words, index.wordsFor(pair.first, pair.second))
+        assertEquals(emptyList(), index.wordsFor('z'.code, 'z'.code))
+        assertFalse(File(file.path + ".tmp").exists())
+    }
+
+    @Test
+    fun `empty index round-trips`() {
+        val file = PrunerIndex.fileFor(dir, 42, 7L)
+        PrunerIndex.write(file, 42, 7L, emptyMap())
+        val index = assertNotNull(PrunerIndex.open(file, 42, 7L))
+        index.forEachPair { _, _ -> error("no pairs expected") }
+        assertEquals(emptyList(), index.wordsFor('a'.code, 'd'.code))
+    }
+
+    @Test
+    fun `other layout, word list version or format is rejected`() {
+        val file = PrunerIndex.fileFor(dir, 42, 7L)
+        PrunerIndex.write(file, 42, 7L, buckets)
+        assertNull(PrunerIndex.open(file, 43, 7L))
+        assertNull(PrunerIndex.open(file, 42, 8L))
+        val bytes = file.readBytes()
+        bytes[0] = (bytes[0] + 1).toByte()
+        file.writeBytes(bytes)
+        assertNull(PrunerIndex.open(file, 42, 7L))
+        assertNull(PrunerIndex.open(File(dir, "missing.bin"), 42, 7L))
+    }
+
+    @Test
+    fun `truncated or padded files fail to open`() {
+        val file = PrunerIndex.fileFor(dir, 42, 7L)
+        PrunerIndex.write(file, 42, 7L, buckets)
+        val bytes = file.readBytes()
+        for (length in listOf(0, 2, 20, bytes.size / 2, bytes.size - 1)) {
+            file.writeBytes(bytes.copyOf(length))
+            assertFails("length $length") { PrunerIndex.open(file, 42, 7L) }
+        }
+        file.writeBytes(bytes + byteArrayOf(0, 0))
+        assertFails { PrunerIndex.open(file, 42, 7L) }
+    }
+
+    @Test
+    fun `file names carry layout and word list version`() {
+        assertNotEquals(PrunerIndex.fileFor(dir, 42, 7L), PrunerIndex.fileFor(dir, 42, 8L))
+        assertNotEquals(PrunerIndex.fileFor(dir, 42, 7L), PrunerIndex.fileFor(dir, 43, 7L))
+    }
+
+    @Test
+    fun `older versions of the same layout are deleted`() {
+        val current = PrunerIndex.fileFor(dir, 42, 8L)
+        val older = PrunerIndex.fileFor(dir, 42, 7L)
+        val unversioned = File(dir, "42.bin")
+        val otherLayout = PrunerIndex.fileFor(dir, 420, 7L)
+        val writing = File(PrunerIndex.fileFor(dir, 42, 9L).path + ".tmp")
+        for (file in listOf(current, older, unversioned, otherLayout, writing)) file.writeBytes(byteArrayOf(1))
+        PrunerIndex.deleteOtherVersions(dir, 42, current)
+        assertTrue(current.exists())
+        assertFalse(older.exists())
+        assertFalse(unversioned.exists())
+        assertTrue(otherLayout.exists())
+        assertTrue(writing.exists())
+    }
+}
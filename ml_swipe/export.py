@@ -0,0 +1,80 @@
+"""
+Exports a trained LayoutAgnosticEncoder for the keyboard's neural glide
+classifier (NeuralGlideTypingClassifier / SwipeEncoder on the Kotlin side).
+
+The model is exported to ONNX with dynamic sequence and key dimensions, then
+dynamically quantized to int8 weights so it runs on ONNX Runtime's CPU
+backend. The keyboard loads it from
+
+    android/reboard_keyboard/src/main/assets/ime/glide/swipe_encoder.onnx
+
+and falls back to the statistical classifier when the file is missing.
+
+Input contract (must match SwipeEncoder.kt):
+    trajectory     float32 [1, frames, 3]  (x, y, t): x and y normalized to
+                   the bounding box of the layout's keys, t in seconds since
+                   touch-down; frames are resampled evenly along the path.
+    layout_coords  float32 [1, keys, 2]    key centers, normalized the same way.
+Output:
+    logits         float32 [1, frames, keys]
+"""
+import argparse
+import os
+
+import torch
+from onnxruntime.quantization import QuantType, quantize_dynamic
+
+from model import LayoutAgnosticEncoder
+
+DEFAULT_OUT = os.path.join(
+    os.path.dirname(__file__), "..", "android", "reboard_keyboard", "src", "main",
+    "assets", "ime", "glide", "swipe_encoder.onnx",
+)
+
+
+class ExportWrapper(torch.nn.Module):
+    # The QWERTY boost head needs a fixed key order, which the keyboard
+    # doesn't guarantee, so only the layout-agnostic path is exported.
+    def __init__(self, model):
+        super().__init__()
+        self.model = model
+
+    def forward(self, trajectory, layout_coords):
+        return self.model(trajectory, layout_coords, is_qwerty=False)
+
+
+def export(weights, out, hidden_dim):
+    model = LayoutAgnosticEncoder(input_dim=3, hidden_dim=hidden_dim)
+    model.load_state_dict(torch.load(weights, map_location="cpu"))
+    model.eval()
+    wrapper = ExportWrapper(model)
+
+    trajectory = torch.rand(1, 48, 3)
+    layout_coords = torch.rand(1, 30, 2)
+    float_path = out + ".float"
+    torch.onnx.export(
+        wrapper,
+        (trajectory, layout_coords),
+        float_path,
+        input_names=["trajectory", "layout_coords"],
+        output_names=["logits"],
+        dynamic_axes={
+            "trajectory": {1: "frames"},
+            "layout_coords": {1: "keys"},
+            "logits": {1: "frames", 2: "keys"},
+        },
+        opset_version=17,
+    )
+    os.makedirs(os.path.dirname(out), exist_ok=True)
+    quantize_dynamic(float_path, out, weight_type=QuantType.QInt8)
+    os.remove(float_path)
+    print(f"Wrote int8 encoder to {out} ({os.path.getsize(out) / 1024:.0f} KiB)")
+
+
+if __name__ == "__main__":
+    parser = argparse.ArgumentParser()
+    parser.add_argument("--weights", default="encoder.pt")
+    parser.add_argument("--out", default=DEFAULT_OUT)
+    parser.add_argument("--hidden-dim", type=int, default=256)
+    args = parser.parse_args()
+    export(args.weights, args.out, args.hidden_dim)
@@ -85,6 +85,8 @@ def train():
                 print(f"  -> Generated prob sequence shape: {probs.shape} (batch, seq, num_keys)")
 
     print("Training complete! Model is producing per-key probabilities.")
+    torch.save(model.state_dict(), "encoder.pt")
+    print("Saved weights to encoder.pt (see export.py for the on-device model).")
 
 if __name__ == "__main__":
     train()